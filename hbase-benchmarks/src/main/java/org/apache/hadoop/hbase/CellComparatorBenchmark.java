@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares pairs of cells the way the memstore and the read path do: rows sharing a long common
+ * prefix, and cells of the same row which only differ in their qualifier. Cells are either on
+ * heap {@link KeyValue}s or off heap {@link ByteBufferKeyValue}s. The generic path is what any
+ * subclass of {@link CellComparatorImpl} gets, the baseline for the serialized key fast path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CellComparatorBenchmark {
+
+  private static final int PAIRS = 1024;
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+
+  @Param({ "onheap", "offheap" })
+  public String cellType;
+
+  @Param({ "16", "64" })
+  public int rowLength;
+
+  @Param({ "flatkeys", "generic" })
+  public String path;
+
+  private CellComparator comparator;
+  private Cell[] differentRows;
+  private Cell[] sameRow;
+  private int index;
+
+  @Setup
+  public void setup() {
+    comparator = "generic".equals(path) ? new CellComparatorImpl() {
+    } : CellComparatorImpl.COMPARATOR;
+    Random rand = new Random(42);
+    differentRows = new Cell[PAIRS * 2];
+    sameRow = new Cell[PAIRS * 2];
+    for (int i = 0; i < PAIRS; i++) {
+      byte[] row = new byte[rowLength];
+      rand.nextBytes(row);
+      byte[] otherRow = row.clone();
+      // only the last byte differs, the worst case for a row compare
+      otherRow[rowLength - 1]++;
+      byte[] value = new byte[16];
+      rand.nextBytes(value);
+      differentRows[2 * i] = create(row, Bytes.toBytes("q"), value);
+      differentRows[2 * i + 1] = create(otherRow, Bytes.toBytes("q"), value);
+      sameRow[2 * i] = create(row, Bytes.toBytes("qualifier-" + i), value);
+      sameRow[2 * i + 1] = create(row, Bytes.toBytes("qualifier-" + (i + 1)), value);
+    }
+  }
+
+  private Cell create(byte[] row, byte[] qualifier, byte[] value) {
+    KeyValue kv = new KeyValue(row, FAMILY, qualifier, HConstants.LATEST_TIMESTAMP, value);
+    if ("onheap".equals(cellType)) {
+      return kv;
+    }
+    ByteBuffer buf = ByteBuffer.allocateDirect(kv.getLength());
+    buf.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    return new ByteBufferKeyValue(buf, 0, kv.getLength());
+  }
+
+  private int next() {
+    index = (index + 2) & (PAIRS * 2 - 1);
+    return index;
+  }
+
+  @Benchmark
+  public int compareRows() {
+    int i = next();
+    return comparator.compareRows(differentRows[i], differentRows[i + 1]);
+  }
+
+  @Benchmark
+  public int compareDifferentRows() {
+    int i = next();
+    return comparator.compare(differentRows[i], differentRows[i + 1]);
+  }
+
+  @Benchmark
+  public int compareSameRow() {
+    int i = next();
+    return comparator.compare(sameRow[i], sameRow[i + 1]);
+  }
+}
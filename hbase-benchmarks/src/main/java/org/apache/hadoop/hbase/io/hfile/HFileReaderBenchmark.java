@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Seeks and nexts through an HFile on the local filesystem, for each data block encoding. The
+ * file fits in the block cache, so after warmup this measures block decoding and key search
+ * rather than IO.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class HFileReaderBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final int ROWS = 50000;
+  private static final int QUALIFIERS = 4;
+  private static final int NEXTS = 16;
+
+  @Param({ "NONE", "PREFIX", "DIFF", "FAST_DIFF", "ROW_INDEX_V1" })
+  public String encoding;
+
+  private FileSystem fs;
+  private Path dir;
+  private HFile.Reader reader;
+  private HFileScanner scanner;
+  private KeyValue[] seekKeys;
+  private int index;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    fs = FileSystem.getLocal(conf);
+    dir = new Path(Files.createTempDirectory("hfile-benchmark").toUri());
+    Path file = new Path(dir, encoding);
+    HFileContext context = new HFileContextBuilder().withBlockSize(64 * 1024)
+        .withDataBlockEncoding(DataBlockEncoding.valueOf(encoding)).build();
+    HFile.Writer writer = HFile.getWriterFactoryNoCache(conf).withPath(fs, file)
+        .withFileContext(context).withComparator(CellComparatorImpl.COMPARATOR).create();
+    Random rand = new Random(42);
+    byte[] value = new byte[64];
+    try {
+      for (int i = 0; i < ROWS; i++) {
+        byte[] row = Bytes.toBytes(String.format("user%012d", i));
+        for (int q = 0; q < QUALIFIERS; q++) {
+          rand.nextBytes(value);
+          writer.append(new KeyValue(row, FAMILY, Bytes.toBytes("field" + q), i, value));
+        }
+      }
+    } finally {
+      writer.close();
+    }
+
+    seekKeys = new KeyValue[4096];
+    for (int i = 0; i < seekKeys.length; i++) {
+      byte[] row = Bytes.toBytes(String.format("user%012d", rand.nextInt(ROWS)));
+      seekKeys[i] = KeyValueUtil.createFirstOnRow(row);
+    }
+    reader = HFile.createReader(fs, file, new CacheConfig(conf), true, conf);
+    reader.loadFileInfo();
+    scanner = reader.getScanner(true, true);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    scanner.close();
+    reader.close(true);
+    fs.delete(dir, true);
+  }
+
+  @Benchmark
+  public void seek(Blackhole bh) throws IOException {
+    index = (index + 1) & (seekKeys.length - 1);
+    bh.consume(scanner.seekTo(seekKeys[index]));
+    bh.consume(scanner.getCell());
+  }
+
+  @Benchmark
+  public void seekThenNext(Blackhole bh) throws IOException {
+    index = (index + 1) & (seekKeys.length - 1);
+    scanner.seekTo(seekKeys[index]);
+    for (int i = 0; i < NEXTS && scanner.next(); i++) {
+      bh.consume(scanner.getCell());
+    }
+  }
+
+  @Benchmark
+  public void scan(Blackhole bh) throws IOException {
+    if (scanner.seekTo()) {
+      do {
+        Cell cell = scanner.getCell();
+        bh.consume(cell);
+      } while (scanner.next());
+    }
+  }
+}
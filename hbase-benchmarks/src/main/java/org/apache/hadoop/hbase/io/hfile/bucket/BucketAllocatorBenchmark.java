@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocates and frees blocks in a {@link BucketAllocator} the way the writer threads and eviction
+ * of a BucketCache do: each thread keeps a window of live allocations, freeing its oldest one
+ * for every new one. The allocator is shared, run with <code>-t</code> to measure contention.
+ * {@link #allocateAndFreeGlobalLock} serializes all calls on the allocator the way it was
+ * before allocations only locked their size class, as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BucketAllocatorBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Allocator {
+    @Param({ "1024" })
+    public int capacityMB;
+
+    BucketAllocator allocator;
+
+    @Setup(Level.Iteration)
+    public void setup() throws BucketAllocatorException {
+      allocator = new BucketAllocator(capacityMB * 1024L * 1024L, null);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Window {
+    private static final int LIVE = 1024;
+
+    final long[] offsets = new long[LIVE];
+    final int[] sizes = new int[4096];
+    int head;
+    int next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+      Random rand = new Random(Thread.currentThread().getId());
+      for (int i = 0; i < sizes.length; i++) {
+        // mostly 64k data blocks, some smaller index and bloom blocks
+        sizes[i] = rand.nextInt(4) == 0 ? 1024 + rand.nextInt(16 * 1024)
+            : 64 * 1024 + rand.nextInt(2 * 1024);
+      }
+      Arrays.fill(offsets, -1L);
+      head = 0;
+    }
+  }
+
+  @Benchmark
+  public long allocateAndFree(Allocator state, Window window) {
+    return allocateAndFreeNext(state, window);
+  }
+
+  @Benchmark
+  public long allocateAndFreeGlobalLock(Allocator state, Window window) {
+    synchronized (state.allocator) {
+      return allocateAndFreeNext(state, window);
+    }
+  }
+
+  private static long allocateAndFreeNext(Allocator state, Window window) {
+    long old = window.offsets[window.head];
+    if (old >= 0) {
+      state.allocator.freeBlock(old);
+    }
+    long offset;
+    try {
+      offset = state.allocator.allocateBlock(window.sizes[window.next]);
+    } catch (CacheFullException e) {
+      offset = -1L;
+    } catch (BucketAllocatorException e) {
+      throw new RuntimeException(e);
+    }
+    window.offsets[window.head] = offset;
+    window.head = (window.head + 1) & (Window.LIVE - 1);
+    window.next = (window.next + 1) & (window.sizes.length - 1);
+    return offset;
+  }
+}
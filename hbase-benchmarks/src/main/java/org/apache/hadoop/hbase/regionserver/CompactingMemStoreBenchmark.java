@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.MemoryCompactionPolicy;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.io.util.MemorySizeUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adds cells to a {@link CompactingMemStore} and flushes its active segment in memory, which
+ * flattens (BASIC) or compacts (EAGER) it into the configured index. In memory flushes are only
+ * ever triggered by the benchmark itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CompactingMemStoreBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final int CELLS_PER_FLUSH = 10000;
+
+  @Param({ "BASIC", "EAGER" })
+  public String policy;
+
+  @Param({ "ARRAY_MAP", "CHUNK_MAP" })
+  public String indexType;
+
+  private Configuration conf;
+  private HBaseTestingUtility util;
+  private HRegion region;
+  private CompactingMemStore memstore;
+  private final byte[] value = new byte[64];
+  private long row;
+
+  @Setup
+  public void setup() throws IOException {
+    conf = HBaseConfiguration.create();
+    conf.setBoolean(MemStoreLAB.USEMSLAB_KEY, true);
+    conf.set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY, indexType);
+    // never flush in memory on our behalf
+    conf.setDouble(CompactingMemStore.IN_MEMORY_FLUSH_THRESHOLD_FACTOR_KEY, 1000);
+    long globalMemStoreLimit = (long) (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+        .getMax() * MemorySizeUtil.getGlobalMemStoreHeapPercent(conf, false));
+    ChunkCreator.initialize(MemStoreLAB.CHUNK_SIZE_DEFAULT, false, globalMemStoreLimit, 0.2f,
+      MemStoreLAB.POOL_INITIAL_SIZE_DEFAULT, null);
+    util = HBaseTestingUtility.createLocalHTU(conf);
+    region = util.createTestRegion("CompactingMemStoreBenchmark",
+      ColumnFamilyDescriptorBuilder.of(FAMILY));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    HBaseTestingUtility.closeRegionAndWAL(region);
+    util.cleanupTestDir();
+  }
+
+  private void newMemStore() throws IOException {
+    memstore = new CompactingMemStore(conf, CellComparator.getInstance(),
+        region.getStore(FAMILY), region.getRegionServicesForStores(),
+        MemoryCompactionPolicy.valueOf(policy));
+  }
+
+  private void add() {
+    memstore.add(new KeyValue(Bytes.toBytes(row++), FAMILY, QUALIFIER, value), null);
+  }
+
+  private void dropMemStore() throws IOException {
+    MemStoreSnapshot snapshot = memstore.snapshot();
+    memstore.clearSnapshot(snapshot.getId());
+  }
+
+  @State(Scope.Thread)
+  public static class Adding {
+    @Setup(Level.Iteration)
+    public void setup(CompactingMemStoreBenchmark benchmark) throws IOException {
+      benchmark.newMemStore();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(CompactingMemStoreBenchmark benchmark) throws IOException {
+      benchmark.dropMemStore();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Flattening {
+    @Setup(Level.Invocation)
+    public void setup(CompactingMemStoreBenchmark benchmark) throws IOException {
+      benchmark.newMemStore();
+      for (int i = 0; i < CELLS_PER_FLUSH; i++) {
+        benchmark.add();
+      }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown(CompactingMemStoreBenchmark benchmark) throws IOException {
+      benchmark.dropMemStore();
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void add(Adding adding) {
+    add();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void flushInMemory(Flattening flattening) throws IOException {
+    memstore.flushInMemory();
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeepDeletedCells;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.CollectionBackedScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Merges the cells of several sorted scanners, as a store does for its memstore segments and
+ * store files: once through a bare {@link KeyValueHeap} and once through a user
+ * {@link StoreScanner}, which adds the query matcher and row batching on top. Rows are dealt
+ * round robin so that every step of the merge switches scanner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyValueHeapBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final int CELLS = 100000;
+  private static final int QUALIFIERS = 4;
+
+  @Param({ "1", "4", "16" })
+  public int scanners;
+
+  private List<List<Cell>> data;
+  private ScanInfo scanInfo;
+
+  @Setup
+  public void setup() {
+    data = new ArrayList<>(scanners);
+    for (int i = 0; i < scanners; i++) {
+      data.add(new ArrayList<>(CELLS / scanners + 1));
+    }
+    byte[] value = new byte[32];
+    for (int i = 0; i < CELLS / QUALIFIERS; i++) {
+      byte[] row = Bytes.toBytes(String.format("row-%010d", i));
+      for (int q = 0; q < QUALIFIERS; q++) {
+        data.get(i % scanners).add(new KeyValue(row, FAMILY, Bytes.toBytes("q" + q),
+          HConstants.LATEST_TIMESTAMP, value));
+      }
+    }
+    scanInfo = new ScanInfo(HBaseConfiguration.create(), FAMILY, 0, Integer.MAX_VALUE,
+        Long.MAX_VALUE, KeepDeletedCells.FALSE, HConstants.DEFAULT_BLOCKSIZE, 0,
+        CellComparator.getInstance(), false);
+  }
+
+  private List<KeyValueScanner> newScanners() {
+    List<KeyValueScanner> list = new ArrayList<>(scanners);
+    for (List<Cell> cells : data) {
+      list.add(new CollectionBackedScanner(cells, CellComparator.getInstance()));
+    }
+    return list;
+  }
+
+  @Benchmark
+  public void keyValueHeap(Blackhole bh) throws IOException {
+    KeyValueHeap heap = new KeyValueHeap(newScanners(), CellComparator.getInstance());
+    try {
+      for (Cell cell = heap.next(); cell != null; cell = heap.next()) {
+        bh.consume(cell);
+      }
+    } finally {
+      heap.close();
+    }
+  }
+
+  @Benchmark
+  public void storeScanner(Blackhole bh) throws IOException {
+    List<Cell> results = new ArrayList<>();
+    try (StoreScanner scanner = new StoreScanner(new Scan(), scanInfo, null, newScanners())) {
+      boolean more;
+      do {
+        more = scanner.next(results);
+        bh.consume(results);
+        results.clear();
+      } while (more);
+    }
+  }
+}
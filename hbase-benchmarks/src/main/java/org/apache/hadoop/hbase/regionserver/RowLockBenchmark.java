@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Takes and releases row locks through {@link HRegion#getRowLockInternal}, with the default
+ * per-row {@link RowLockManager} and with {@link StripedRowLockManager}. With a single row every
+ * thread fights over the same lock, as with a hot counter; with many rows the cost is mostly
+ * that of the lock table itself. Run with <code>-t</code> for contention, and with
+ * <code>-prof gc</code> to compare allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowLockBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final int BATCH = 16;
+
+  @Param({ "default", "striped" })
+  public String manager;
+
+  @Param({ "1", "4096" })
+  public int rowCount;
+
+  private HBaseTestingUtility util;
+  private HRegion region;
+  private byte[][] rows;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    if ("striped".equals(manager)) {
+      conf.set(HRegion.ROW_LOCK_MANAGER_CLASS, StripedRowLockManager.class.getName());
+    }
+    util = HBaseTestingUtility.createLocalHTU(conf);
+    region = util.createTestRegion("RowLockBenchmark", ColumnFamilyDescriptorBuilder.of(FAMILY));
+    rows = new byte[rowCount][];
+    for (int i = 0; i < rowCount; i++) {
+      rows[i] = Bytes.toBytes(String.format("row-%08d", i));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    HBaseTestingUtility.closeRegionAndWAL(region);
+    util.cleanupTestDir();
+  }
+
+  private byte[] randomRow() {
+    return rows[ThreadLocalRandom.current().nextInt(rowCount)];
+  }
+
+  @Benchmark
+  public void writeLock() throws IOException {
+    region.getRowLockInternal(randomRow(), false, null).release();
+  }
+
+  @Benchmark
+  public void readLock() throws IOException {
+    region.getRowLockInternal(randomRow(), true, null).release();
+  }
+
+  /**
+   * Locks a batch of rows the way a multi put does, skipping rows covered by the lock taken
+   * for the previous one.
+   */
+  @Benchmark
+  public void batchReadLock() throws IOException {
+    RowLock[] acquired = new RowLock[BATCH];
+    int count = 0;
+    RowLock prevRowLock = null;
+    int start = ThreadLocalRandom.current().nextInt(rowCount);
+    for (int i = 0; i < BATCH; i++) {
+      RowLock rowLock = region.getRowLockInternal(rows[(start + i) % rowCount], true, prevRowLock);
+      if (rowLock != prevRowLock) {
+        acquired[count++] = rowLock;
+        prevRowLock = rowLock;
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      acquired[i].release();
+    }
+  }
+}
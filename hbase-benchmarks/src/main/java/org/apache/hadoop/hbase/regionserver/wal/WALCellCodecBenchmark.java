@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.codec.Codec;
+import org.apache.hadoop.hbase.io.util.LRUDictionary;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encodes and decodes a batch of cells with {@link WALCellCodec}, with and without WAL
+ * dictionary compression. The dictionaries are reset for every batch, as they are for every new
+ * WAL file, so the numbers are for a cold dictionary warming up over the batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class WALCellCodecBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final int BATCH = 1000;
+
+  @Param({ "false", "true" })
+  public boolean compression;
+
+  @Param({ "100" })
+  public int valueSize;
+
+  private Cell[] cells;
+  private CompressionContext encodeContext;
+  private CompressionContext decodeContext;
+  private WALCellCodec encodeCodec;
+  private WALCellCodec decodeCodec;
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    Random rand = new Random(42);
+    cells = new Cell[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      byte[] value = new byte[valueSize];
+      rand.nextBytes(value);
+      // a few hot rows and qualifiers, as with a batch of puts on a small set of rows
+      cells[i] = new KeyValue(Bytes.toBytes(String.format("row-%08d", rand.nextInt(BATCH / 10))),
+          FAMILY, Bytes.toBytes("q" + rand.nextInt(8)), System.currentTimeMillis(), value);
+    }
+    if (compression) {
+      encodeContext = new CompressionContext(LRUDictionary.class, false, false);
+      decodeContext = new CompressionContext(LRUDictionary.class, false, false);
+    }
+    encodeCodec = new WALCellCodec(conf, encodeContext);
+    decodeCodec = new WALCellCodec(conf, decodeContext);
+    encode();
+    encoded = out.toByteArray();
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    out.reset();
+    if (encodeContext != null) {
+      encodeContext.clear();
+    }
+    Codec.Encoder encoder = encodeCodec.getEncoder(out);
+    for (Cell cell : cells) {
+      encoder.write(cell);
+    }
+    encoder.flush();
+    return out.size();
+  }
+
+  @Benchmark
+  public void decode(Blackhole bh) throws IOException {
+    if (decodeContext != null) {
+      decodeContext.clear();
+    }
+    Codec.Decoder decoder = decodeCodec.getDecoder(new ByteArrayInputStream(encoded));
+    while (decoder.advance()) {
+      bh.consume(decoder.current());
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares equal byte ranges, so every byte is looked at. Lengths which are not a multiple of
+ * eight exercise the tail after the long wide loop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class BytesCompareBenchmark {
+
+  @Param({ "7", "15", "23", "64" })
+  public int length;
+
+  private byte[] left;
+  private byte[] right;
+  private ByteBuffer directLeft;
+  private ByteBuffer directRight;
+
+  @Setup
+  public void setup() {
+    left = new byte[length];
+    for (int i = 0; i < length; i++) {
+      left[i] = (byte) i;
+    }
+    right = left.clone();
+    directLeft = ByteBuffer.allocateDirect(length);
+    directLeft.put(left);
+    directRight = ByteBuffer.allocateDirect(length);
+    directRight.put(right);
+  }
+
+  @Benchmark
+  public int bytes() {
+    return Bytes.compareTo(left, 0, length, right, 0, length);
+  }
+
+  @Benchmark
+  public int bytesPureJava() {
+    return Bytes.lexicographicalComparerJavaImpl().compareTo(left, 0, length, right, 0, length);
+  }
+
+  @Benchmark
+  public int byteBuffers() {
+    return ByteBufferUtils.compareTo(directLeft, 0, length, directRight, 0, length);
+  }
+}
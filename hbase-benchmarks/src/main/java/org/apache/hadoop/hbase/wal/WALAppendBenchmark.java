@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.regionserver.MultiVersionConcurrencyControl;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.CommonFSUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appends a single cell edit to a WAL on the local filesystem and syncs it, for FSHLog
+ * ("filesystem") and AsyncFSWAL ("asyncfs"). The WAL is shared, run with <code>-t</code> to see
+ * how syncs of concurrent handlers get batched. Local filesystem syncs are cheap next to an HDFS
+ * pipeline, so this mostly measures the WAL's own queueing and serialization.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WALAppendBenchmark {
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  @Param({ "filesystem", "asyncfs" })
+  public String provider;
+
+  @Param({ "100", "1000" })
+  public int valueSize;
+
+  private FileSystem fs;
+  private Path rootDir;
+  private WALFactory wals;
+  private WAL wal;
+  private RegionInfo regionInfo;
+  private final MultiVersionConcurrencyControl mvcc = new MultiVersionConcurrencyControl();
+  private final NavigableMap<byte[], Integer> scopes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  private final AtomicLong rows = new AtomicLong();
+  private byte[] value;
+
+  @Setup
+  public void setup() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    conf.set(WALFactory.WAL_PROVIDER, provider);
+    // the local filesystem does not advertise hflush/hsync
+    conf.setBoolean(CommonFSUtils.UNSAFE_STREAM_CAPABILITY_ENFORCE, false);
+    fs = FileSystem.getLocal(conf);
+    rootDir = new Path(Files.createTempDirectory("wal-benchmark").toUri());
+    CommonFSUtils.setRootDir(conf, rootDir);
+    wals = new WALFactory(conf, null, "WALAppendBenchmark");
+    regionInfo = RegionInfoBuilder.newBuilder(TableName.valueOf("WALAppendBenchmark")).build();
+    wal = wals.getWAL(regionInfo.getEncodedNameAsBytes(), regionInfo.getTable().getNamespace());
+    scopes.put(FAMILY, 0);
+    value = new byte[valueSize];
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    wals.close();
+    fs.delete(rootDir, true);
+  }
+
+  @Benchmark
+  public long appendAndSync() throws IOException {
+    long now = System.currentTimeMillis();
+    WALEdit edit = new WALEdit();
+    edit.add(new KeyValue(Bytes.toBytes(rows.incrementAndGet()), FAMILY, QUALIFIER, now, value));
+    WALKeyImpl key = new WALKeyImpl(regionInfo.getEncodedNameAsBytes(), regionInfo.getTable(),
+        now, mvcc, scopes);
+    long txid = wal.append(regionInfo, key, edit, true);
+    wal.sync(txid);
+    mvcc.complete(key.getWriteEntry());
+    return txid;
+  }
+}
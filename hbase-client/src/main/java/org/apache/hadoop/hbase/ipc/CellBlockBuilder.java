@@ -218,6 +218,26 @@ class CellBlockBuilder {
    */
   public ByteBufferListOutputStream buildCellBlockStream(Codec codec, CompressionCodec compressor,
       CellScanner cellScanner, ByteBufferPool pool) throws IOException {
+    return buildCellBlockStream(codec, compressor, cellScanner, pool, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Puts CellScanner Cells into a cell block using passed in <code>codec</code> and/or
+   * <code>compressor</code>, referring to rather than copying the serialized form of off heap
+   * cells of at least <code>minReferenceSize</code> bytes where the codec writes it as is.
+   * @param codec to use for encoding
+   * @param compressor to use for encoding
+   * @param cellScanner to encode
+   * @param pool Pool of ByteBuffers to make use of.
+   * @param minReferenceSize smallest off heap write to refer to
+   * @return Null or the stream holding the cellblock. Check
+   *         {@link ByteBufferListOutputStream#hasReferences()} to see whether the memory of the
+   *         cells has to be kept valid until the cellblock is written out.
+   * @throws IOException if encoding the cells fail
+   * @see #buildCellBlockStream(Codec, CompressionCodec, CellScanner, ByteBufferPool)
+   */
+  public ByteBufferListOutputStream buildCellBlockStream(Codec codec, CompressionCodec compressor,
+      CellScanner cellScanner, ByteBufferPool pool, int minReferenceSize) throws IOException {
     if (cellScanner == null) {
       return null;
     }
@@ -225,7 +245,7 @@ class CellBlockBuilder {
       throw new CellScannerButNoCodecException();
     }
     assert pool != null;
-    ByteBufferListOutputStream bbos = new ByteBufferListOutputStream(pool);
+    ByteBufferListOutputStream bbos = new ByteBufferListOutputStream(pool, minReferenceSize);
     encodeCellsTo(bbos, cellScanner, codec, compressor);
     if (bbos.size() == 0) {
       bbos.releaseResources();
@@ -18,12 +18,15 @@
 package org.apache.hadoop.hbase.ipc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.apache.commons.lang3.time.StopWatch;
+import org.apache.hadoop.hbase.ByteBufferKeyValue;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.hadoop.hbase.CellUtil;
@@ -32,6 +35,8 @@ import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.hadoop.hbase.codec.Codec;
 import org.apache.hadoop.hbase.codec.KeyValueCodec;
+import org.apache.hadoop.hbase.io.ByteBufferListOutputStream;
+import org.apache.hadoop.hbase.io.ByteBufferPool;
 import org.apache.hadoop.hbase.io.SizedCellScanner;
 import org.apache.hadoop.hbase.nio.SingleByteBuff;
 import org.apache.hadoop.hbase.testclassification.ClientTests;
@@ -66,6 +71,54 @@ public class TestCellBlockBuilder {
     doBuildCellBlockUndoCellBlock(this.builder, new KeyValueCodec(), new GzipCodec());
   }
 
+  @Test
+  public void testBuildCellBlockStreamReferencingCells() throws IOException {
+    Cell[] cells = getCells(10, 100);
+    Cell[] offheapCells = new Cell[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      KeyValue kv = (KeyValue) cells[i];
+      ByteBuffer buf = ByteBuffer.allocateDirect(kv.getLength());
+      buf.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+      offheapCells[i] = new ByteBufferKeyValue(buf, 0, kv.getLength());
+    }
+    ByteBufferPool pool = new ByteBufferPool(1024, 10);
+    ByteBufferListOutputStream copied = this.builder.buildCellBlockStream(new KeyValueCodec(),
+      null, CellUtil.createCellScanner(offheapCells), pool);
+    ByteBufferListOutputStream referencing = this.builder.buildCellBlockStream(
+      new KeyValueCodec(), null, CellUtil.createCellScanner(offheapCells), pool, 100);
+    assertFalse(copied.hasReferences());
+    assertTrue(referencing.hasReferences());
+    assertEquals(copied.size(), referencing.size());
+    assertEquals(toByteBuffer(copied), toByteBuffer(referencing));
+
+    CellScanner cellScanner = this.builder.createCellScannerReusingBuffers(new KeyValueCodec(),
+      null, new SingleByteBuff(toByteBuffer(referencing)));
+    int i = 0;
+    while (cellScanner.advance()) {
+      assertTrue(CellUtil.equals(cells[i], cellScanner.current()));
+      assertTrue(CellUtil.matchingValue(cells[i], cellScanner.current()));
+      i++;
+    }
+    assertEquals(cells.length, i);
+    copied.releaseResources();
+    referencing.releaseResources();
+
+    // Compression has to copy
+    referencing = this.builder.buildCellBlockStream(new KeyValueCodec(), new DefaultCodec(),
+      CellUtil.createCellScanner(offheapCells), pool, 100);
+    assertFalse(referencing.hasReferences());
+    referencing.releaseResources();
+  }
+
+  private static ByteBuffer toByteBuffer(ByteBufferListOutputStream bbos) {
+    ByteBuffer bb = ByteBuffer.allocate(bbos.size());
+    for (ByteBuffer b : bbos.getByteBuffers()) {
+      bb.put(b.duplicate());
+    }
+    bb.flip();
+    return bb;
+  }
+
   static void doBuildCellBlockUndoCellBlock(final CellBlockBuilder builder, final Codec codec,
       final CompressionCodec compressor) throws IOException {
     doBuildCellBlockUndoCellBlock(builder, codec, compressor, 10, 1, false);
@@ -18,6 +18,8 @@
 
 package org.apache.hadoop.hbase;
 
+import java.nio.ByteBuffer;
+
 import org.apache.hadoop.hbase.KeyValue.Type;
 import org.apache.hadoop.hbase.util.ByteBufferUtils;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -56,6 +58,12 @@ public class CellComparatorImpl implements CellComparator {
    */
   public static final CellComparatorImpl META_COMPARATOR = new MetaCellComparator();
 
+  /**
+   * Whether KeyValues can be compared on their serialized keys. Subclasses may order rows
+   * differently, so they always go through {@link #compareRows(Cell, Cell)}.
+   */
+  private final boolean compareFlatKeys = getClass() == CellComparatorImpl.class;
+
   @Override
   public int compare(Cell a, Cell b) {
     return compare(a, b, false);
@@ -70,11 +78,19 @@ public class CellComparatorImpl implements CellComparator {
    * @return 0 if equal, -1 if a &lt; b, and +1 if a &gt; b.
    */
   public final int compare(final Cell a, final Cell b, boolean ignoreSequenceid) {
-    // row
-    int c = compareRows(a, b);
-    if (c != 0) return c;
+    int c;
+    if (compareFlatKeys && a instanceof KeyValue && b instanceof KeyValue) {
+      c = compareKeyValues((KeyValue) a, (KeyValue) b);
+    } else if (compareFlatKeys && a instanceof ByteBufferKeyValue
+        && b instanceof ByteBufferKeyValue) {
+      c = compareByteBufferKeyValues((ByteBufferKeyValue) a, (ByteBufferKeyValue) b);
+    } else {
+      // row
+      c = compareRows(a, b);
+      if (c != 0) return c;
 
-    c = compareWithoutRow(a, b);
+      c = compareWithoutRow(a, b);
+    }
     if(c != 0) return c;
 
     if (!ignoreSequenceid) {
@@ -86,6 +102,101 @@ public class CellComparatorImpl implements CellComparator {
     }
   }
 
+  /**
+   * Same as {@link #compareRows(Cell, Cell)} followed by {@link #compareWithoutRow(Cell, Cell)}
+   * but working off the serialized keys, so the row and family lengths that locate every other
+   * part of the key are read just once.
+   */
+  private static int compareKeyValues(KeyValue left, KeyValue right) {
+    byte[] lbuf = left.getBuffer();
+    byte[] rbuf = right.getBuffer();
+    int lkoffset = left.getKeyOffset();
+    int rkoffset = right.getKeyOffset();
+    int lklength = left.getKeyLength();
+    int rklength = right.getKeyLength();
+    short lrlength = Bytes.toShort(lbuf, lkoffset);
+    short rrlength = Bytes.toShort(rbuf, rkoffset);
+    if (lbuf != rbuf || lkoffset != rkoffset) {
+      // The first long wide step of the comparer already decides rows that differ in their first
+      // eight bytes with one load per side, so there is no separate row prefix check here.
+      int c = Bytes.compareTo(lbuf, lkoffset + Bytes.SIZEOF_SHORT, lrlength,
+          rbuf, rkoffset + Bytes.SIZEOF_SHORT, rrlength);
+      if (c != 0) return c;
+    }
+    // Offsets of the family length byte
+    int lfoffset = lkoffset + Bytes.SIZEOF_SHORT + lrlength;
+    int rfoffset = rkoffset + Bytes.SIZEOF_SHORT + rrlength;
+    int lflength = lbuf[lfoffset];
+    int rflength = rbuf[rfoffset];
+    int lqlength = lklength - lrlength - lflength - KeyValue.KEY_INFRASTRUCTURE_SIZE;
+    int rqlength = rklength - rrlength - rflength - KeyValue.KEY_INFRASTRUCTURE_SIZE;
+    byte ltype = lbuf[lkoffset + lklength - 1];
+    byte rtype = rbuf[rkoffset + rklength - 1];
+    if (lflength + lqlength == 0 && ltype == Type.Minimum.getCode()) {
+      return 1;
+    }
+    if (rflength + rqlength == 0 && rtype == Type.Minimum.getCode()) {
+      return -1;
+    }
+    if (lflength != rflength) {
+      return Bytes.compareTo(lbuf, lfoffset + 1, lflength, rbuf, rfoffset + 1, rflength);
+    }
+    // Families of the same length: the family and qualifier can be compared as one
+    int c = Bytes.compareTo(lbuf, lfoffset + 1, lflength + lqlength,
+        rbuf, rfoffset + 1, rflength + rqlength);
+    if (c != 0) return c;
+    c = Long.compare(Bytes.toLong(rbuf, rkoffset + rklength - KeyValue.TIMESTAMP_TYPE_SIZE),
+        Bytes.toLong(lbuf, lkoffset + lklength - KeyValue.TIMESTAMP_TYPE_SIZE));
+    if (c != 0) return c;
+    return (0xff & rtype) - (0xff & ltype);
+  }
+
+  /**
+   * {@link #compareKeyValues(KeyValue, KeyValue)} for cells backed by a ByteBuffer.
+   */
+  private static int compareByteBufferKeyValues(ByteBufferKeyValue left,
+      ByteBufferKeyValue right) {
+    ByteBuffer lbuf = left.buf;
+    ByteBuffer rbuf = right.buf;
+    int lkoffset = left.offset + KeyValue.ROW_OFFSET;
+    int rkoffset = right.offset + KeyValue.ROW_OFFSET;
+    int lklength = ByteBufferUtils.toInt(lbuf, left.offset);
+    int rklength = ByteBufferUtils.toInt(rbuf, right.offset);
+    short lrlength = ByteBufferUtils.toShort(lbuf, lkoffset);
+    short rrlength = ByteBufferUtils.toShort(rbuf, rkoffset);
+    if (lbuf != rbuf || lkoffset != rkoffset) {
+      int c = ByteBufferUtils.compareTo(lbuf, lkoffset + Bytes.SIZEOF_SHORT, lrlength,
+          rbuf, rkoffset + Bytes.SIZEOF_SHORT, rrlength);
+      if (c != 0) return c;
+    }
+    int lfoffset = lkoffset + Bytes.SIZEOF_SHORT + lrlength;
+    int rfoffset = rkoffset + Bytes.SIZEOF_SHORT + rrlength;
+    int lflength = ByteBufferUtils.toByte(lbuf, lfoffset);
+    int rflength = ByteBufferUtils.toByte(rbuf, rfoffset);
+    int lqlength = lklength - lrlength - lflength - KeyValue.KEY_INFRASTRUCTURE_SIZE;
+    int rqlength = rklength - rrlength - rflength - KeyValue.KEY_INFRASTRUCTURE_SIZE;
+    byte ltype = ByteBufferUtils.toByte(lbuf, lkoffset + lklength - 1);
+    byte rtype = ByteBufferUtils.toByte(rbuf, rkoffset + rklength - 1);
+    if (lflength + lqlength == 0 && ltype == Type.Minimum.getCode()) {
+      return 1;
+    }
+    if (rflength + rqlength == 0 && rtype == Type.Minimum.getCode()) {
+      return -1;
+    }
+    if (lflength != rflength) {
+      return ByteBufferUtils.compareTo(lbuf, lfoffset + 1, lflength, rbuf, rfoffset + 1,
+          rflength);
+    }
+    int c = ByteBufferUtils.compareTo(lbuf, lfoffset + 1, lflength + lqlength,
+        rbuf, rfoffset + 1, rflength + rqlength);
+    if (c != 0) return c;
+    c = Long.compare(
+        ByteBufferUtils.toLong(rbuf, rkoffset + rklength - KeyValue.TIMESTAMP_TYPE_SIZE),
+        ByteBufferUtils.toLong(lbuf, lkoffset + lklength - KeyValue.TIMESTAMP_TYPE_SIZE));
+    if (c != 0) return c;
+    return (0xff & rtype) - (0xff & ltype);
+  }
+
   /**
    * Compares the family and qualifier part of the cell
    * @param left the left cell
@@ -33,6 +33,11 @@ import org.slf4j.LoggerFactory;
  * needed, from the passed pool. When pool is not giving a ByteBuffer it will create one on heap.
  * Make sure to call {@link #releaseResources()} method once the Stream usage is over and
  * data is transferred to the wanted destination.
+ * <p>
+ * When created with a minimum reference size, off heap ByteBuffers of at least that size written
+ * through {@link #write(ByteBuffer, int, int)} are not copied; a slice of them is added to the
+ * list instead. The memory of such writes has to stay valid and unchanged until the data has
+ * been transferred.
  * Not thread safe!
  */
 @InterfaceAudience.Private
@@ -49,14 +54,31 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
 
   private boolean lastBufFlipped = false;// Indicate whether the curBuf/lastBuf is flipped already
 
+  private final int minReferenceSize;
+  // Where the part of curBuf not yet followed by a referenced buffer starts
+  private int curBufStart = 0;
+  private boolean hasReferences = false;
+
   public ByteBufferListOutputStream(ByteBufferPool pool) {
+    this(pool, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param pool the pool to get ByteBuffers to write into from
+   * @param minReferenceSize off heap ByteBuffer writes of at least this many bytes are referenced
+   *          rather than copied
+   */
+  public ByteBufferListOutputStream(ByteBufferPool pool, int minReferenceSize) {
     this.pool = pool;
+    this.minReferenceSize = minReferenceSize;
     allocateNewBuffer();
   }
 
   private void allocateNewBuffer() {
     if (this.curBuf != null) {
       this.curBuf.flip();// On the current buf set limit = pos and pos = 0.
+      this.curBuf.position(this.curBufStart);
+      this.curBufStart = 0;
     }
     // Get an initial BB to work with from the pool
     this.curBuf = this.pool.getBuffer();
@@ -82,11 +104,19 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
     if (this.lastBufFlipped) {
       s += this.curBuf.remaining();
     } else {
-      s += this.curBuf.position();
+      s += this.curBuf.position() - this.curBufStart;
     }
     return s;
   }
 
+  /**
+   * @return true if any of the buffers refers to memory written through
+   *         {@link #write(ByteBuffer, int, int)} rather than holding a copy of it
+   */
+  public boolean hasReferences() {
+    return this.hasReferences;
+  }
+
   @Override
   public ByteBuffer getByteBuffer() {
     throw new UnsupportedOperationException("This stream is not backed by a single ByteBuffer");
@@ -143,6 +173,7 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
       this.lastBufFlipped = true;
       // All the other BBs are already flipped while moving to the new BB.
       curBuf.flip();
+      curBuf.position(curBufStart);
     }
     return this.allBufs;
   }
@@ -163,6 +194,10 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
 
   @Override
   public void write(ByteBuffer b, int off, int len) throws IOException {
+    if (len >= this.minReferenceSize && b.isDirect()) {
+      addReference(b, off, len);
+      return;
+    }
     int toWrite = 0;
     while (len > 0) {
       toWrite = Math.min(len, this.curBuf.remaining());
@@ -174,4 +209,25 @@ public class ByteBufferListOutputStream extends ByteBufferOutputStream {
       }
     }
   }
+
+  private void addReference(ByteBuffer b, int off, int len) {
+    // Close off what was written to curBuf so far, then the reference, then go on writing to the
+    // rest of curBuf
+    int last = this.allBufs.size() - 1;
+    if (this.curBuf.position() > this.curBufStart) {
+      ByteBuffer written = this.curBuf.duplicate();
+      written.limit(written.position());
+      written.position(this.curBufStart);
+      this.allBufs.set(last, written);
+    } else {
+      this.allBufs.remove(last);
+    }
+    ByteBuffer ref = b.duplicate();
+    ref.limit(off + len);
+    ref.position(off);
+    this.allBufs.add(ref.slice());
+    this.allBufs.add(this.curBuf);
+    this.curBufStart = this.curBuf.position();
+    this.hasReferences = true;
+  }
 }
@@ -17,8 +17,12 @@
  */
 package org.apache.hadoop.hbase.io;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,9 +40,18 @@ import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTe
  * one and return that.
  *
  * <p>
+ * The pool can also keep smaller size classes, halving the buffer size down to a minimum, so
+ * that data smaller than one buffer, like the tail of an RPC request, can be read into a pooled
+ * buffer of about its size via {@link #getBuffer(int)}. Each size class has its own free list and
+ * is bounded by the same max count.
+ * <p>
  * Note: This pool returns off heap ByteBuffers by default. If on heap ByteBuffers to be pooled,
  * pass 'directByteBuffer' as false while construction of the pool.
  * <p>
+ * With leak detection on, the pool remembers where each buffer it handed out was obtained. A
+ * buffer garbage collected without having been put back is logged with that stack trace, and the
+ * pool may create a new one in its place.
+ * <p>
  * This class is thread safe.
  *
  * @see ByteBufferListOutputStream
@@ -54,13 +67,22 @@ public class ByteBufferPool {
   public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;// 64 KB. Making it same as the chunk size
                                                           // what we will write/read to/from the
                                                           // socket channel.
-  private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+  /**
+   * Size of the smallest size class. Defaults to the buffer size, i.e. a single size class.
+   */
+  public static final String MIN_BUFFER_SIZE_KEY = "hbase.ipc.server.reservoir.min.buffer.size";
+  public static final String LEAK_DETECTION_KEY = "hbase.ipc.server.reservoir.leak.detection";
 
   private final int bufferSize;
   private final int maxPoolSize;
-  private AtomicInteger count; // Count of the BBs created already for this pool.
   private final boolean directByteBuffer; //Whether this pool should return DirectByteBuffers
   private boolean maxPoolSizeInfoLevelLogged = false;
+  // Size classes, smallest first. The last one holds buffers of bufferSize.
+  private final SizeClass[] sizeClasses;
+
+  // Handed out buffers by identity hash code, only kept when leak detection is on
+  private final Map<Integer, Queue<LeakTracker>> trackers;
+  private final ReferenceQueue<ByteBuffer> leaked;
 
   /**
    * @param bufferSize Size of each buffer created by this pool.
@@ -76,13 +98,41 @@ public class ByteBufferPool {
    * @param directByteBuffer Whether to create direct ByteBuffer or on heap ByteBuffer.
    */
   public ByteBufferPool(int bufferSize, int maxPoolSize, boolean directByteBuffer) {
+    this(bufferSize, maxPoolSize, directByteBuffer, bufferSize, false);
+  }
+
+  /**
+   * @param bufferSize Size of each buffer of the largest size class.
+   * @param maxPoolSize Max number of buffers to keep in each size class.
+   * @param directByteBuffer Whether to create direct ByteBuffer or on heap ByteBuffer.
+   * @param minBufferSize Smallest size class. Classes are created by halving bufferSize as long
+   *          as the result is not below this.
+   * @param leakDetection Whether to track handed out buffers and report those never put back.
+   */
+  public ByteBufferPool(int bufferSize, int maxPoolSize, boolean directByteBuffer,
+      int minBufferSize, boolean leakDetection) {
     this.bufferSize = bufferSize;
     this.maxPoolSize = maxPoolSize;
     this.directByteBuffer = directByteBuffer;
+    int classes = 1;
+    for (int size = bufferSize / 2; size >= minBufferSize && size > 0; size /= 2) {
+      classes++;
+    }
+    this.sizeClasses = new SizeClass[classes];
+    for (int i = classes - 1, size = bufferSize; i >= 0; i--, size /= 2) {
+      sizeClasses[i] = new SizeClass(size);
+    }
+    if (leakDetection) {
+      this.trackers = new ConcurrentHashMap<>();
+      this.leaked = new ReferenceQueue<>();
+    } else {
+      this.trackers = null;
+      this.leaked = null;
+    }
     // TODO can add initialPoolSize config also and make those many BBs ready for use.
     LOG.info("Created ByteBufferPool with bufferSize : " + bufferSize + " and maxPoolSize : "
-        + maxPoolSize);
-    this.count = new AtomicInteger(0);
+        + maxPoolSize + (classes > 1 ? ", " + classes + " size classes down to "
+        + sizeClasses[0].size : "") + (leakDetection ? ", leak detection on" : ""));
   }
 
   /**
@@ -93,14 +143,36 @@ public class ByteBufferPool {
    * @see #putbackBuffer(ByteBuffer)
    */
   public ByteBuffer getBuffer() {
-    ByteBuffer bb = buffers.poll();
+    return getBuffer(sizeClasses[sizeClasses.length - 1]);
+  }
+
+  /**
+   * @return A free ByteBuffer from the smallest size class that holds <code>size</code> bytes, or
+   *         null if that size class reached its maximum pool size or <code>size</code> is larger
+   *         than {@link #getBufferSize()}. The capacity of the buffer is its size class.
+   * @see #putbackBuffer(ByteBuffer)
+   */
+  public ByteBuffer getBuffer(int size) {
+    for (SizeClass sizeClass : sizeClasses) {
+      if (size <= sizeClass.size) {
+        return getBuffer(sizeClass);
+      }
+    }
+    return null;
+  }
+
+  private ByteBuffer getBuffer(SizeClass sizeClass) {
+    if (leaked != null) {
+      reclaimLeaked();
+    }
+    ByteBuffer bb = sizeClass.buffers.poll();
     if (bb != null) {
       // Clear sets limit == capacity. Position == 0.
       bb.clear();
-      return bb;
+      return track(bb);
     }
     while (true) {
-      int c = this.count.intValue();
+      int c = sizeClass.count.intValue();
       if (c >= this.maxPoolSize) {
         if (maxPoolSizeInfoLevelLogged) {
           if (LOG.isDebugEnabled()) {
@@ -116,14 +188,14 @@ public class ByteBufferPool {
         }
         return null;
       }
-      if (!this.count.compareAndSet(c, c + 1)) {
+      if (!sizeClass.count.compareAndSet(c, c + 1)) {
         continue;
       }
       if (LOG.isTraceEnabled()) {
-        LOG.trace("Creating a new offheap ByteBuffer of size: " + this.bufferSize);
+        LOG.trace("Creating a new offheap ByteBuffer of size: " + sizeClass.size);
       }
-      return this.directByteBuffer ? ByteBuffer.allocateDirect(this.bufferSize)
-          : ByteBuffer.allocate(this.bufferSize);
+      return track(this.directByteBuffer ? ByteBuffer.allocateDirect(sizeClass.size)
+          : ByteBuffer.allocate(sizeClass.size));
     }
   }
 
@@ -133,22 +205,111 @@ public class ByteBufferPool {
    * @param buf ByteBuffer to return.
    */
   public void putbackBuffer(ByteBuffer buf) {
-    if (buf.capacity() != this.bufferSize || (this.directByteBuffer ^ buf.isDirect())) {
+    SizeClass sizeClass = getSizeClass(buf.capacity());
+    if (sizeClass == null || (this.directByteBuffer ^ buf.isDirect())) {
       LOG.warn("Trying to put a buffer, not created by this pool! Will be just ignored");
       return;
     }
-    buffers.offer(buf);
+    if (trackers != null) {
+      untrack(buf);
+    }
+    sizeClass.buffers.offer(buf);
+  }
+
+  private SizeClass getSizeClass(int capacity) {
+    for (SizeClass sizeClass : sizeClasses) {
+      if (sizeClass.size == capacity) {
+        return sizeClass;
+      }
+    }
+    return null;
+  }
+
+  private ByteBuffer track(ByteBuffer buf) {
+    if (trackers != null) {
+      trackers.computeIfAbsent(System.identityHashCode(buf), k -> new ConcurrentLinkedQueue<>())
+          .add(new LeakTracker(buf, leaked));
+    }
+    return buf;
+  }
+
+  private void untrack(ByteBuffer buf) {
+    Queue<LeakTracker> candidates = trackers.get(System.identityHashCode(buf));
+    if (candidates == null) {
+      return;
+    }
+    for (LeakTracker tracker : candidates) {
+      if (tracker.get() == buf) {
+        candidates.remove(tracker);
+        tracker.clear();
+        return;
+      }
+    }
+  }
+
+  private void reclaimLeaked() {
+    LeakTracker tracker;
+    while ((tracker = (LeakTracker) leaked.poll()) != null) {
+      Queue<LeakTracker> candidates = trackers.get(tracker.identityHashCode);
+      if (candidates == null || !candidates.remove(tracker)) {
+        continue;
+      }
+      LOG.error("LEAK: a ByteBuffer of size " + tracker.size + " was garbage collected without"
+          + " being put back to the pool. It was obtained at:", tracker.obtainedAt);
+      SizeClass sizeClass = getSizeClass(tracker.size);
+      if (sizeClass != null) {
+        sizeClass.count.decrementAndGet();
+      }
+    }
   }
 
   public int getBufferSize() {
     return this.bufferSize;
   }
 
+  /**
+   * @return Size of the smallest size class
+   */
+  public int getMinBufferSize() {
+    return sizeClasses[0].size;
+  }
+
   /**
    * @return Number of free buffers
    */
   @VisibleForTesting
   public int getQueueSize() {
-    return buffers.size();
+    return sizeClasses[sizeClasses.length - 1].buffers.size();
+  }
+
+  /**
+   * @return Number of free buffers of the size class of the given size
+   */
+  @VisibleForTesting
+  int getQueueSize(int size) {
+    SizeClass sizeClass = getSizeClass(size);
+    return sizeClass == null ? 0 : sizeClass.buffers.size();
+  }
+
+  private static final class SizeClass {
+    final int size;
+    final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    final AtomicInteger count = new AtomicInteger(0); // Count of the BBs created already
+
+    SizeClass(int size) {
+      this.size = size;
+    }
+  }
+
+  private static final class LeakTracker extends WeakReference<ByteBuffer> {
+    final int identityHashCode;
+    final int size;
+    final Throwable obtainedAt = new Throwable();
+
+    LeakTracker(ByteBuffer buf, ReferenceQueue<ByteBuffer> queue) {
+      super(buf, queue);
+      this.identityHashCode = System.identityHashCode(buf);
+      this.size = buf.capacity();
+    }
   }
 }
@@ -755,6 +755,20 @@ public final class ByteBufferUtils {
       }
     }
 
+    // One more int wide step leaves at most three bytes for the epilogue.
+    if (minLength - i >= Bytes.SIZEOF_INT) {
+      int lw = UnsafeAccess.theUnsafe.getInt(obj1, o1 + (long) i);
+      int rw = UnsafeAccess.theUnsafe.getInt(obj2, o2 + (long) i);
+      if (lw != rw) {
+        if (!UnsafeAccess.littleEndian) {
+          return ((lw + Integer.MIN_VALUE) < (rw + Integer.MIN_VALUE)) ? -1 : 1;
+        }
+        int n = Integer.numberOfTrailingZeros(lw ^ rw) & ~0x7;
+        return ((lw >>> n) & 0xFF) - ((rw >>> n) & 0xFF);
+      }
+      i += Bytes.SIZEOF_INT;
+    }
+
     // The epilogue to cover the last (minLength % stride) elements.
     for (; i < minLength; i++) {
       int il = (UnsafeAccess.theUnsafe.getByte(obj1, o1 + i) & 0xFF);
@@ -1564,6 +1564,20 @@ public class Bytes implements Comparable<Bytes> {
           }
         }
 
+        // One more int wide step leaves at most three bytes for the epilogue.
+        if (minLength - i >= Bytes.SIZEOF_INT) {
+          int lw = theUnsafe.getInt(buffer1, offset1Adj + i);
+          int rw = theUnsafe.getInt(buffer2, offset2Adj + i);
+          if (lw != rw) {
+            if (!UnsafeAccess.littleEndian) {
+              return ((lw + Integer.MIN_VALUE) < (rw + Integer.MIN_VALUE)) ? -1 : 1;
+            }
+            int n = Integer.numberOfTrailingZeros(lw ^ rw) & ~0x7;
+            return ((lw >>> n) & 0xFF) - ((rw >>> n) & 0xFF);
+          }
+          i += Bytes.SIZEOF_INT;
+        }
+
         // The epilogue to cover the last (minLength % stride) elements.
         for (; i < minLength; i++) {
           int a = (buffer1[offset1 + i] & 0xFF);
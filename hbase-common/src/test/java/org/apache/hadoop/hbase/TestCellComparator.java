@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.util.Random;
 
 import org.apache.hadoop.hbase.KeyValue.Type;
 import org.apache.hadoop.hbase.testclassification.MiscTests;
@@ -123,4 +124,45 @@ public class TestCellComparator {
     assertEquals(0, comparator.compareRows(bbCell2, bbCell3));
     assertTrue(comparator.compareRows(bbCell1, bbCell2) < 0);
   }
+
+  @Test
+  public void testCompareFlatKeys() {
+    // A subclass goes through compareRows/compareWithoutRow rather than the serialized keys
+    CellComparatorImpl generic = new CellComparatorImpl() {
+    };
+    Random rand = new Random(12345);
+    byte[][] rows = { Bytes.toBytes(""), Bytes.toBytes("r"), Bytes.toBytes("row-0000000001"),
+        Bytes.toBytes("row-0000000002"), Bytes.toBytes("row-00000000010") };
+    byte[][] families = { Bytes.toBytes(""), Bytes.toBytes("f"), Bytes.toBytes("fa"),
+        Bytes.toBytes("fb") };
+    byte[][] qualifiers = { Bytes.toBytes(""), Bytes.toBytes("a"), Bytes.toBytes("aqualifier"),
+        Bytes.toBytes("b"), Bytes.toBytes("bqualifier") };
+    Type[] types = { Type.Minimum, Type.Put, Type.Delete, Type.DeleteColumn, Type.Maximum };
+    KeyValue[] kvs = new KeyValue[200];
+    Cell[] heapCells = new Cell[kvs.length];
+    Cell[] directCells = new Cell[kvs.length];
+    for (int i = 0; i < kvs.length; i++) {
+      kvs[i] = new KeyValue(rows[rand.nextInt(rows.length)],
+          families[rand.nextInt(families.length)], qualifiers[rand.nextInt(qualifiers.length)],
+          rand.nextInt(3), types[rand.nextInt(types.length)]);
+      kvs[i].setSequenceId(rand.nextInt(3));
+      heapCells[i] = new ByteBufferKeyValue(ByteBuffer.wrap(kvs[i].getBuffer()), 0,
+          kvs[i].getLength(), kvs[i].getSequenceId());
+      ByteBuffer direct = ByteBuffer.allocateDirect(kvs[i].getLength() + 3);
+      direct.position(3);
+      direct.put(kvs[i].getBuffer(), kvs[i].getOffset(), kvs[i].getLength());
+      directCells[i] = new ByteBufferKeyValue(direct, 3, kvs[i].getLength(),
+          kvs[i].getSequenceId());
+    }
+    for (int i = 0; i < kvs.length; i++) {
+      for (int j = 0; j < kvs.length; j++) {
+        int expected = Integer.signum(generic.compare(kvs[i], kvs[j]));
+        assertEquals(expected, Integer.signum(comparator.compare(kvs[i], kvs[j])));
+        assertEquals(expected, Integer.signum(comparator.compare(heapCells[i], directCells[j])));
+        assertEquals(expected, Integer.signum(comparator.compare(kvs[i], directCells[j])));
+        assertEquals(Integer.signum(generic.compare(kvs[i], kvs[j], true)), Integer.signum(
+          CellComparatorImpl.COMPARATOR.compare(heapCells[i], heapCells[j], true)));
+      }
+    }
+  }
 }
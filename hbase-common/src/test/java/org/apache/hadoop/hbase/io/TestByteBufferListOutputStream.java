@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
@@ -75,4 +76,58 @@ public class TestByteBufferListOutputStream {
     bbos.releaseResources();
     assertEquals(3, pool.getQueueSize());
   }
+
+  @Test
+  public void testWriteReferences() throws Exception {
+    ByteBufferPool pool = new ByteBufferPool(10, 3);
+    ByteBufferListOutputStream bbos = new ByteBufferListOutputStream(pool, 8);
+    ByteBuffer offheap = ByteBuffer.allocateDirect(20);
+    offheap.put(Bytes.toBytes("row123_cf1_q1_value"));
+    bbos.writeInt(100);
+    // Smaller than the minimum, copied
+    bbos.write(offheap, 0, 3);
+    assertFalse(bbos.hasReferences());
+    // Not off heap, copied
+    bbos.write(ByteBuffer.wrap(Bytes.toBytes("row123_cf1")), 0, 10);
+    assertFalse(bbos.hasReferences());
+    bbos.writeInt(101);
+    bbos.write(offheap, 7, 12);
+    assertTrue(bbos.hasReferences());
+    bbos.writeInt(102);
+    assertEquals(4 + 3 + 10 + 4 + 12 + 4, bbos.size());
+    List<ByteBuffer> allBufs = bbos.getByteBuffers();
+    assertEquals(bbos.size(), remaining(allBufs));
+    // The referenced buffer sits between the two parts of the third pooled buffer
+    assertEquals(5, allBufs.size());
+    assertEquals(3, bbos.bufsFromPool.size());
+    ByteBuffer ref = allBufs.get(3);
+    assertTrue(ref.isDirect());
+    assertEquals(12, ref.remaining());
+    byte[] bActual = new byte[12];
+    ref.duplicate().get(bActual);
+    assertEquals("cf1_q1_value", Bytes.toString(bActual));
+    ByteBuffer tail = allBufs.get(4);
+    assertEquals(4, tail.remaining());
+    assertEquals(102, tail.duplicate().getInt());
+    ByteBuffer all = ByteBuffer.allocate(bbos.size());
+    for (ByteBuffer b : allBufs) {
+      all.put(b.duplicate());
+    }
+    all.flip();
+    assertEquals(100, all.getInt());
+    all.position(all.position() + 13);
+    assertEquals(101, all.getInt());
+    all.position(all.position() + 12);
+    assertEquals(102, all.getInt());
+    bbos.releaseResources();
+    assertEquals(3, pool.getQueueSize());
+  }
+
+  private static int remaining(List<ByteBuffer> bufs) {
+    int remaining = 0;
+    for (ByteBuffer b : bufs) {
+      remaining += b.remaining();
+    }
+    return remaining;
+  }
 }
@@ -18,6 +18,9 @@
 package org.apache.hadoop.hbase.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.nio.ByteBuffer;
 
@@ -41,6 +44,46 @@ public class TestByteBufferPool {
     testBBPool(10, 100, directByteBuffer);
   }
 
+  @Test
+  public void testSizeClasses() throws Exception {
+    ByteBufferPool pool = new ByteBufferPool(1024, 2, false, 256, false);
+    assertEquals(256, pool.getMinBufferSize());
+    ByteBuffer small = pool.getBuffer(100);
+    assertEquals(256, small.capacity());
+    assertEquals(512, pool.getBuffer(300).capacity());
+    assertEquals(1024, pool.getBuffer(1024).capacity());
+    assertNull(pool.getBuffer(1025));
+    // Each size class is bounded on its own
+    assertNotNull(pool.getBuffer(256));
+    assertNull(pool.getBuffer(200));
+    pool.putbackBuffer(small);
+    assertEquals(1, pool.getQueueSize(256));
+    assertEquals(0, pool.getQueueSize());
+    assertSame(small, pool.getBuffer(1));
+    // Not one of the size classes
+    pool.putbackBuffer(ByteBuffer.allocate(300));
+    assertEquals(0, pool.getQueueSize(300));
+  }
+
+  @Test
+  public void testLeakDetection() throws Exception {
+    ByteBufferPool pool = new ByteBufferPool(100, 1, false, 100, true);
+    ByteBuffer bb = pool.getBuffer();
+    assertNotNull(bb);
+    assertNull(pool.getBuffer());
+    pool.putbackBuffer(bb);
+    bb = pool.getBuffer();
+    assertNotNull(bb);
+    // Drop the buffer without putting it back, the pool may replace it once it is collected
+    bb = null;
+    for (int i = 0; i < 100 && bb == null; i++) {
+      System.gc();
+      Thread.sleep(10);
+      bb = pool.getBuffer();
+    }
+    assertNotNull(bb);
+  }
+
   private void testBBPool(int maxPoolSize, int bufferSize, boolean directByteBuffer) {
     ByteBufferPool pool = new ByteBufferPool(bufferSize, maxPoolSize, directByteBuffer);
     for (int i = 0; i < maxPoolSize; i++) {
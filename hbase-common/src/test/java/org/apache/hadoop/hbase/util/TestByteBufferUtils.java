@@ -597,6 +597,33 @@ public class TestByteBufferUtils {
     assertEquals(0, result);
   }
 
+  @Test
+  public void testCompareToEveryPosition() {
+    Bytes.Comparer<byte[]> reference = Bytes.lexicographicalComparerJavaImpl();
+    for (int length = 0; length <= 20; length++) {
+      byte[] left = new byte[length + 3];
+      byte[] right = new byte[length + 5];
+      Arrays.fill(left, (byte) 0x7f);
+      Arrays.fill(right, (byte) 0x7f);
+      ByteBuffer direct = ByteBuffer.allocateDirect(right.length);
+      for (int i = 0; i < length; i++) {
+        for (byte b : new byte[] { 0x00, 0x7e, (byte) 0x80, (byte) 0xff }) {
+          right[5 + i] = b;
+          direct.clear();
+          direct.put(right);
+          int expected = Integer.signum(reference.compareTo(left, 3, length, right, 5, length));
+          assertEquals(expected, Integer.signum(
+            ByteBufferUtils.compareTo(left, 3, length, ByteBuffer.wrap(right), 5, length)));
+          assertEquals(expected,
+            Integer.signum(ByteBufferUtils.compareTo(left, 3, length, direct, 5, length)));
+          assertEquals(-expected, Integer.signum(
+            ByteBufferUtils.compareTo(direct, 5, length, ByteBuffer.wrap(left), 3, length)));
+        }
+        right[5 + i] = 0x7f;
+      }
+    }
+  }
+
   @Test
   public void testEquals() {
     byte[] a = Bytes.toBytes("http://A");
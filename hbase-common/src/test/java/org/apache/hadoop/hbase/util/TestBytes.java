@@ -63,6 +63,32 @@ public class TestBytes extends TestCase {
     assertEquals(0, Bytes.compareTo(result1, result2));
   }
 
+  public void testCompareToEveryPosition() {
+    Bytes.Comparer<byte[]> reference = Bytes.lexicographicalComparerJavaImpl();
+    for (int length = 0; length <= 20; length++) {
+      // Offsets which are not a multiple of the stride on either side
+      byte[] left = new byte[length + 4];
+      byte[] right = new byte[length + 5];
+      Arrays.fill(left, (byte) 0x7f);
+      Arrays.fill(right, (byte) 0x7f);
+      assertEquals(0, Bytes.compareTo(left, 3, length, right, 5, length));
+      // A prefix sorts first
+      assertTrue(Bytes.compareTo(left, 3, length + 1, right, 5, length) > 0);
+      for (int i = 0; i < length; i++) {
+        // 0x80 makes sure bytes are compared unsigned
+        for (byte b : new byte[] { 0x00, 0x7e, (byte) 0x80, (byte) 0xff }) {
+          right[5 + i] = b;
+          int expected = Integer.signum(reference.compareTo(left, 3, length, right, 5, length));
+          assertEquals(expected,
+              Integer.signum(Bytes.compareTo(left, 3, length, right, 5, length)));
+          assertEquals(-expected,
+              Integer.signum(Bytes.compareTo(right, 5, length, left, 3, length)));
+        }
+        right[5 + i] = 0x7f;
+      }
+    }
+  }
+
   public void testSplit() throws Exception {
     byte [] lowest = Bytes.toBytes("AAA");
     byte [] middle = Bytes.toBytes("CCC");
@@ -46,19 +46,30 @@ public interface MetricsIOSource extends BaseSource {
   String FS_READ_TIME_HISTO_KEY = "fsReadTime";
   String FS_PREAD_TIME_HISTO_KEY = "fsPReadTime";
   String FS_WRITE_HISTO_KEY = "fsWriteTime";
+  String BLOCK_DECOMPRESS_TIME_HISTO_KEY = "blockDecompressTime";
 
   String CHECKSUM_FAILURES_KEY = "fsChecksumFailureCount";
 
+  String READAHEAD_HIT_KEY = "readaheadHitCount";
+  String READAHEAD_WASTE_KEY = "readaheadWasteCount";
+
   String FS_READ_TIME_HISTO_DESC
     = "Latency of HFile's sequential reads on this region server in milliseconds";
   String FS_PREAD_TIME_HISTO_DESC
     = "Latency of HFile's positional reads on this region server in milliseconds";
   String FS_WRITE_TIME_HISTO_DESC
     = "Latency of HFile's writes on this region server in milliseconds";
+  String BLOCK_DECOMPRESS_TIME_HISTO_DESC = "Time spent unpacking data blocks that were kept"
+      + " compressed in the block cache, in microseconds";
 
   String CHECKSUM_FAILURES_DESC = "Number of checksum failures for the HBase HFile checksums at the"
       + " HBase level (separate from HDFS checksums)";
 
+  String READAHEAD_HIT_DESC = "Number of HFile blocks read ahead of a sequential scanner that"
+      + " the scanner went on to use";
+  String READAHEAD_WASTE_DESC = "Number of HFile blocks read ahead of a sequential scanner that"
+      + " were discarded unused";
+
 
   /**
    * Update the fs sequential read time histogram
@@ -77,4 +88,20 @@ public interface MetricsIOSource extends BaseSource {
    * @param t time it took, in milliseconds
    */
   void updateFsWriteTime(long t);
+
+  /**
+   * Update the histogram of time spent unpacking compressed cached blocks
+   * @param t time it took, in microseconds
+   */
+  void updateBlockDecompressTime(long t);
+
+  /**
+   * Increment the number of read-ahead blocks a scanner consumed
+   */
+  void incrementReadaheadHit();
+
+  /**
+   * Increment the number of read-ahead blocks that were thrown away
+   */
+  void incrementReadaheadWaste();
 }
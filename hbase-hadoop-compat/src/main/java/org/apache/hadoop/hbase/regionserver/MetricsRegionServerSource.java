@@ -171,6 +171,12 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
    */
   void updateFlushTime(long t);
 
+  /**
+   * Update the row lock wait time histogram
+   * @param t time spent waiting for a row lock, in microseconds
+   */
+  void updateRowLockWaitTime(long t);
+
   /**
    * Update the flush memstore size histogram
    * @param bytes the number of bytes in the memstore
@@ -231,6 +237,12 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String STOREFILE_COUNT_DESC = "Number of Store Files";
   String MEMSTORE_SIZE = "memStoreSize";
   String MEMSTORE_SIZE_DESC = "Size of the memstore";
+  String MEMSTORE_ARRAY_MAP_INDEX_SIZE = "memStoreArrayMapIndexSize";
+  String MEMSTORE_ARRAY_MAP_INDEX_SIZE_DESC =
+      "Memory used by CellArrayMap indexes of flattened memstore segments, cell objects included";
+  String MEMSTORE_CHUNK_MAP_INDEX_SIZE = "memStoreChunkMapIndexSize";
+  String MEMSTORE_CHUNK_MAP_INDEX_SIZE_DESC =
+      "Memory used by CellChunkMap index chunks of flattened memstore segments";
   String STOREFILE_SIZE = "storeFileSize";
   String MAX_STORE_FILE_AGE = "maxStoreFileAge";
   String MIN_STORE_FILE_AGE = "minStoreFileAge";
@@ -272,6 +284,13 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String NUMBER_OF_MUTATIONS_WITHOUT_WAL = "mutationsWithoutWALCount";
   String NUMBER_OF_MUTATIONS_WITHOUT_WAL_DESC =
       "Number of mutations that have been sent by clients with the write ahead logging turned off.";
+  String COALESCED_INCREMENTS = "coalescedIncrementCount";
+  String COALESCED_INCREMENTS_DESC =
+      "Number of increments applied on column families with increment coalescing enabled.";
+  String COALESCED_INCREMENT_WRITES = "coalescedIncrementWriteCount";
+  String COALESCED_INCREMENT_WRITES_DESC =
+      "Number of read-modify-writes done to apply coalesced increments. coalescedIncrementCount "
+          + "divided by this is the coalescing ratio.";
   String DATA_SIZE_WITHOUT_WAL = "mutationsWithoutWALSize";
   String DATA_SIZE_WITHOUT_WAL_DESC =
       "Size of data that has been sent by clients with the write ahead logging turned off.";
@@ -356,6 +375,15 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String L1_CACHE_HIT_RATIO_DESC = "L1 cache hit ratio.";
   String L1_CACHE_MISS_RATIO = "l1CacheMissRatio";
   String L1_CACHE_MISS_RATIO_DESC = "L1 cache miss ratio.";
+  String L1_CACHE_ADMISSION_REJECTED_COUNT = "l1CacheAdmissionRejectedCount";
+  String L1_CACHE_ADMISSION_REJECTED_COUNT_DESC =
+      "Number of blocks the L1 cache admission policy refused to cache.";
+  String L1_CACHE_SINGLE_HIT_COUNT = "l1CacheSingleHitCount";
+  String L1_CACHE_SINGLE_HIT_COUNT_DESC = "L1 cache hits on single-access priority blocks.";
+  String L1_CACHE_MULTI_HIT_COUNT = "l1CacheMultiHitCount";
+  String L1_CACHE_MULTI_HIT_COUNT_DESC = "L1 cache hits on multi-access priority blocks.";
+  String L1_CACHE_MEMORY_HIT_COUNT = "l1CacheMemoryHitCount";
+  String L1_CACHE_MEMORY_HIT_COUNT_DESC = "L1 cache hits on in-memory priority blocks.";
   String L2_CACHE_HIT_COUNT = "l2CacheHitCount";
   String L2_CACHE_HIT_COUNT_DESC = "L2 cache hit count.";
   String L2_CACHE_MISS_COUNT = "l2CacheMissCount";
@@ -469,6 +497,10 @@ public interface MetricsRegionServerSource extends BaseSource, JvmPauseMonitorSo
   String SPLIT_SUCCESS_KEY = "splitSuccessCount";
   String SPLIT_SUCCESS_DESC = "Number of successfully executed splits";
 
+  String ROW_LOCK_WAIT_TIME = "rowLockWaitTime";
+  String ROW_LOCK_WAIT_TIME_DESC =
+      "Histogram for the time in microseconds spent waiting to acquire a row lock";
+
   String FLUSH_TIME = "flushTime";
   String FLUSH_TIME_DESC = "Histogram for the time in millis for memstore flush";
   String FLUSH_MEMSTORE_SIZE = "flushMemstoreSize";
@@ -92,6 +92,17 @@ public interface MetricsRegionServerWrapper {
    */
   long getMemStoreSize();
 
+  /**
+   * Get the memory taken by CellArrayMap indexes of in-memory flattened memstore segments,
+   * including the cell objects they keep on heap.
+   */
+  long getMemStoreArrayMapIndexSize();
+
+  /**
+   * Get the memory taken by CellChunkMap index chunks of in-memory flattened memstore segments.
+   */
+  long getMemStoreChunkMapIndexSize();
+
   /**
    * Get the total size of the store files this region server is serving from.
    */
@@ -172,6 +183,16 @@ public interface MetricsRegionServerWrapper {
    */
   long getNumMutationsWithoutWAL();
 
+  /**
+   * Number of increments applied through increment coalescing.
+   */
+  long getCoalescedIncrementsCount();
+
+  /**
+   * Number of read-modify-writes done to apply coalesced increments.
+   */
+  long getCoalescedIncrementWritesCount();
+
   /**
    * Ammount of data in the memstore but not in the WAL because mutations explicitly had their
    * WAL turned off.
@@ -289,6 +310,26 @@ public interface MetricsRegionServerWrapper {
    */
   public double getL1CacheMissRatio();
 
+  /**
+   * Admission rejected count of L1 cache.
+   */
+  public long getL1CacheAdmissionRejectedCount();
+
+  /**
+   * Single-access hit count of L1 cache.
+   */
+  public long getL1CacheSingleHitCount();
+
+  /**
+   * Multi-access hit count of L1 cache.
+   */
+  public long getL1CacheMultiHitCount();
+
+  /**
+   * In-memory hit count of L1 cache.
+   */
+  public long getL1CacheMemoryHitCount();
+
   /**
    * Hit count of L2 cache.
    */
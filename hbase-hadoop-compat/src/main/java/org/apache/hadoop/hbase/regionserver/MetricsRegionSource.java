@@ -51,6 +51,12 @@ public interface MetricsRegionSource extends Comparable<MetricsRegionSource> {
   String COPROCESSOR_EXECUTION_STATISTICS_DESC = "Statistics for coprocessor execution times";
   String REPLICA_ID = "replicaid";
   String REPLICA_ID_DESC = "The replica ID of a region. 0 is primary, otherwise is secondary";
+  String HOT_KEY_RANGES = "hotKeyRanges";
+  String HOT_KEY_RANGES_DESC =
+      "Hottest sampled row key prefixes of the region with their share of sampled requests";
+  String HOTTEST_KEY_RANGE_SHARE = "hottestKeyRangeShare";
+  String HOTTEST_KEY_RANGE_SHARE_DESC =
+      "Percent of sampled requests of the region that hit its hottest row key prefix";
 
   /**
    * Close the region's metrics as this region is closing.
@@ -147,4 +147,15 @@ public interface MetricsRegionWrapper {
    * Get the replica id of this region.
    */
   int getReplicaId();
+
+  /**
+   * @return the hottest sampled row key prefixes of this region with their share of the sampled
+   *  requests, or an empty string if hotspot tracking is disabled
+   */
+  String getHotKeyRanges();
+
+  /**
+   * @return the share, in percent, of the sampled requests that hit the hottest row key prefix
+   */
+  float getHottestKeyRangeShare();
 }
@@ -57,6 +57,8 @@ public interface MetricsWALSource extends BaseSource {
   String SLOW_APPEND_COUNT_DESC = "Number of appends that were slow.";
   String SYNC_TIME = "syncTime";
   String SYNC_TIME_DESC = "The time it took to sync the WAL to HDFS.";
+  String APPENDS_PER_SYNC = "appendsPerSync";
+  String APPENDS_PER_SYNC_DESC = "Number of appends made durable by a single sync of the WAL.";
   String ROLL_REQUESTED = "rollRequest";
   String ROLL_REQUESTED_DESC = "How many times a log roll has been requested total";
   String LOW_REPLICA_ROLL_REQUESTED = "lowReplicaRollRequest";
@@ -64,6 +66,14 @@ public interface MetricsWALSource extends BaseSource {
       "How many times a log roll was requested due to too few DN's in the write pipeline.";
   String WRITTEN_BYTES = "writtenBytes";
   String WRITTEN_BYTES_DESC = "Size (in bytes) of the data written to the WAL.";
+  String SPLIT_READ_TIME = "splitReadTime";
+  String SPLIT_READ_TIME_DESC = "Time spent reading and decoding a WAL being split.";
+  String SPLIT_BUFFER_WAIT_TIME = "splitBufferWaitTime";
+  String SPLIT_BUFFER_WAIT_TIME_DESC =
+      "Time a WAL split waited on the region buffers to drain below the buffer size.";
+  String SPLIT_WRITE_TIME = "splitWriteTime";
+  String SPLIT_WRITE_TIME_DESC =
+      "Time spent writing and closing the recovered edits of a WAL split, summed over writers.";
 
   /**
    * Add the append size.
@@ -90,6 +100,11 @@ public interface MetricsWALSource extends BaseSource {
    */
   void incrementSyncTime(long time);
 
+  /**
+   * Add the number of appends a sync made durable to the histogram.
+   */
+  void incrementAppendsPerSync(long appends);
+
   void incrementLogRollRequested();
 
   void incrementLowReplicationLogRoll();
@@ -99,4 +114,19 @@ public interface MetricsWALSource extends BaseSource {
   void incrementWrittenBytes(long val);
 
   long getWrittenBytes();
+
+  /**
+   * Add the time a WAL split spent reading its input.
+   */
+  void incrementSplitReadTime(long time);
+
+  /**
+   * Add the time a WAL split spent blocked on full region buffers.
+   */
+  void incrementSplitBufferWaitTime(long time);
+
+  /**
+   * Add the time a WAL split spent writing recovered edits.
+   */
+  void incrementSplitWriteTime(long time);
 }
@@ -23,6 +23,7 @@ import org.apache.hadoop.metrics2.MetricHistogram;
 import org.apache.hadoop.metrics2.MetricsCollector;
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MutableFastCounter;
 
 public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSource {
 
@@ -31,6 +32,9 @@ public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSour
   private final MetricHistogram fsReadTimeHisto;
   private final MetricHistogram fsPReadTimeHisto;
   private final MetricHistogram fsWriteTimeHisto;
+  private final MetricHistogram blockDecompressTimeHisto;
+  private final MutableFastCounter readaheadHitCount;
+  private final MutableFastCounter readaheadWasteCount;
 
   public MetricsIOSourceImpl(MetricsIOWrapper wrapper) {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT, wrapper);
@@ -51,6 +55,12 @@ public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSour
         .newTimeHistogram(FS_PREAD_TIME_HISTO_KEY, FS_PREAD_TIME_HISTO_DESC);
     fsWriteTimeHisto = getMetricsRegistry()
         .newTimeHistogram(FS_WRITE_HISTO_KEY, FS_WRITE_TIME_HISTO_DESC);
+    blockDecompressTimeHisto = getMetricsRegistry()
+        .newTimeHistogram(BLOCK_DECOMPRESS_TIME_HISTO_KEY, BLOCK_DECOMPRESS_TIME_HISTO_DESC);
+    readaheadHitCount = getMetricsRegistry()
+        .newCounter(READAHEAD_HIT_KEY, READAHEAD_HIT_DESC, 0L);
+    readaheadWasteCount = getMetricsRegistry()
+        .newCounter(READAHEAD_WASTE_KEY, READAHEAD_WASTE_DESC, 0L);
   }
 
   @Override
@@ -68,6 +78,21 @@ public class MetricsIOSourceImpl extends BaseSourceImpl implements MetricsIOSour
     fsWriteTimeHisto.add(t);
   }
 
+  @Override
+  public void updateBlockDecompressTime(long t) {
+    blockDecompressTimeHisto.add(t);
+  }
+
+  @Override
+  public void incrementReadaheadHit() {
+    readaheadHitCount.incr();
+  }
+
+  @Override
+  public void incrementReadaheadWaste() {
+    readaheadWasteCount.incr();
+  }
+
   @Override
   public void getMetrics(MetricsCollector metricsCollector, boolean all) {
     MetricsRecordBuilder mrb = metricsCollector.addRecord(metricsName);
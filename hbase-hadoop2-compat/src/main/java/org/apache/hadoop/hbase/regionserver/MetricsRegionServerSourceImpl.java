@@ -58,6 +58,7 @@ public class MetricsRegionServerSourceImpl
   private final MutableFastCounter splitSuccess;
 
   private final MetricHistogram splitTimeHisto;
+  private final MetricHistogram rowLockWaitTimeHisto;
 
   // flush related metrics
   private final MetricHistogram flushTimeHisto;
@@ -125,6 +126,9 @@ public class MetricsRegionServerSourceImpl
     scanSizeHisto = getMetricsRegistry().newSizeHistogram(SCAN_SIZE_KEY);
     scanTimeHisto = getMetricsRegistry().newTimeHistogram(SCAN_TIME_KEY);
 
+    rowLockWaitTimeHisto =
+        getMetricsRegistry().newHistogram(ROW_LOCK_WAIT_TIME, ROW_LOCK_WAIT_TIME_DESC);
+
     flushTimeHisto = getMetricsRegistry().newTimeHistogram(FLUSH_TIME, FLUSH_TIME_DESC);
     flushMemstoreSizeHisto = getMetricsRegistry()
         .newSizeHistogram(FLUSH_MEMSTORE_SIZE, FLUSH_MEMSTORE_SIZE_DESC);
@@ -258,6 +262,11 @@ public class MetricsRegionServerSourceImpl
     splitTimeHisto.add(t);
   }
 
+  @Override
+  public void updateRowLockWaitTime(long t) {
+    rowLockWaitTimeHisto.add(t);
+  }
+
   @Override
   public void updateFlushTime(long t) {
     flushTimeHisto.add(t);
@@ -340,6 +349,10 @@ public class MetricsRegionServerSourceImpl
           .addGauge(Interns.info(WALFILE_SIZE, WALFILE_SIZE_DESC), rsWrap.getWALFileSize())
           .addGauge(Interns.info(STOREFILE_COUNT, STOREFILE_COUNT_DESC), rsWrap.getNumStoreFiles())
           .addGauge(Interns.info(MEMSTORE_SIZE, MEMSTORE_SIZE_DESC), rsWrap.getMemStoreSize())
+          .addGauge(Interns.info(MEMSTORE_ARRAY_MAP_INDEX_SIZE, MEMSTORE_ARRAY_MAP_INDEX_SIZE_DESC),
+              rsWrap.getMemStoreArrayMapIndexSize())
+          .addGauge(Interns.info(MEMSTORE_CHUNK_MAP_INDEX_SIZE, MEMSTORE_CHUNK_MAP_INDEX_SIZE_DESC),
+              rsWrap.getMemStoreChunkMapIndexSize())
           .addGauge(Interns.info(STOREFILE_SIZE, STOREFILE_SIZE_DESC), rsWrap.getStoreFileSize())
           .addGauge(Interns.info(MAX_STORE_FILE_AGE, MAX_STORE_FILE_AGE_DESC),
               rsWrap.getMaxStoreFileAge())
@@ -383,6 +396,10 @@ public class MetricsRegionServerSourceImpl
           .addGauge(
             Interns.info(NUMBER_OF_MUTATIONS_WITHOUT_WAL, NUMBER_OF_MUTATIONS_WITHOUT_WAL_DESC),
               rsWrap.getNumMutationsWithoutWAL())
+          .addCounter(Interns.info(COALESCED_INCREMENTS, COALESCED_INCREMENTS_DESC),
+              rsWrap.getCoalescedIncrementsCount())
+          .addCounter(Interns.info(COALESCED_INCREMENT_WRITES, COALESCED_INCREMENT_WRITES_DESC),
+              rsWrap.getCoalescedIncrementWritesCount())
           .addGauge(Interns.info(DATA_SIZE_WITHOUT_WAL, DATA_SIZE_WITHOUT_WAL_DESC),
               rsWrap.getDataInMemoryWithoutWAL())
           .addGauge(Interns.info(PERCENT_FILES_LOCAL, PERCENT_FILES_LOCAL_DESC),
@@ -468,6 +485,14 @@ public class MetricsRegionServerSourceImpl
                   rsWrap.getL1CacheHitRatio())
           .addGauge(Interns.info(L1_CACHE_MISS_RATIO, L1_CACHE_MISS_RATIO_DESC),
                   rsWrap.getL1CacheMissRatio())
+          .addCounter(Interns.info(L1_CACHE_ADMISSION_REJECTED_COUNT, L1_CACHE_ADMISSION_REJECTED_COUNT_DESC),
+                  rsWrap.getL1CacheAdmissionRejectedCount())
+          .addCounter(Interns.info(L1_CACHE_SINGLE_HIT_COUNT, L1_CACHE_SINGLE_HIT_COUNT_DESC),
+                  rsWrap.getL1CacheSingleHitCount())
+          .addCounter(Interns.info(L1_CACHE_MULTI_HIT_COUNT, L1_CACHE_MULTI_HIT_COUNT_DESC),
+                  rsWrap.getL1CacheMultiHitCount())
+          .addCounter(Interns.info(L1_CACHE_MEMORY_HIT_COUNT, L1_CACHE_MEMORY_HIT_COUNT_DESC),
+                  rsWrap.getL1CacheMemoryHitCount())
           .addGauge(Interns.info(L2_CACHE_HIT_COUNT, L2_CACHE_HIT_COUNT_DESC),
                   rsWrap.getL2CacheHitCount())
           .addGauge(Interns.info(L2_CACHE_MISS_COUNT, L2_CACHE_MISS_COUNT_DESC),
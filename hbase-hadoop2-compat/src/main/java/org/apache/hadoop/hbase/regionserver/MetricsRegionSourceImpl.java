@@ -289,6 +289,17 @@ public class MetricsRegionSourceImpl implements MetricsRegionSource {
               regionNamePrefix + MetricsRegionSource.MAX_FLUSH_QUEUE_SIZE,
               MetricsRegionSource.MAX_FLUSH_QUEUE_DESC),
           this.regionWrapper.getMaxFlushQueueSize());
+      String hotKeyRanges = this.regionWrapper.getHotKeyRanges();
+      if (!hotKeyRanges.isEmpty()) {
+        mrb.tag(Interns.info(
+                regionNamePrefix + MetricsRegionSource.HOT_KEY_RANGES,
+                MetricsRegionSource.HOT_KEY_RANGES_DESC),
+            hotKeyRanges);
+        mrb.addGauge(Interns.info(
+                regionNamePrefix + MetricsRegionSource.HOTTEST_KEY_RANGE_SHARE,
+                MetricsRegionSource.HOTTEST_KEY_RANGE_SHARE_DESC),
+            this.regionWrapper.getHottestKeyRangeShare());
+      }
     }
   }
 
@@ -41,6 +41,10 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
   private final MutableFastCounter logRollRequested;
   private final MutableFastCounter lowReplicationLogRollRequested;
   private final MutableFastCounter writtenBytes;
+  private final MetricHistogram appendsPerSyncHisto;
+  private final MetricHistogram splitReadTimeHisto;
+  private final MetricHistogram splitBufferWaitTimeHisto;
+  private final MetricHistogram splitWriteTimeHisto;
 
   public MetricsWALSourceImpl() {
     this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
@@ -59,11 +63,19 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     slowAppendCount =
         this.getMetricsRegistry().newCounter(SLOW_APPEND_COUNT, SLOW_APPEND_COUNT_DESC, 0l);
     syncTimeHisto = this.getMetricsRegistry().newTimeHistogram(SYNC_TIME, SYNC_TIME_DESC);
+    appendsPerSyncHisto =
+        this.getMetricsRegistry().newHistogram(APPENDS_PER_SYNC, APPENDS_PER_SYNC_DESC);
     logRollRequested =
         this.getMetricsRegistry().newCounter(ROLL_REQUESTED, ROLL_REQUESTED_DESC, 0L);
     lowReplicationLogRollRequested = this.getMetricsRegistry()
         .newCounter(LOW_REPLICA_ROLL_REQUESTED, LOW_REPLICA_ROLL_REQUESTED_DESC, 0L);
     writtenBytes = this.getMetricsRegistry().newCounter(WRITTEN_BYTES, WRITTEN_BYTES_DESC, 0l);
+    splitReadTimeHisto =
+        this.getMetricsRegistry().newTimeHistogram(SPLIT_READ_TIME, SPLIT_READ_TIME_DESC);
+    splitBufferWaitTimeHisto = this.getMetricsRegistry()
+        .newTimeHistogram(SPLIT_BUFFER_WAIT_TIME, SPLIT_BUFFER_WAIT_TIME_DESC);
+    splitWriteTimeHisto =
+        this.getMetricsRegistry().newTimeHistogram(SPLIT_WRITE_TIME, SPLIT_WRITE_TIME_DESC);
   }
 
   @Override
@@ -91,6 +103,11 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     syncTimeHisto.add(time);
   }
 
+  @Override
+  public void incrementAppendsPerSync(long appends) {
+    appendsPerSyncHisto.add(appends);
+  }
+
   @Override
   public void incrementLogRollRequested() {
     logRollRequested.incr();
@@ -116,4 +133,18 @@ public class MetricsWALSourceImpl extends BaseSourceImpl implements MetricsWALSo
     return writtenBytes.value();
   }
 
+  @Override
+  public void incrementSplitReadTime(long time) {
+    splitReadTimeHisto.add(time);
+  }
+
+  @Override
+  public void incrementSplitBufferWaitTime(long time) {
+    splitBufferWaitTimeHisto.add(time);
+  }
+
+  @Override
+  public void incrementSplitWriteTime(long time) {
+    splitWriteTimeHisto.add(time);
+  }
 }
@@ -194,5 +194,15 @@ public class TestMetricsRegionSourceImpl {
     public long getMaxFlushQueueSize() {
       return 0;
     }
+
+    @Override
+    public String getHotKeyRanges() {
+      return "";
+    }
+
+    @Override
+    public float getHottestKeyRangeShare() {
+      return 0;
+    }
   }
 }
@@ -122,6 +122,13 @@ public abstract class CoprocessorHost<C extends Coprocessor, E extends Coprocess
     return returnValue;
   }
 
+  /**
+   * @return true if any coprocessor is loaded in this host
+   */
+  public boolean hasCoprocessors() {
+    return !coprocEnvironments.isEmpty();
+  }
+
   /**
    * Load system coprocessors once only. Read the class names from configuration.
    * Called by constructor.
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets a thread hold back the release of memory that something it is about to send still refers
+ * to, such as the BucketCache blocks and MSLAB chunks of the cells in an RPC response.
+ *
+ * Within a section started with {@link #begin()}, code that would give such memory back, like a
+ * scanner returning its blocks to the block cache, hands the release to {@link #defer(Runnable)}
+ * instead. Everything else the code does, like resetting a scanner for its next call, happens
+ * right away. {@link #end()} collects the held releases for the caller to run with
+ * {@link #run(List)} once the memory is no longer referred to.
+ */
+@InterfaceAudience.Private
+public final class DeferredReleases {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeferredReleases.class);
+
+  private static final ThreadLocal<List<Runnable>> deferred = new ThreadLocal<>();
+
+  private DeferredReleases() {
+  }
+
+  /**
+   * Marks the start of a section whose releases are held back.
+   */
+  public static void begin() {
+    deferred.set(new ArrayList<>());
+  }
+
+  /**
+   * Marks the end of the section started with {@link #begin()}.
+   * @return the releases held back in the section, or null if there were none
+   */
+  public static List<Runnable> end() {
+    List<Runnable> releases = deferred.get();
+    deferred.remove();
+    return releases == null || releases.isEmpty() ? null : releases;
+  }
+
+  /**
+   * @return true if the calling thread is in a section whose releases are held back
+   */
+  public static boolean isActive() {
+    return deferred.get() != null;
+  }
+
+  /**
+   * Holds back <code>release</code> if the calling thread is in a section started with
+   * {@link #begin()}, otherwise runs it now.
+   */
+  public static void defer(Runnable release) {
+    List<Runnable> releases = deferred.get();
+    if (releases != null) {
+      releases.add(release);
+    } else {
+      release.run();
+    }
+  }
+
+  /**
+   * Runs the releases returned by {@link #end()}. One failing does not stop the others.
+   */
+  public static void run(List<Runnable> releases) {
+    if (releases == null) {
+      return;
+    }
+    for (Runnable release : releases) {
+      try {
+        release.run();
+      } catch (RuntimeException e) {
+        LOG.warn("Exception while running a deferred release", e);
+      }
+    }
+  }
+}
@@ -58,4 +58,16 @@ public class MetricsIO {
   public void updateFsWriteTime(long t) {
     source.updateFsWriteTime(t);
   }
+
+  public void updateBlockDecompressTime(long t) {
+    source.updateBlockDecompressTime(t);
+  }
+
+  public void incrementReadaheadHit() {
+    source.incrementReadaheadHit();
+  }
+
+  public void incrementReadaheadWaste() {
+    source.incrementReadaheadWaste();
+  }
 }
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets a scan give its handler back on block cache misses instead of reading the rest of the
+ * file synchronously.
+ *
+ * A handler thread marks the section of a scan that may yield with {@link #enter()} and
+ * {@link #exit()}. When a data block read in that section misses the block cache, the miss is
+ * recorded for the thread and the data blocks following the missed one are loaded into the block
+ * cache asynchronously, on the {@link ScannerReadahead} pool. The scanner checks {@link #hasMissed()} at its limit checks and returns
+ * what it has to the client, which resumes the scan with its next request, by then served from
+ * the block cache.
+ */
+@InterfaceAudience.Private
+public final class BlockReadAhead {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlockReadAhead.class);
+
+  /** Number of blocks following a missed block that are loaded asynchronously */
+  private static final int readAheadBlocks;
+  /** Maximum number of read aheads queued or running; further misses are not read ahead */
+  private static final int maxReadAheads;
+  /** Read aheads queued or running, so the same range is not loaded twice */
+  private static final Set<BlockCacheKey> readAheads = ConcurrentHashMap.newKeySet();
+  /** Block cache misses of the current yielding section, null when not in one */
+  private static final ThreadLocal<int[]> misses = new ThreadLocal<>();
+
+  static {
+    Configuration conf = HBaseConfiguration.create();
+    readAheadBlocks = conf.getInt("hbase.hfile.readahead.miss.blocks", 8);
+    maxReadAheads = conf.getInt("hbase.hfile.readahead.miss.queue.size", 256);
+  }
+
+  private BlockReadAhead() {
+  }
+
+  /**
+   * Marks the start of a section of a scan that yields on block cache misses.
+   */
+  public static void enter() {
+    misses.set(new int[1]);
+  }
+
+  /**
+   * Marks the end of the section started with {@link #enter()}.
+   */
+  public static void exit() {
+    misses.remove();
+  }
+
+  /**
+   * @return true if a data block read of the current section missed the block cache
+   */
+  public static boolean hasMissed() {
+    int[] count = misses.get();
+    return count != null && count[0] > 0;
+  }
+
+  /**
+   * Called after a data block was read from the file system because it was not in the block
+   * cache. Records the miss and loads the following blocks if the calling thread is in a
+   * yielding section.
+   */
+  static void onCacheMiss(HFileReaderImpl reader, HFileBlock block) {
+    int[] count = misses.get();
+    if (count == null) {
+      return;
+    }
+    count[0]++;
+    if (readAheadBlocks <= 0) {
+      return;
+    }
+    long offset = block.getOffset() + block.getOnDiskSizeWithHeader();
+    if (offset > reader.getTrailer().getLastDataBlockOffset()
+        || readAheads.size() >= maxReadAheads) {
+      return;
+    }
+    BlockCacheKey key = new BlockCacheKey(reader.getName(), offset);
+    if (!readAheads.add(key)) {
+      return;
+    }
+    long onDiskSize = block.getNextBlockOnDiskSize();
+    try {
+      ScannerReadahead.getExecutor().execute(() -> {
+        try {
+          readAhead(reader, offset, onDiskSize);
+        } finally {
+          readAheads.remove(key);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // Shutting down, the scan just reads the blocks itself.
+      readAheads.remove(key);
+    }
+  }
+
+  private static void readAhead(HFileReaderImpl reader, long offset, long onDiskSize) {
+    long lastDataBlockOffset = reader.getTrailer().getLastDataBlockOffset();
+    try {
+      for (int i = 0; i < readAheadBlocks && offset <= lastDataBlockOffset; i++) {
+        // Same as prefetch on open: positional reads, and the block ends up in the block cache.
+        HFileBlock block = reader.readBlock(offset, onDiskSize, true, true, false, false, null,
+          null);
+        reader.returnBlock(block);
+        onDiskSize = block.getNextBlockOnDiskSize();
+        offset += block.getOnDiskSizeWithHeader();
+      }
+    } catch (IOException e) {
+      // IOExceptions are probably due to region closes (relocation, etc.)
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Read ahead of " + reader.getName() + " at " + offset + " failed", e);
+      }
+    } catch (Exception e) {
+      LOG.warn("Read ahead of " + reader.getName() + " at " + offset + " failed", e);
+    }
+  }
+}
@@ -79,7 +79,9 @@ public class CacheConfig {
       "hfile.block.bloom.cacheonwrite";
 
   /**
-   * Configuration key to cache data blocks in compressed and/or encrypted format.
+   * Configuration key to cache data blocks in compressed and/or encrypted format. Can be set in a
+   * column family's configuration, which a store layers over the site configuration, so that only
+   * the families whose blocks compress well pay the cost of unpacking on every cache hit.
    */
   public static final String CACHE_DATA_BLOCKS_COMPRESSED_KEY =
       "hbase.block.data.cachecompressed";
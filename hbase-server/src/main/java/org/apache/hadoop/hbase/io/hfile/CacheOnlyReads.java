@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Lets a thread that should not block on the file system, such as an RPC event loop, attempt a
+ * read that is served entirely from the block cache.
+ *
+ * Within a section started with {@link #enter()}, a block read that misses the block cache
+ * fails fast with a {@link BlockNotCachedException} instead of going to the file system or
+ * waiting on another reader of the same block. The caller is expected to give up on the whole
+ * read and run it again where blocking is fine, so it only suits reads without side effects.
+ */
+@InterfaceAudience.Private
+public final class CacheOnlyReads {
+
+  private static final ThreadLocal<Boolean> active = new ThreadLocal<>();
+
+  private CacheOnlyReads() {
+  }
+
+  /**
+   * Marks the start of a section whose block reads must be served from the block cache.
+   */
+  public static void enter() {
+    active.set(Boolean.TRUE);
+  }
+
+  /**
+   * Marks the end of the section started with {@link #enter()}.
+   */
+  public static void exit() {
+    active.remove();
+  }
+
+  /**
+   * @return true if the calling thread is in a cache only section
+   */
+  public static boolean isActive() {
+    return active.get() != null;
+  }
+
+  /**
+   * Gives up a cache only section that would have to wait for something other than a block, like
+   * a lock, or could have side effects that must not happen twice.
+   * @return the exception to throw
+   */
+  public static BlockNotCachedException giveUp(String reason) {
+    return new BlockNotCachedException(reason);
+  }
+
+  /**
+   * @return true if <code>t</code>, or one of its causes, is the failure of a block read that
+   *         missed the block cache inside a cache only section, or another reason to give up
+   *         such a section
+   */
+  public static boolean isNotCached(Throwable t) {
+    for (; t != null; t = t.getCause()) {
+      if (t instanceof BlockNotCachedException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Called when a block read misses the block cache, before the block is loaded.
+   * @throws BlockNotCachedException if the calling thread is in a cache only section
+   */
+  static void onCacheMiss(BlockCacheKey cacheKey) throws BlockNotCachedException {
+    if (active.get() != null) {
+      throw new BlockNotCachedException("Block " + cacheKey + " is not cached");
+    }
+  }
+
+  /**
+   * Thrown by a block read that missed the block cache inside a cache only section, or by
+   * anything else that gives up such a section. Read paths may wrap it, so test for it with
+   * {@link CacheOnlyReads#isNotCached(Throwable)}.
+   */
+  @InterfaceAudience.Private
+  public static final class BlockNotCachedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    BlockNotCachedException(String message) {
+      super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      // Expected and handled by retrying elsewhere, so skip the cost of a stack trace
+      return this;
+    }
+  }
+}
@@ -74,6 +74,14 @@ public class CacheStats {
   /** The total number of blocks that were not inserted. */
   private final AtomicLong failedInserts = new AtomicLong(0);
 
+  /** The number of blocks the admission policy refused to cache */
+  private final LongAdder admissionRejectedCount = new LongAdder();
+
+  /** Hit counts broken out by the priority of the block that was hit */
+  private final LongAdder singleHitCount = new LongAdder();
+  private final LongAdder multiHitCount = new LongAdder();
+  private final LongAdder memoryHitCount = new LongAdder();
+
   /** Per Block Type Counts */
   private final LongAdder dataMissCount = new LongAdder();
   private final LongAdder leafIndexMissCount = new LongAdder();
@@ -261,6 +269,29 @@ public class CacheStats {
     return failedInserts.incrementAndGet();
   }
 
+  public void rejectAdmission() {
+    admissionRejectedCount.increment();
+  }
+
+  /**
+   * Records a hit against the priority the block had when it was found.
+   */
+  public void priorityHit(BlockPriority priority) {
+    switch (priority) {
+      case SINGLE:
+        singleHitCount.increment();
+        break;
+      case MULTI:
+        multiHitCount.increment();
+        break;
+      case MEMORY:
+        memoryHitCount.increment();
+        break;
+      default:
+        break;
+    }
+  }
+
 
   // All of the counts of misses and hits.
   public long getDataMissCount() {
@@ -411,6 +442,22 @@ public class CacheStats {
     return failedInserts.get();
   }
 
+  public long getAdmissionRejectedCount() {
+    return admissionRejectedCount.sum();
+  }
+
+  public long getSingleHitCount() {
+    return singleHitCount.sum();
+  }
+
+  public long getMultiHitCount() {
+    return multiHitCount.sum();
+  }
+
+  public long getMemoryHitCount() {
+    return memoryHitCount.sum();
+  }
+
   public void rollMetricsPeriod() {
     hitCounts[windowIndex] = getHitCount() - lastHitCount;
     lastHitCount = getHitCount();
@@ -330,6 +330,27 @@ public class CombinedBlockCache implements ResizableBlockCache, HeapSize {
       return lruCacheStats.getFailedInserts() + bucketCacheStats.getFailedInserts();
     }
 
+    @Override
+    public long getAdmissionRejectedCount() {
+      return lruCacheStats.getAdmissionRejectedCount()
+          + bucketCacheStats.getAdmissionRejectedCount();
+    }
+
+    @Override
+    public long getSingleHitCount() {
+      return lruCacheStats.getSingleHitCount() + bucketCacheStats.getSingleHitCount();
+    }
+
+    @Override
+    public long getMultiHitCount() {
+      return lruCacheStats.getMultiHitCount() + bucketCacheStats.getMultiHitCount();
+    }
+
+    @Override
+    public long getMemoryHitCount() {
+      return lruCacheStats.getMemoryHitCount() + bucketCacheStats.getMemoryHitCount();
+    }
+
     @Override
     public long getSumHitCountsPastNPeriods() {
       return lruCacheStats.getSumHitCountsPastNPeriods()
@@ -63,7 +63,18 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
    */
   public CompoundBloomFilter(DataInput meta, HFile.Reader reader)
       throws IOException {
+    this(meta, reader, false);
+  }
+
+  /**
+   * @param blocked whether the chunks are blocked Bloom filters, as written for
+   *          {@link CompoundBloomFilterBase#BLOCKED_VERSION}
+   * @see #CompoundBloomFilter(DataInput, HFile.Reader)
+   */
+  public CompoundBloomFilter(DataInput meta, HFile.Reader reader, boolean blocked)
+      throws IOException {
     this.reader = reader;
+    this.blocked = blocked;
 
     totalByteSize = meta.readLong();
     hashCount = meta.readInt();
@@ -102,8 +113,13 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
     HFileBlock bloomBlock = getBloomBlock(block);
     try {
       ByteBuff bloomBuf = bloomBlock.getBufferReadOnly();
-      result = BloomFilterUtil.contains(key, keyOffset, keyLength, bloomBuf,
-          bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount);
+      result = blocked
+          ? BloomFilterUtil.containsBlocked(key, keyOffset, keyLength, bloomBuf,
+              bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader(), hash,
+              hashCount)
+          : BloomFilterUtil.contains(key, keyOffset, keyLength, bloomBuf,
+              bloomBlock.headerSize(), bloomBlock.getUncompressedSizeWithoutHeader(), hash,
+              hashCount);
     } finally {
       // After the use return back the block if it was served from a cache.
       reader.returnBlock(bloomBlock);
@@ -143,8 +159,11 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
     HFileBlock bloomBlock = getBloomBlock(block);
     try {
       ByteBuff bloomBuf = bloomBlock.getBufferReadOnly();
-      result = BloomFilterUtil.contains(keyCell, bloomBuf, bloomBlock.headerSize(),
-          bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount, type);
+      result = blocked
+          ? BloomFilterUtil.containsBlocked(keyCell, bloomBuf, bloomBlock.headerSize(),
+              bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount, type)
+          : BloomFilterUtil.contains(keyCell, bloomBuf, bloomBlock.headerSize(),
+              bloomBlock.getUncompressedSizeWithoutHeader(), hash, hashCount, type);
     } finally {
       // After the use return back the block if it was served from a cache.
       reader.returnBlock(bloomBlock);
@@ -164,6 +183,10 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
     return numChunks;
   }
 
+  public boolean isBlocked() {
+    return blocked;
+  }
+
   public void enableTestingStats() {
     numQueriesPerChunk = new long[numChunks];
     numPositivesPerChunk = new long[numChunks];
@@ -199,6 +222,9 @@ public class CompoundBloomFilter extends CompoundBloomFilterBase
     sb.append(BloomFilterUtil.formatStats(this));
     sb.append(BloomFilterUtil.STATS_RECORD_SEP + 
         "Number of chunks: " + numChunks);
+    if (blocked) {
+      sb.append(BloomFilterUtil.STATS_RECORD_SEP + "Blocked: true");
+    }
     sb.append(BloomFilterUtil.STATS_RECORD_SEP + 
         ((comparator != null) ? "Comparator: "
         + comparator.getClass().getSimpleName() : "Comparator: "
@@ -40,6 +40,15 @@ public class CompoundBloomFilterBase implements BloomFilterBase {
    */
   public static final int VERSION = 3;
 
+  /**
+   * The version of a compound Bloom filter made of blocked Bloom filter chunks. The metadata is
+   * laid out as for {@link #VERSION}; only the placement of bits within a chunk differs.
+   */
+  public static final int BLOCKED_VERSION = 4;
+
+  /** Whether the chunks are blocked Bloom filters */
+  protected boolean blocked;
+
   /** Target error rate for configuring the filter and for information */
   protected float errorRate;
 
@@ -100,6 +100,19 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
   public CompoundBloomFilterWriter(int chunkByteSizeHint, float errorRate,
       int hashType, int maxFold, boolean cacheOnWrite,
       CellComparator comparator, BloomType bloomType) {
+    this(chunkByteSizeHint, errorRate, hashType, maxFold, cacheOnWrite, comparator, bloomType,
+        false);
+  }
+
+  /**
+   * @param blocked
+   *          whether to write blocked Bloom filter chunks, which set all the
+   *          bits of a key within one cache line
+   * @see #CompoundBloomFilterWriter(int, float, int, int, boolean, CellComparator, BloomType)
+   */
+  public CompoundBloomFilterWriter(int chunkByteSizeHint, float errorRate,
+      int hashType, int maxFold, boolean cacheOnWrite,
+      CellComparator comparator, BloomType bloomType, boolean blocked) {
     chunkByteSize = BloomFilterUtil.computeFoldableByteSize(
         chunkByteSizeHint * 8L, maxFold);
 
@@ -109,6 +122,7 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
     this.cacheOnWrite = cacheOnWrite;
     this.comparator = comparator;
     this.bloomType = bloomType;
+    this.blocked = blocked;
   }
 
   @Override
@@ -204,8 +218,11 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
   private void allocateNewChunk() {
     if (prevChunk == null) {
       // First chunk
-      chunk = BloomFilterUtil.createBySize(chunkByteSize, errorRate,
-          hashType, maxFold, bloomType);
+      chunk = blocked
+          ? BloomFilterUtil.createBlockedBySize(chunkByteSize, errorRate,
+              hashType, maxFold, bloomType)
+          : BloomFilterUtil.createBySize(chunkByteSize, errorRate,
+              hashType, maxFold, bloomType);
     } else {
       // Use the same parameters as the last chunk, but a new array and
       // a zero key count.
@@ -258,7 +275,7 @@ public class CompoundBloomFilterWriter extends CompoundBloomFilterBase
      */
     @Override
     public void write(DataOutput out) throws IOException {
-      out.writeInt(VERSION);
+      out.writeInt(blocked ? BLOCKED_VERSION : VERSION);
 
       out.writeLong(getByteSize());
       out.writeInt(prevChunk.getHashCount());
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * A probabilistic estimate of how often a key has been requested recently, used by
+ * {@link LruBlockCache} to decide whether a new block is worth more than the blocks it would
+ * push out (TinyLFU admission).
+ *
+ * <p>This is a count-min sketch of depth four with 4-bit counters, sixteen of them packed into
+ * each <code>long</code>. Counters saturate at 15. Once the number of recorded increments reaches
+ * ten times the width of the table every counter is halved, so the estimate tracks recent
+ * popularity rather than all-time popularity.
+ *
+ * <p>Updates are not synchronized. Concurrent increments may be lost and a reset may race with
+ * an increment; the sketch only has to be roughly right for admission decisions, so we trade
+ * accuracy for never blocking the read path.
+ */
+@InterfaceAudience.Private
+class FrequencySketch {
+
+  /** Seeds for the four hash functions, one per row of the sketch. */
+  private static final long[] SEEDS = new long[] {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAX_TABLE_LENGTH = 1 << 22;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * @param expectedEntries the expected number of distinct entries in the cache; the sketch is
+   *          sized to the next power of two of this value
+   */
+  FrequencySketch(long expectedEntries) {
+    int length = (int) Math.min(Math.max(expectedEntries, 16), MAX_TABLE_LENGTH);
+    length = Integer.highestOneBit(length - 1) << 1;
+    this.table = new long[length];
+    this.tableMask = length - 1;
+    this.sampleSize = 10 * length;
+  }
+
+  /**
+   * @return the estimated number of occurrences of the item, from 0 to 15
+   */
+  int frequency(int itemHash) {
+    int hash = spread(itemHash);
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Records one occurrence of the item, aging the whole sketch if the sample period has elapsed.
+   */
+  void increment(int itemHash) {
+    int hash = spread(itemHash);
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Increments the j-th 4-bit counter of table[i] unless it is already saturated.
+   */
+  private boolean incrementAt(int i, int j) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    if ((table[i] & mask) != mask) {
+      table[i] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halves every counter. Odd counters lose their low bit, which we account for when adjusting
+   * the number of additions carried into the next period.
+   */
+  private void reset() {
+    int count = 0;
+    for (int i = 0; i < table.length; i++) {
+      count += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions = (additions >>> 1) - (count >>> 2);
+  }
+
+  private int indexOf(int item, int i) {
+    long hash = (item + SEEDS[i]) * SEEDS[i];
+    hash += hash >>> 32;
+    return ((int) hash) & tableMask;
+  }
+
+  /**
+   * Applies a supplemental hash so that poorly distributed hash codes still spread over the
+   * table.
+   */
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  /**
+   * @return the heap used by the counter table, charged against the cache overhead
+   */
+  long heapSize() {
+    return ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE + 3 * Bytes.SIZEOF_INT)
+        + ClassSize.align(ClassSize.ARRAY + (long) table.length * Bytes.SIZEOF_LONG);
+  }
+
+  int getTableLength() {
+    return table.length;
+  }
+}
@@ -222,6 +222,10 @@ public class HFile {
     metrics.updateFsWriteTime(latencyMillis);
   }
 
+  public static final void updateDecompressLatency(long latencyMicros) {
+    metrics.updateBlockDecompressTime(latencyMicros);
+  }
+
   /** API required to write an {@link HFile} */
   public interface Writer extends Closeable, CellSink, ShipperListener {
     /** Max memstore (mvcc) timestamp in FileInfo */
@@ -24,6 +24,7 @@ import java.security.Key;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configurable;
@@ -44,6 +45,7 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.hbase.fs.HFileSystem;
+import org.apache.hadoop.hbase.io.DeferredReleases;
 import org.apache.hadoop.hbase.io.FSDataInputStreamWrapper;
 import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.crypto.Cipher;
@@ -128,6 +130,10 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
   /** Filesystem-level block reader. */
   private HFileBlock.FSReader fsBlockReader;
 
+  /** Blocks a sequential scanner reads ahead, and when it counts as sequential */
+  private final int readaheadDepth;
+  private final int readaheadThreshold;
+
   /**
    * A "sparse lock" implementation allowing to lock on a particular block
    * identified by offset. The purpose of this is to avoid two clients loading
@@ -196,6 +202,12 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     this.name = path.getName();
     this.conf = conf;
     this.primaryReplicaReader = primaryReplicaReader;
+    this.readaheadDepth = conf == null ? ScannerReadahead.DEFAULT_READAHEAD_DEPTH
+        : conf.getInt(ScannerReadahead.READAHEAD_DEPTH_KEY,
+          ScannerReadahead.DEFAULT_READAHEAD_DEPTH);
+    this.readaheadThreshold = conf == null ? ScannerReadahead.DEFAULT_READAHEAD_THRESHOLD
+        : Math.max(1, conf.getInt(ScannerReadahead.READAHEAD_THRESHOLD_KEY,
+          ScannerReadahead.DEFAULT_READAHEAD_THRESHOLD));
     checkFileVersion();
     this.hfileContext = createHFileContext(fsdis, fileSize, hfs, path, trailer);
     this.fsBlockReader = new HFileBlock.FSReaderImpl(fsdis, fileSize, hfs, path, hfileContext);
@@ -374,7 +386,12 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     if (blockCache != null && block != null) {
       BlockCacheKey cacheKey = new BlockCacheKey(this.getFileContext().getHFileName(),
           block.getOffset(), this.isPrimaryReplicaReader(), block.getBlockType());
-      blockCache.returnBlock(cacheKey, block);
+      if (DeferredReleases.isActive()) {
+        // An RPC response being sent may still refer to the block
+        DeferredReleases.defer(() -> blockCache.returnBlock(cacheKey, block));
+      } else {
+        blockCache.returnBlock(cacheKey, block);
+      }
     }
   }
   /**
@@ -511,12 +528,28 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
     // Previous blocks that were used in the course of the read
     protected final ArrayList<HFileBlock> prevBlocks = new ArrayList<>();
 
+    // Sequential access detection for block readahead. Compactions already stream the file.
+    private final int readaheadDepth;
+    private final int readaheadThreshold;
+    // Offset of the block last returned by readNextDataBlock, and how many in a row were
+    // reached by moving on from the previous one
+    private long lastNextBlockOffset = -1;
+    private int sequentialBlockReads = 0;
+    private ScannerReadahead readahead;
+
     public HFileScannerImpl(final HFile.Reader reader, final boolean cacheBlocks,
         final boolean pread, final boolean isCompaction) {
       this.reader = reader;
       this.cacheBlocks = cacheBlocks;
       this.pread = pread;
       this.isCompaction = isCompaction;
+      if (reader instanceof HFileReaderImpl && !isCompaction) {
+        this.readaheadDepth = ((HFileReaderImpl) reader).readaheadDepth;
+        this.readaheadThreshold = ((HFileReaderImpl) reader).readaheadThreshold;
+      } else {
+        this.readaheadDepth = 0;
+        this.readaheadThreshold = 0;
+      }
     }
 
     void updateCurrBlockRef(HFileBlock block) {
@@ -589,6 +622,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
 
     @Override
     public void close() {
+      stopReadahead();
       if (!pread) {
         // For seek + pread stream socket should be closed when the scanner is closed. HBASE-9393
         reader.unbufferStream();
@@ -911,6 +945,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
         return null;
 
       HFileBlock block = this.curBlock;
+      checkSequential(block);
 
       do {
         if (block.getOffset() >= lastDataBlockOffset) {
@@ -921,11 +956,17 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
           throw new IOException("Invalid block file offset: " + block);
         }
 
-        // We are reading the next block without block type validation, because
-        // it might turn out to be a non-data block.
-        block = reader.readBlock(block.getOffset() + block.getOnDiskSizeWithHeader(),
-            block.getNextBlockOnDiskSize(), cacheBlocks, pread,
-            isCompaction, true, null, getEffectiveDataBlockEncoding());
+        long nextBlockOffset = block.getOffset() + block.getOnDiskSizeWithHeader();
+        HFileBlock readAhead = readahead == null ? null : readahead.take(nextBlockOffset);
+        if (readAhead == null) {
+          stopReadahead();
+          // We are reading the next block without block type validation, because
+          // it might turn out to be a non-data block.
+          block = reader.readBlock(nextBlockOffset, block.getNextBlockOnDiskSize(), cacheBlocks,
+              pread, isCompaction, true, null, getEffectiveDataBlockEncoding());
+        } else {
+          block = readAhead;
+        }
         if (block != null && !block.getBlockType().isData()) { // Findbugs: NP_NULL_ON_SOME_PATH
           // Whatever block we read we will be returning it unless
           // it is a datablock. Just in case the blocks are non data blocks
@@ -933,9 +974,39 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
         }
       } while (!block.getBlockType().isData());
 
+      lastNextBlockOffset = block.getOffset();
       return block;
     }
 
+    /**
+     * Counts how many times in a row the scanner has moved straight on to the following block,
+     * and starts reading ahead once that reaches the configured threshold. Any seek in between
+     * resets the count and drops blocks read ahead for the old position.
+     */
+    private void checkSequential(HFileBlock block) {
+      if (readaheadDepth <= 0) {
+        return;
+      }
+      if (block.getOffset() == lastNextBlockOffset) {
+        sequentialBlockReads++;
+      } else {
+        stopReadahead();
+        sequentialBlockReads = 1;
+      }
+      if (readahead == null && sequentialBlockReads >= readaheadThreshold) {
+        readahead = new ScannerReadahead(reader, readaheadDepth, cacheBlocks, isCompaction,
+            getEffectiveDataBlockEncoding());
+        readahead.start(block);
+      }
+    }
+
+    private void stopReadahead() {
+      if (readahead != null) {
+        readahead.close();
+        readahead = null;
+      }
+    }
+
     public DataBlockEncoding getEffectiveDataBlockEncoding() {
       return this.reader.getEffectiveEncodingInCache(isCompaction);
     }
@@ -1304,9 +1375,12 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
        if (cachedBlock != null) {
          if (cacheConf.shouldCacheCompressed(cachedBlock.getBlockType().getCategory())) {
            HFileBlock compressedBlock = cachedBlock;
+           long startTime = System.nanoTime();
            cachedBlock = compressedBlock.unpack(hfileContext, fsBlockReader);
            // In case of compressed block after unpacking we can return the compressed block
           if (compressedBlock != cachedBlock) {
+            HFile.updateDecompressLatency(
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
             cache.returnBlock(cacheKey, compressedBlock);
           }
         }
@@ -1474,6 +1548,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
             return cachedBlock;
           }
 
+          CacheOnlyReads.onCacheMiss(cacheKey);
           if (!useLock && cacheBlock && cacheConf.shouldLockOnCacheMiss(expectedBlockType)) {
             // check cache again with lock
             useLock = true;
@@ -1483,6 +1558,7 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
         }
 
         TraceUtil.addTimelineAnnotation("blockCacheMiss");
+        CacheOnlyReads.onCacheMiss(cacheKey);
         // Load block from filesystem.
         HFileBlock hfileBlock =
             fsBlockReader.readBlockData(dataBlockOffset, onDiskBlockSize, pread, !isCompaction);
@@ -1501,6 +1577,11 @@ public class HFileReaderImpl implements HFile.Reader, Configurable {
           HFile.DATABLOCK_READ_COUNT.increment();
         }
 
+        if (!isCompaction && cacheBlock && hfileBlock.getBlockType().isData()
+            && cacheConf.shouldCacheBlockOnRead(category)) {
+          BlockReadAhead.onCacheMiss(this, hfileBlock);
+        }
+
         return unpacked;
       }
     } finally {
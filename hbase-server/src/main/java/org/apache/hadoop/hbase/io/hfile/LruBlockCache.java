@@ -19,9 +19,11 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import java.lang.ref.WeakReference;
+import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.SortedSet;
@@ -93,7 +95,10 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
  * size, and then while scanning determines the fewest least-recently-used
  * blocks necessary from each of the three priorities (would be 3 times bytes
  * to free).  It then uses the priority chunk sizes to evict fairly according
- * to the relative sizes and usage.
+ * to the relative sizes and usage.<p>
+ *
+ * The priority scheme can optionally be backed by a {@link FrequencySketch} of recent block
+ * requests, see {@link EvictionPolicy} and <code>hbase.lru.blockcache.policy</code>.
  */
 @InterfaceAudience.Private
 @JsonIgnoreProperties({"encodingCountsForTest"})
@@ -133,6 +138,32 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
   private static final String LRU_IN_MEMORY_FORCE_MODE_CONFIG_NAME =
       "hbase.lru.rs.inmemoryforcemode";
 
+  /**
+   * Configuration key for the admission and eviction policy, one of the {@link EvictionPolicy}
+   * names. Defaults to LRU.
+   */
+  static final String LRU_POLICY_CONFIG_NAME = "hbase.lru.blockcache.policy";
+
+  /**
+   * Admission and eviction policies.
+   */
+  public enum EvictionPolicy {
+    /** Priority-bucketed LRU; every block offered to the cache is admitted. */
+    LRU,
+    /**
+     * As LRU, but once the cache is full a data block is only admitted if the frequency sketch
+     * says it has been requested more often than the blocks the last eviction run removed. This
+     * keeps one-off scans from flushing out the working set.
+     */
+    TINY_LFU,
+    /**
+     * Every block is admitted to the single-access bucket, which acts as a small LRU window.
+     * The multi-access and in-memory buckets evict their least frequently requested blocks
+     * first, falling back to recency to break ties.
+     */
+    W_TINY_LFU
+  }
+
   /* Default Configuration Parameters*/
 
   /* Backing Concurrent Map Configuration */
@@ -152,6 +183,17 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
 
   private static final boolean DEFAULT_IN_MEMORY_FORCE_MODE = false;
 
+  private static final EvictionPolicy DEFAULT_POLICY = EvictionPolicy.LRU;
+
+  /**
+   * Orders blocks so that the least frequently requested, and among equals the least recently
+   * used, sort last and are evicted first.
+   */
+  private static final Comparator<LruCachedBlock> FREQUENCY_COMPARATOR = (a, b) -> {
+    int c = Integer.compare(b.getFrequency(), a.getFrequency());
+    return c != 0 ? c : a.compareTo(b);
+  };
+
   /* Statistics thread */
   private static final int STAT_THREAD_PERIOD = 60 * 5;
   private static final String LRU_MAX_BLOCK_SIZE = "hbase.lru.max.block.size";
@@ -222,6 +264,18 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
   /** Whether in-memory hfile's data block has higher priority when evicting */
   private boolean forceInMemory;
 
+  /** Admission and eviction policy */
+  private final EvictionPolicy policy;
+
+  /** Recent request frequencies; null when the policy is plain LRU */
+  private final FrequencySketch sketch;
+
+  /**
+   * Mean sketch frequency of the blocks removed by the last eviction run. With TINY_LFU a new
+   * block has to beat this to be admitted once the cache is full.
+   */
+  private volatile int victimFrequency = 0;
+
   /**
    * Where to send victims (blocks evicted/missing from the cache). This is used only when we use an
    * external cache as L2.
@@ -273,7 +327,9 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
         conf.getFloat(LRU_HARD_CAPACITY_LIMIT_FACTOR_CONFIG_NAME,
                       DEFAULT_HARD_CAPACITY_LIMIT_FACTOR),
         conf.getBoolean(LRU_IN_MEMORY_FORCE_MODE_CONFIG_NAME, DEFAULT_IN_MEMORY_FORCE_MODE),
-        conf.getLong(LRU_MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE)
+        conf.getLong(LRU_MAX_BLOCK_SIZE, DEFAULT_MAX_BLOCK_SIZE),
+        EvictionPolicy.valueOf(
+          conf.get(LRU_POLICY_CONFIG_NAME, DEFAULT_POLICY.name()).trim().toUpperCase(Locale.ROOT))
     );
   }
 
@@ -301,6 +357,23 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       float minFactor, float acceptableFactor, float singleFactor,
       float multiFactor, float memoryFactor, float hardLimitFactor,
       boolean forceInMemory, long maxBlockSize) {
+    this(maxSize, blockSize, evictionThread, mapInitialSize, mapLoadFactor, mapConcurrencyLevel,
+        minFactor, acceptableFactor, singleFactor, multiFactor, memoryFactor, hardLimitFactor,
+        forceInMemory, maxBlockSize, DEFAULT_POLICY);
+  }
+
+  /**
+   * Configurable constructor which also selects the admission and eviction policy.
+   *
+   * @param policy              how blocks are admitted and chosen for eviction
+   * @see #LruBlockCache(long, long, boolean, int, float, int, float, float, float, float, float,
+   *      float, boolean, long)
+   */
+  public LruBlockCache(long maxSize, long blockSize, boolean evictionThread,
+      int mapInitialSize, float mapLoadFactor, int mapConcurrencyLevel,
+      float minFactor, float acceptableFactor, float singleFactor,
+      float multiFactor, float memoryFactor, float hardLimitFactor,
+      boolean forceInMemory, long maxBlockSize, EvictionPolicy policy) {
     this.maxBlockSize = maxBlockSize;
     if(singleFactor + multiFactor + memoryFactor != 1 ||
         singleFactor < 0 || multiFactor < 0 || memoryFactor < 0) {
@@ -322,12 +395,16 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     this.singleFactor = singleFactor;
     this.multiFactor = multiFactor;
     this.memoryFactor = memoryFactor;
+    this.policy = policy;
+    this.sketch = policy == EvictionPolicy.LRU ? null
+        : new FrequencySketch((long) Math.ceil(1.2 * maxSize / blockSize));
     this.stats = new CacheStats(this.getClass().getSimpleName());
     this.count = new AtomicLong(0);
     this.elements = new AtomicLong(0);
     this.dataBlockElements = new LongAdder();
     this.dataBlockSize = new LongAdder();
-    this.overhead = calculateOverhead(maxSize, blockSize, mapConcurrencyLevel);
+    this.overhead = calculateOverhead(maxSize, blockSize, mapConcurrencyLevel)
+        + (sketch == null ? 0 : sketch.heapSize());
     this.size = new AtomicLong(this.overhead);
     this.hardCapacityLimitFactor = hardLimitFactor;
     if (evictionThread) {
@@ -406,6 +483,11 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       }
       return;
     }
+    if (policy == EvictionPolicy.TINY_LFU && !inMemory
+        && !admit(cacheKey, buf, currentSize)) {
+      stats.rejectAdmission();
+      return;
+    }
     cb = new LruCachedBlock(cacheKey, buf, count.incrementAndGet(), inMemory);
     long newSize = updateSizeMetrics(cb, false);
     map.put(cacheKey, cb);
@@ -422,6 +504,24 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     }
   }
 
+  /**
+   * TinyLFU admission. Until the cache fills past the size eviction frees down to, everything is
+   * admitted, as is anything that is not a data block; index and bloom blocks are few and almost
+   * always worth keeping. Beyond that a data block only gets in if it has been asked for more
+   * often than the blocks we have recently been evicting, so a single pass over cold data cannot
+   * displace them.
+   */
+  private boolean admit(BlockCacheKey cacheKey, Cacheable buf, long currentSize) {
+    if (currentSize < minSize()) {
+      return true;
+    }
+    BlockType blockType = buf.getBlockType();
+    if (blockType == null || !blockType.isData()) {
+      return true;
+    }
+    return sketch.frequency(cacheKey.hashCode()) > victimFrequency;
+  }
+
   /**
    * Sanity-checking for parity between actual block cache content and metrics.
    * Intended only for use with TRACE level logging and -ea JVM.
@@ -484,6 +584,9 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
   @Override
   public Cacheable getBlock(BlockCacheKey cacheKey, boolean caching, boolean repeat,
       boolean updateCacheMetrics) {
+    if (sketch != null && !repeat) {
+      sketch.increment(cacheKey.hashCode());
+    }
     LruCachedBlock cb = map.get(cacheKey);
     if (cb == null) {
       if (!repeat && updateCacheMetrics) {
@@ -506,7 +609,10 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       }
       return null;
     }
-    if (updateCacheMetrics) stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+    if (updateCacheMetrics) {
+      stats.hit(caching, cacheKey.isPrimary(), cacheKey.getBlockType());
+      stats.priorityHit(cb.getPriority());
+    }
     cb.access(count.incrementAndGet());
     return cb.getBuffer();
   }
@@ -626,10 +732,17 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
 
       if (bytesToFree <= 0) return;
 
-      // Instantiate priority buckets
-      BlockBucket bucketSingle = new BlockBucket("single", bytesToFree, blockSize, singleSize());
-      BlockBucket bucketMulti = new BlockBucket("multi", bytesToFree, blockSize, multiSize());
-      BlockBucket bucketMemory = new BlockBucket("memory", bytesToFree, blockSize, memorySize());
+      // Instantiate priority buckets. With W_TINY_LFU the single bucket stays an LRU window
+      // while the other two give up their least frequently requested blocks first.
+      boolean byFrequency = policy == EvictionPolicy.W_TINY_LFU;
+      Comparator<LruCachedBlock> mainOrder =
+          byFrequency ? FREQUENCY_COMPARATOR : Comparator.naturalOrder();
+      BlockBucket bucketSingle = new BlockBucket("single", bytesToFree, blockSize, singleSize(),
+          Comparator.naturalOrder());
+      BlockBucket bucketMulti = new BlockBucket("multi", bytesToFree, blockSize, multiSize(),
+          mainOrder);
+      BlockBucket bucketMemory = new BlockBucket("memory", bytesToFree, blockSize, memorySize(),
+          mainOrder);
 
       // Scan entire map putting into appropriate buckets
       for (LruCachedBlock cachedBlock : map.values()) {
@@ -639,10 +752,16 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
             break;
           }
           case MULTI: {
+            if (byFrequency) {
+              cachedBlock.setFrequency(sketch.frequency(cachedBlock.getCacheKey().hashCode()));
+            }
             bucketMulti.add(cachedBlock);
             break;
           }
           case MEMORY: {
+            if (byFrequency) {
+              cachedBlock.setFrequency(sketch.frequency(cachedBlock.getCacheKey().hashCode()));
+            }
             bucketMemory.add(cachedBlock);
             break;
           }
@@ -708,6 +827,14 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
           remainingBuckets--;
         }
       }
+      if (sketch != null) {
+        long evicted = bucketSingle.evictedCount + bucketMulti.evictedCount
+            + bucketMemory.evictedCount;
+        if (evicted > 0) {
+          victimFrequency = (int) ((bucketSingle.evictedFrequency + bucketMulti.evictedFrequency
+              + bucketMemory.evictedFrequency) / evicted);
+        }
+      }
       if (LOG.isTraceEnabled()) {
         long single = bucketSingle.totalSize();
         long multi = bucketMulti.totalSize();
@@ -740,6 +867,7 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       .add("multiFactor", multiFactor)
       .add("singleSize", singleSize())
       .add("singleFactor", singleFactor)
+      .add("policy", policy)
       .toString();
   }
 
@@ -755,11 +883,15 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     private LruCachedBlockQueue queue;
     private long totalSize = 0;
     private long bucketSize;
+    /** Number of blocks freed from this bucket and the sum of their sketch frequencies */
+    private long evictedCount = 0;
+    private long evictedFrequency = 0;
 
-    public BlockBucket(String name, long bytesToFree, long blockSize, long bucketSize) {
+    public BlockBucket(String name, long bytesToFree, long blockSize, long bucketSize,
+        Comparator<LruCachedBlock> order) {
       this.name = name;
       this.bucketSize = bucketSize;
-      queue = new LruCachedBlockQueue(bytesToFree, blockSize);
+      queue = new LruCachedBlockQueue(bytesToFree, blockSize, order);
       totalSize = 0;
     }
 
@@ -775,6 +907,10 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
       LruCachedBlock cb;
       long freedBytes = 0;
       while ((cb = queue.pollLast()) != null) {
+        if (sketch != null) {
+          evictedCount++;
+          evictedFrequency += sketch.frequency(cb.getCacheKey().hashCode());
+        }
         freedBytes += evictBlock(cb, true);
         if (freedBytes >= toFree) {
           return freedBytes;
@@ -974,8 +1110,17 @@ public class LruBlockCache implements ResizableBlockCache, HeapSize {
     return this.stats;
   }
 
+  public EvictionPolicy getEvictionPolicy() {
+    return this.policy;
+  }
+
+  @VisibleForTesting
+  int getVictimFrequency() {
+    return this.victimFrequency;
+  }
+
   public final static long CACHE_FIXED_OVERHEAD = ClassSize.align(
-      (4 * Bytes.SIZEOF_LONG) + (11 * ClassSize.REFERENCE) +
+      (4 * Bytes.SIZEOF_LONG) + (13 * ClassSize.REFERENCE) + Bytes.SIZEOF_INT +
       (6 * Bytes.SIZEOF_FLOAT) + (2 * Bytes.SIZEOF_BOOLEAN)
       + ClassSize.OBJECT);
 
@@ -36,13 +36,18 @@ public class LruCachedBlock implements HeapSize, Comparable<LruCachedBlock> {
 
   public final static long PER_BLOCK_OVERHEAD = ClassSize.align(
     ClassSize.OBJECT + (3 * ClassSize.REFERENCE) + (3 * Bytes.SIZEOF_LONG) +
-    ClassSize.STRING + ClassSize.BYTE_BUFFER);
+    Bytes.SIZEOF_INT + ClassSize.STRING + ClassSize.BYTE_BUFFER);
 
   private final BlockCacheKey cacheKey;
   private final Cacheable buf;
   private volatile long accessTime;
   private long size;
   private BlockPriority priority;
+  /**
+   * Access frequency estimate as of the last eviction run. Only read and written by the eviction
+   * process when the cache uses {@link LruBlockCache.EvictionPolicy#W_TINY_LFU}.
+   */
+  private int frequency;
   /**
    * Time this block was cached.  Presumes we are created just before we are added to the cache.
    */
@@ -129,4 +134,12 @@ public class LruCachedBlock implements HeapSize, Comparable<LruCachedBlock> {
   public BlockPriority getPriority() {
     return this.priority;
   }
+
+  int getFrequency() {
+    return this.frequency;
+  }
+
+  void setFrequency(int frequency) {
+    this.frequency = frequency;
+  }
 }
@@ -18,6 +18,8 @@
  */
 package org.apache.hadoop.hbase.io.hfile;
 
+import java.util.Comparator;
+
 import org.apache.hadoop.hbase.shaded.com.google.common.collect.MinMaxPriorityQueue;
 
 import org.apache.yetus.audience.InterfaceAudience;
@@ -40,6 +42,7 @@ import org.apache.hadoop.hbase.io.HeapSize;
 public class LruCachedBlockQueue implements HeapSize {
 
   private MinMaxPriorityQueue<LruCachedBlock> queue;
+  private final Comparator<LruCachedBlock> comparator;
 
   private long heapSize;
   private long maxSize;
@@ -49,9 +52,21 @@ public class LruCachedBlockQueue implements HeapSize {
    * @param blockSize expected average size of blocks
    */
   public LruCachedBlockQueue(long maxSize, long blockSize) {
+    this(maxSize, blockSize, Comparator.naturalOrder());
+  }
+
+  /**
+   * @param maxSize the target size of elements in the queue
+   * @param blockSize expected average size of blocks
+   * @param comparator ordering of the blocks; the largest blocks are the ones kept and returned
+   *          by {@link #pollLast()}
+   */
+  public LruCachedBlockQueue(long maxSize, long blockSize,
+      Comparator<LruCachedBlock> comparator) {
     int initialSize = (int)(maxSize / blockSize);
     if(initialSize == 0) initialSize++;
-    queue = MinMaxPriorityQueue.expectedSize(initialSize).create();
+    queue = MinMaxPriorityQueue.orderedBy(comparator).expectedSize(initialSize).create();
+    this.comparator = comparator;
     heapSize = 0;
     this.maxSize = maxSize;
   }
@@ -70,7 +85,7 @@ public class LruCachedBlockQueue implements HeapSize {
       heapSize += cb.heapSize();
     } else {
       LruCachedBlock head = queue.peek();
-      if(cb.compareTo(head) > 0) {
+      if(comparator.compare(cb, head) > 0) {
         heapSize += cb.heapSize();
         heapSize -= head.heapSize();
         if(heapSize > maxSize) {
@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reads blocks ahead of a scanner that is walking an {@link HFile} sequentially.
+ * <p>
+ * {@link PrefetchExecutor} warms whole files when they are opened; this instead follows a single
+ * scanner. Once the scanner has moved from one block to the next a few times in a row it keeps up
+ * to <code>hbase.hfile.readahead.depth</code> block reads in flight on a shared thread pool, so
+ * the HDFS round trip for the next block overlaps with the scanner working through the current
+ * one. Each block header carries the on-disk size of the block after it, so the reads for one
+ * scanner form a chain and are issued one after the other; the depth bounds how many blocks a
+ * scanner may hold that it has not consumed yet.
+ * <p>
+ * Blocks are read through {@link HFile.Reader#readBlock} so they are cached, counted and
+ * reference-counted exactly as if the scanner had read them itself. Blocks that were read ahead
+ * but never consumed, because the scanner sought elsewhere or was closed, are handed back to the
+ * reader and counted as waste.
+ * <p>
+ * Not thread safe; like the scanner that owns it, an instance is used by one thread at a time.
+ */
+@InterfaceAudience.Private
+class ScannerReadahead {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ScannerReadahead.class);
+
+  /** Number of blocks to keep in flight ahead of a sequential scanner. 0 disables readahead. */
+  static final String READAHEAD_DEPTH_KEY = "hbase.hfile.readahead.depth";
+  static final int DEFAULT_READAHEAD_DEPTH = 0;
+
+  /** Number of consecutive next-block reads after which a scanner is considered sequential. */
+  static final String READAHEAD_THRESHOLD_KEY = "hbase.hfile.readahead.threshold";
+  static final int DEFAULT_READAHEAD_THRESHOLD = 2;
+
+  /** Executor pool shared among all scanners for readahead, and by {@link BlockReadAhead} */
+  private static final ThreadPoolExecutor readaheadExecutorPool;
+  static {
+    // Sized once per JVM, the same way as the prefetch pool.
+    Configuration conf = HBaseConfiguration.create();
+    int threads = conf.getInt("hbase.hfile.readahead.threads", 8);
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder().setNameFormat("hfile-readahead-%d").setDaemon(true).build());
+    pool.allowCoreThreadTimeOut(true);
+    readaheadExecutorPool = pool;
+  }
+
+  static ThreadPoolExecutor getExecutor() {
+    return readaheadExecutorPool;
+  }
+
+  private final HFile.Reader reader;
+  private final int depth;
+  private final boolean cacheBlocks;
+  private final boolean isCompaction;
+  private final DataBlockEncoding expectedDataBlockEncoding;
+  private final long lastDataBlockOffset;
+
+  /** Reads in flight, in file order */
+  private final ArrayDeque<CompletableFuture<HFileBlock>> inFlight;
+  private volatile boolean closed = false;
+
+  ScannerReadahead(HFile.Reader reader, int depth, boolean cacheBlocks, boolean isCompaction,
+      DataBlockEncoding expectedDataBlockEncoding) {
+    this.reader = reader;
+    this.depth = depth;
+    this.cacheBlocks = cacheBlocks;
+    this.isCompaction = isCompaction;
+    this.expectedDataBlockEncoding = expectedDataBlockEncoding;
+    this.lastDataBlockOffset = reader.getTrailer().getLastDataBlockOffset();
+    this.inFlight = new ArrayDeque<>(depth);
+  }
+
+  /**
+   * Starts reading the blocks that follow <code>block</code>.
+   */
+  void start(HFileBlock block) {
+    CompletableFuture<HFileBlock> previous = CompletableFuture.completedFuture(block);
+    for (int i = 0; i < depth; i++) {
+      previous = readAfter(previous);
+      inFlight.add(previous);
+    }
+  }
+
+  /**
+   * Returns the block at <code>offset</code> if it is the next one read ahead, waiting for its
+   * read to finish if need be, and schedules one more read to keep the window full.
+   * @return the block, or null if the readahead has nothing for this offset; the readahead is
+   *         then spent and the caller should close it and read the block itself
+   */
+  HFileBlock take(long offset) throws IOException {
+    CompletableFuture<HFileBlock> next = inFlight.poll();
+    if (next == null) {
+      return null;
+    }
+    HFileBlock block;
+    try {
+      block = next.get();
+    } catch (InterruptedException e) {
+      close();
+      throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+    } catch (ExecutionException e) {
+      // Let the scanner retry the read itself; it will surface the error if it persists.
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Readahead of " + reader.getName() + " at " + offset + " failed", e.getCause());
+      }
+      close();
+      return null;
+    }
+    if (block == null) {
+      close();
+      return null;
+    }
+    if (block.getOffset() != offset) {
+      wasted(block);
+      close();
+      return null;
+    }
+    HFile.metrics.incrementReadaheadHit();
+    CompletableFuture<HFileBlock> last = inFlight.peekLast();
+    inFlight.add(readAfter(last != null ? last : CompletableFuture.completedFuture(block)));
+    return block;
+  }
+
+  /**
+   * Stops reading ahead and releases every block that was read but not taken.
+   */
+  void close() {
+    closed = true;
+    CompletableFuture<HFileBlock> future;
+    while ((future = inFlight.poll()) != null) {
+      future.whenComplete((block, error) -> {
+        if (block != null) {
+          wasted(block);
+        }
+      });
+    }
+  }
+
+  private CompletableFuture<HFileBlock> readAfter(CompletableFuture<HFileBlock> previous) {
+    return previous.thenApplyAsync(this::readNext, readaheadExecutorPool);
+  }
+
+  private HFileBlock readNext(HFileBlock previous) {
+    if (previous == null || closed || previous.getOffset() >= lastDataBlockOffset) {
+      return null;
+    }
+    try {
+      // Positional read; the scanner may be using the stream concurrently.
+      return reader.readBlock(previous.getOffset() + previous.getOnDiskSizeWithHeader(),
+          previous.getNextBlockOnDiskSize(), cacheBlocks, true, isCompaction, true, null,
+          expectedDataBlockEncoding);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void wasted(HFileBlock block) {
+    reader.returnBlock(block);
+    HFile.metrics.incrementReadaheadWaste();
+  }
+}
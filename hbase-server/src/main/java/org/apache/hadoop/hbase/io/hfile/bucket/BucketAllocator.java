@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.hadoop.hbase.shaded.com.google.common.collect.MinMaxPriorityQueue;
@@ -49,7 +50,10 @@ import org.apache.hadoop.hbase.shaded.com.google.common.primitives.Ints;
  * a size and caches elements up to this size. For a completely empty bucket, this
  * size could be re-specified dynamically.
  *
- * This class is not thread safe.
+ * Allocations and frees only lock the {@link BucketSizeInfo} of the size class involved, so
+ * writers and evictions of different block sizes do not contend. Only moving a completely free
+ * bucket from one size class to another touches a second size class, and it never holds two
+ * size class locks at once.
  */
 @InterfaceAudience.Private
 @JsonIgnoreProperties({"indexStatistics", "freeSize", "usedSize"})
@@ -69,10 +73,10 @@ public final class BucketAllocator {
       sizeIndex = -1;
     }
 
-    void reconfigure(int sizeIndex, int[] bucketSizes, long bucketCapacity) {
-      Preconditions.checkElementIndex(sizeIndex, bucketSizes.length);
+    void reconfigure(int sizeIndex, int itemAllocationSize, long bucketCapacity) {
+      Preconditions.checkArgument(sizeIndex >= 0);
       this.sizeIndex = sizeIndex;
-      itemAllocationSize = bucketSizes[sizeIndex];
+      this.itemAllocationSize = itemAllocationSize;
       itemCount = (int) (bucketCapacity / (long) itemAllocationSize);
       freeCount = itemCount;
       usedCount = 0;
@@ -180,17 +184,22 @@ public final class BucketAllocator {
     // Completely free bucket means it has no block.
     private LinkedMap bucketList, freeBuckets, completelyFreeBuckets;
     private int sizeIndex;
+    // only changes while this size holds no blocks, see resize
+    private volatile int itemSize;
+    // allocations of this size that failed because no bucket had room
+    private final LongAdder allocationFailures = new LongAdder();
 
     BucketSizeInfo(int sizeIndex) {
       bucketList = new LinkedMap();
       freeBuckets = new LinkedMap();
       completelyFreeBuckets = new LinkedMap();
       this.sizeIndex = sizeIndex;
+      this.itemSize = bucketSizes[sizeIndex];
     }
 
     public synchronized void instantiateBucket(Bucket b) {
       assert b.isUninstantiated() || b.isCompletelyFree();
-      b.reconfigure(sizeIndex, bucketSizes, bucketCapacity);
+      b.reconfigure(sizeIndex, itemSize, bucketCapacity);
       bucketList.put(b, b);
       freeBuckets.put(b, b);
       completelyFreeBuckets.put(b, b);
@@ -200,21 +209,59 @@ public final class BucketAllocator {
       return sizeIndex;
     }
 
+    public int itemSize() {
+      return itemSize;
+    }
+
     /**
      * Find a bucket to allocate a block
-     * @return the offset in the IOEngine
+     * @return the offset in the IOEngine, -1 if there is no room or {@link #RESIZED} if this
+     *         size became too small for the block meanwhile
      */
-    public long allocateBlock() {
-      Bucket b = null;
-      if (freeBuckets.size() > 0) {
-        // Use up an existing one first...
-        b = (Bucket) freeBuckets.lastKey();
+    public long allocateBlock(int blockSize) {
+      synchronized (this) {
+        if (blockSize > itemSize) {
+          return RESIZED;
+        }
+        if (freeBuckets.size() > 0) {
+          // Use up an existing one first...
+          return allocate((Bucket) freeBuckets.lastKey());
+        }
       }
+      // Our own lock is not held while taking a bucket from the other sizes, two sizes doing so
+      // at the same time would deadlock otherwise.
+      Bucket b = grabGlobalCompletelyFreeBucket();
       if (b == null) {
-        b = grabGlobalCompletelyFreeBucket();
-        if (b != null) instantiateBucket(b);
+        allocationFailures.increment();
+        return -1;
+      }
+      synchronized (this) {
+        instantiateBucket(b);
+        if (blockSize > itemSize) {
+          return RESIZED;
+        }
+        return allocate(b);
+      }
+    }
+
+    /**
+     * Change the size of the items of this size, only done while it holds no blocks.
+     * @return false if some bucket of this size holds a block
+     */
+    synchronized boolean resize(int newItemSize) {
+      for (Object obj : bucketList.keySet()) {
+        if (!((Bucket) obj).isCompletelyFree()) {
+          return false;
+        }
       }
-      if (b == null) return -1;
+      itemSize = newItemSize;
+      for (Object obj : bucketList.keySet()) {
+        ((Bucket) obj).reconfigure(sizeIndex, newItemSize, bucketCapacity);
+      }
+      return true;
+    }
+
+    private long allocate(Bucket b) {
       long result = b.allocate();
       blockAllocated(b);
       return result;
@@ -225,7 +272,7 @@ public final class BucketAllocator {
       if (!b.hasFreeSpace()) freeBuckets.remove(b);
     }
 
-    public Bucket findAndRemoveCompletelyFreeBucket() {
+    public synchronized Bucket findAndRemoveCompletelyFreeBucket() {
       Bucket b = null;
       assert bucketList.size() > 0;
       if (bucketList.size() == 1) {
@@ -247,7 +294,7 @@ public final class BucketAllocator {
       completelyFreeBuckets.remove(b);
     }
 
-    public void freeBlock(Bucket b, long offset) {
+    public synchronized void freeBlock(Bucket b, long offset) {
       assert bucketList.containsKey(b);
       // else we shouldn't have anything to free...
       assert (!completelyFreeBuckets.containsKey(b));
@@ -263,14 +310,15 @@ public final class BucketAllocator {
         free += b.freeCount();
         used += b.usedCount();
       }
-      return new IndexStatistics(free, used, bucketSizes[sizeIndex]);
+      return new IndexStatistics(free, used, itemSize,
+          allocationFailures.sum());
     }
 
     @Override
     public String toString() {
       return MoreObjects.toStringHelper(this.getClass())
         .add("sizeIndex", sizeIndex)
-        .add("bucketSize", bucketSizes[sizeIndex])
+        .add("bucketSize", itemSize)
         .toString();
     }
   }
@@ -290,12 +338,25 @@ public final class BucketAllocator {
    * BucketSizeInfo
    */
   public BucketSizeInfo roundUpToBucketSizeInfo(int blockSize) {
-    for (int i = 0; i < bucketSizes.length; ++i)
-      if (blockSize <= bucketSizes[i])
-        return bucketSizeInfos[i];
-    return null;
+    // Tuned sizes are no longer in index order, so look at all of them
+    BucketSizeInfo best = null;
+    int bestSize = Integer.MAX_VALUE;
+    for (BucketSizeInfo bsi : bucketSizeInfos) {
+      int size = bsi.itemSize;
+      if (blockSize <= size && size < bestSize) {
+        best = bsi;
+        bestSize = size;
+      }
+    }
+    return best;
   }
 
+  /** Returned by {@link BucketSizeInfo#allocateBlock(int)} when the size was tuned meanwhile */
+  private static final long RESIZED = -2;
+
+  /** Granularity of the block size histogram used for tuning the bucket sizes */
+  private static final int HISTOGRAM_BIN_SIZE = 1024;
+
   /**
    * So, what is the minimum amount of items we'll tolerate in a single bucket?
    */
@@ -308,7 +369,9 @@ public final class BucketAllocator {
   private Bucket[] buckets;
   private BucketSizeInfo[] bucketSizeInfos;
   private final long totalSize;
-  private long usedSize = 0;
+  private final LongAdder usedSize = new LongAdder();
+  // sizes of the blocks asked for lately, in HISTOGRAM_BIN_SIZE bins; see tuneBucketSizes
+  private final AtomicLongArray sizeHistogram;
 
   BucketAllocator(long availableSpace, int[] bucketSizes)
       throws BucketAllocatorException {
@@ -316,6 +379,7 @@ public final class BucketAllocator {
     Arrays.sort(this.bucketSizes);
     this.bigItemSize = Ints.max(this.bucketSizes);
     this.bucketCapacity = FEWEST_ITEMS_IN_BUCKET * (long) bigItemSize;
+    this.sizeHistogram = new AtomicLongArray((bigItemSize - 1) / HISTOGRAM_BIN_SIZE + 1);
     buckets = new Bucket[(int) (availableSpace / bucketCapacity)];
     if (buckets.length < this.bucketSizes.length)
       throw new BucketAllocatorException("Bucket allocator size too small (" + buckets.length +
@@ -357,6 +421,7 @@ public final class BucketAllocator {
     boolean[] reconfigured = new boolean[buckets.length];
     int sizeNotMatchedCount = 0;
     int insufficientCapacityCount = 0;
+    int inconsistentCount = 0;
     Iterator<Map.Entry<BlockCacheKey, BucketEntry>> iterator = map.entrySet().iterator();
     while (iterator.hasNext()) {
       Map.Entry<BlockCacheKey, BucketEntry> entry = iterator.next();
@@ -383,7 +448,11 @@ public final class BucketAllocator {
       Bucket b = buckets[bucketNo];
       if (reconfigured[bucketNo]) {
         if (b.sizeIndex() != bucketSizeIndex) {
-          throw new BucketAllocatorException("Inconsistent allocation in bucket map;");
+          // A checkpoint taken while the bucket was being recycled for another size can see
+          // blocks of both sizes; keep the ones already placed and drop the stragglers.
+          inconsistentCount++;
+          iterator.remove();
+          continue;
         }
       } else {
         if (!b.isCompletelyFree()) {
@@ -398,9 +467,16 @@ public final class BucketAllocator {
         bsi.instantiateBucket(b);
         reconfigured[bucketNo] = true;
       }
+      try {
+        buckets[bucketNo].addAllocation(foundOffset);
+      } catch (BucketAllocatorException e) {
+        // Written while this bucket had a tuned size that is not one of the configured ones.
+        inconsistentCount++;
+        iterator.remove();
+        continue;
+      }
       realCacheSize.add(foundLen);
-      buckets[bucketNo].addAllocation(foundOffset);
-      usedSize += buckets[bucketNo].getItemAllocationSize();
+      usedSize.add(buckets[bucketNo].getItemAllocationSize());
       bucketSizeInfos[bucketSizeIndex].blockAllocated(b);
     }
 
@@ -412,6 +488,10 @@ public final class BucketAllocator {
       LOG.warn("There are " + insufficientCapacityCount + " blocks which can't be rebuilt - "
         + "did you shrink the cache?");
     }
+    if (inconsistentCount > 0) {
+      LOG.warn("There are " + inconsistentCount + " blocks which can't be rebuilt because "
+        + "their bucket was already rebuilt for another size or had a tuned size");
+    }
   }
 
   public String toString() {
@@ -426,7 +506,7 @@ public final class BucketAllocator {
   }
 
   public long getUsedSize() {
-    return this.usedSize;
+    return this.usedSize.sum();
   }
 
   public long getFreeSize() {
@@ -444,24 +524,116 @@ public final class BucketAllocator {
    * @throws CacheFullException
    * @return the offset in the IOEngine
    */
-  public synchronized long allocateBlock(int blockSize) throws CacheFullException,
+  public long allocateBlock(int blockSize) throws CacheFullException,
       BucketAllocatorException {
     assert blockSize > 0;
-    BucketSizeInfo bsi = roundUpToBucketSizeInfo(blockSize);
-    if (bsi == null) {
-      throw new BucketAllocatorException("Allocation too big size=" + blockSize +
-        "; adjust BucketCache sizes " + CacheConfig.BUCKET_CACHE_BUCKETS_KEY +
-        " to accomodate if size seems reasonable and you want it cached.");
-    }
-    long offset = bsi.allocateBlock();
+    if (blockSize <= bigItemSize) {
+      sizeHistogram.incrementAndGet((blockSize - 1) / HISTOGRAM_BIN_SIZE);
+    }
+    BucketSizeInfo bsi;
+    long offset;
+    do {
+      bsi = roundUpToBucketSizeInfo(blockSize);
+      if (bsi == null) {
+        throw new BucketAllocatorException("Allocation too big size=" + blockSize +
+          "; adjust BucketCache sizes " + CacheConfig.BUCKET_CACHE_BUCKETS_KEY +
+          " to accomodate if size seems reasonable and you want it cached.");
+      }
+      offset = bsi.allocateBlock(blockSize);
+    } while (offset == RESIZED);
 
     // Ask caller to free up space and try again!
     if (offset < 0)
       throw new CacheFullException(blockSize, bsi.sizeIndex());
-    usedSize += bucketSizes[bsi.sizeIndex()];
+    usedSize.add(sizeOfAllocation(offset));
     return offset;
   }
 
+  /**
+   * Move the sizes that hold no blocks to the sizes the blocks asked for lately would waste the
+   * least space in. The largest size is never moved, it bounds the bucket capacity. A size is
+   * only moved when that saves at least <code>minImprovement</code> more of the wasted space
+   * than keeping it where it is. The histogram of requested sizes is halved on every call so
+   * it follows changes of the workload.
+   * @return the number of sizes moved
+   */
+  int tuneBucketSizes(double minImprovement) {
+    long[] histogram = new long[sizeHistogram.length()];
+    long total = 0;
+    for (int k = 0; k < histogram.length; k++) {
+      histogram[k] = sizeHistogram.get(k);
+      sizeHistogram.addAndGet(k, -(histogram[k] / 2));
+      total += histogram[k];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    int largest = bucketSizes.length - 1;
+    int[] sizes = new int[bucketSizeInfos.length];
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = bucketSizeInfos[i].itemSize;
+    }
+    int moved = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      if (i == largest || bucketSizeInfos[i].statistics().usedCount() > 0) {
+        continue;
+      }
+      long keep = wasteSaved(histogram, sizes, i, sizes[i]);
+      long best = 0;
+      int bestSize = sizes[i];
+      for (int k = 0; k < histogram.length; k++) {
+        int candidate = Math.min((k + 1) * HISTOGRAM_BIN_SIZE, bigItemSize);
+        if (histogram[k] == 0 || Ints.contains(sizes, candidate)) {
+          continue;
+        }
+        long saved = wasteSaved(histogram, sizes, i, candidate);
+        if (saved > best) {
+          best = saved;
+          bestSize = candidate;
+        }
+      }
+      if (best > keep && best - keep >= minImprovement * best
+          && bucketSizeInfos[i].resize(bestSize)) {
+        LOG.info("Moved bucket size " + sizes[i] + " to " + bestSize);
+        sizes[i] = bestSize;
+        moved++;
+      }
+    }
+    return moved;
+  }
+
+  /**
+   * @return the bytes saved by having size index <code>index</code> at <code>size</code>,
+   *         compared to not having it at all, for blocks sized like <code>histogram</code>
+   */
+  private static long wasteSaved(long[] histogram, int[] sizes, int index, int size) {
+    // The blocks that would go to size are those that fit it but not the next smaller one,
+    // without it they would go to the next larger one.
+    int smaller = 0;
+    int larger = Integer.MAX_VALUE;
+    for (int i = 0; i < sizes.length; i++) {
+      if (i == index) {
+        continue;
+      }
+      if (sizes[i] < size) {
+        smaller = Math.max(smaller, sizes[i]);
+      } else {
+        larger = Math.min(larger, sizes[i]);
+      }
+    }
+    if (larger == Integer.MAX_VALUE) {
+      return 0;
+    }
+    long blocks = 0;
+    for (int k = 0; k < histogram.length; k++) {
+      int upper = (k + 1) * HISTOGRAM_BIN_SIZE;
+      if (upper > smaller && upper <= size) {
+        blocks += histogram[k];
+      }
+    }
+    return blocks * (larger - size);
+  }
+
   private Bucket grabGlobalCompletelyFreeBucket() {
     for (BucketSizeInfo bsi : bucketSizeInfos) {
       Bucket b = bsi.findAndRemoveCompletelyFreeBucket();
@@ -475,13 +647,15 @@ public final class BucketAllocator {
    * @param offset block's offset
    * @return size freed
    */
-  public synchronized int freeBlock(long offset) {
+  public int freeBlock(long offset) {
     int bucketNo = (int) (offset / bucketCapacity);
     assert bucketNo >= 0 && bucketNo < buckets.length;
     Bucket targetBucket = buckets[bucketNo];
+    // The bucket holds this allocation, so it cannot move to another size class meanwhile.
+    int itemAllocationSize = targetBucket.getItemAllocationSize();
     bucketSizeInfos[targetBucket.sizeIndex()].freeBlock(targetBucket, offset);
-    usedSize -= targetBucket.getItemAllocationSize();
-    return targetBucket.getItemAllocationSize();
+    usedSize.add(-itemAllocationSize);
+    return itemAllocationSize;
   }
 
   public int sizeIndexOfAllocation(long offset) {
@@ -500,6 +674,7 @@ public final class BucketAllocator {
 
   static class IndexStatistics {
     private long freeCount, usedCount, itemSize, totalCount;
+    private long allocationFailures;
 
     public long freeCount() {
       return freeCount;
@@ -529,10 +704,22 @@ public final class BucketAllocator {
       return itemSize;
     }
 
+    /**
+     * @return number of allocations of this size that failed because the cache was full
+     */
+    public long allocationFailures() {
+      return allocationFailures;
+    }
+
     public IndexStatistics(long free, long used, long itemSize) {
       setTo(free, used, itemSize);
     }
 
+    public IndexStatistics(long free, long used, long itemSize, long allocationFailures) {
+      setTo(free, used, itemSize);
+      this.allocationFailures = allocationFailures;
+    }
+
     public IndexStatistics() {
       setTo(-1, -1, 0);
     }
@@ -557,18 +744,21 @@ public final class BucketAllocator {
         + total.usedBytes() + "; total bytes=" + total.totalBytes());
     for (IndexStatistics s : stats) {
       LOG.info("  Object size " + s.itemSize() + " used=" + s.usedCount()
-          + "; free=" + s.freeCount() + "; total=" + s.totalCount());
+          + "; free=" + s.freeCount() + "; total=" + s.totalCount()
+          + "; allocationFailures=" + s.allocationFailures());
     }
   }
 
   IndexStatistics[] getIndexStatistics(IndexStatistics grandTotal) {
     IndexStatistics[] stats = getIndexStatistics();
-    long totalfree = 0, totalused = 0;
+    long totalfree = 0, totalused = 0, totalFailures = 0;
     for (IndexStatistics stat : stats) {
       totalfree += stat.freeBytes();
       totalused += stat.usedBytes();
+      totalFailures += stat.allocationFailures();
     }
     grandTotal.setTo(totalfree, totalused, 1);
+    grandTotal.allocationFailures = totalFailures;
     return stats;
   }
 
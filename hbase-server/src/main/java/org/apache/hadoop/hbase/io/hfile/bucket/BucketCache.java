@@ -23,13 +23,12 @@ package org.apache.hadoop.hbase.io.hfile.bucket;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -43,6 +42,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -113,6 +113,27 @@ public class BucketCache implements BlockCache, HeapSize {
   static final String ACCEPT_FACTOR_CONFIG_NAME = "hbase.bucketcache.acceptfactor";
   static final String MIN_FACTOR_CONFIG_NAME = "hbase.bucketcache.minfactor";
 
+  /** Persistence configs, only used with a persistent IOEngine and a persistence path */
+  static final String CHECKPOINT_INTERVAL_CONFIG_NAME =
+      "hbase.bucketcache.persistence.checkpoint.interval";
+  static final String VERIFY_THREADS_CONFIG_NAME = "hbase.bucketcache.persistence.verify.threads";
+
+  /**
+   * Keep backingMap in direct memory, see {@link OffHeapBackingMap}. No on heap set of the keys
+   * by HFile is kept then either, so {@link #evictBlocksByHfileName(String)} scans the off-heap
+   * index instead of a sorted set.
+   */
+  static final String OFFHEAP_INDEX_CONFIG_NAME = "hbase.bucketcache.offheap.index";
+
+  /**
+   * How often the bucket sizes holding no blocks are moved to where the cached block sizes
+   * cluster, see {@link BucketAllocator#tuneBucketSizes(double)}; zero or less never
+   */
+  static final String BUCKET_SIZES_TUNING_INTERVAL_CONFIG_NAME =
+      "hbase.bucketcache.bucket.sizes.tuning.interval";
+  static final String BUCKET_SIZES_TUNING_MIN_IMPROVEMENT_CONFIG_NAME =
+      "hbase.bucketcache.bucket.sizes.tuning.min.improvement";
+
   /** Priority buckets */
   @VisibleForTesting
   static final float DEFAULT_SINGLE_FACTOR = 0.25f;
@@ -123,6 +144,12 @@ public class BucketCache implements BlockCache, HeapSize {
   private static final float DEFAULT_EXTRA_FREE_FACTOR = 0.10f;
   private static final float DEFAULT_ACCEPT_FACTOR = 0.95f;
 
+  /** Checkpoint the index once a minute; zero or less only persists it on shutdown */
+  static final long DEFAULT_CHECKPOINT_INTERVAL = 60 * 1000;
+  static final long DEFAULT_BUCKET_SIZES_TUNING_INTERVAL = 0;
+  static final float DEFAULT_BUCKET_SIZES_TUNING_MIN_IMPROVEMENT = 0.1f;
+  static final int DEFAULT_VERIFY_THREADS = 4;
+
   // Number of blocks to clear for each of the bucket size that is full
   private static final int DEFAULT_FREE_ENTIRE_BLOCK_FACTOR = 2;
 
@@ -206,8 +233,8 @@ public class BucketCache implements BlockCache, HeapSize {
   @VisibleForTesting
   final IdReadWriteLock offsetLock = new IdReadWriteLock(ReferenceType.SOFT);
 
-  private final NavigableSet<BlockCacheKey> blocksByHFile =
-      new ConcurrentSkipListSet<>(new Comparator<BlockCacheKey>() {
+  private static final Comparator<BlockCacheKey> BLOCKS_BY_HFILE_COMPARATOR =
+      new Comparator<BlockCacheKey>() {
         @Override
         public int compare(BlockCacheKey a, BlockCacheKey b) {
           int nameComparison = a.getHfileName().compareTo(b.getHfileName());
@@ -222,7 +249,10 @@ public class BucketCache implements BlockCache, HeapSize {
           }
           return 1;
         }
-      });
+      };
+
+  // Null with an off-heap index, which is scanned for the blocks of a file instead
+  private final NavigableSet<BlockCacheKey> blocksByHFile;
 
   /** Statistics thread schedule pool (for heavy debugging, could remove) */
   private final ScheduledExecutorService scheduleThreadPool = Executors.newScheduledThreadPool(1,
@@ -249,6 +279,17 @@ public class BucketCache implements BlockCache, HeapSize {
   /** In-memory bucket size */
   private float memoryFactor;
 
+  /** True when the index is checkpointed to persistencePath while the cache runs */
+  private final boolean checkpointEnabled;
+  /** Bumped on every backingMap insert and eviction so idle caches skip checkpoints */
+  private final LongAdder backingMapChanges = new LongAdder();
+  private volatile long checkpointedChanges = -1;
+  private final ScheduledExecutorService checkpointPool;
+  /** Threads checking restored blocks against the IOEngine, null when nothing was restored */
+  private ExecutorService verifierPool;
+  /** Restored entries came without checksums; record them on verification instead of comparing */
+  private boolean sealRestoredEntries = false;
+
   public BucketCache(String ioEngineName, long capacity, int blockSize, int[] bucketSizes,
       int writerThreadNum, int writerQLen, String persistencePath) throws FileNotFoundException,
       IOException {
@@ -283,6 +324,7 @@ public class BucketCache implements BlockCache, HeapSize {
 
     this.cacheCapacity = capacity;
     this.persistencePath = persistencePath;
+    this.checkpointEnabled = ioEngine.isPersistent() && persistencePath != null;
     this.blockSize = blockSize;
     this.ioErrorsTolerationDuration = ioErrorsTolerationDuration;
 
@@ -294,11 +336,15 @@ public class BucketCache implements BlockCache, HeapSize {
     assert writerQueues.size() == writerThreads.length;
     this.ramCache = new ConcurrentHashMap<>();
 
-    this.backingMap = new ConcurrentHashMap<>((int) blockNumCapacity);
+    this.backingMap = createBackingMap(conf, (int) blockNumCapacity);
+    this.blocksByHFile = backingMap instanceof OffHeapBackingMap ? null
+        : new ConcurrentSkipListSet<>(BLOCKS_BY_HFILE_COMPARATOR);
 
+    List<BlockCacheKey> restoredKeys = null;
     if (ioEngine.isPersistent() && persistencePath != null) {
       try {
         retrieveFromFile(bucketSizes);
+        restoredKeys = new ArrayList<>(backingMap.keySet());
       } catch (IOException ioex) {
         LOG.error("Can't restore from file because of", ioex);
       } catch (ClassNotFoundException cnfe) {
@@ -314,12 +360,34 @@ public class BucketCache implements BlockCache, HeapSize {
       writerThreads[i].setDaemon(true);
     }
     startWriterThreads();
+    if (restoredKeys != null && !restoredKeys.isEmpty()) {
+      verifyRestoredEntries(restoredKeys,
+        conf.getInt(VERIFY_THREADS_CONFIG_NAME, DEFAULT_VERIFY_THREADS));
+    }
 
     // Run the statistics thread periodically to print the cache statistics log
     // TODO: Add means of turning this off.  Bit obnoxious running thread just to make a log
     // every five minutes.
     this.scheduleThreadPool.scheduleAtFixedRate(new StatisticsThread(this),
         statThreadPeriod, statThreadPeriod, TimeUnit.SECONDS);
+    long tuningInterval = conf.getLong(BUCKET_SIZES_TUNING_INTERVAL_CONFIG_NAME,
+      DEFAULT_BUCKET_SIZES_TUNING_INTERVAL);
+    if (tuningInterval > 0) {
+      float minImprovement = conf.getFloat(BUCKET_SIZES_TUNING_MIN_IMPROVEMENT_CONFIG_NAME,
+        DEFAULT_BUCKET_SIZES_TUNING_MIN_IMPROVEMENT);
+      this.scheduleThreadPool.scheduleWithFixedDelay(() -> tuneBucketSizes(minImprovement),
+        tuningInterval, tuningInterval, TimeUnit.MILLISECONDS);
+    }
+    long checkpointInterval = conf.getLong(CHECKPOINT_INTERVAL_CONFIG_NAME,
+      DEFAULT_CHECKPOINT_INTERVAL);
+    if (checkpointEnabled && checkpointInterval > 0) {
+      this.checkpointPool = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("BucketCachePersister").setDaemon(true).build());
+      this.checkpointPool.scheduleWithFixedDelay(this::checkpoint, checkpointInterval,
+        checkpointInterval, TimeUnit.MILLISECONDS);
+    } else {
+      this.checkpointPool = null;
+    }
     LOG.info("Started bucket cache; ioengine=" + ioEngineName +
         ", capacity=" + StringUtils.byteDesc(capacity) +
       ", blockSize=" + StringUtils.byteDesc(blockSize) + ", writerThreadNum=" +
@@ -469,7 +537,9 @@ public class BucketCache implements BlockCache, HeapSize {
     } else {
       this.blockNumber.increment();
       this.heapSize.add(cachedItem.heapSize());
-      blocksByHFile.add(cacheKey);
+      if (blocksByHFile != null) {
+        blocksByHFile.add(cacheKey);
+      }
     }
   }
 
@@ -496,6 +566,10 @@ public class BucketCache implements BlockCache, HeapSize {
       return re.getData();
     }
     BucketEntry bucketEntry = backingMap.get(key);
+    if (bucketEntry != null && bucketEntry.isUnverified()
+        && !verifyRestoredEntry(key, bucketEntry, sealRestoredEntries)) {
+      bucketEntry = null;
+    }
     if (bucketEntry != null) {
       long start = System.nanoTime();
       ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
@@ -540,11 +614,100 @@ public class BucketCache implements BlockCache, HeapSize {
     return null;
   }
 
+  /**
+   * Check a block restored from a checkpoint against the bytes actually in the IOEngine. The
+   * checkpoint may predate a crash after which the bucket was reused for another block, so a
+   * mismatching block is evicted rather than served.
+   * @param seal if true the entry came from a file without checksums; record the checksum of
+   *          what is there instead of comparing against it
+   * @return true if the block can be served
+   */
+  private boolean verifyRestoredEntry(BlockCacheKey key, BucketEntry bucketEntry, boolean seal) {
+    boolean intact = false;
+    ReentrantReadWriteLock lock = offsetLock.getLock(bucketEntry.offset());
+    lock.readLock().lock();
+    try {
+      if (!bucketEntry.isUnverified()) {
+        return true;
+      }
+      if (!bucketEntry.equals(backingMap.get(key))) {
+        return false;
+      }
+      Cacheable block = ioEngine.read(bucketEntry.offset(), bucketEntry.getLength(),
+          bucketEntry.deserializerReference(this.deserialiserMap));
+      int checksum = BucketCachePersister.checksumOfCached(block, bucketEntry.getLength());
+      if (seal) {
+        bucketEntry.setChecksum(checksum);
+        intact = true;
+      } else {
+        intact = checksum == bucketEntry.getChecksum();
+      }
+    } catch (IOException | RuntimeException e) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Failed reading restored block " + key + " from bucket cache", e);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (intact) {
+      bucketEntry.markVerified();
+    } else {
+      forceEvict(key);
+    }
+    return intact;
+  }
+
+  /**
+   * Verify the restored <code>keys</code> in the background with <code>threads</code> threads.
+   * Reads of a block that has not been verified yet verify it inline first.
+   */
+  private void verifyRestoredEntries(List<BlockCacheKey> keys, int threads) {
+    final int parallelism = Math.max(1, Math.min(threads, keys.size()));
+    final LongAdder intact = new LongAdder();
+    final LongAdder evicted = new LongAdder();
+    final AtomicInteger running = new AtomicInteger(parallelism);
+    final long start = System.nanoTime();
+    verifierPool = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+        .setNameFormat("BucketCacheVerifier-%d").setDaemon(true).build());
+    for (int i = 0; i < parallelism; i++) {
+      // Interleave so each thread walks the whole offset range rather than one cold region
+      final List<BlockCacheKey> slice = new ArrayList<>(keys.size() / parallelism + 1);
+      for (int j = i; j < keys.size(); j += parallelism) {
+        slice.add(keys.get(j));
+      }
+      verifierPool.execute(() -> {
+        for (BlockCacheKey key : slice) {
+          if (!cacheEnabled) {
+            break;
+          }
+          BucketEntry bucketEntry = backingMap.get(key);
+          if (bucketEntry == null || !bucketEntry.isUnverified()) {
+            continue;
+          }
+          if (verifyRestoredEntry(key, bucketEntry, sealRestoredEntries)) {
+            intact.increment();
+          } else {
+            evicted.increment();
+          }
+        }
+        if (running.decrementAndGet() == 0) {
+          LOG.info("Verified " + keys.size() + " restored blocks in "
+              + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms; intact="
+              + intact.sum() + ", evicted=" + evicted.sum());
+        }
+      });
+    }
+    verifierPool.shutdown();
+  }
+
   @VisibleForTesting
   void blockEvicted(BlockCacheKey cacheKey, BucketEntry bucketEntry, boolean decrementBlockNumber) {
     bucketAllocator.freeBlock(bucketEntry.offset());
     realCacheSize.add(-1 * bucketEntry.getLength());
-    blocksByHFile.remove(cacheKey);
+    backingMapChanges.increment();
+    if (blocksByHFile != null) {
+      blocksByHFile.remove(cacheKey);
+    }
     if (decrementBlockNumber) {
       this.blockNumber.decrement();
     }
@@ -665,11 +828,13 @@ public class BucketCache implements BlockCache, HeapSize {
     long usedSize = bucketAllocator.getUsedSize();
     long freeSize = totalSize - usedSize;
     long cacheSize = getRealCacheSize();
+    cacheStats.updateFragmentation(usedSize, cacheSize);
     LOG.info("failedBlockAdditions=" + cacheStats.getFailedInserts() + ", " +
         "totalSize=" + StringUtils.byteDesc(totalSize) + ", " +
         "freeSize=" + StringUtils.byteDesc(freeSize) + ", " +
         "usedSize=" + StringUtils.byteDesc(usedSize) +", " +
         "cacheSize=" + StringUtils.byteDesc(cacheSize) +", " +
+        "fragmentation=" + StringUtils.formatPercent(cacheStats.getFragmentation(), 2) + ", " +
         "accesses=" + cacheStats.getRequestCount() + ", " +
         "hits=" + cacheStats.getHitCount() + ", " +
         "IOhitsPerSecond=" + cacheStats.getIOHitsPerSecond() + ", " +
@@ -682,7 +847,9 @@ public class BucketCache implements BlockCache, HeapSize {
           (StringUtils.formatPercent(cacheStats.getHitCachingRatio(), 2)+ ", ")) +
         "evictions=" + cacheStats.getEvictionCount() + ", " +
         "evicted=" + cacheStats.getEvictedCount() + ", " +
-        "evictedPerRun=" + cacheStats.evictedPerEviction());
+        "evictedPerRun=" + cacheStats.evictedPerEviction() +
+        (backingMap instanceof OffHeapBackingMap ?
+          ", indexOffHeapSize=" + StringUtils.byteDesc(getIndexOffHeapSize()) : ""));
     cacheStats.reset();
   }
 
@@ -690,6 +857,15 @@ public class BucketCache implements BlockCache, HeapSize {
     return this.realCacheSize.sum();
   }
 
+  /**
+   * @return bytes of direct memory taken by the index of the cached blocks if it is kept off
+   *         heap, see {@link #OFFHEAP_INDEX_CONFIG_NAME}, otherwise 0
+   */
+  public long getIndexOffHeapSize() {
+    return backingMap instanceof OffHeapBackingMap
+        ? ((OffHeapBackingMap) backingMap).getOffHeapSize() : 0;
+  }
+
   private long acceptableSize() {
     return (long) Math.floor(bucketAllocator.getTotalSize() * acceptableFactor);
   }
@@ -963,6 +1139,9 @@ public class BucketCache implements BlockCache, HeapSize {
           }
           BucketEntry bucketEntry =
             re.writeToCache(ioEngine, bucketAllocator, deserialiserMap, realCacheSize);
+          if (bucketEntry != null && checkpointEnabled) {
+            bucketEntry.setChecksum(BucketCachePersister.checksumOf(re.getData()));
+          }
           // Successfully added.  Up index and add bucketEntry. Clear io exceptions.
           bucketEntries[index] = bucketEntry;
           if (ioErrorStartTime > 0) {
@@ -1010,6 +1189,7 @@ public class BucketCache implements BlockCache, HeapSize {
         // Only add if non-null entry.
         if (bucketEntries[i] != null) {
           backingMap.put(key, bucketEntries[i]);
+          backingMapChanges.increment();
         }
         // Always remove from ramCache even if we failed adding it to the block cache above.
         RAMQueueEntry ramCacheEntry = ramCache.remove(key);
@@ -1057,28 +1237,66 @@ public class BucketCache implements BlockCache, HeapSize {
     return receptacle;
   }
 
-  private void persistToFile() throws IOException {
-    assert !cacheEnabled;
-    FileOutputStream fos = null;
-    ObjectOutputStream oos = null;
+  /**
+   * Periodic checkpoint of the index; skipped if nothing was cached or evicted since the last one.
+   */
+  @VisibleForTesting
+  void checkpoint() {
+    long changes = backingMapChanges.sum();
+    if (!cacheEnabled || changes == checkpointedChanges) {
+      return;
+    }
     try {
-      if (!ioEngine.isPersistent()) {
-        throw new IOException("Attempt to persist non-persistent cache mappings!");
+      long start = System.nanoTime();
+      int entries = persistToFile();
+      checkpointedChanges = changes;
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Checkpointed " + entries + " bucket cache entries to " + persistencePath
+            + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
       }
-      fos = new FileOutputStream(persistencePath, false);
-      oos = new ObjectOutputStream(fos);
-      oos.writeLong(cacheCapacity);
-      oos.writeUTF(ioEngine.getClass().getName());
-      oos.writeUTF(backingMap.getClass().getName());
-      oos.writeObject(deserialiserMap);
-      oos.writeObject(backingMap);
-    } finally {
-      if (oos != null) oos.close();
-      if (fos != null) fos.close();
+    } catch (IOException ioex) {
+      LOG.warn("Failed checkpointing bucket cache to " + persistencePath, ioex);
+    }
+  }
+
+  private int persistToFile() throws IOException {
+    if (!ioEngine.isPersistent()) {
+      throw new IOException("Attempt to persist non-persistent cache mappings!");
+    }
+    return BucketCachePersister.write(new File(persistencePath), cacheCapacity,
+      ioEngine.getClass().getName(), deserialiserMap, backingMap);
+  }
+
+  private ConcurrentMap<BlockCacheKey, BucketEntry> createBackingMap(Configuration conf,
+      int blockNumCapacity) {
+    if (conf.getBoolean(OFFHEAP_INDEX_CONFIG_NAME, false)) {
+      // Blocks read from a ByteBufferIOEngine share its memory and are reference counted on
+      // their BucketEntry, which the off-heap index only materializes for the duration of a call
+      if (ioEngine instanceof ByteBufferIOEngine) {
+        LOG.warn("Ignoring " + OFFHEAP_INDEX_CONFIG_NAME + " as " + ioEngine
+            + " hands out shared memory; keeping the index on heap");
+      } else {
+        OffHeapBackingMap map = new OffHeapBackingMap(blockNumCapacity);
+        LOG.info("Keeping the BucketCache index off heap; allocated "
+            + StringUtils.byteDesc(map.getOffHeapSize()) + " of direct memory for "
+            + blockNumCapacity + " blocks");
+        return map;
+      }
+    }
+    return new ConcurrentHashMap<>(blockNumCapacity);
+  }
+
+  /**
+   * Take over the entries restored from a persisted index.
+   */
+  private void restoreBackingMap(ConcurrentHashMap<BlockCacheKey, BucketEntry> restored) {
+    if (backingMap instanceof OffHeapBackingMap) {
+      backingMap.putAll(restored);
+    } else {
+      backingMap = restored;
     }
   }
 
-  @SuppressWarnings("unchecked")
   private void retrieveFromFile(int[] bucketSizes) throws IOException, BucketAllocatorException,
       ClassNotFoundException {
     File persistenceFile = new File(persistencePath);
@@ -1086,12 +1304,42 @@ public class BucketCache implements BlockCache, HeapSize {
       return;
     }
     assert !cacheEnabled;
+    if (!ioEngine.isPersistent()) {
+      throw new IOException("Attempt to restore non-persistent cache mappings!");
+    }
+    if (BucketCachePersister.isCheckpoint(persistenceFile)) {
+      // Unlike the serialized format below the checkpoint is kept; it is only ever replaced
+      // atomically and everything restored from it is verified before use.
+      BucketCachePersister.Checkpoint checkpoint = BucketCachePersister.read(persistenceFile,
+        cacheCapacity, ioEngine.getClass().getName());
+      if (checkpoint.duplicateOffsets > 0) {
+        LOG.info("Dropped " + checkpoint.duplicateOffsets + " stale entries sharing a bucket "
+            + "offset in " + persistencePath);
+      }
+      bucketAllocator = new BucketAllocator(cacheCapacity, bucketSizes, checkpoint.backingMap,
+          realCacheSize);
+      deserialiserMap = checkpoint.deserialiserMap;
+      restoreBackingMap(checkpoint.backingMap);
+      accessCount.set(checkpoint.maxAccessCounter);
+    } else {
+      retrieveFromSerializedFile(persistenceFile, bucketSizes);
+    }
+    if (blocksByHFile != null) {
+      blocksByHFile.addAll(backingMap.keySet());
+    }
+    blockNumber.add(backingMap.size());
+    LOG.info("Restored " + backingMap.size() + " blocks from " + persistencePath);
+  }
+
+  /**
+   * Restore from the java serialized format written before checkpoints were introduced.
+   */
+  @SuppressWarnings("unchecked")
+  private void retrieveFromSerializedFile(File persistenceFile, int[] bucketSizes)
+      throws IOException, BucketAllocatorException, ClassNotFoundException {
     FileInputStream fis = null;
     ObjectInputStream ois = null;
     try {
-      if (!ioEngine.isPersistent())
-        throw new IOException(
-            "Attempt to restore non-persistent cache mappings!");
       fis = new FileInputStream(persistencePath);
       ois = new ObjectInputStream(fis);
       long capacitySize = ois.readLong();
@@ -1104,9 +1352,10 @@ public class BucketCache implements BlockCache, HeapSize {
       if (!ioEngine.getClass().getName().equals(ioclass))
         throw new IOException("Class name for IO engine mismatch: " + ioclass
             + ", expected:" + ioEngine.getClass().getName());
-      if (!backingMap.getClass().getName().equals(mapclass))
+      // Only ever written from an on-heap index
+      if (!ConcurrentHashMap.class.getName().equals(mapclass))
         throw new IOException("Class name for cache map mismatch: " + mapclass
-            + ", expected:" + backingMap.getClass().getName());
+            + ", expected:" + ConcurrentHashMap.class.getName());
       UniqueIndexMap<Integer> deserMap = (UniqueIndexMap<Integer>) ois
           .readObject();
       ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMapFromFile =
@@ -1115,7 +1364,12 @@ public class BucketCache implements BlockCache, HeapSize {
           backingMapFromFile, realCacheSize);
       bucketAllocator = allocator;
       deserialiserMap = deserMap;
-      backingMap = backingMapFromFile;
+      // No checksums in this format; they get taken from the IOEngine once the cache is up
+      sealRestoredEntries = true;
+      for (BucketEntry bucketEntry : backingMapFromFile.values()) {
+        bucketEntry.markUnverified();
+      }
+      restoreBackingMap(backingMapFromFile);
     } finally {
       if (ois != null) ois.close();
       if (fis != null) fis.close();
@@ -1152,6 +1406,12 @@ public class BucketCache implements BlockCache, HeapSize {
     cacheEnabled = false;
     ioEngine.shutdown();
     this.scheduleThreadPool.shutdown();
+    if (this.checkpointPool != null) {
+      this.checkpointPool.shutdown();
+    }
+    if (this.verifierPool != null) {
+      this.verifierPool.shutdownNow();
+    }
     for (int i = 0; i < writerThreads.length; ++i) writerThreads[i].interrupt();
     this.ramCache.clear();
     if (!ioEngine.isPersistent() || persistencePath == null) {
@@ -1173,6 +1433,10 @@ public class BucketCache implements BlockCache, HeapSize {
     if (ioEngine.isPersistent() && persistencePath != null) {
       try {
         join();
+        if (checkpointPool != null) {
+          // Let an in flight checkpoint finish so it does not race the final one
+          checkpointPool.awaitTermination(1, TimeUnit.MINUTES);
+        }
         persistToFile();
       } catch (IOException ex) {
         LOG.error("Unable to persist data on exit: " + ex.toString(), ex);
@@ -1184,9 +1448,21 @@ public class BucketCache implements BlockCache, HeapSize {
 
   @Override
   public CacheStats getStats() {
+    cacheStats.updateFragmentation(bucketAllocator.getUsedSize(), realCacheSize.sum());
     return cacheStats;
   }
 
+  @VisibleForTesting
+  int tuneBucketSizes(double minImprovement) {
+    int moved = bucketAllocator.tuneBucketSizes(minImprovement);
+    if (moved > 0) {
+      cacheStats.updateFragmentation(bucketAllocator.getUsedSize(), realCacheSize.sum());
+      LOG.info("Tuned " + moved + " bucket sizes, fragmentation="
+          + StringUtils.formatPercent(cacheStats.getFragmentation(), 2));
+    }
+    return moved;
+  }
+
   public BucketAllocator getAllocator() {
     return this.bucketAllocator;
   }
@@ -1235,9 +1511,21 @@ public class BucketCache implements BlockCache, HeapSize {
    */
   @Override
   public int evictBlocksByHfileName(String hfileName) {
-    Set<BlockCacheKey> keySet = blocksByHFile.subSet(
-        new BlockCacheKey(hfileName, Long.MIN_VALUE), true,
-        new BlockCacheKey(hfileName, Long.MAX_VALUE), true);
+    Collection<BlockCacheKey> keySet;
+    if (blocksByHFile != null) {
+      keySet = blocksByHFile.subSet(
+          new BlockCacheKey(hfileName, Long.MIN_VALUE), true,
+          new BlockCacheKey(hfileName, Long.MAX_VALUE), true);
+    } else {
+      // Blocks still waiting for a writer are only in the ramCache
+      List<BlockCacheKey> keys = ((OffHeapBackingMap) backingMap).keysOf(hfileName);
+      for (BlockCacheKey key : ramCache.keySet()) {
+        if (hfileName.equals(key.getHfileName())) {
+          keys.add(key);
+        }
+      }
+      keySet = keys;
+    }
 
     int numEvicted = 0;
     for (BlockCacheKey key : keySet) {
@@ -1278,21 +1566,34 @@ public class BucketCache implements BlockCache, HeapSize {
     // Set this when we were not able to forcefully evict the block
     private volatile boolean markedForEvict;
     private AtomicInteger refCount = new AtomicInteger(0);
+    // CRC32 of the bytes in the IOEngine, only computed when the index is checkpointed
+    private int checksum;
+    // Set on entries restored from a checkpoint until their bytes are checked against checksum
+    private transient volatile boolean unverified;
 
     /**
      * Time this block was cached.  Presumes we are created just before we are added to the cache.
      */
-    private final long cachedTime = System.nanoTime();
+    private final long cachedTime;
 
     BucketEntry(long offset, int length, long accessCounter, boolean inMemory) {
+      this(offset, length, accessCounter, inMemory ? BlockPriority.MEMORY : BlockPriority.SINGLE);
+    }
+
+    BucketEntry(long offset, int length, long accessCounter, BlockPriority priority) {
+      this(offset, length, accessCounter, priority, System.nanoTime());
+    }
+
+    /**
+     * Rebuild an entry kept outside of the java heap, see {@link OffHeapBackingMap}.
+     */
+    BucketEntry(long offset, int length, long accessCounter, BlockPriority priority,
+        long cachedTime) {
       setOffset(offset);
       this.length = length;
       this.accessCounter = accessCounter;
-      if (inMemory) {
-        this.priority = BlockPriority.MEMORY;
-      } else {
-        this.priority = BlockPriority.SINGLE;
-      }
+      this.priority = priority;
+      this.cachedTime = cachedTime;
     }
 
     long offset() { // Java has no unsigned numbers
@@ -1342,6 +1643,30 @@ public class BucketCache implements BlockCache, HeapSize {
     public long getCachedTime() {
       return cachedTime;
     }
+
+    long getAccessCounter() {
+      return accessCounter;
+    }
+
+    int getChecksum() {
+      return checksum;
+    }
+
+    void setChecksum(int checksum) {
+      this.checksum = checksum;
+    }
+
+    boolean isUnverified() {
+      return unverified;
+    }
+
+    void markUnverified() {
+      this.unverified = true;
+    }
+
+    void markVerified() {
+      this.unverified = false;
+    }
   }
 
   /**
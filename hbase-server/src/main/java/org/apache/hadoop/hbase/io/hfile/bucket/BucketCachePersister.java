@@ -0,0 +1,314 @@
+/**
+ * Copyright The Apache Software Foundation
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.HFileBlock;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
+import org.apache.hadoop.hbase.nio.ByteBuff;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Reads and writes the {@link BucketCache} index (the backingMap plus the deserialiser
+ * mapping) as a compact binary checkpoint.
+ * <p>
+ * The layout is a fixed header (magic, version, cache capacity and IOEngine class), the
+ * deserialiser table, a table of the distinct hfile names, and then one record per cached block
+ * in which the hfile is referenced by its index in the name table and all numbers are
+ * variable-length encoded. A CRC32 of everything that precedes it closes the file, so a torn or
+ * truncated checkpoint is rejected as a whole.
+ * <p>
+ * Each record also carries a CRC32 of the block bytes as they were written to the IOEngine. The
+ * file is only ever a snapshot of a concurrently changing map, and after a crash the IOEngine can
+ * hold newer data than the checkpoint describes, so {@link BucketCache} checks every restored
+ * block against this checksum before trusting it. Checkpoints are written to a temporary file
+ * that is synced and then atomically renamed over the previous one.
+ */
+@InterfaceAudience.Private
+final class BucketCachePersister {
+
+  /** "BCI" followed by a format byte; never clashes with the java serialization stream magic */
+  static final int MAGIC = 0x42434901;
+  static final int VERSION = 1;
+
+  private static final String TMP_SUFFIX = ".tmp";
+  private static final byte PRIMARY_REPLICA_FLAG = 0x01;
+  private static final int CHECKSUM_CHUNK_SIZE = 4096;
+
+  private BucketCachePersister() {
+  }
+
+  /**
+   * Result of reading a checkpoint back in.
+   */
+  static class Checkpoint {
+    final UniqueIndexMap<Integer> deserialiserMap;
+    final ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMap;
+    final long maxAccessCounter;
+    final int duplicateOffsets;
+
+    Checkpoint(UniqueIndexMap<Integer> deserialiserMap,
+        ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMap, long maxAccessCounter,
+        int duplicateOffsets) {
+      this.deserialiserMap = deserialiserMap;
+      this.backingMap = backingMap;
+      this.maxAccessCounter = maxAccessCounter;
+      this.duplicateOffsets = duplicateOffsets;
+    }
+  }
+
+  /**
+   * @return true if the file at <code>path</code> starts with the checkpoint magic
+   */
+  static boolean isCheckpoint(File path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+      return in.readInt() == MAGIC;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Write a checkpoint of <code>backingMap</code> to <code>path</code>, replacing any previous
+   * checkpoint only once the new one is completely on disk.
+   * @return number of entries written
+   */
+  static int write(File path, long capacity, String ioEngineClass,
+      UniqueIndexMap<Integer> deserialiserMap, Map<BlockCacheKey, BucketEntry> backingMap)
+      throws IOException {
+    // Take the snapshot first; the names table has to go out before the entries referencing it.
+    List<Map.Entry<BlockCacheKey, BucketEntry>> snapshot = new ArrayList<>(backingMap.size());
+    Map<String, Integer> fileIds = new HashMap<>();
+    List<String> fileNames = new ArrayList<>();
+    for (Map.Entry<BlockCacheKey, BucketEntry> entry : backingMap.entrySet()) {
+      String hfileName = entry.getKey().getHfileName();
+      if (!fileIds.containsKey(hfileName)) {
+        fileIds.put(hfileName, fileNames.size());
+        fileNames.add(hfileName);
+      }
+      snapshot.add(entry);
+    }
+
+    File tmp = new File(path.getPath() + TMP_SUFFIX);
+    CRC32 crc = new CRC32();
+    try (FileOutputStream fos = new FileOutputStream(tmp, false)) {
+      BufferedOutputStream bos = new BufferedOutputStream(fos, 64 * 1024);
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(bos, crc));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(capacity);
+      out.writeUTF(ioEngineClass);
+
+      Map<Integer, Integer> deserialisers = new HashMap<>(deserialiserMap.mReverseMap);
+      WritableUtils.writeVInt(out, deserialisers.size());
+      for (Map.Entry<Integer, Integer> e : deserialisers.entrySet()) {
+        WritableUtils.writeVInt(out, e.getKey());
+        WritableUtils.writeVInt(out, e.getValue());
+      }
+
+      WritableUtils.writeVInt(out, fileNames.size());
+      for (String fileName : fileNames) {
+        out.writeUTF(fileName);
+      }
+
+      WritableUtils.writeVInt(out, snapshot.size());
+      for (Map.Entry<BlockCacheKey, BucketEntry> entry : snapshot) {
+        BlockCacheKey key = entry.getKey();
+        BucketEntry bucketEntry = entry.getValue();
+        WritableUtils.writeVInt(out, fileIds.get(key.getHfileName()));
+        WritableUtils.writeVLong(out, key.getOffset());
+        out.writeByte(key.isPrimary() ? PRIMARY_REPLICA_FLAG : 0);
+        out.writeByte(key.getBlockType() == null ? -1 : key.getBlockType().ordinal());
+        // Bucket offsets are always multiples of 256, see BucketEntry
+        WritableUtils.writeVLong(out, bucketEntry.offset() >>> 8);
+        WritableUtils.writeVInt(out, bucketEntry.getLength());
+        out.writeByte(bucketEntry.deserialiserIndex);
+        out.writeByte(bucketEntry.getPriority().ordinal());
+        WritableUtils.writeVLong(out, bucketEntry.getAccessCounter());
+        out.writeInt(bucketEntry.getChecksum());
+      }
+      out.flush();
+      // The trailer is not part of what it checksums, so bypass the checked stream.
+      DataOutputStream trailer = new DataOutputStream(bos);
+      trailer.writeLong(crc.getValue());
+      trailer.flush();
+      fos.getFD().sync();
+    }
+    Files.move(tmp.toPath(), path.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    return snapshot.size();
+  }
+
+  /**
+   * Read the checkpoint at <code>path</code>. Nothing is returned unless the whole file
+   * checksums correctly and matches the cache it is being restored into. Where the snapshot
+   * recorded two blocks at the same bucket offset, only the most recently accessed one is kept.
+   * Every returned entry still has to be verified against the IOEngine before it is served.
+   */
+  static Checkpoint read(File path, long capacity, String ioEngineClass) throws IOException {
+    CRC32 crc = new CRC32();
+    try (FileInputStream fis = new FileInputStream(path)) {
+      BufferedInputStream bis = new BufferedInputStream(fis, 64 * 1024);
+      DataInputStream in = new DataInputStream(new CheckedInputStream(bis, crc));
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a bucket cache checkpoint: " + path);
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported bucket cache checkpoint version " + version);
+      }
+      long capacitySize = in.readLong();
+      if (capacitySize != capacity) {
+        throw new IOException("Mismatched cache capacity:" + capacitySize + ", expected: "
+            + capacity);
+      }
+      String ioclass = in.readUTF();
+      if (!ioEngineClass.equals(ioclass)) {
+        throw new IOException("Class name for IO engine mismatch: " + ioclass + ", expected:"
+            + ioEngineClass);
+      }
+
+      UniqueIndexMap<Integer> deserialiserMap = new UniqueIndexMap<>();
+      int deserialiserCount = WritableUtils.readVInt(in);
+      for (int i = 0; i < deserialiserCount; i++) {
+        int index = WritableUtils.readVInt(in);
+        deserialiserMap.restore(index, WritableUtils.readVInt(in));
+      }
+
+      String[] fileNames = new String[WritableUtils.readVInt(in)];
+      for (int i = 0; i < fileNames.length; i++) {
+        fileNames[i] = in.readUTF();
+      }
+
+      BlockType[] blockTypes = BlockType.values();
+      BlockPriority[] priorities = BlockPriority.values();
+      int entryCount = WritableUtils.readVInt(in);
+      ConcurrentHashMap<BlockCacheKey, BucketEntry> backingMap =
+          new ConcurrentHashMap<>(Math.max(16, entryCount));
+      Map<Long, BlockCacheKey> keysByOffset = new HashMap<>(Math.max(16, entryCount));
+      long maxAccessCounter = 0;
+      int duplicateOffsets = 0;
+      for (int i = 0; i < entryCount; i++) {
+        String hfileName = fileNames[WritableUtils.readVInt(in)];
+        long blockOffset = WritableUtils.readVLong(in);
+        boolean primary = (in.readByte() & PRIMARY_REPLICA_FLAG) != 0;
+        byte blockTypeOrdinal = in.readByte();
+        long offset = WritableUtils.readVLong(in) << 8;
+        int length = WritableUtils.readVInt(in);
+        byte deserialiserIndex = in.readByte();
+        BlockPriority priority = priorities[in.readByte()];
+        long accessCounter = WritableUtils.readVLong(in);
+        int checksum = in.readInt();
+
+        BlockCacheKey key = new BlockCacheKey(hfileName, blockOffset, primary,
+            blockTypeOrdinal < 0 ? null : blockTypes[blockTypeOrdinal]);
+        BucketEntry bucketEntry = new BucketEntry(offset, length, accessCounter, priority);
+        bucketEntry.deserialiserIndex = deserialiserIndex;
+        bucketEntry.setChecksum(checksum);
+        bucketEntry.markUnverified();
+
+        BlockCacheKey previous = keysByOffset.get(offset);
+        if (previous != null) {
+          duplicateOffsets++;
+          if (backingMap.get(previous).getAccessCounter() >= accessCounter) {
+            continue;
+          }
+          backingMap.remove(previous);
+        }
+        keysByOffset.put(offset, key);
+        backingMap.put(key, bucketEntry);
+        maxAccessCounter = Math.max(maxAccessCounter, accessCounter);
+      }
+      long expected = crc.getValue();
+      long actual = new DataInputStream(bis).readLong();
+      if (expected != actual) {
+        throw new IOException("Checksum mismatch in bucket cache checkpoint " + path);
+      }
+      return new Checkpoint(deserialiserMap, backingMap, maxAccessCounter, duplicateOffsets);
+    }
+  }
+
+  /**
+   * Checksum of the bytes {@link BucketCache.RAMQueueEntry#writeToCache} puts in the IOEngine
+   * for <code>data</code>; must agree with {@link #checksumOfCached(Cacheable, int)}.
+   */
+  static int checksumOf(Cacheable data) {
+    CRC32 crc = new CRC32();
+    if (data instanceof HFileBlock) {
+      HFileBlock block = (HFileBlock) data;
+      ByteBuff buf = block.getBufferReadOnly();
+      int len = buf.limit();
+      if (buf.hasArray()) {
+        crc.update(buf.array(), buf.arrayOffset(), len);
+      } else {
+        byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK_SIZE, len)];
+        for (int pos = 0; pos < len; pos += chunk.length) {
+          int n = Math.min(chunk.length, len - pos);
+          buf.get(pos, chunk, 0, n);
+          crc.update(chunk, 0, n);
+        }
+      }
+      ByteBuffer metadata = block.getMetaData();
+      crc.update(metadata.array(), metadata.arrayOffset(), metadata.limit());
+    } else {
+      int len = data.getSerializedLength();
+      ByteBuffer bb = ByteBuffer.allocate(len);
+      data.serialize(bb);
+      crc.update(bb.array(), 0, len);
+    }
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Checksum of a block as read back from the IOEngine.
+   * @param length serialized length recorded in the block's BucketEntry
+   */
+  static int checksumOfCached(Cacheable block, int length) {
+    ByteBuffer bb = ByteBuffer.allocate(length);
+    block.serialize(bb);
+    CRC32 crc = new CRC32();
+    crc.update(bb.array(), 0, length);
+    return (int) crc.getValue();
+  }
+}
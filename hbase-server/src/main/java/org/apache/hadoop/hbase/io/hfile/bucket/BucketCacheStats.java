@@ -34,6 +34,9 @@ public class BucketCacheStats extends CacheStats {
   private final LongAdder ioHitTime = new LongAdder();
   private static final long NANO_TIME = TimeUnit.MILLISECONDS.toNanos(1);
   private long lastLogTime = EnvironmentEdgeManager.currentTime();
+  // bucket space taken by cached blocks, and the size of the blocks themselves
+  private volatile long allocatedSize;
+  private volatile long cachedSize;
 
   BucketCacheStats() {
     super("BucketCache");
@@ -42,7 +45,24 @@ public class BucketCacheStats extends CacheStats {
   @Override
   public String toString() {
     return super.toString() + ", ioHitsPerSecond=" + getIOHitsPerSecond() +
-      ", ioTimePerHit=" + getIOTimePerHit();
+      ", ioTimePerHit=" + getIOTimePerHit() + ", fragmentation=" + getFragmentation();
+  }
+
+  void updateFragmentation(long allocatedSize, long cachedSize) {
+    this.allocatedSize = allocatedSize;
+    this.cachedSize = cachedSize;
+  }
+
+  /**
+   * @return the share of the bucket space taken by cached blocks that the blocks do not use,
+   *         because their bucket size is larger than they are
+   */
+  public double getFragmentation() {
+    long allocated = allocatedSize;
+    if (allocated <= 0) {
+      return 0;
+    }
+    return Math.max(0, 1 - (double) cachedSize / allocated);
   }
 
   public void ioHit(long time) {
@@ -0,0 +1,842 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A {@link ConcurrentMap} from {@link BlockCacheKey} to {@link BucketEntry} that keeps its
+ * entries in direct memory instead of as objects on the java heap, for caches holding so many
+ * blocks that the keys and entries of a ConcurrentHashMap would take gigabytes of heap.
+ *
+ * <p>HFile names are interned to a numeric id, so an entry is the (file id, block offset) key
+ * plus the bucket offset, length, priority, access counter and the rest of the BucketEntry
+ * packed into a fixed size slot of an open addressing, linear probing table. The map is split
+ * into segments, each guarded by a read/write lock and grown by doubling. File ids are dropped
+ * with the last block of their file and never handed out again. Each file also keeps the offsets
+ * of its blocks in a direct memory list, so its blocks can be found without scanning the tables.
+ *
+ * <p>Lookups materialize a short lived BucketEntry whose mutators write through to the slot as
+ * long as it still holds the same block. Reference counts and the evict-when-released mark only
+ * live on the returned object, so this map must not back a cache whose IOEngine hands out
+ * shared memory. Iteration is weakly consistent, a segment at a time.
+ */
+@InterfaceAudience.Private
+class OffHeapBackingMap extends AbstractMap<BlockCacheKey, BucketEntry>
+    implements ConcurrentMap<BlockCacheKey, BucketEntry> {
+
+  // Byte offsets of the fields within a slot. A file id of zero marks an empty slot.
+  private static final int FILE_ID = 0;
+  private static final int BLOCK_OFFSET = 8;
+  private static final int META = 16;
+  private static final int LENGTH_CHECKSUM = 24;
+  private static final int ACCESS_COUNTER = 32;
+  private static final int CACHED_TIME = 40;
+  static final int SLOT_SIZE = 48;
+
+  // META packs the bucket offset divided by 256 with the small fields of the entry and key
+  private static final long BUCKET_OFFSET_MASK = (1L << 40) - 1;
+  private static final int DESERIALISER_SHIFT = 40;
+  private static final int PRIORITY_SHIFT = 48;
+  private static final long PRIORITY_MASK = 0x3L << PRIORITY_SHIFT;
+  private static final int BLOCK_TYPE_SHIFT = 50;
+  private static final long PRIMARY_BIT = 1L << 56;
+  private static final long UNVERIFIED_BIT = 1L << 57;
+
+  static final int DEFAULT_SEGMENTS = 64;
+  private static final float LOAD_FACTOR = 0.75f;
+  private static final int MIN_SEGMENT_CAPACITY = 16;
+  private static final int MAX_INITIAL_SEGMENT_CAPACITY = 1 << 16;
+  // Keeps a segment's table below 2GB
+  private static final int MAX_SEGMENT_CAPACITY = 1 << 25;
+  private static final int MIN_OFFSETS_CAPACITY = 16;
+
+  private static final BlockPriority[] PRIORITIES = BlockPriority.values();
+  private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+  private final Segment[] segments;
+
+  private final ConcurrentHashMap<String, HFileRef> filesByName = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Long, HFileRef> filesById = new ConcurrentHashMap<>();
+  // Guarded by this
+  private long nextFileId = 1;
+
+  OffHeapBackingMap(int expectedEntries) {
+    this(expectedEntries, DEFAULT_SEGMENTS);
+  }
+
+  OffHeapBackingMap(int expectedEntries, int concurrency) {
+    int segmentCount = tableSizeFor(Math.max(1, concurrency), Integer.MAX_VALUE);
+    int perSegment = (int) Math.ceil(Math.max(0, expectedEntries) / LOAD_FACTOR / segmentCount);
+    int capacity = Math.max(MIN_SEGMENT_CAPACITY,
+      tableSizeFor(perSegment, MAX_INITIAL_SEGMENT_CAPACITY));
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(capacity);
+    }
+  }
+
+  private static int tableSizeFor(int n, int max) {
+    if (n >= max) {
+      return max;
+    }
+    return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+  }
+
+  private static long hash(long fileId, long offset) {
+    long h = fileId * 0x9E3779B97F4A7C15L + offset;
+    h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+    return h ^ (h >>> 33);
+  }
+
+  private Segment segmentFor(long hash) {
+    // The low bits pick the slot within the segment
+    return segments[(int) (hash >>> 32) & (segments.length - 1)];
+  }
+
+  /**
+   * An interned HFile name, the number of blocks in the map which refer to it and the offsets
+   * those blocks were put at. Guarded by the map.
+   */
+  private static final class HFileRef {
+    final String name;
+    final long id;
+    int blocks;
+    // Removals are not reflected, so the list may hold offsets of blocks no longer in the map,
+    // and repeats, until it fills up and is sorted and deduplicated. The offsets of the blocks of
+    // one file are a fixed set, so it never holds more than the file has blocks.
+    ByteBuffer offsets = allocateOffsets(MIN_OFFSETS_CAPACITY);
+    int offsetCount;
+
+    HFileRef(String name, long id) {
+      this.name = name;
+      this.id = id;
+    }
+
+    void addOffset(long offset) {
+      if (offsetCount == offsets.capacity() / 8) {
+        compactOffsets();
+        if (offsetCount > offsets.capacity() / 8 / 2) {
+          ByteBuffer grown = allocateOffsets(offsets.capacity() / 8 * 2);
+          for (int i = 0; i < offsetCount; i++) {
+            grown.putLong(i * 8, offsets.getLong(i * 8));
+          }
+          offsets = grown;
+        }
+      }
+      offsets.putLong(offsetCount++ * 8, offset);
+    }
+
+    /**
+     * Sorts and deduplicates the offsets.
+     * @return the offsets
+     */
+    long[] compactOffsets() {
+      long[] sorted = new long[offsetCount];
+      for (int i = 0; i < offsetCount; i++) {
+        sorted[i] = offsets.getLong(i * 8);
+      }
+      Arrays.sort(sorted);
+      int unique = 0;
+      for (int i = 0; i < sorted.length; i++) {
+        if (unique == 0 || sorted[i] != sorted[unique - 1]) {
+          sorted[unique] = sorted[i];
+          offsets.putLong(unique * 8, sorted[i]);
+          unique++;
+        }
+      }
+      offsetCount = unique;
+      return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+    }
+  }
+
+  private static ByteBuffer allocateOffsets(int capacity) {
+    return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Counts a block against its file, and records its offset before the block is put so that
+   * {@link #keysOf(String)} always sees it.
+   */
+  private synchronized HFileRef acquireFile(String name, long offset) {
+    HFileRef ref = filesByName.get(name);
+    if (ref == null) {
+      ref = new HFileRef(name, nextFileId++);
+      filesByName.put(name, ref);
+      filesById.put(ref.id, ref);
+    }
+    ref.blocks++;
+    ref.addOffset(offset);
+    return ref;
+  }
+
+  private synchronized void releaseFile(long id) {
+    HFileRef ref = filesById.get(id);
+    if (ref != null && --ref.blocks == 0) {
+      filesById.remove(id);
+      filesByName.remove(ref.name);
+    }
+  }
+
+  private HFileRef fileOf(Object key) {
+    if (!(key instanceof BlockCacheKey)) {
+      return null;
+    }
+    String name = ((BlockCacheKey) key).getHfileName();
+    return name == null ? null : filesByName.get(name);
+  }
+
+  @Override
+  public BucketEntry get(Object key) {
+    HFileRef ref = fileOf(key);
+    if (ref == null) {
+      return null;
+    }
+    long offset = ((BlockCacheKey) key).getOffset();
+    long h = hash(ref.id, offset);
+    Segment segment = segmentFor(h);
+    segment.lock.readLock().lock();
+    try {
+      int slot = segment.find(ref.id, offset, h);
+      return slot < 0 ? null : segment.entryAt(slot);
+    } finally {
+      segment.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    HFileRef ref = fileOf(key);
+    if (ref == null) {
+      return false;
+    }
+    long offset = ((BlockCacheKey) key).getOffset();
+    long h = hash(ref.id, offset);
+    Segment segment = segmentFor(h);
+    segment.lock.readLock().lock();
+    try {
+      return segment.find(ref.id, offset, h) >= 0;
+    } finally {
+      segment.lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public BucketEntry put(BlockCacheKey key, BucketEntry value) {
+    return put(key, value, true);
+  }
+
+  @Override
+  public BucketEntry putIfAbsent(BlockCacheKey key, BucketEntry value) {
+    return put(key, value, false);
+  }
+
+  private BucketEntry put(BlockCacheKey key, BucketEntry value, boolean overwrite) {
+    if (key.getHfileName() == null || value == null) {
+      throw new NullPointerException();
+    }
+    HFileRef ref = acquireFile(key.getHfileName(), key.getOffset());
+    long h = hash(ref.id, key.getOffset());
+    Segment segment = segmentFor(h);
+    BucketEntry previous = null;
+    segment.lock.writeLock().lock();
+    try {
+      int slot = segment.find(ref.id, key.getOffset(), h);
+      if (slot < 0) {
+        segment.insert(ref.id, key, h, value);
+      } else {
+        previous = segment.entryAt(slot);
+        if (overwrite) {
+          segment.write(slot, ref.id, key, value);
+        }
+      }
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+    if (previous != null) {
+      // The key was counted against its file already
+      releaseFile(ref.id);
+    }
+    return previous;
+  }
+
+  @Override
+  public BucketEntry remove(Object key) {
+    return remove(key, null, false);
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    return value instanceof BucketEntry && remove(key, (BucketEntry) value, true) != null;
+  }
+
+  private BucketEntry remove(Object key, BucketEntry expected, boolean conditional) {
+    HFileRef ref = fileOf(key);
+    if (ref == null) {
+      return null;
+    }
+    long offset = ((BlockCacheKey) key).getOffset();
+    long h = hash(ref.id, offset);
+    Segment segment = segmentFor(h);
+    BucketEntry removed;
+    segment.lock.writeLock().lock();
+    try {
+      int slot = segment.find(ref.id, offset, h);
+      if (slot < 0 || (conditional && !segment.holds(slot, expected))) {
+        return null;
+      }
+      removed = segment.entryAt(slot);
+      segment.delete(slot);
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+    releaseFile(ref.id);
+    return removed;
+  }
+
+  @Override
+  public boolean replace(BlockCacheKey key, BucketEntry oldValue, BucketEntry newValue) {
+    if (oldValue == null || newValue == null) {
+      throw new NullPointerException();
+    }
+    HFileRef ref = fileOf(key);
+    if (ref == null) {
+      return false;
+    }
+    long h = hash(ref.id, key.getOffset());
+    Segment segment = segmentFor(h);
+    segment.lock.writeLock().lock();
+    try {
+      int slot = segment.find(ref.id, key.getOffset(), h);
+      if (slot < 0 || !segment.holds(slot, oldValue)) {
+        return false;
+      }
+      segment.write(slot, ref.id, key, newValue);
+      return true;
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public BucketEntry replace(BlockCacheKey key, BucketEntry value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    HFileRef ref = fileOf(key);
+    if (ref == null) {
+      return null;
+    }
+    long h = hash(ref.id, key.getOffset());
+    Segment segment = segmentFor(h);
+    segment.lock.writeLock().lock();
+    try {
+      int slot = segment.find(ref.id, key.getOffset(), h);
+      if (slot < 0) {
+        return null;
+      }
+      BucketEntry previous = segment.entryAt(slot);
+      segment.write(slot, ref.id, key, value);
+      return previous;
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (Segment segment : segments) {
+      if (segment.size > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drop every entry. Not atomic with respect to concurrent writers.
+   */
+  @Override
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.lock.writeLock().lock();
+      try {
+        segment.allocate(MIN_SEGMENT_CAPACITY);
+        segment.size = 0;
+      } finally {
+        segment.lock.writeLock().unlock();
+      }
+    }
+    synchronized (this) {
+      filesByName.clear();
+      filesById.clear();
+    }
+  }
+
+  /**
+   * Collects the keys of the blocks of one HFile, looking up each offset recorded for the file.
+   * That is O(1) for a file without cached blocks and otherwise proportional to the number of
+   * blocks of the file that were cached, not to the size of the map.
+   * @return a modifiable list of the keys found, empty if the file has no cached blocks
+   */
+  List<BlockCacheKey> keysOf(String hfileName) {
+    List<BlockCacheKey> keys = new ArrayList<>();
+    HFileRef ref = filesByName.get(hfileName);
+    if (ref == null) {
+      return keys;
+    }
+    long[] offsets;
+    synchronized (this) {
+      offsets = ref.compactOffsets();
+    }
+    for (long offset : offsets) {
+      long h = hash(ref.id, offset);
+      Segment segment = segmentFor(h);
+      segment.lock.readLock().lock();
+      try {
+        int slot = segment.find(ref.id, offset, h);
+        if (slot >= 0) {
+          keys.add(segment.keyAt(slot, ref.name));
+        }
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+    }
+    return keys;
+  }
+
+  @Override
+  public Set<Map.Entry<BlockCacheKey, BucketEntry>> entrySet() {
+    return new AbstractSet<Map.Entry<BlockCacheKey, BucketEntry>>() {
+      @Override
+      public Iterator<Map.Entry<BlockCacheKey, BucketEntry>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return OffHeapBackingMap.this.size();
+      }
+
+      @Override
+      public void clear() {
+        OffHeapBackingMap.this.clear();
+      }
+    };
+  }
+
+  /**
+   * @return bytes of direct memory taken by the tables and the offset lists of the files
+   */
+  long getOffHeapSize() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += (long) segment.capacity() * SLOT_SIZE;
+    }
+    synchronized (this) {
+      for (HFileRef ref : filesById.values()) {
+        size += ref.offsets.capacity();
+      }
+    }
+    return size;
+  }
+
+  @VisibleForTesting
+  int getFileCount() {
+    return filesByName.size();
+  }
+
+  private void recordAccess(IndexedEntry entry, boolean promote) {
+    long h = hash(entry.fileId, entry.blockOffset);
+    Segment segment = segmentFor(h);
+    // The counter is only a hint for eviction; racing writers may land in any order, but a
+    // priority change has to be made under the write lock as it shares a word with other fields
+    ReentrantReadWriteLock.ReadLock lock = segment.lock.readLock();
+    lock.lock();
+    try {
+      int slot = segment.find(entry.fileId, entry.blockOffset, h);
+      if (slot < 0 || !segment.holds(slot, entry)) {
+        return;
+      }
+      segment.table.putLong(slot * SLOT_SIZE + ACCESS_COUNTER, entry.getAccessCounter());
+    } finally {
+      lock.unlock();
+    }
+    if (promote) {
+      updateMeta(entry, PRIORITY_MASK, (long) entry.getPriority().ordinal() << PRIORITY_SHIFT);
+    }
+  }
+
+  private void recordChecksum(IndexedEntry entry, int checksum) {
+    long h = hash(entry.fileId, entry.blockOffset);
+    Segment segment = segmentFor(h);
+    segment.lock.writeLock().lock();
+    try {
+      int slot = segment.find(entry.fileId, entry.blockOffset, h);
+      if (slot >= 0 && segment.holds(slot, entry)) {
+        int pos = slot * SLOT_SIZE + LENGTH_CHECKSUM;
+        long word = segment.table.getLong(pos) & 0xFFFFFFFFL;
+        segment.table.putLong(pos, word | ((long) checksum << 32));
+      }
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+  }
+
+  private void updateMeta(IndexedEntry entry, long mask, long bits) {
+    long h = hash(entry.fileId, entry.blockOffset);
+    Segment segment = segmentFor(h);
+    segment.lock.writeLock().lock();
+    try {
+      int slot = segment.find(entry.fileId, entry.blockOffset, h);
+      if (slot >= 0 && segment.holds(slot, entry)) {
+        int pos = slot * SLOT_SIZE + META;
+        segment.table.putLong(pos, (segment.table.getLong(pos) & ~mask) | bits);
+      }
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * One lock striped part of the map: an open addressing table of {@link #SLOT_SIZE} byte
+   * slots, with backward shift deletion so lookups never have to skip tombstones.
+   */
+  private final class Segment {
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    ByteBuffer table;
+    int mask;
+    volatile int size;
+
+    Segment(int capacity) {
+      allocate(capacity);
+    }
+
+    void allocate(int capacity) {
+      table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+      mask = capacity - 1;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    int find(long fileId, long offset, long h) {
+      int slot = (int) h & mask;
+      while (true) {
+        int pos = slot * SLOT_SIZE;
+        long id = table.getLong(pos + FILE_ID);
+        if (id == 0) {
+          return -1;
+        }
+        if (id == fileId && table.getLong(pos + BLOCK_OFFSET) == offset) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    /**
+     * @return true if the slot still refers to the same bucket as the given entry
+     */
+    boolean holds(int slot, BucketEntry entry) {
+      long meta = table.getLong(slot * SLOT_SIZE + META);
+      return (meta & BUCKET_OFFSET_MASK) == (entry.offset() >>> 8);
+    }
+
+    void insert(long fileId, BlockCacheKey key, long h, BucketEntry value) {
+      if (size + 1 > capacity() * LOAD_FACTOR) {
+        grow();
+      }
+      int slot = (int) h & mask;
+      while (table.getLong(slot * SLOT_SIZE + FILE_ID) != 0) {
+        slot = (slot + 1) & mask;
+      }
+      write(slot, fileId, key, value);
+      size++;
+    }
+
+    void write(int slot, long fileId, BlockCacheKey key, BucketEntry value) {
+      int pos = slot * SLOT_SIZE;
+      long meta = (value.offset() >>> 8) & BUCKET_OFFSET_MASK;
+      meta |= (value.deserialiserIndex & 0xFFL) << DESERIALISER_SHIFT;
+      meta |= (long) value.getPriority().ordinal() << PRIORITY_SHIFT;
+      BlockType blockType = key.getBlockType();
+      meta |= (long) (blockType == null ? 0 : blockType.ordinal() + 1) << BLOCK_TYPE_SHIFT;
+      if (key.isPrimary()) {
+        meta |= PRIMARY_BIT;
+      }
+      if (value.isUnverified()) {
+        meta |= UNVERIFIED_BIT;
+      }
+      table.putLong(pos + BLOCK_OFFSET, key.getOffset());
+      table.putLong(pos + META, meta);
+      table.putLong(pos + LENGTH_CHECKSUM,
+        ((long) value.getChecksum() << 32) | (value.getLength() & 0xFFFFFFFFL));
+      table.putLong(pos + ACCESS_COUNTER, value.getAccessCounter());
+      table.putLong(pos + CACHED_TIME, value.getCachedTime());
+      table.putLong(pos + FILE_ID, fileId);
+    }
+
+    void delete(int slot) {
+      int hole = slot;
+      int next = slot;
+      while (true) {
+        next = (next + 1) & mask;
+        int pos = next * SLOT_SIZE;
+        long id = table.getLong(pos + FILE_ID);
+        if (id == 0) {
+          break;
+        }
+        int home = (int) hash(id, table.getLong(pos + BLOCK_OFFSET)) & mask;
+        // Leave the entry where it is if its home slot lies cyclically in (hole, next]
+        boolean reachable = hole <= next ? hole < home && home <= next
+            : hole < home || home <= next;
+        if (!reachable) {
+          copy(table, next, table, hole);
+          hole = next;
+        }
+      }
+      table.putLong(hole * SLOT_SIZE + FILE_ID, 0);
+      size--;
+    }
+
+    void grow() {
+      int capacity = capacity();
+      if (capacity >= MAX_SEGMENT_CAPACITY) {
+        if (size + 1 >= capacity) {
+          throw new IllegalStateException("Off-heap bucket cache index segment is full");
+        }
+        return;
+      }
+      ByteBuffer old = table;
+      allocate(capacity << 1);
+      for (int i = 0; i < capacity; i++) {
+        int pos = i * SLOT_SIZE;
+        long id = old.getLong(pos + FILE_ID);
+        if (id == 0) {
+          continue;
+        }
+        int slot = (int) hash(id, old.getLong(pos + BLOCK_OFFSET)) & mask;
+        while (table.getLong(slot * SLOT_SIZE + FILE_ID) != 0) {
+          slot = (slot + 1) & mask;
+        }
+        copy(old, i, table, slot);
+      }
+    }
+
+    IndexedEntry entryAt(int slot) {
+      int pos = slot * SLOT_SIZE;
+      long meta = table.getLong(pos + META);
+      long lengthChecksum = table.getLong(pos + LENGTH_CHECKSUM);
+      IndexedEntry entry = new IndexedEntry(OffHeapBackingMap.this,
+          table.getLong(pos + FILE_ID), table.getLong(pos + BLOCK_OFFSET),
+          (meta & BUCKET_OFFSET_MASK) << 8, (int) lengthChecksum,
+          table.getLong(pos + ACCESS_COUNTER),
+          PRIORITIES[(int) ((meta & PRIORITY_MASK) >>> PRIORITY_SHIFT)],
+          table.getLong(pos + CACHED_TIME), (int) (lengthChecksum >>> 32),
+          (meta & UNVERIFIED_BIT) != 0);
+      entry.deserialiserIndex = (byte) (meta >>> DESERIALISER_SHIFT);
+      return entry;
+    }
+
+    BlockCacheKey keyAt(int slot, String hfileName) {
+      int pos = slot * SLOT_SIZE;
+      long meta = table.getLong(pos + META);
+      int blockType = (int) (meta >>> BLOCK_TYPE_SHIFT) & 0x3F;
+      return new BlockCacheKey(hfileName, table.getLong(pos + BLOCK_OFFSET),
+          (meta & PRIMARY_BIT) != 0, blockType == 0 ? null : BLOCK_TYPES[blockType - 1]);
+    }
+
+    void snapshot(List<Map.Entry<BlockCacheKey, BucketEntry>> entries) {
+      lock.readLock().lock();
+      try {
+        for (int slot = 0; slot <= mask; slot++) {
+          long id = table.getLong(slot * SLOT_SIZE + FILE_ID);
+          if (id == 0) {
+            continue;
+          }
+          HFileRef ref = filesById.get(id);
+          if (ref != null) {
+            entries.add(new SimpleImmutableEntry<>(keyAt(slot, ref.name), entryAt(slot)));
+          }
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+  }
+
+  private static void copy(ByteBuffer from, int fromSlot, ByteBuffer to, int toSlot) {
+    int src = fromSlot * SLOT_SIZE;
+    int dst = toSlot * SLOT_SIZE;
+    for (int i = 0; i < SLOT_SIZE; i += 8) {
+      to.putLong(dst + i, from.getLong(src + i));
+    }
+  }
+
+  /**
+   * Walks the map one segment snapshot at a time.
+   */
+  private final class EntryIterator implements Iterator<Map.Entry<BlockCacheKey, BucketEntry>> {
+    private final List<Map.Entry<BlockCacheKey, BucketEntry>> batch = new ArrayList<>();
+    private int segment = 0;
+    private int position = 0;
+    private Map.Entry<BlockCacheKey, BucketEntry> last;
+
+    @Override
+    public boolean hasNext() {
+      while (position == batch.size()) {
+        if (segment == segments.length) {
+          return false;
+        }
+        batch.clear();
+        position = 0;
+        segments[segment++].snapshot(batch);
+      }
+      return true;
+    }
+
+    @Override
+    public Map.Entry<BlockCacheKey, BucketEntry> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = batch.get(position++);
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      OffHeapBackingMap.this.remove(last.getKey(), last.getValue());
+      last = null;
+    }
+  }
+
+  /**
+   * A copy of a slot handed out by lookups. Updates made through it are written back to the
+   * slot unless the block has been evicted or cached again in the meantime. Two views are
+   * equal when they refer to the same bucket, standing in for the identity comparisons done
+   * against entries of an on-heap map.
+   */
+  static final class IndexedEntry extends BucketEntry {
+    private static final long serialVersionUID = 3211806934066829361L;
+
+    private final transient OffHeapBackingMap map;
+    private final long fileId;
+    private final long blockOffset;
+    private volatile int checksum;
+    private volatile boolean unverified;
+
+    IndexedEntry(OffHeapBackingMap map, long fileId, long blockOffset, long offset, int length,
+        long accessCounter, BlockPriority priority, long cachedTime, int checksum,
+        boolean unverified) {
+      super(offset, length, accessCounter, priority, cachedTime);
+      this.map = map;
+      this.fileId = fileId;
+      this.blockOffset = blockOffset;
+      this.checksum = checksum;
+      this.unverified = unverified;
+    }
+
+    @Override
+    public void access(long accessCounter) {
+      boolean promote = getPriority() == BlockPriority.SINGLE;
+      super.access(accessCounter);
+      map.recordAccess(this, promote);
+    }
+
+    @Override
+    int getChecksum() {
+      return checksum;
+    }
+
+    @Override
+    void setChecksum(int checksum) {
+      this.checksum = checksum;
+      map.recordChecksum(this, checksum);
+    }
+
+    @Override
+    boolean isUnverified() {
+      return unverified;
+    }
+
+    @Override
+    void markUnverified() {
+      this.unverified = true;
+      map.updateMeta(this, UNVERIFIED_BIT, UNVERIFIED_BIT);
+    }
+
+    @Override
+    void markVerified() {
+      this.unverified = false;
+      map.updateMeta(this, UNVERIFIED_BIT, 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof BucketEntry)) {
+        return false;
+      }
+      BucketEntry other = (BucketEntry) obj;
+      return offset() == other.offset() && getLength() == other.getLength();
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(offset());
+    }
+  }
+}
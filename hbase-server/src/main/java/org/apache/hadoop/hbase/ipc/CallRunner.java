@@ -28,6 +28,7 @@ import org.apache.hadoop.hbase.trace.TraceUtil;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.yetus.audience.InterfaceStability;
 import org.apache.hadoop.hbase.exceptions.TimeoutIOException;
+import org.apache.hadoop.hbase.io.hfile.CacheOnlyReads;
 import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandler;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.Message;
@@ -50,6 +51,8 @@ public class CallRunner {
   private RpcServerInterface rpcServer;
   private MonitoredRPCHandler status;
   private volatile boolean sucessful;
+  // Set when an inline run gave up on a block cache miss and the call is still to be run
+  private boolean notCached;
 
   /**
    * On construction, adds the size of this call to the running count of outstanding call sizes.
@@ -91,6 +94,28 @@ public class CallRunner {
     this.rpcServer = null;
   }
 
+  /**
+   * Runs the call on the current thread, typically the one that decoded it, serving its reads
+   * from the block cache only. Only suits calls that are safe to run twice, like Gets.
+   * @return false, without a response having been sent, if the call needed a block that was not
+   *         cached or gave up for another reason. Whatever the attempt registered to run after
+   *         the response has been run already, and the call should then be dispatched to the
+   *         scheduler as any other call.
+   */
+  boolean runIfCached() {
+    setStatus(RpcServer.getStatus());
+    CacheOnlyReads.enter();
+    try {
+      run();
+    } finally {
+      CacheOnlyReads.exit();
+    }
+    if (notCached && call instanceof ServerCall) {
+      ((ServerCall<?>) call).resetCallBack();
+    }
+    return !notCached;
+  }
+
   public void run() {
     try {
       if (call.disconnectSince() >= 0) {
@@ -132,6 +157,11 @@ public class CallRunner {
         RpcServer.LOG.warn("Can not complete this request in time, drop it: " + call);
         return;
       } catch (Throwable e) {
+        if (CacheOnlyReads.isNotCached(e)) {
+          notCached = true;
+          this.status.pause("Waiting for a call");
+          return;
+        }
         if (e instanceof ServerNotRunningYetException) {
           // If ServerNotRunningYetException, don't spew stack trace.
           if (RpcServer.LOG.isTraceEnabled()) {
@@ -181,10 +211,12 @@ public class CallRunner {
       RpcServer.LOG.warn(Thread.currentThread().getName()
           + ": caught: " + StringUtils.stringifyException(e));
     } finally {
-      if (!sucessful) {
-        this.rpcServer.addCallSize(call.getSize() * -1);
+      if (!notCached) {
+        if (!sucessful) {
+          this.rpcServer.addCallSize(call.getSize() * -1);
+        }
+        cleanup();
       }
-      cleanup();
     }
   }
 
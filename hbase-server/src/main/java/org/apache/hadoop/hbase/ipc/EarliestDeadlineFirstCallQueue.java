@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.BoundedPriorityBlockingQueue;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Call queue that hands out calls earliest-deadline-first and drops calls whose client
+ * deadline has already passed instead of executing them.
+ *
+ * The deadline of a call is the one the client attached to it, i.e. the receive time plus the
+ * timeout carried in the request header (see {@link RpcCall#getDeadline()}). Calls that carry
+ * no timeout are given an implicit deadline of receive time plus
+ * {@link RpcExecutor#QUEUE_MAX_CALL_DELAY_CONF_KEY}, so they are not starved by calls that
+ * do. On top of that the delay the {@link PriorityFunction} assigns to a call (e.g. for long
+ * running scans) is added, bounded by the same max delay, the same way the 'deadline' queue
+ * type deprioritizes them.
+ *
+ * Implementing {@link BlockingQueue} interface to be compatible with {@link RpcExecutor}.
+ */
+@InterfaceAudience.Private
+public class EarliestDeadlineFirstCallQueue extends BoundedPriorityBlockingQueue<CallRunner> {
+
+  // metrics (shared across all queues)
+  private final LongAdder numGeneralCallsDropped;
+
+  public EarliestDeadlineFirstCallQueue(int capacity, CallDeadlineComparator comparator,
+      LongAdder numGeneralCallsDropped) {
+    super(capacity, comparator);
+    this.numGeneralCallsDropped = numGeneralCallsDropped;
+  }
+
+  /**
+   * Behaves as {@link BoundedPriorityBlockingQueue#take()}, except it will drop all calls
+   * whose client deadline has already passed.
+   *
+   * @return the call with the earliest deadline
+   * @throws InterruptedException if interrupted while waiting
+   */
+  @Override
+  public CallRunner take() throws InterruptedException {
+    while (true) {
+      CallRunner cr = super.take();
+      if (!dropIfExpired(cr)) {
+        return cr;
+      }
+    }
+  }
+
+  @Override
+  public CallRunner poll() {
+    while (true) {
+      CallRunner cr = super.poll();
+      if (cr == null || !dropIfExpired(cr)) {
+        return cr;
+      }
+    }
+  }
+
+  private boolean dropIfExpired(CallRunner cr) {
+    if (EnvironmentEdgeManager.currentTime() <= cr.getRpcCall().getDeadline()) {
+      return false;
+    }
+    // The client has already given up on this call, running it is wasted work.
+    numGeneralCallsDropped.increment();
+    cr.drop();
+    return true;
+  }
+
+  /**
+   * Orders calls by the deadline the client attached to them, deprioritized by the delay the
+   * {@link PriorityFunction} assigns.
+   */
+  public static class CallDeadlineComparator implements Comparator<CallRunner> {
+    private final static int DEFAULT_MAX_CALL_DELAY = 5000;
+
+    private final PriorityFunction priority;
+    private final int maxDelay;
+
+    public CallDeadlineComparator(final Configuration conf, final PriorityFunction priority) {
+      this.priority = priority;
+      this.maxDelay = conf.getInt(RpcExecutor.QUEUE_MAX_CALL_DELAY_CONF_KEY,
+        DEFAULT_MAX_CALL_DELAY);
+    }
+
+    @Override
+    public int compare(CallRunner a, CallRunner b) {
+      return Long.compare(getDeadline(a.getRpcCall()), getDeadline(b.getRpcCall()));
+    }
+
+    long getDeadline(RpcCall call) {
+      long deadline = call.getDeadline();
+      if (deadline == Long.MAX_VALUE) {
+        deadline = call.getReceiveTime() + maxDelay;
+      }
+      if (priority != null) {
+        deadline += Math.min(priority.getDeadline(call.getHeader(), call.getParam()), maxDelay);
+      }
+      return deadline;
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.hadoop.hbase.ipc;
 
 import org.apache.hadoop.hbase.shaded.io.netty.bootstrap.ServerBootstrap;
+import org.apache.hadoop.hbase.shaded.io.netty.buffer.PooledByteBufAllocator;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.Channel;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelInitializer;
 import org.apache.hadoop.hbase.shaded.io.netty.channel.ChannelOption;
@@ -37,6 +38,7 @@ import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CellScanner;
@@ -65,6 +67,30 @@ public class NettyRpcServer extends RpcServer {
 
   public static final Logger LOG = LoggerFactory.getLogger(NettyRpcServer.class);
 
+  /**
+   * Off heap cells, e.g. from the BucketCache or an off heap memstore, whose serialized size is
+   * at least this are sent straight from where they are rather than copied into the response
+   * cellblock first. Their blocks are released once the response is written. Needs the reservoir
+   * and is off by default.
+   */
+  public static final String CELL_BLOCK_MIN_REFERENCE_SIZE_KEY =
+      "hbase.netty.rpc.server.cellblock.min.reference.size";
+
+  final int minCellBlockReferenceSize;
+
+  /**
+   * Run Gets on the event loop that decoded them, skipping the call queue and the hand off to a
+   * handler thread, as long as every block they read is in the block cache. A Get that misses, or
+   * that would wait for the region lock, is dispatched to the scheduler as usual and runs again
+   * there. Gets on regions with coprocessors are never run inline. Off by default.
+   */
+  public static final String INLINE_CACHED_GETS_KEY = "hbase.netty.rpc.server.inline.cached.gets";
+
+  final boolean inlineCachedGets;
+
+  // Gets that were run inline but gave up and were dispatched to the scheduler
+  final LongAdder inlineGetsDispatched = new LongAdder();
+
   private final InetSocketAddress bindAddress;
 
   private final CountDownLatch closed = new CountDownLatch(1);
@@ -76,6 +102,9 @@ public class NettyRpcServer extends RpcServer {
       boolean reservoirEnabled) throws IOException {
     super(server, name, services, bindAddress, conf, scheduler, reservoirEnabled);
     this.bindAddress = bindAddress;
+    int minReferenceSize = conf.getInt(CELL_BLOCK_MIN_REFERENCE_SIZE_KEY, -1);
+    this.minCellBlockReferenceSize = minReferenceSize > 0 ? minReferenceSize : Integer.MAX_VALUE;
+    this.inlineCachedGets = conf.getBoolean(INLINE_CACHED_GETS_KEY, false);
     EventLoopGroup eventLoopGroup;
     Class<? extends ServerChannel> channelClass;
     if (server instanceof HRegionServer) {
@@ -104,6 +133,11 @@ public class NettyRpcServer extends RpcServer {
             pipeline.addLast("encoder", new NettyRpcServerResponseEncoder(metrics));
           }
         });
+    if (reservoir != null) {
+      // Requests are read into buffers of Netty's channel allocator rather than the reservoir.
+      // Make sure that is the pooled, size classed one, whatever the process wide default is.
+      bootstrap.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+    }
     try {
       serverChannel = bootstrap.bind(this.bindAddress).sync().channel();
       LOG.info("NettyRpcServer bind to address=" + serverChannel.localAddress());
@@ -185,7 +219,7 @@ public class NettyRpcServer extends RpcServer {
       Message param, CellScanner cellScanner, long receiveTime, MonitoredRPCHandler status,
       long startTime, int timeout) throws IOException {
     NettyServerCall fakeCall = new NettyServerCall(-1, service, md, null, param, cellScanner, null,
-        -1, null, receiveTime, timeout, reservoir, cellBlockBuilder, null);
+        -1, null, receiveTime, timeout, reservoir, cellBlockBuilder, null, Integer.MAX_VALUE);
     return call(fakeCall, status);
   }
 }
@@ -37,12 +37,21 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.RPCProtos.RequestHeader
 @InterfaceAudience.Private
 class NettyServerCall extends ServerCall<NettyServerRpcConnection> {
 
+  private final int minCellBlockReferenceSize;
+
   NettyServerCall(int id, BlockingService service, MethodDescriptor md, RequestHeader header,
       Message param, CellScanner cellScanner, NettyServerRpcConnection connection, long size,
       InetAddress remoteAddress, long receiveTime, int timeout,
-      ByteBufferPool reservoir, CellBlockBuilder cellBlockBuilder, CallCleanup reqCleanup) {
+      ByteBufferPool reservoir, CellBlockBuilder cellBlockBuilder, CallCleanup reqCleanup,
+      int minCellBlockReferenceSize) {
     super(id, service, md, header, param, cellScanner, connection, size, remoteAddress,
         receiveTime, timeout, reservoir, cellBlockBuilder, reqCleanup);
+    this.minCellBlockReferenceSize = minCellBlockReferenceSize;
+  }
+
+  @Override
+  protected int getMinCellBlockReferenceSize() {
+    return minCellBlockReferenceSize;
   }
 
   /**
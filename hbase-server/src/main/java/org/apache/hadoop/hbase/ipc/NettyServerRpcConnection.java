@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -33,6 +34,7 @@ import org.apache.hadoop.hbase.nio.SingleByteBuff;
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.BlockingService;
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.Descriptors.MethodDescriptor;
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.Message;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos.GetRequest;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.RPCProtos.RequestHeader;
 
 /**
@@ -43,10 +45,16 @@ import org.apache.hadoop.hbase.shaded.protobuf.generated.RPCProtos.RequestHeader
 class NettyServerRpcConnection extends ServerRpcConnection {
 
   final Channel channel;
+  private final int minCellBlockReferenceSize;
+  private final boolean inlineCachedGets;
+  private final LongAdder inlineGetsDispatched;
 
   NettyServerRpcConnection(NettyRpcServer rpcServer, Channel channel) {
     super(rpcServer);
     this.channel = channel;
+    this.minCellBlockReferenceSize = rpcServer.minCellBlockReferenceSize;
+    this.inlineCachedGets = rpcServer.inlineCachedGets;
+    this.inlineGetsDispatched = rpcServer.inlineGetsDispatched;
     InetSocketAddress inetSocketAddress = ((InetSocketAddress) channel.remoteAddress());
     this.addr = inetSocketAddress.getAddress();
     if (addr == null) {
@@ -103,6 +111,20 @@ class NettyServerRpcConnection extends ServerRpcConnection {
     }
   }
 
+  @Override
+  protected boolean tryRunInline(CallRunner task) {
+    // Connections stay on the event loop they were accepted on, so an inlined Get runs on the
+    // same thread that decoded it and will write its response.
+    if (!inlineCachedGets || !(task.getRpcCall().getParam() instanceof GetRequest)) {
+      return false;
+    }
+    if (task.runIfCached()) {
+      return true;
+    }
+    inlineGetsDispatched.increment();
+    return false;
+  }
+
   @Override
   public synchronized void close() {
     disposeSasl();
@@ -122,7 +144,7 @@ class NettyServerRpcConnection extends ServerRpcConnection {
       CallCleanup reqCleanup) {
     return new NettyServerCall(id, service, md, header, param, cellScanner, this, size,
         remoteAddress, System.currentTimeMillis(), timeout, this.rpcServer.reservoir,
-        this.rpcServer.cellBlockBuilder, reqCleanup);
+        this.rpcServer.cellBlockBuilder, reqCleanup, minCellBlockReferenceSize);
   }
 
   @Override
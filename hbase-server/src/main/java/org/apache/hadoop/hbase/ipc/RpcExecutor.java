@@ -62,9 +62,11 @@ public abstract class RpcExecutor {
   /**
    * The default, 'fifo', has the least friction but is dumb. If set to 'deadline', uses a priority
    * queue and deprioritizes long-running scans. Sorting by priority comes at a cost, reduced
-   * throughput.
+   * throughput. If set to 'edf', calls are ordered by the deadline the client attached to them
+   * and calls whose deadline has already passed are dropped before they are executed.
    */
   public static final String CALL_QUEUE_TYPE_CODEL_CONF_VALUE = "codel";
+  public static final String CALL_QUEUE_TYPE_EDF_CONF_VALUE = "edf";
   public static final String CALL_QUEUE_TYPE_DEADLINE_CONF_VALUE = "deadline";
   public static final String CALL_QUEUE_TYPE_FIFO_CONF_VALUE = "fifo";
   public static final String CALL_QUEUE_TYPE_CONF_KEY = "hbase.ipc.server.callqueue.type";
@@ -139,6 +141,12 @@ public abstract class RpcExecutor {
       queueInitArgs = new Object[] { maxQueueLength, codelTargetDelay, codelInterval,
           codelLifoThreshold, numGeneralCallsDropped, numLifoModeSwitches };
       queueClass = AdaptiveLifoCoDelCallQueue.class;
+    } else if (isEdfQueueType(callQueueType)) {
+      this.name += ".Edf";
+      queueInitArgs = new Object[] { maxQueueLength,
+        new EarliestDeadlineFirstCallQueue.CallDeadlineComparator(conf, this.priority),
+        numGeneralCallsDropped };
+      queueClass = EarliestDeadlineFirstCallQueue.class;
     } else {
       this.name += ".Fifo";
       queueInitArgs = new Object[] { maxQueueLength };
@@ -427,6 +435,10 @@ public abstract class RpcExecutor {
     return callQueueType.equals(CALL_QUEUE_TYPE_CODEL_CONF_VALUE);
   }
 
+  public static boolean isEdfQueueType(final String callQueueType) {
+    return callQueueType.equals(CALL_QUEUE_TYPE_EDF_CONF_VALUE);
+  }
+
   public static boolean isFifoQueueType(final String callQueueType) {
     return callQueueType.equals(CALL_QUEUE_TYPE_FIFO_CONF_VALUE);
   }
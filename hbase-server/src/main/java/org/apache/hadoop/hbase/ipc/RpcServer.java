@@ -44,6 +44,7 @@ import org.apache.hadoop.hbase.Server;
 import org.apache.hadoop.hbase.conf.ConfigurationObserver;
 import org.apache.hadoop.hbase.exceptions.RequestTooBigException;
 import org.apache.hadoop.hbase.io.ByteBufferPool;
+import org.apache.hadoop.hbase.io.hfile.CacheOnlyReads;
 import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandler;
 import org.apache.hadoop.hbase.monitoring.TaskMonitor;
 import org.apache.hadoop.hbase.nio.ByteBuff;
@@ -279,7 +280,9 @@ public abstract class RpcServer implements RpcServerInterface,
       int maxPoolSize = conf.getInt(ByteBufferPool.MAX_POOL_SIZE_KEY,
           conf.getInt(HConstants.REGION_SERVER_HANDLER_COUNT,
               HConstants.DEFAULT_REGION_SERVER_HANDLER_COUNT) * bufsForTwoMB * 2);
-      this.reservoir = new ByteBufferPool(poolBufSize, maxPoolSize);
+      this.reservoir = new ByteBufferPool(poolBufSize, maxPoolSize, true,
+          conf.getInt(ByteBufferPool.MIN_BUFFER_SIZE_KEY, poolBufSize),
+          conf.getBoolean(ByteBufferPool.LEAK_DETECTION_KEY, false));
       this.minSizeForReservoirUse = getMinSizeForReservoirUse(this.reservoir);
     } else {
       reservoir = null;
@@ -320,7 +323,7 @@ public abstract class RpcServer implements RpcServerInterface,
 
   @VisibleForTesting
   static int getMinSizeForReservoirUse(ByteBufferPool pool) {
-    return pool.getBufferSize() / 6;
+    return Math.min(pool.getBufferSize() / 6, pool.getMinBufferSize());
   }
 
   @Override
@@ -454,8 +457,11 @@ public abstract class RpcServer implements RpcServerInterface,
         }
       }
 
-      // increment the number of requests that were exceptions.
-      metrics.exception(e);
+      // increment the number of requests that were exceptions, unless the call gave up running
+      // from the block cache only and will run again
+      if (!CacheOnlyReads.isNotCached(e)) {
+        metrics.exception(e);
+      }
 
       if (e instanceof LinkageError) throw new DoNotRetryIOException(e);
       if (e instanceof IOException) throw (IOException)e;
@@ -621,7 +627,8 @@ public abstract class RpcServer implements RpcServerInterface,
 
   /**
    * This is extracted to a static method for better unit testing. We try to get buffer(s) from pool
-   * as much as possible.
+   * as much as possible. The part of the request smaller than a full buffer goes to the smallest
+   * size class of the pool that holds it.
    *
    * @param pool The ByteBufferPool to use
    * @param minSizeForPoolUse Only for buffer size above this, we will try to use pool. Any buffer
@@ -635,9 +642,10 @@ public abstract class RpcServer implements RpcServerInterface,
     List<ByteBuffer> bbs = new ArrayList<>((reqLen / pool.getBufferSize()) + 1);
     int remain = reqLen;
     ByteBuffer buf = null;
-    while (remain >= minSizeForPoolUse && (buf = pool.getBuffer()) != null) {
+    while (remain >= minSizeForPoolUse
+        && (buf = pool.getBuffer(Math.min(remain, pool.getBufferSize()))) != null) {
       bbs.add(buf);
-      remain -= pool.getBufferSize();
+      remain -= buf.capacity();
     }
     ByteBuffer[] bufsFromPool = null;
     if (bbs.size() > 0) {
@@ -30,6 +30,7 @@ import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.exceptions.RegionMovedException;
 import org.apache.hadoop.hbase.io.ByteBufferListOutputStream;
 import org.apache.hadoop.hbase.io.ByteBufferPool;
+import org.apache.hadoop.hbase.io.DeferredReleases;
 import org.apache.hadoop.hbase.ipc.RpcServer.CallCleanup;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.BlockingService;
@@ -84,6 +85,8 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
   protected final User user;
   protected final InetAddress remoteAddress;
   protected RpcCallback rpcCallback;
+  // Releases of memory the response refers to that rpcCallback held back; see setResponse
+  private List<Runnable> deferredReleases;
 
   private long responseCellSize = 0;
   private long responseBlockSize = 0;
@@ -136,6 +139,10 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
       this.cellBlockStream.releaseResources();
       this.cellBlockStream = null;
     }
+    if (this.deferredReleases != null) {
+      DeferredReleases.run(this.deferredReleases);
+      this.deferredReleases = null;
+    }
     // If the call was run successfuly, we might have already returned the BB
     // back to pool. No worries..Then inputCellBlock will be null
     cleanup();
@@ -200,8 +207,11 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
       List<ByteBuffer> cellBlock = null;
       int cellBlockSize = 0;
       if (this.reservoir != null) {
+        // Wrapping copies the whole response anyway
+        int minReferenceSize =
+            this.connection.useWrap ? Integer.MAX_VALUE : getMinCellBlockReferenceSize();
         this.cellBlockStream = this.cellBlockBuilder.buildCellBlockStream(this.connection.codec,
-          this.connection.compressionCodec, cells, this.reservoir);
+          this.connection.compressionCodec, cells, this.reservoir, minReferenceSize);
         if (this.cellBlockStream != null) {
           cellBlock = this.cellBlockStream.getByteBuffers();
           cellBlockSize = this.cellBlockStream.size();
@@ -248,17 +258,49 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
     }
     this.response = bc;
     // Once a response message is created and set to this.response, this Call can be treated as
-    // done. The Responder thread will do the n/w write of this message back to client.
+    // done. The Responder thread will do the n/w write of this message back to client. The
+    // callback runs now either way, so a scanner is shipped and its lease is back before the
+    // client can send its next call. If the cellblock refers to the memory of the cells, what
+    // the callback would release of it, e.g. the blocks a scanner returns to the BucketCache,
+    // is held back until the response has been written; see done().
     if (this.rpcCallback != null) {
-      try {
-        this.rpcCallback.run();
-      } catch (Exception e) {
-        // Don't allow any exception here to kill this handler thread.
-        RpcServer.LOG.warn("Exception while running the Rpc Callback.", e);
+      if (bc != null && this.cellBlockStream != null && this.cellBlockStream.hasReferences()) {
+        DeferredReleases.begin();
+        try {
+          runCallback();
+        } finally {
+          List<Runnable> releases = DeferredReleases.end();
+          if (releases != null) {
+            if (this.deferredReleases == null) {
+              this.deferredReleases = releases;
+            } else {
+              this.deferredReleases.addAll(releases);
+            }
+          }
+        }
+      } else {
+        runCallback();
       }
     }
   }
 
+  private void runCallback() {
+    try {
+      this.rpcCallback.run();
+    } catch (Exception e) {
+      // Don't allow any exception here to kill this handler thread.
+      RpcServer.LOG.warn("Exception while running the Rpc Callback.", e);
+    }
+  }
+
+  /**
+   * @return the size from which off heap cells are referred to by the response cellblock rather
+   *         than copied into it. The cells then have to stay valid until {@link #done()}.
+   */
+  protected int getMinCellBlockReferenceSize() {
+    return Integer.MAX_VALUE;
+  }
+
   static void setExceptionResponse(Throwable t, String errorMsg,
       ResponseHeader.Builder headerBuilder) {
     ExceptionResponse.Builder exceptionBuilder = ExceptionResponse.newBuilder();
@@ -453,6 +495,17 @@ abstract class ServerCall<T extends ServerRpcConnection> implements RpcCall, Rpc
     this.rpcCallback = callback;
   }
 
+  /**
+   * Runs and forgets the callback set by an attempt to run this call that was given up without a
+   * response, e.g. to close the scanner of an inlined Get, so the call can be run again afresh.
+   */
+  synchronized void resetCallBack() {
+    if (this.rpcCallback != null) {
+      runCallback();
+      this.rpcCallback = null;
+    }
+  }
+
   @Override
   public boolean isRetryImmediatelySupported() {
     return retryImmediatelySupported;
@@ -706,7 +706,11 @@ abstract class ServerRpcConnection implements Closeable {
     ServerCall<?> call = createCall(id, this.service, md, header, param, cellScanner, totalRequestSize,
       this.addr, timeout, this.callCleanup);
 
-    if (!this.rpcServer.scheduler.dispatch(new CallRunner(this.rpcServer, call))) {
+    CallRunner task = new CallRunner(this.rpcServer, call);
+    if (tryRunInline(task)) {
+      return;
+    }
+    if (!this.rpcServer.scheduler.dispatch(task)) {
       this.rpcServer.callQueueSizeInBytes.add(-1 * call.getSize());
       this.rpcServer.metrics.exception(RpcServer.CALL_QUEUE_TOO_BIG_EXCEPTION);
       call.setResponse(null, null, RpcServer.CALL_QUEUE_TOO_BIG_EXCEPTION,
@@ -716,6 +720,15 @@ abstract class ServerRpcConnection implements Closeable {
     }
   }
 
+  /**
+   * Gives the connection a chance to run a call on the thread that decoded it rather than
+   * dispatching it to the scheduler.
+   * @return true if the call was run and needs no dispatching
+   */
+  protected boolean tryRunInline(CallRunner task) {
+    return false;
+  }
+
   protected final RpcResponse getErrorResponse(String msg, Exception e) throws IOException {
     ResponseHeader.Builder headerBuilder = ResponseHeader.newBuilder().setCallId(-1);
     ServerCall.setExceptionResponse(e, msg, headerBuilder);
@@ -20,6 +20,8 @@ package org.apache.hadoop.hbase.regionserver;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +35,11 @@ import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
  * "hbase.busy.policy.aggWindow" milliseconds. The rate is a time-weighted
  * aggregated average of the rate in the current window and the
  * true average rate in the previous window.
- *
+ * <p>
+ * If "hbase.busy.policy.hotspotShare" is set and the region tracks hotspots (see
+ * {@link RegionHotspotTracker}), a region is also split once a single row key prefix takes at
+ * least that fraction of its sampled requests, and the split point is chosen to separate that
+ * prefix from the rest of the region.
  */
 
 @InterfaceAudience.LimitedPrivate(HBaseInterfaceAudience.CONFIG)
@@ -53,6 +59,9 @@ public class BusyRegionSplitPolicy extends IncreasingToUpperBoundRegionSplitPoli
   private long aggregationWindow;
   public static final long DEFAULT_AGGREGATION_WINDOW = 300000;  // 5 minutes
 
+  // Minimum fraction of sampled requests on one key prefix to split it off, 0 to disable
+  private float hotspotShare;
+
   private HRegion region;
   private long prevTime;
   private long startTime;
@@ -71,6 +80,7 @@ public class BusyRegionSplitPolicy extends IncreasingToUpperBoundRegionSplitPoli
     minAge = conf.getLong("hbase.busy.policy.minAge", DEFAULT_MIN_AGE_MS);
     aggregationWindow = conf.getLong("hbase.busy.policy.aggWindow",
         DEFAULT_AGGREGATION_WINDOW);
+    hotspotShare = conf.getFloat("hbase.busy.policy.hotspotShare", 0f);
 
     if (maxBlockedRequests < 0.00001f || maxBlockedRequests > 0.99999f) {
       LOG.warn("Threshold for maximum blocked requests is set too low or too high, "
@@ -119,9 +129,55 @@ public class BusyRegionSplitPolicy extends IncreasingToUpperBoundRegionSplitPoli
       return true;
     }
 
+    byte[] hotSplitPoint = getHotSplitPoint();
+    if (hotSplitPoint != null) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Going to split region " + region.getRegionInfo().getRegionNameAsString()
+            + " at " + Bytes.toStringBinary(hotSplitPoint) + " because of a hot key range: "
+            + region.getHotspotTracker());
+      }
+      return true;
+    }
+
     return false;
   }
 
+  @Override
+  protected byte[] getSplitPoint() {
+    if (region.getExplicitSplitPoint() == null) {
+      byte[] hotSplitPoint = getHotSplitPoint();
+      if (hotSplitPoint != null) {
+        return hotSplitPoint;
+      }
+    }
+    return super.getSplitPoint();
+  }
+
+  /**
+   * @return the start of the hottest key range if that splits the range off the region, else the
+   *         end of it, or null if there is no hot range or it already is the whole region
+   */
+  private byte[] getHotSplitPoint() {
+    RegionHotspotTracker hotspots = region.getHotspotTracker();
+    if (hotspotShare <= 0 || hotspots == null) {
+      return null;
+    }
+    byte[] prefix = hotspots.getHotPrefix(hotspotShare);
+    if (prefix == null) {
+      return null;
+    }
+    RegionInfo regionInfo = region.getRegionInfo();
+    if (regionInfo.containsRow(prefix) && !Bytes.equals(prefix, regionInfo.getStartKey())) {
+      return prefix;
+    }
+    byte[] end = RegionHotspotTracker.endOfRange(prefix);
+    if (end != null && regionInfo.containsRow(end)
+        && !Bytes.equals(end, regionInfo.getStartKey())) {
+      return end;
+    }
+    return null;
+  }
+
   /**
    * Update the blocked request rate based on number of blocked and total write requests in the
    * last aggregation window, or since last call to this method, whichever is farthest in time.
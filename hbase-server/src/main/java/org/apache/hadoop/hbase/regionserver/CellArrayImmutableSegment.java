@@ -21,6 +21,7 @@ package org.apache.hadoop.hbase.regionserver;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.util.ClassSize;
 
@@ -75,6 +76,13 @@ public class CellArrayImmutableSegment extends ImmutableSegment {
     return ClassSize.CELL_ARRAY_MAP_ENTRY;
   }
 
+  /**
+   * @return heap taken by the index: an array slot and a cell object per cell
+   */
+  public long getIndexSize() {
+    return (long) getCellsCount() * (ClassSize.CELL_ARRAY_MAP_ENTRY + KeyValue.FIXED_OVERHEAD);
+  }
+
   @Override
   protected boolean canBeFlattened() {
     return false;
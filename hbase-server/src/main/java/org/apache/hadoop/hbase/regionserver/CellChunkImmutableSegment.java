@@ -88,6 +88,13 @@ public class CellChunkImmutableSegment extends ImmutableSegment {
     return false;
   }
 
+  /**
+   * @return memory taken by the index chunks, on or off heap depending on the chunk pool
+   */
+  public long getIndexSize() {
+    return ((CellChunkMap) getCellSet().getDelegatee()).getChunksSize();
+  }
+
   /////////////////////  PRIVATE METHODS  /////////////////////
   /*------------------------------------------------------------------------*/
   // Create CellSet based on CellChunkMap from compacting iterator
@@ -78,6 +78,17 @@ public class CellChunkMap extends CellFlatMap {
     this.chunks = chunks;
   }
 
+  /**
+   * @return total size of the index chunks backing this map
+   */
+  long getChunksSize() {
+    long size = 0;
+    for (Chunk chunk : chunks) {
+      size += chunk.size;
+    }
+    return size;
+  }
+
   /* To be used by base (CellFlatMap) class only to create a sub-CellFlatMap
   * Should be used only to create only CellChunkMap from CellChunkMap */
   @Override
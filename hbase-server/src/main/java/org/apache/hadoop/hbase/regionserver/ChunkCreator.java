@@ -186,7 +186,8 @@ public class ChunkCreator {
     } else {
       chunk = new OnheapChunk(size, id, pool);
     }
-    if (pool || (chunkIndexType == CompactingMemStore.IndexType.CHUNK_MAP)) {
+    if (pool || (chunkIndexType == CompactingMemStore.IndexType.CHUNK_MAP)
+        || (chunkIndexType == CompactingMemStore.IndexType.ADAPTIVE)) {
       // put the pool chunk into the chunkIdMap so it is not GC-ed
       this.chunkIdMap.put(chunk.getId(), chunk);
     }
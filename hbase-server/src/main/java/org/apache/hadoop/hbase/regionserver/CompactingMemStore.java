@@ -61,9 +61,9 @@ public class CompactingMemStore extends AbstractMemStore {
   // The external setting of the compacting MemStore behaviour
   public static final String COMPACTING_MEMSTORE_INDEX_KEY =
       "hbase.hregion.compacting.memstore.index";
-  // usage of CellArrayMap is default, later it will be decided how to use CellChunkMap
+  // by default the cheaper of CellArrayMap and CellChunkMap is picked for each flat segment
   public static final String COMPACTING_MEMSTORE_INDEX_DEFAULT =
-      String.valueOf(IndexType.ARRAY_MAP);
+      String.valueOf(IndexType.ADAPTIVE);
   // Default fraction of in-memory-flush size w.r.t. flush-to-disk size
   public static final String IN_MEMORY_FLUSH_THRESHOLD_FACTOR_KEY =
       "hbase.memstore.inmemoryflush.threshold.factor";
@@ -92,10 +92,11 @@ public class CompactingMemStore extends AbstractMemStore {
   public enum IndexType {
     CSLM_MAP,   // ConcurrentSkipLisMap
     ARRAY_MAP,  // CellArrayMap
-    CHUNK_MAP   // CellChunkMap
+    CHUNK_MAP,  // CellChunkMap
+    ADAPTIVE    // CellChunkMap or CellArrayMap, see SegmentFactory#chooseIndexType
   }
 
-  private IndexType indexType = IndexType.ARRAY_MAP;  // default implementation
+  private IndexType indexType = IndexType.ADAPTIVE;  // default implementation
 
   public static final long DEEP_OVERHEAD = ClassSize.align( AbstractMemStore.DEEP_OVERHEAD
       + 7 * ClassSize.REFERENCE     // Store, RegionServicesForStores, CompactionPipeline,
@@ -328,6 +329,33 @@ public class CompactingMemStore extends AbstractMemStore {
     return indexType;
   }
 
+  /**
+   * @return memory taken by the CellArrayMap indexes of the segments in the pipeline, including
+   *         the cell objects they keep on heap
+   */
+  public long getArrayMapIndexSize() {
+    long size = 0;
+    for (Segment segment : pipeline.getSegments()) {
+      if (segment instanceof CellArrayImmutableSegment) {
+        size += ((CellArrayImmutableSegment) segment).getIndexSize();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return memory taken by the index chunks of the CellChunkMap segments in the pipeline
+   */
+  public long getChunkMapIndexSize() {
+    long size = 0;
+    for (Segment segment : pipeline.getSegments()) {
+      if (segment instanceof CellChunkImmutableSegment) {
+        size += ((CellChunkImmutableSegment) segment).getIndexSize();
+      }
+    }
+    return size;
+  }
+
   public boolean hasImmutableSegments() {
     return !pipeline.isEmpty();
   }
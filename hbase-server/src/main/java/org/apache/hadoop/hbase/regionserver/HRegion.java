@@ -130,6 +130,7 @@ import org.apache.hadoop.hbase.filter.IncompatibleFilterException;
 import org.apache.hadoop.hbase.io.HFileLink;
 import org.apache.hadoop.hbase.io.HeapSize;
 import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.io.hfile.CacheOnlyReads;
 import org.apache.hadoop.hbase.io.hfile.HFile;
 import org.apache.hadoop.hbase.ipc.CallerDisconnectedException;
 import org.apache.hadoop.hbase.ipc.CoprocessorRpcUtils;
@@ -183,6 +184,7 @@ import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.util.HashedBytes;
 import org.apache.hadoop.hbase.util.NonceKey;
 import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.hbase.util.ReflectionUtils;
 import org.apache.hadoop.hbase.util.ServerRegionReplicaUtil;
 import org.apache.hadoop.hbase.util.Threads;
 import org.apache.hadoop.hbase.wal.WAL;
@@ -279,6 +281,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   private final ConcurrentHashMap<HashedBytes, RowLockContext> lockedRows =
       new ConcurrentHashMap<>();
 
+  // hands out the row locks, by default backed by lockedRows
+  private final RowLockManager rowLockManager;
+
   protected final Map<byte[], HStore> stores =
       new ConcurrentSkipListMap<>(Bytes.BYTES_RAWCOMPARATOR);
 
@@ -314,13 +319,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   final LongAdder compactionsQueued = new LongAdder();
   final LongAdder flushesQueued = new LongAdder();
 
-  private final WAL wal;
+  private volatile WAL wal;
   private final HRegionFileSystem fs;
   protected final Configuration conf;
   private final Configuration baseConf;
   private final int rowLockWaitDuration;
   static final int DEFAULT_ROWLOCK_WAIT_DURATION = 30000;
 
+  /**
+   * The {@link RowLockManager} implementation to use. When unset each locked row gets its own
+   * lock, tracked in {@link #getLockedRows()}.
+   */
+  public static final String ROW_LOCK_MANAGER_CLASS = "hbase.rowlock.manager.class";
+
   // The internal wait duration to acquire a lock before read/update
   // from the region. It is not per row. The purpose of this wait time
   // is to avoid waiting a long time while the region is busy, so that
@@ -346,6 +357,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   // Number of mutations for minibatch processing.
   private final int miniBatchSize;
 
+  // Merges concurrent increments to the same row for families that opt in.
+  private final IncrementCoalescer incrementCoalescer;
+
   // negative number indicates infinite timeout
   static final long DEFAULT_ROW_PROCESSOR_TIMEOUT = 60 * 1000L;
   final ExecutorService rowProcessorExecutor = Executors.newCachedThreadPool();
@@ -664,6 +678,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   private final MetricsRegion metricsRegion;
   private final MetricsRegionWrapperImpl metricsRegionWrapper;
+  // Sampled key-range heat map, null unless hotspot tracking is enabled
+  private final RegionHotspotTracker hotspotTracker;
   private final Durability regionDurability;
   private final boolean regionStatsEnabled;
   // Stores the replication scope of the various column families of the table
@@ -744,6 +760,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
     this.rowLockWaitDuration = conf.getInt("hbase.rowlock.wait.duration",
                     DEFAULT_ROWLOCK_WAIT_DURATION);
+    Class<? extends RowLockManager> rowLockManagerClass =
+        conf.getClass(ROW_LOCK_MANAGER_CLASS, null, RowLockManager.class);
+    this.rowLockManager = rowLockManagerClass == null ? new PerRowLockManager()
+        : ReflectionUtils.newInstance(rowLockManagerClass, conf);
 
     this.isLoadingCfsOnDemandDefault = conf.getBoolean(LOAD_CFS_ON_DEMAND_CONFIG_KEY, true);
     this.htableDescriptor = htd;
@@ -789,6 +809,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
      */
     this.rowProcessorTimeout = conf.getLong(
         "hbase.hregion.row.processor.timeout", DEFAULT_ROW_PROCESSOR_TIMEOUT);
+    this.hotspotTracker = RegionHotspotTracker.create(conf);
     this.regionDurability = htd.getDurability() == Durability.USE_DEFAULT ?
         DEFAULT_DURABILITY : htd.getDurability();
     if (rsServices != null) {
@@ -819,6 +840,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     this.maxCellSize = conf.getLong(HBASE_MAX_CELL_SIZE_KEY, DEFAULT_MAX_CELL_SIZE);
     this.miniBatchSize = conf.getInt(HBASE_REGIONSERVER_MINIBATCH_SIZE,
         DEFAULT_HBASE_REGIONSERVER_MINIBATCH_SIZE);
+    this.incrementCoalescer = new IncrementCoalescer(this, conf);
   }
 
   void setHTableSpecificConf() {
@@ -1266,6 +1288,16 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return numMutationsWithoutWAL.sum();
   }
 
+  /** @return number of increments applied through increment coalescing */
+  public long getCoalescedIncrementsCount() {
+    return incrementCoalescer.getCoalescedIncrements();
+  }
+
+  /** @return number of read-modify-writes done to apply coalesced increments */
+  public long getCoalescedIncrementWritesCount() {
+    return incrementCoalescer.getCoalescedWrites();
+  }
+
   @Override
   public long getDataInMemoryWithoutWAL() {
     return dataInMemoryWithoutWAL.sum();
@@ -1276,6 +1308,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return blockedRequestsCount.sum();
   }
 
+  /**
+   * @return the sampled key-range heat map of this region, or null if hotspot tracking is disabled
+   */
+  public RegionHotspotTracker getHotspotTracker() {
+    return hotspotTracker;
+  }
+
   @Override
   public long getCheckAndMutateChecksPassed() {
     return checkAndMutateChecksPassed.sum();
@@ -1405,6 +1444,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
    */
   public static final long MAX_FLUSH_PER_CHANGES = 1000000000; // 1G
 
+  /**
+   * Conf key for the maximum number of stores of a region written out at the same time by a
+   * flush. The default of 1 writes the stores out one after another.
+   */
+  public static final String FLUSH_STORES_THREADS_MAX = "hbase.hregion.flush.stores.threads.max";
+  public static final int DEFAULT_FLUSH_STORES_THREADS_MAX = 1;
+
   /**
    * Close down this HRegion.  Flush the cache unless abort parameter is true,
    * Shut down each HStore, don't service any more calls.
@@ -1777,6 +1823,55 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return this.wal;
   }
 
+  /**
+   * Moves this region over to append to <code>target</code> instead of its current WAL. The
+   * region is flushed, then flushed again with updates blocked, so that the WAL it leaves holds
+   * no edit of it that is not yet in a store file. Regions with replicated families are not
+   * moved, since replication would then read their edits from two WALs out of order.
+   * @return true if the region now appends to <code>target</code>, false if it was left where it
+   *         was, e.g. because it is closing or another flush was in progress
+   */
+  public boolean switchWAL(WAL target) throws IOException {
+    if (target == this.wal) {
+      return true;
+    }
+    if (this.wal == null || isReadOnly() || this.closing.get()) {
+      return false;
+    }
+    for (int scope : getReplicationScope().values()) {
+      if (scope != HConstants.REPLICATION_SCOPE_LOCAL) {
+        return false;
+      }
+    }
+    // Flush the bulk of the memstore while updates still go on, so they are only blocked while
+    // the edits that came in meanwhile are flushed
+    flushcache(true, false, FlushLifeCycleTracker.DUMMY);
+    lock.readLock().lock();
+    try {
+      if (this.closed.get()) {
+        return false;
+      }
+      updatesLock.writeLock().lock();
+      try {
+        flushcache(true, false, FlushLifeCycleTracker.DUMMY);
+        byte[] encodedRegionName = getRegionInfo().getEncodedNameAsBytes();
+        for (HStore store : stores.values()) {
+          if (this.wal.getEarliestMemStoreSeqNum(encodedRegionName,
+            store.getColumnFamilyDescriptor().getName()) != HConstants.NO_SEQNUM) {
+            return false;
+          }
+        }
+        LOG.info("Switching WAL of " + this + " from " + this.wal + " to " + target);
+        this.wal = target;
+        return true;
+      } finally {
+        updatesLock.writeLock().unlock();
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
   /**
    * @return split policy for this region.
    */
@@ -2581,6 +2676,56 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return false;
   }
 
+  /**
+   * Write out the snapshots of the given stores to files, up to
+   * {@link #FLUSH_STORES_THREADS_MAX} stores at a time. Returns only once every store is done,
+   * whether or not any failed.
+   */
+  private void flushStores(Collection<StoreFlushContext> flushes, MonitoredTask status)
+      throws IOException {
+    int maxThreads = Math.min(flushes.size(),
+      conf.getInt(FLUSH_STORES_THREADS_MAX, DEFAULT_FLUSH_STORES_THREADS_MAX));
+    if (maxThreads <= 1) {
+      for (StoreFlushContext flush : flushes) {
+        flush.flushCache(status);
+      }
+      return;
+    }
+    ThreadPoolExecutor storeFlusherThreadPool =
+      getOpenAndCloseThreadPool(maxThreads, "StoreFlusher-" + getRegionInfo().getShortNameToLog());
+    CompletionService<Void> completionService =
+      new ExecutorCompletionService<>(storeFlusherThreadPool);
+    try {
+      for (final StoreFlushContext flush : flushes) {
+        completionService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            flush.flushCache(status);
+            return null;
+          }
+        });
+      }
+      IOException failure = null;
+      for (int i = 0; i < flushes.size(); i++) {
+        try {
+          completionService.take().get();
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+              : new IOException(e.getCause());
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    } catch (InterruptedException e) {
+      throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+    } finally {
+      storeFlusherThreadPool.shutdownNow();
+    }
+  }
+
   @edu.umd.cs.findbugs.annotations.SuppressWarnings(value="NN_NAKED_NOTIFY",
       justification="Intentional; notify is about completed flush")
   protected FlushResultImpl internalFlushCacheAndCommit(WAL wal, MonitoredTask status,
@@ -2608,9 +2753,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       // just-made new flush store file. The new flushed file is still in the
       // tmp directory.
 
-      for (StoreFlushContext flush : storeFlushCtxs.values()) {
-        flush.flushCache(status);
-      }
+      flushStores(storeFlushCtxs.values(), status);
 
       // Switch snapshot (in memstore) -> new hfile (thus causing
       // all the store scanners to reset/reseek).
@@ -3800,6 +3943,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
         if (!initialized) {
           this.writeRequestsCount.add(batchOp.size());
+          if (hotspotTracker != null && !batchOp.isInReplay()) {
+            for (int i = 0; i < batchOp.size(); i++) {
+              hotspotTracker.recordWrite(batchOp.getMutation(i).getRow());
+            }
+          }
           // validate and prepare batch for write, for MutationBatchOperation it also calls CP
           // prePut()/ preDelete() hooks
           batchOp.checkAndPrepare();
@@ -5573,36 +5721,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
   protected RowLock getRowLockInternal(byte[] row, boolean readLock, final RowLock prevRowLock)
       throws IOException {
-    // create an object to use a a key in the row lock map
-    HashedBytes rowKey = new HashedBytes(row);
-
-    RowLockContext rowLockContext = null;
-    RowLockImpl result = null;
-
-    boolean success = false;
     try (TraceScope scope = TraceUtil.createTrace("HRegion.getRowLock")) {
       TraceUtil.addTimelineAnnotation("Getting a " + (readLock?"readLock":"writeLock"));
-      // Keep trying until we have a lock or error out.
-      // TODO: do we need to add a time component here?
-      while (result == null) {
-        rowLockContext = computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
-        // Now try an get the lock.
-        // This can fail as
-        if (readLock) {
-          // For read lock, if the caller has locked the same row previously, it will not try
-          // to acquire the same read lock. It simply returns the previous row lock.
-          RowLockImpl prevRowLockImpl = (RowLockImpl)prevRowLock;
-          if ((prevRowLockImpl != null) && (prevRowLockImpl.getLock() ==
-              rowLockContext.readWriteLock.readLock())) {
-            success = true;
-            return prevRowLock;
-          }
-          result = rowLockContext.newReadLock();
-        } else {
-          result = rowLockContext.newWriteLock();
-        }
-      }
-
       int timeout = rowLockWaitDuration;
       boolean reachDeadlineFirst = false;
       Optional<RpcCall> call = RpcServer.getCurrentCall();
@@ -5617,10 +5737,16 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         }
       }
 
-      if (timeout <= 0 || !result.getLock().tryLock(timeout, TimeUnit.MILLISECONDS)) {
+      long startNanos = System.nanoTime();
+      RowLock result = rowLockManager.lockRow(row, readLock, prevRowLock, timeout);
+      if (result != prevRowLock && rsServices != null && rsServices.getMetrics() != null) {
+        rsServices.getMetrics().updateRowLockWaitTime(
+          TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+      }
+      if (result == null) {
         TraceUtil.addTimelineAnnotation("Failed to get row lock");
-        String message = "Timed out waiting for lock for row: " + rowKey + " in region "
-            + getRegionInfo().getEncodedName();
+        String message = "Timed out waiting for lock for row: " + Bytes.toStringBinary(row)
+            + " in region " + getRegionInfo().getEncodedName();
         if (reachDeadlineFirst) {
           throw new TimeoutIOException(message);
         } else {
@@ -5628,11 +5754,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
           throw new IOException(message);
         }
       }
-      rowLockContext.setThreadName(Thread.currentThread().getName());
-      success = true;
       return result;
     } catch (InterruptedException ie) {
-      LOG.warn("Thread interrupted waiting for lock on row: " + rowKey);
+      LOG.warn("Thread interrupted waiting for lock on row: " + Bytes.toStringBinary(row));
       InterruptedIOException iie = new InterruptedIOException();
       iie.initCause(ie);
       TraceUtil.addTimelineAnnotation("Interrupted exception getting row lock");
@@ -5647,11 +5771,6 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       ioe.initCause(error);
       TraceUtil.addTimelineAnnotation("Error getting row lock");
       throw ioe;
-    } finally {
-      // Clean up the counts just in case this was the thing keeping the context alive.
-      if (!success && rowLockContext != null) {
-        rowLockContext.cleanUp();
-      }
     }
   }
 
@@ -5669,10 +5788,82 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     return lock.getReadLockCount();
   }
 
+  /**
+   * @return the rows locked through the default {@link RowLockManager}; always empty when
+   *         another one is configured, see {@link #getRowLockManager()}
+   */
   public ConcurrentHashMap<HashedBytes, RowLockContext> getLockedRows() {
     return lockedRows;
   }
 
+  public RowLockManager getRowLockManager() {
+    return rowLockManager;
+  }
+
+  /**
+   * The default {@link RowLockManager}, keeping a {@link RowLockContext} per locked row in
+   * {@link #lockedRows}.
+   */
+  class PerRowLockManager implements RowLockManager {
+    @Override
+    public RowLock lockRow(byte[] row, boolean readLock, RowLock prevRowLock, long timeout)
+        throws InterruptedException {
+      // create an object to use a a key in the row lock map
+      HashedBytes rowKey = new HashedBytes(row);
+
+      RowLockContext rowLockContext = null;
+      RowLockImpl result = null;
+
+      boolean success = false;
+      try {
+        // Keep trying until we have a lock or error out.
+        while (result == null) {
+          rowLockContext = computeIfAbsent(lockedRows, rowKey, () -> new RowLockContext(rowKey));
+          // Now try an get the lock.
+          // This can fail as
+          if (readLock) {
+            // For read lock, if the caller has locked the same row previously, it will not try
+            // to acquire the same read lock. It simply returns the previous row lock.
+            RowLockImpl prevRowLockImpl = (RowLockImpl)prevRowLock;
+            if ((prevRowLockImpl != null) && (prevRowLockImpl.getLock() ==
+                rowLockContext.readWriteLock.readLock())) {
+              success = true;
+              return prevRowLock;
+            }
+            result = rowLockContext.newReadLock();
+          } else {
+            result = rowLockContext.newWriteLock();
+          }
+        }
+        if (timeout <= 0 || !result.getLock().tryLock(timeout, TimeUnit.MILLISECONDS)) {
+          return null;
+        }
+        rowLockContext.setThreadName(Thread.currentThread().getName());
+        success = true;
+        return result;
+      } finally {
+        // Clean up the counts just in case this was the thing keeping the context alive.
+        if (!success && rowLockContext != null) {
+          rowLockContext.cleanUp();
+        }
+      }
+    }
+
+    @Override
+    public int getLockedCount() {
+      return lockedRows.size();
+    }
+
+    @Override
+    public List<String> describeLocks() {
+      List<String> locks = new ArrayList<>(lockedRows.size());
+      for (RowLockContext rowLockContext : lockedRows.values()) {
+        locks.add(rowLockContext.toString());
+      }
+      return locks;
+    }
+  }
+
   @VisibleForTesting
   class RowLockContext {
     private final HashedBytes row;
@@ -6273,6 +6464,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
 
       if (!outResults.isEmpty()) {
         readRequestsCount.increment();
+        if (hotspotTracker != null) {
+          hotspotTracker.recordRead(outResults.get(outResults.size() - 1));
+        }
       }
 
       // If the size limit was reached it means a partial Result is being returned. Returning a
@@ -7306,6 +7500,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
         doProcessRowWithTimeout(processor, now, this, mutations, walEdit, timeout);
         if (!mutations.isEmpty()) {
           writeRequestsCount.add(mutations.size());
+          if (hotspotTracker != null) {
+            for (Mutation m : mutations) {
+              hotspotTracker.recordWrite(m.getRow());
+            }
+          }
           // STEP 5. Call the preBatchMutate hook
           processor.preBatchMutate(this, walEdit);
 
@@ -7468,12 +7667,20 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     checkRow(mutation.getRow(), op.toString());
     checkFamilies(mutation.getFamilyCellMap().keySet());
     this.writeRequestsCount.increment();
+    if (hotspotTracker != null) {
+      hotspotTracker.recordWrite(mutation.getRow());
+    }
     WriteEntry writeEntry = null;
     startRegionOperation(op);
     List<Cell> results = returnResults? new ArrayList<>(mutation.size()): null;
     RowLock rowLock = null;
     MemStoreSizing memstoreAccounting = new MemStoreSizing();
     try {
+      if (op == Operation.INCREMENT && incrementCoalescer.isCoalescable((Increment) mutation)) {
+        // Metrics updated below in the finally block; the batch leader does everything else.
+        return incrementCoalescer.increment((Increment) mutation, nonceGroup, nonce,
+          returnResults);
+      }
       rowLock = getRowLockInternal(mutation.getRow(), false, null);
       lock(this.updatesLock.readLock());
       try {
@@ -7541,6 +7748,132 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     }
   }
 
+  /**
+   * Apply a batch of coalesced increments to one row as a single read-modify-write. Each member
+   * is reckoned in arrival order against the values left by the members before it, so every
+   * caller gets back the result it would have got running alone, but only the final value of
+   * each cell goes to the WAL and MemStore. A member that fails on its own, in a coprocessor pre
+   * hook or because a cell it increments does not hold a long, fails alone and leaves nothing
+   * for the members after it; the rest are applied. The WAL edit carries the strongest
+   * durability asked for by any applied member and the nonce of the first. Completes every member
+   * of the batch.
+   */
+  void applyCoalescedIncrements(IncrementCoalescer.Batch batch) throws IOException {
+    WriteEntry writeEntry = null;
+    RowLock rowLock = null;
+    MemStoreSizing memstoreAccounting = new MemStoreSizing();
+    try {
+      rowLock = getRowLockInternal(batch.getRow(), false, null);
+      List<IncrementCoalescer.PendingIncrement> members = batch.close();
+      lock(this.updatesLock.readLock());
+      try {
+        List<IncrementCoalescer.PendingIncrement> toApply = new ArrayList<>(members.size());
+        List<List<Cell>> results = new ArrayList<>(members.size());
+        Durability effectiveDurability = Durability.SKIP_WAL;
+        // Latest value of each cell touched by the batch so far, by Store and then qualifier.
+        Map<HStore, NavigableMap<byte[], Cell>> latest = new HashMap<>();
+        long now = EnvironmentEdgeManager.currentTime();
+        for (IncrementCoalescer.PendingIncrement pending : members) {
+          Increment increment = pending.getIncrement();
+          List<Cell> memberResults =
+              pending.isReturnResults()? new ArrayList<>(increment.size()): null;
+          // This member's new values, only published to latest once all of its deltas are
+          // reckoned, so that repeated columns within one Increment behave as they do
+          // uncoalesced and a member that fails part way leaves nothing behind.
+          Map<HStore, List<Cell>> memberValues = new HashMap<>();
+          try {
+            Result cpResult = doCoprocessorPreCall(Operation.INCREMENT, increment);
+            if (cpResult != null) {
+              pending.complete(pending.isReturnResults()? cpResult: null);
+              continue;
+            }
+            Durability durability = getEffectiveDurability(increment.getDurability());
+            for (Map.Entry<byte[], List<Cell>> entry : increment.getFamilyCellMap().entrySet()) {
+              HStore store = this.stores.get(entry.getKey());
+              NavigableMap<byte[], Cell> storeLatest = latest.get(store);
+              if (storeLatest == null) {
+                storeLatest = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+              }
+              memberValues.put(store, reckonDeltasByStore(store, Operation.INCREMENT, increment,
+                durability, now, entry.getValue(), memberResults, storeLatest));
+            }
+            if (durability.ordinal() > effectiveDurability.ordinal()) {
+              effectiveDurability = durability;
+            }
+          } catch (IOException | RuntimeException e) {
+            pending.fail(e);
+            continue;
+          }
+          for (Map.Entry<HStore, List<Cell>> entry : memberValues.entrySet()) {
+            NavigableMap<byte[], Cell> storeLatest =
+                latest.computeIfAbsent(entry.getKey(), s -> new TreeMap<>(Bytes.BYTES_COMPARATOR));
+            for (Cell cell : entry.getValue()) {
+              storeLatest.put(CellUtil.cloneQualifier(cell), cell);
+            }
+          }
+          toApply.add(pending);
+          results.add(memberResults);
+        }
+        if (toApply.isEmpty()) {
+          return;
+        }
+        incrementCoalescer.recordBatch(toApply.size());
+        Map<HStore, List<Cell>> forMemStore = new HashMap<>(latest.size());
+        WALEdit walEdit = null;
+        for (Map.Entry<HStore, NavigableMap<byte[], Cell>> entry : latest.entrySet()) {
+          if (entry.getValue().isEmpty()) {
+            continue;
+          }
+          List<Cell> cells = new ArrayList<>(entry.getValue().values());
+          forMemStore.put(entry.getKey(), cells);
+          if (effectiveDurability != Durability.SKIP_WAL) {
+            if (walEdit == null) {
+              walEdit = new WALEdit();
+            }
+            walEdit.getCells().addAll(cells);
+          }
+        }
+        IncrementCoalescer.PendingIncrement first = toApply.get(0);
+        if (walEdit != null && !walEdit.isEmpty()) {
+          writeEntry =
+              doWALAppend(walEdit, effectiveDurability, first.getNonceGroup(), first.getNonce());
+        } else {
+          for (IncrementCoalescer.PendingIncrement pending : toApply) {
+            recordMutationWithoutWal(pending.getIncrement().getFamilyCellMap());
+          }
+          writeEntry = mvcc.begin();
+          updateSequenceId(forMemStore.values(), writeEntry.getWriteNumber());
+        }
+        for (Map.Entry<HStore, List<Cell>> e : forMemStore.entrySet()) {
+          applyToMemStore(e.getKey(), e.getValue(), true, memstoreAccounting);
+        }
+        mvcc.completeAndWait(writeEntry);
+        if (rsServices != null && rsServices.getNonceManager() != null) {
+          for (IncrementCoalescer.PendingIncrement pending : toApply) {
+            rsServices.getNonceManager().addMvccToOperationContext(pending.getNonceGroup(),
+              pending.getNonce(), writeEntry.getWriteNumber());
+          }
+        }
+        writeEntry = null;
+        for (int i = 0; i < toApply.size(); i++) {
+          List<Cell> memberResults = results.get(i);
+          toApply.get(i).complete(
+            memberResults != null? Result.create(memberResults): Result.EMPTY_RESULT);
+        }
+      } finally {
+        this.updatesLock.readLock().unlock();
+      }
+    } finally {
+      if (writeEntry != null) mvcc.complete(writeEntry);
+      if (rowLock != null) {
+        rowLock.release();
+      }
+      if (isFlushSize(addAndGetMemStoreSize(memstoreAccounting))) {
+        requestFlush();
+      }
+    }
+  }
+
   private WriteEntry doWALAppend(WALEdit walEdit, Durability durability, long nonceGroup,
       long nonce)
   throws IOException {
@@ -7669,6 +8002,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   private List<Cell> reckonDeltasByStore(HStore store, Operation op, Mutation mutation,
       Durability effectiveDurability, long now, List<Cell> deltas, List<Cell> results)
       throws IOException {
+    return reckonDeltasByStore(store, op, mutation, effectiveDurability, now, deltas, results,
+      null);
+  }
+
+  /**
+   * @param latest If non-null, values written earlier in the same coalesced batch, by qualifier;
+   *  these take precedence over what is read from the Store, and the Get is skipped altogether
+   *  when every delta has an entry here.
+   * @see #reckonDeltasByStore(HStore, Operation, Mutation, Durability, long, List, List)
+   */
+  private List<Cell> reckonDeltasByStore(HStore store, Operation op, Mutation mutation,
+      Durability effectiveDurability, long now, List<Cell> deltas, List<Cell> results,
+      NavigableMap<byte[], Cell> latest) throws IOException {
     byte[] columnFamily = store.getColumnFamilyDescriptor().getName();
     List<Cell> toApply = new ArrayList<>(deltas.size());
     // Get previous values for all columns in this family.
@@ -7683,7 +8029,23 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       default:
         break;
     }
-    List<Cell> currentValues = get(mutation, store, deltas,null, tr);
+    boolean needGet = latest == null;
+    if (!needGet) {
+      for (Cell delta : deltas) {
+        if (!latest.containsKey(CellUtil.cloneQualifier(delta))) {
+          needGet = true;
+          break;
+        }
+      }
+    }
+    List<Cell> currentValues;
+    if (needGet) {
+      currentValues = get(mutation, store, deltas, null, tr);
+    } else {
+      // Keep the deltas in the order the Get would have left them in.
+      sort(deltas, store.getComparator());
+      currentValues = Collections.emptyList();
+    }
     // Iterate the input columns and update existing values if they were found, otherwise
     // add new column initialized to the delta amount
     int currentValuesIndex = 0;
@@ -7700,6 +8062,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
       } else {
         firstWrite = true;
       }
+      if (latest != null) {
+        Cell latestValue = latest.get(CellUtil.cloneQualifier(delta));
+        if (latestValue != null) {
+          currentValue = latestValue;
+          firstWrite = false;
+        }
+      }
       // Switch on whether this an increment or an append building the new Cell to apply.
       Cell newCell = null;
       MutationType mutationType = null;
@@ -7833,7 +8202,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
   public static final long FIXED_OVERHEAD = ClassSize.align(
       ClassSize.OBJECT +
       ClassSize.ARRAY +
-      50 * ClassSize.REFERENCE + 3 * Bytes.SIZEOF_INT +
+      52 * ClassSize.REFERENCE + 3 * Bytes.SIZEOF_INT +
       (14 * Bytes.SIZEOF_LONG) +
       3 * Bytes.SIZEOF_BOOLEAN);
 
@@ -8073,7 +8442,13 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver, Regi
     if (this.closing.get()) {
       throw new NotServingRegionException(getRegionInfo().getRegionNameAsString() + " is closing");
     }
-    lock(lock.readLock());
+    if (!CacheOnlyReads.isActive()) {
+      lock(lock.readLock());
+    } else if (!lock.readLock().tryLock()) {
+      // A thread that must not block, like an RPC event loop, gives up rather than waits
+      throw CacheOnlyReads.giveUp(
+        "Lock of region " + getRegionInfo().getEncodedName() + " is not free");
+    }
     if (this.closed.get()) {
       lock.readLock().unlock();
       throw new NotServingRegionException(getRegionInfo().getRegionNameAsString() + " is closed");
@@ -155,6 +155,7 @@ import org.apache.hadoop.hbase.util.Threads;
 import org.apache.hadoop.hbase.util.VersionInfo;
 import org.apache.hadoop.hbase.wal.AbstractFSWALProvider;
 import org.apache.hadoop.hbase.wal.NettyAsyncFSWALConfigHelper;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider;
 import org.apache.hadoop.hbase.wal.WAL;
 import org.apache.hadoop.hbase.wal.WALFactory;
 import org.apache.hadoop.hbase.zookeeper.ClusterStatusTracker;
@@ -1825,6 +1826,9 @@ public class HRegionServer extends HasThread implements
     // TODO: I can't follow replication; it has initialize and then later on we start it!
     WALFactory factory = new WALFactory(conf, listeners, serverName.toString());
     this.walFactory = factory;
+    if (factory.getWALProvider() instanceof RegionGroupingProvider) {
+      ((RegionGroupingProvider) factory.getWALProvider()).setRegionWALSwitcher(this::switchWAL);
+    }
     if (this.replicationSourceHandler != null) {
       this.replicationSourceHandler.initialize(this, walFs, logDir, oldLogDir, factory);
     }
@@ -2111,6 +2115,20 @@ public class HRegionServer extends HasThread implements
     return walFactory.getWALs();
   }
 
+  /**
+   * Moves an online region to another WAL, for a WAL provider balancing regions between its WALs.
+   */
+  private boolean switchWAL(String encodedRegionName, WAL target) throws IOException {
+    HRegion region = this.onlineRegions.get(encodedRegionName);
+    if (region == null) {
+      return false;
+    }
+    if (this.walRoller != null) {
+      this.walRoller.addWAL(target);
+    }
+    return region.switchWAL(target);
+  }
+
   @Override
   public WAL getWAL(RegionInfo regionInfo) throws IOException {
     WAL wal;
@@ -175,6 +175,9 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
 
   private final boolean verifyBulkLoads;
 
+  // Whether concurrent increments to this family may be merged; see IncrementCoalescer.
+  private final boolean incrementCoalescing;
+
   private ScanInfo scanInfo;
 
   // TODO: ideally, this should be part of storeFileManager, as we keep passing this to it.
@@ -296,6 +299,7 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
     createCacheConf(family);
 
     this.verifyBulkLoads = conf.getBoolean("hbase.hstore.bulkload.verify", false);
+    this.incrementCoalescing = conf.getBoolean(IncrementCoalescer.INCREMENT_COALESCING_KEY, false);
 
     this.blockingFileCount =
         conf.getInt(BLOCKING_STOREFILES_KEY, DEFAULT_BLOCKING_STOREFILE_COUNT);
@@ -2319,7 +2323,7 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
 
   public static final long FIXED_OVERHEAD =
       ClassSize.align(ClassSize.OBJECT + (17 * ClassSize.REFERENCE) + (11 * Bytes.SIZEOF_LONG)
-              + (5 * Bytes.SIZEOF_INT) + (2 * Bytes.SIZEOF_BOOLEAN));
+              + (5 * Bytes.SIZEOF_INT) + (3 * Bytes.SIZEOF_BOOLEAN));
 
   public static final long DEEP_OVERHEAD = ClassSize.align(FIXED_OVERHEAD
       + ClassSize.OBJECT + ClassSize.REENTRANT_LOCK
@@ -2568,6 +2572,30 @@ public class HStore implements Store, HeapSize, StoreConfigInformation, Propagat
     return this.memstore.isSloppy();
   }
 
+  /**
+   * @return memory taken by CellArrayMap indexes of this store's in-memory flattened segments
+   */
+  public long getMemStoreArrayMapIndexSize() {
+    return memstore instanceof CompactingMemStore ?
+        ((CompactingMemStore) memstore).getArrayMapIndexSize() : 0;
+  }
+
+  /**
+   * @return memory taken by CellChunkMap indexes of this store's in-memory flattened segments
+   */
+  public long getMemStoreChunkMapIndexSize() {
+    return memstore instanceof CompactingMemStore ?
+        ((CompactingMemStore) memstore).getChunkMapIndexSize() : 0;
+  }
+
+  /**
+   * @return true if concurrent increments to this family may be coalesced
+   * @see IncrementCoalescer#INCREMENT_COALESCING_KEY
+   */
+  boolean isIncrementCoalescing() {
+    return incrementCoalescing;
+  }
+
   private void clearCompactedfiles(List<HStoreFile> filesToRemove) throws IOException {
     if (LOG.isTraceEnabled()) {
       LOG.trace("Clearing the compacted file " + filesToRemove + " from this store");
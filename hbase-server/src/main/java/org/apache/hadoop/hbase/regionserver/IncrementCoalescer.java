@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.HashedBytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Merges concurrent {@link Increment}s against the same row into a single read-modify-write.
+ * <p>
+ * Uses flat combining: the first increment to arrive for a row opens a {@link Batch} and becomes
+ * its leader; increments arriving while the leader waits on the row lock join the batch instead
+ * of queueing on the lock themselves. Once the leader holds the row lock it closes the batch and
+ * applies every member in arrival order, handing each caller the value it would have seen had
+ * it run alone, but writing only the final value of each cell to the WAL and MemStore. A hot
+ * counter therefore pays for one Get, one WAL append and one sync per batch rather than per
+ * increment.
+ * <p>
+ * Coalescing is opt-in per column family; see {@link #INCREMENT_COALESCING_KEY}. Only the nonce
+ * of the first member of a batch is recorded in the WAL, so after a region server crash a client
+ * retry of one of the other members is not recognized as a duplicate by nonce recovery. Only
+ * enable coalescing on families where that is acceptable, e.g. approximate counters.
+ */
+@InterfaceAudience.Private
+class IncrementCoalescer {
+
+  /**
+   * Set to true on a column family (or table, or site) to coalesce concurrent increments to
+   * that family. An increment is only coalesced if all of the families it touches have this on.
+   */
+  public static final String INCREMENT_COALESCING_KEY = "hbase.hregion.increment.coalescing";
+
+  /**
+   * How long, in milliseconds, a batch leader waits for more increments to join before trying
+   * for the row lock. Zero means only increments arriving while the leader waits on the lock are
+   * merged, which costs uncontended rows nothing.
+   */
+  public static final String INCREMENT_COALESCING_WINDOW_MS_KEY =
+      "hbase.hregion.increment.coalescing.window.ms";
+  public static final long DEFAULT_INCREMENT_COALESCING_WINDOW_MS = 0;
+
+  private final HRegion region;
+  private final long windowMs;
+  private final ConcurrentHashMap<HashedBytes, Batch> openBatches = new ConcurrentHashMap<>();
+
+  // Increments applied through here, and the read-modify-writes done to apply them. The ratio
+  // of the two is the coalescing ratio.
+  private final LongAdder coalescedIncrements = new LongAdder();
+  private final LongAdder coalescedWrites = new LongAdder();
+
+  IncrementCoalescer(HRegion region, Configuration conf) {
+    this.region = region;
+    this.windowMs = conf.getLong(INCREMENT_COALESCING_WINDOW_MS_KEY,
+      DEFAULT_INCREMENT_COALESCING_WINDOW_MS);
+  }
+
+  /**
+   * @return true if <code>increment</code> may be merged with other increments; all of its
+   *         families must have coalescing enabled and it must not be restricted to a time range.
+   */
+  boolean isCoalescable(Increment increment) {
+    if (!increment.getTimeRange().isAllTime()) {
+      return false;
+    }
+    for (byte[] family : increment.getFamilyCellMap().keySet()) {
+      HStore store = region.getStore(family);
+      if (store == null || !store.isIncrementCoalescing()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Apply <code>increment</code>, possibly together with concurrent increments to the same row.
+   * Blocks until the batch it joined has been applied.
+   */
+  Result increment(Increment increment, long nonceGroup, long nonce, boolean returnResults)
+      throws IOException {
+    PendingIncrement pending = new PendingIncrement(increment, nonceGroup, nonce, returnResults);
+    Batch batch = join(new HashedBytes(increment.getRow()), pending);
+    if (batch != null) {
+      // We opened the batch so it is ours to apply.
+      lead(batch);
+    }
+    return pending.await();
+  }
+
+  /**
+   * @return the batch if <code>pending</code> opened a new one and so must lead it, else null.
+   */
+  private Batch join(HashedBytes row, PendingIncrement pending) {
+    while (true) {
+      Batch batch = openBatches.get(row);
+      if (batch != null) {
+        if (batch.add(pending)) {
+          return null;
+        }
+        // Closed under us. Drop it from the map in case its leader has not yet, and retry.
+        openBatches.remove(row, batch);
+        continue;
+      }
+      batch = new Batch(row, pending);
+      if (openBatches.putIfAbsent(row, batch) == null) {
+        return batch;
+      }
+    }
+  }
+
+  private void lead(Batch batch) {
+    try {
+      if (windowMs > 0) {
+        Thread.sleep(windowMs);
+      }
+      region.applyCoalescedIncrements(batch);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      batch.fail((InterruptedIOException) new InterruptedIOException().initCause(e));
+    } catch (Throwable t) {
+      batch.fail(t);
+    }
+  }
+
+  void recordBatch(int size) {
+    coalescedWrites.increment();
+    coalescedIncrements.add(size);
+  }
+
+  long getCoalescedIncrements() {
+    return coalescedIncrements.sum();
+  }
+
+  long getCoalescedWrites() {
+    return coalescedWrites.sum();
+  }
+
+  /**
+   * An increment waiting for its batch to be applied.
+   */
+  static final class PendingIncrement {
+    private final Increment increment;
+    private final long nonceGroup;
+    private final long nonce;
+    private final boolean returnResults;
+    private final CompletableFuture<Result> future = new CompletableFuture<>();
+
+    PendingIncrement(Increment increment, long nonceGroup, long nonce, boolean returnResults) {
+      this.increment = increment;
+      this.nonceGroup = nonceGroup;
+      this.nonce = nonce;
+      this.returnResults = returnResults;
+    }
+
+    Increment getIncrement() {
+      return increment;
+    }
+
+    long getNonceGroup() {
+      return nonceGroup;
+    }
+
+    long getNonce() {
+      return nonce;
+    }
+
+    boolean isReturnResults() {
+      return returnResults;
+    }
+
+    void complete(Result result) {
+      future.complete(result);
+    }
+
+    void fail(Throwable t) {
+      future.completeExceptionally(t);
+    }
+
+    Result await() throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  /**
+   * Increments to one row that will be applied together. Open until the leader closes it after
+   * taking the row lock.
+   */
+  final class Batch {
+    private final HashedBytes row;
+    private final List<PendingIncrement> members = new ArrayList<>();
+    private boolean closed = false;
+
+    private Batch(HashedBytes row, PendingIncrement leader) {
+      this.row = row;
+      this.members.add(leader);
+    }
+
+    byte[] getRow() {
+      return row.getBytes();
+    }
+
+    private synchronized boolean add(PendingIncrement pending) {
+      if (closed) {
+        return false;
+      }
+      members.add(pending);
+      return true;
+    }
+
+    /**
+     * Stop accepting new members. Call with the row lock held so that anything arriving later
+     * is applied strictly after this batch.
+     * @return the members of this batch in arrival order
+     */
+    List<PendingIncrement> close() {
+      synchronized (this) {
+        closed = true;
+      }
+      openBatches.remove(row, this);
+      return Collections.unmodifiableList(members);
+    }
+
+    private void fail(Throwable t) {
+      for (PendingIncrement pending : close()) {
+        pending.fail(t);
+      }
+    }
+  }
+}
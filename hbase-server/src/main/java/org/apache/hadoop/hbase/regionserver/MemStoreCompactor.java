@@ -204,6 +204,9 @@ public class MemStoreCompactor {
 
     ImmutableSegment result = null;
     MemStoreSegmentsIterator iterator = null;
+    CompactingMemStore.IndexType idxType = SegmentFactory.instance().chooseIndexType(
+        compactingMemStore.getIndexType(), versionedList.getNumOfCells(),
+        versionedList.getStoreSegments());
 
     switch (action) {
       case COMPACT:
@@ -213,7 +216,7 @@ public class MemStoreCompactor {
 
         result = SegmentFactory.instance().createImmutableSegmentByCompaction(
           compactingMemStore.getConfiguration(), compactingMemStore.getComparator(), iterator,
-          versionedList.getNumOfCells(), compactingMemStore.getIndexType(), action);
+          versionedList.getNumOfCells(), idxType, action);
         iterator.close();
         break;
       case MERGE:
@@ -224,8 +227,7 @@ public class MemStoreCompactor {
 
         result = SegmentFactory.instance().createImmutableSegmentByMerge(
           compactingMemStore.getConfiguration(), compactingMemStore.getComparator(), iterator,
-          versionedList.getNumOfCells(), versionedList.getStoreSegments(),
-          compactingMemStore.getIndexType(), action);
+          versionedList.getNumOfCells(), versionedList.getStoreSegments(), idxType, action);
         iterator.close();
         break;
       default:
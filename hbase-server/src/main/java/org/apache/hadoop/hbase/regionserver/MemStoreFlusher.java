@@ -29,11 +29,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -49,6 +51,7 @@ import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 import org.apache.hadoop.hbase.util.HasThread;
 import org.apache.hadoop.hbase.util.ServerRegionReplicaUtil;
 import org.apache.hadoop.hbase.util.Threads;
+import org.apache.hadoop.hbase.wal.WAL;
 import org.apache.hadoop.ipc.RemoteException;
 import org.apache.hadoop.util.StringUtils.TraditionalBinaryPrefix;
 import org.apache.htrace.core.TraceScope;
@@ -69,6 +72,31 @@ import org.slf4j.LoggerFactory;
 class MemStoreFlusher implements FlushRequester {
   private static final Logger LOG = LoggerFactory.getLogger(MemStoreFlusher.class);
 
+  /**
+   * Set to true to pick the region to flush under global memstore pressure by a score rather
+   * than by memstore size alone. See {@link #flushScore(long, double, double, double)}.
+   */
+  static final String PRESSURE_FLUSH_SCORING_KEY = "hbase.regionserver.flush.pressure.scoring";
+  static final boolean DEFAULT_PRESSURE_FLUSH_SCORING = false;
+
+  /**
+   * How much more a region holding the oldest unflushed WAL edits is worth flushing than a
+   * region of the same size holding the newest ones. Flushing the regions that pin the oldest
+   * WAL files lets those files be archived.
+   */
+  static final String PRESSURE_FLUSH_WAL_WEIGHT_KEY =
+      "hbase.regionserver.flush.pressure.wal.weight";
+  static final double DEFAULT_PRESSURE_FLUSH_WAL_WEIGHT = 1.0;
+
+  /**
+   * How many flush handlers may flush regions for global memstore pressure at the same time
+   * while updates are blocked above the high water mark. Below it one region is flushed at a
+   * time, as before.
+   */
+  static final String PRESSURE_FLUSH_CONCURRENCY_KEY =
+      "hbase.regionserver.flush.pressure.concurrency";
+  static final int DEFAULT_PRESSURE_FLUSH_CONCURRENCY = 1;
+
   private Configuration conf;
   // These two data members go together.  Any entry in the one must have
   // a corresponding entry in the other.
@@ -87,6 +115,13 @@ class MemStoreFlusher implements FlushRequester {
   private final FlushHandler[] flushHandlers;
   private List<FlushRequestListener> flushRequestListeners = new ArrayList<>(1);
 
+  private final boolean pressureFlushScoring;
+  private final double pressureFlushWalWeight;
+  private final int pressureFlushConcurrency;
+  // Regions being flushed for global pressure, so concurrent handlers pick different ones
+  private final Set<HRegion> regionsFlushingForPressure = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger pressureFlushesInProgress = new AtomicInteger();
+
   /**
    * @param conf
    * @param server
@@ -102,6 +137,12 @@ class MemStoreFlusher implements FlushRequester {
       90000);
     int handlerCount = conf.getInt("hbase.hstore.flusher.count", 2);
     this.flushHandlers = new FlushHandler[handlerCount];
+    this.pressureFlushScoring =
+        conf.getBoolean(PRESSURE_FLUSH_SCORING_KEY, DEFAULT_PRESSURE_FLUSH_SCORING);
+    this.pressureFlushWalWeight =
+        conf.getDouble(PRESSURE_FLUSH_WAL_WEIGHT_KEY, DEFAULT_PRESSURE_FLUSH_WAL_WEIGHT);
+    this.pressureFlushConcurrency = Math.max(1, Math.min(handlerCount,
+      conf.getInt(PRESSURE_FLUSH_CONCURRENCY_KEY, DEFAULT_PRESSURE_FLUSH_CONCURRENCY)));
     LOG.info("globalMemStoreLimit="
         + TraditionalBinaryPrefix
             .long2String(this.server.getRegionServerAccounting().getGlobalMemStoreLimit(), "", 1)
@@ -129,6 +170,9 @@ class MemStoreFlusher implements FlushRequester {
     double secondaryMultiplier
       = ServerRegionReplicaUtil.getRegionReplicaStoreFileRefreshMultiplier(conf);
 
+    // Regions other handlers are flushing for pressure right now
+    excludedRegions.addAll(regionsFlushingForPressure);
+
     boolean flushedOne = false;
     while (!flushedOne) {
       // Find the biggest region that doesn't have too many storefiles
@@ -147,7 +191,12 @@ class MemStoreFlusher implements FlushRequester {
       }
 
       HRegion regionToFlush;
-      if (bestFlushableRegion != null &&
+      if (pressureFlushScoring) {
+        regionToFlush = getBestScoredRegion(regionsBySize, excludedRegions);
+        if (regionToFlush == null) {
+          regionToFlush = bestAnyRegion;
+        }
+      } else if (bestFlushableRegion != null &&
           bestAnyRegion.getMemStoreSize() > 2 * bestFlushableRegion.getMemStoreSize()) {
         // Even if it's not supposed to be flushed, pick a region if it's more than twice
         // as big as the best flushable one - otherwise when we're under pressure we make
@@ -199,7 +248,16 @@ class MemStoreFlusher implements FlushRequester {
               server.getRegionServerAccounting().getGlobalMemStoreDataSize(), "", 1) +
             ", Region memstore size=" +
             TraditionalBinaryPrefix.long2String(regionToFlush.getMemStoreSize(), "", 1));
-        flushedOne = flushRegion(regionToFlush, true, false, FlushLifeCycleTracker.DUMMY);
+        if (!regionsFlushingForPressure.add(regionToFlush)) {
+          // Another handler got to it first.
+          excludedRegions.add(regionToFlush);
+          continue;
+        }
+        try {
+          flushedOne = flushRegion(regionToFlush, true, false, FlushLifeCycleTracker.DUMMY);
+        } finally {
+          regionsFlushingForPressure.remove(regionToFlush);
+        }
 
         if (!flushedOne) {
           LOG.info("Excluding unflushable region " + regionToFlush +
@@ -211,6 +269,133 @@ class MemStoreFlusher implements FlushRequester {
     return true;
   }
 
+  /**
+   * @return the region with the highest {@link #flushScore(long, double, double, double)}, or
+   *         null if no region is worth flushing.
+   */
+  private HRegion getBestScoredRegion(SortedMap<Long, HRegion> regionsBySize,
+      Set<HRegion> excludedRegions) {
+    List<HRegion> candidates = new ArrayList<>();
+    List<Long> oldestSeqIds = new ArrayList<>();
+    long minSeqId = Long.MAX_VALUE;
+    long maxSeqId = Long.MIN_VALUE;
+    synchronized (regionsInQueue) {
+      for (HRegion region : regionsBySize.values()) {
+        if (excludedRegions.contains(region) || region.writestate.flushing
+            || !region.writestate.writesEnabled || region.getMemStoreSize() <= 0) {
+          continue;
+        }
+        long seqId = getOldestUnflushedSeqId(region);
+        if (seqId != HConstants.NO_SEQNUM) {
+          minSeqId = Math.min(minSeqId, seqId);
+          maxSeqId = Math.max(maxSeqId, seqId);
+        }
+        candidates.add(region);
+        oldestSeqIds.add(seqId);
+      }
+    }
+    HRegion best = null;
+    double bestScore = 0;
+    for (int i = 0; i < candidates.size(); i++) {
+      HRegion region = candidates.get(i);
+      long seqId = oldestSeqIds.get(i);
+      double walAge = seqId == HConstants.NO_SEQNUM || maxSeqId <= minSeqId ? 0
+          : (double) (maxSeqId - seqId) / (maxSeqId - minSeqId);
+      double score = flushScore(region.getMemStoreSize(), getStoreFileRatio(region), walAge,
+        pressureFlushWalWeight);
+      if (score > bestScore) {
+        best = region;
+        bestScore = score;
+      }
+    }
+    if (best != null && LOG.isDebugEnabled()) {
+      LOG.debug("Under global heap pressure: picked region "
+          + best.getRegionInfo().getRegionNameAsString() + " with flush score "
+          + String.format("%.0f", bestScore) + " out of " + candidates.size() + " candidates");
+    }
+    return best;
+  }
+
+  /**
+   * Scores a region for flushing under global memstore pressure. The score starts from the
+   * memstore size, as that is the memory a flush gives back. It is raised for regions holding
+   * older unflushed WAL edits, since flushing those lets old WAL files be archived, and lowered
+   * for regions whose stores are closer to the blocking store file count, since another file
+   * there brings forward a compaction and, past the limit, a stall on the region.
+   *
+   * @param memStoreSize the region's memstore data size
+   * @param storeFileRatio store file count over the blocking store file count, for the region's
+   *          fullest store
+   * @param walAge where the region's oldest unflushed edit falls among all the candidates', from
+   *          0 for the newest to 1 for the oldest
+   * @param walWeight see {@link #PRESSURE_FLUSH_WAL_WEIGHT_KEY}
+   * @return the score, higher being more worth flushing
+   */
+  static double flushScore(long memStoreSize, double storeFileRatio, double walAge,
+      double walWeight) {
+    if (memStoreSize <= 0) {
+      return 0;
+    }
+    // A region at or past the blocking count scores half, the same trade-off as the size based
+    // pick makes: flush it anyway if it is more than twice as big as anything else.
+    double storeFileFactor = 1 - 0.5 * Math.min(1, Math.max(0, storeFileRatio));
+    double walFactor = 1 + walWeight * Math.min(1, Math.max(0, walAge));
+    return memStoreSize * storeFileFactor * walFactor;
+  }
+
+  /**
+   * @return the oldest unflushed sequence id of any store of the region in its WAL, or
+   *         {@link HConstants#NO_SEQNUM} if not known.
+   */
+  private static long getOldestUnflushedSeqId(HRegion region) {
+    WAL wal = region.getWAL();
+    if (wal == null) {
+      return HConstants.NO_SEQNUM;
+    }
+    byte[] encodedRegionName = region.getRegionInfo().getEncodedNameAsBytes();
+    long oldest = HConstants.NO_SEQNUM;
+    for (HStore store : region.getStores()) {
+      long seqId = wal.getEarliestMemStoreSeqNum(encodedRegionName,
+        store.getColumnFamilyDescriptor().getName());
+      if (seqId != HConstants.NO_SEQNUM && (oldest == HConstants.NO_SEQNUM || seqId < oldest)) {
+        oldest = seqId;
+      }
+    }
+    return oldest;
+  }
+
+  /**
+   * @return the highest ratio of store file count to blocking store file count among the
+   *         region's stores, or 0 if compactions are disabled on the table.
+   */
+  private static double getStoreFileRatio(HRegion region) {
+    if (!region.getTableDescriptor().isCompactionEnabled()) {
+      return 0;
+    }
+    double ratio = 0;
+    for (HStore store : region.getStores()) {
+      long blockingFileCount = store.getBlockingFileCount();
+      if (blockingFileCount > 0) {
+        ratio = Math.max(ratio, (double) store.getStorefilesCount() / blockingFileCount);
+      }
+    }
+    return ratio;
+  }
+
+  /**
+   * While updates are blocked above the high water mark, have more handlers join in flushing
+   * for global pressure, up to {@link #PRESSURE_FLUSH_CONCURRENCY_KEY}.
+   */
+  private void wakeupHelpersIfBlocking() {
+    if (pressureFlushConcurrency <= 1 || isAboveHighWaterMark() == FlushType.NORMAL) {
+      return;
+    }
+    int helpers = pressureFlushConcurrency - 1 - pressureFlushesInProgress.get();
+    for (int i = 0; i < helpers; i++) {
+      flushQueue.add(new WakeupFlushThread());
+    }
+  }
+
   private class FlushHandler extends HasThread {
 
     private FlushHandler(String name) {
@@ -234,7 +419,15 @@ class MemStoreFlusher implements FlushRequester {
               // we still select the regions based on the region's memstore data size.
               // TODO : If we want to decide based on heap over head it can be done without tracking
               // it per region.
-              if (!flushOneForGlobalPressure()) {
+              wakeupHelpersIfBlocking();
+              boolean flushedOne;
+              pressureFlushesInProgress.incrementAndGet();
+              try {
+                flushedOne = flushOneForGlobalPressure();
+              } finally {
+                pressureFlushesInProgress.decrementAndGet();
+              }
+              if (!flushedOne) {
                 // Wasn't able to flush any region, but we're above low water mark
                 // This is unlikely to happen, but might happen when closing the
                 // entire server - another thread is flushing regions. We'll just
@@ -32,6 +32,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.ExtendedCell;
 import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.io.DeferredReleases;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -201,7 +202,12 @@ public class MemStoreLABImpl implements MemStoreLAB {
 
   private void recycleChunks() {
     if (reclaimed.compareAndSet(false, true)) {
-      chunkCreator.putbackChunks(chunks);
+      if (DeferredReleases.isActive()) {
+        // An RPC response being sent may still refer to cells in the chunks
+        DeferredReleases.defer(() -> chunkCreator.putbackChunks(chunks));
+      } else {
+        chunkCreator.putbackChunks(chunks);
+      }
     }
   }
 
@@ -193,6 +193,10 @@ public class MetricsRegionServer {
     serverSource.incrSplitSuccess();
   }
 
+  public void updateRowLockWaitTime(long t) {
+    serverSource.updateRowLockWaitTime(t);
+  }
+
   public void updateFlush(long t, long memstoreSize, long fileSize) {
     serverSource.updateFlushTime(t);
     serverSource.updateFlushMemStoreSize(memstoreSize);
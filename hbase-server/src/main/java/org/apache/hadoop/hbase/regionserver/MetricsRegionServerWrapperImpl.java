@@ -67,6 +67,8 @@ class MetricsRegionServerWrapperImpl
   private volatile long walFileSize = 0;
   private volatile long numStoreFiles = 0;
   private volatile long memstoreSize = 0;
+  private volatile long memstoreArrayMapIndexSize = 0;
+  private volatile long memstoreChunkMapIndexSize = 0;
   private volatile long storeFileSize = 0;
   private volatile long maxStoreFileAge = 0;
   private volatile long minStoreFileAge = 0;
@@ -82,6 +84,8 @@ class MetricsRegionServerWrapperImpl
   private volatile long totalStaticIndexSize = 0;
   private volatile long totalStaticBloomSize = 0;
   private volatile long numMutationsWithoutWAL = 0;
+  private volatile long coalescedIncrementsCount = 0;
+  private volatile long coalescedIncrementWritesCount = 0;
   private volatile long dataInMemoryWithoutWAL = 0;
   private volatile double percentFileLocal = 0;
   private volatile double percentFileLocalSecondaryRegions = 0;
@@ -418,6 +422,38 @@ class MetricsRegionServerWrapperImpl
     return this.l1Stats.getMissRatio();
   }
 
+  @Override
+  public long getL1CacheAdmissionRejectedCount() {
+    if (this.l1Stats == null) {
+      return 0;
+    }
+    return this.l1Stats.getAdmissionRejectedCount();
+  }
+
+  @Override
+  public long getL1CacheSingleHitCount() {
+    if (this.l1Stats == null) {
+      return 0;
+    }
+    return this.l1Stats.getSingleHitCount();
+  }
+
+  @Override
+  public long getL1CacheMultiHitCount() {
+    if (this.l1Stats == null) {
+      return 0;
+    }
+    return this.l1Stats.getMultiHitCount();
+  }
+
+  @Override
+  public long getL1CacheMemoryHitCount() {
+    if (this.l1Stats == null) {
+      return 0;
+    }
+    return this.l1Stats.getMemoryHitCount();
+  }
+
   @Override
   public long getL2CacheHitCount() {
     if (this.l2Stats == null) {
@@ -504,6 +540,16 @@ class MetricsRegionServerWrapperImpl
     return memstoreSize;
   }
 
+  @Override
+  public long getMemStoreArrayMapIndexSize() {
+    return memstoreArrayMapIndexSize;
+  }
+
+  @Override
+  public long getMemStoreChunkMapIndexSize() {
+    return memstoreChunkMapIndexSize;
+  }
+
   @Override
   public long getStoreFileSize() {
     return storeFileSize;
@@ -578,6 +624,16 @@ class MetricsRegionServerWrapperImpl
     return numMutationsWithoutWAL;
   }
 
+  @Override
+  public long getCoalescedIncrementsCount() {
+    return coalescedIncrementsCount;
+  }
+
+  @Override
+  public long getCoalescedIncrementWritesCount() {
+    return coalescedIncrementWritesCount;
+  }
+
   @Override
   public long getDataInMemoryWithoutWAL() {
     return dataInMemoryWithoutWAL;
@@ -723,6 +779,7 @@ class MetricsRegionServerWrapperImpl
             new HDFSBlocksDistribution();
 
         long tempNumStores = 0, tempNumStoreFiles = 0, tempMemstoreSize = 0, tempStoreFileSize = 0;
+        long tempMemstoreArrayMapIndexSize = 0, tempMemstoreChunkMapIndexSize = 0;
         long tempMaxStoreFileAge = 0, tempNumReferenceFiles = 0;
         long avgAgeNumerator = 0, numHFiles = 0;
         long tempMinStoreFileAge = Long.MAX_VALUE;
@@ -734,6 +791,8 @@ class MetricsRegionServerWrapperImpl
         long tempTotalStaticIndexSize = 0;
         long tempTotalStaticBloomSize = 0;
         long tempNumMutationsWithoutWAL = 0;
+        long tempCoalescedIncrementsCount = 0;
+        long tempCoalescedIncrementWritesCount = 0;
         long tempDataInMemoryWithoutWAL = 0;
         double tempPercentFileLocal = 0;
         double tempPercentFileLocalSecondaryRegions = 0;
@@ -756,6 +815,8 @@ class MetricsRegionServerWrapperImpl
         int regionCount = 0;
         for (HRegion r : regionServer.getOnlineRegionsLocalContext()) {
           tempNumMutationsWithoutWAL += r.getNumMutationsWithoutWAL();
+          tempCoalescedIncrementsCount += r.getCoalescedIncrementsCount();
+          tempCoalescedIncrementWritesCount += r.getCoalescedIncrementWritesCount();
           tempDataInMemoryWithoutWAL += r.getDataInMemoryWithoutWAL();
           tempReadRequestsCount += r.getReadRequestsCount();
           tempFilteredReadRequestsCount += r.getFilteredReadRequestsCount();
@@ -763,11 +824,13 @@ class MetricsRegionServerWrapperImpl
           tempCheckAndMutateChecksFailed += r.getCheckAndMutateChecksFailed();
           tempCheckAndMutateChecksPassed += r.getCheckAndMutateChecksPassed();
           tempBlockedRequestsCount += r.getBlockedRequestsCount();
-          List<? extends Store> storeList = r.getStores();
+          List<HStore> storeList = r.getStores();
           tempNumStores += storeList.size();
-          for (Store store : storeList) {
+          for (HStore store : storeList) {
             tempNumStoreFiles += store.getStorefilesCount();
             tempMemstoreSize += store.getMemStoreSize().getDataSize();
+            tempMemstoreArrayMapIndexSize += store.getMemStoreArrayMapIndexSize();
+            tempMemstoreChunkMapIndexSize += store.getMemStoreChunkMapIndexSize();
             tempStoreFileSize += store.getStorefilesSize();
 
             OptionalLong storeMaxStoreFileAge = store.getMaxStoreFileAge();
@@ -857,6 +920,8 @@ class MetricsRegionServerWrapperImpl
         numStores = tempNumStores;
         numStoreFiles = tempNumStoreFiles;
         memstoreSize = tempMemstoreSize;
+        memstoreArrayMapIndexSize = tempMemstoreArrayMapIndexSize;
+        memstoreChunkMapIndexSize = tempMemstoreChunkMapIndexSize;
         storeFileSize = tempStoreFileSize;
         maxStoreFileAge = tempMaxStoreFileAge;
         if (regionCount > 0) {
@@ -880,6 +945,8 @@ class MetricsRegionServerWrapperImpl
         totalStaticIndexSize = tempTotalStaticIndexSize;
         totalStaticBloomSize = tempTotalStaticBloomSize;
         numMutationsWithoutWAL = tempNumMutationsWithoutWAL;
+        coalescedIncrementsCount = tempCoalescedIncrementsCount;
+        coalescedIncrementWritesCount = tempCoalescedIncrementWritesCount;
         dataInMemoryWithoutWAL = tempDataInMemoryWithoutWAL;
         percentFileLocal = tempPercentFileLocal;
         percentFileLocalSecondaryRegions = tempPercentFileLocalSecondaryRegions;
@@ -20,6 +20,7 @@ package org.apache.hadoop.hbase.regionserver;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.OptionalDouble;
 import java.util.OptionalLong;
@@ -291,4 +292,20 @@ public class MetricsRegionWrapperImpl implements MetricsRegionWrapper, Closeable
     return region.getRegionInfo().getReplicaId();
   }
 
+  @Override
+  public String getHotKeyRanges() {
+    RegionHotspotTracker hotspots = region.getHotspotTracker();
+    return hotspots == null ? "" : hotspots.toString();
+  }
+
+  @Override
+  public float getHottestKeyRangeShare() {
+    RegionHotspotTracker hotspots = region.getHotspotTracker();
+    if (hotspots == null) {
+      return 0;
+    }
+    List<RegionHotspotTracker.HotRange> top = hotspots.getTopRanges();
+    return top.isEmpty() ? 0 : top.get(0).getShare() * 100;
+  }
+
 }
@@ -0,0 +1,346 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.regionserver.HRegion.RegionScannerImpl;
+import org.apache.hadoop.hbase.regionserver.RSRpcServices.RegionScannersCloseCallBack;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
+
+/**
+ * Runs the Gets of a multi request against one region through a single shared scanner.
+ * <p>
+ * Normally every Get in a multi builds its own RegionScanner and StoreScanners and seeks each of
+ * them from scratch, even when many of the requested rows sit in the same HFile blocks. Here the
+ * Gets that ask for the same columns, versions and time range are sorted by row and served by one
+ * scanner covering the first to the last requested row. Moving from one requested row to the next
+ * is a forward reseek, so a row that lives in the block the scanner is already positioned on
+ * costs no block cache lookup and no index walk.
+ * <p>
+ * Gets with filters or attributes, or whose shape differs from the first eligible Get, are left to
+ * the usual per-Get path, as are all Gets against hbase:meta. Coprocessor pre/post get hooks still
+ * run once per Get; a Get that a hook changes so it no longer fits the shared scanner is run with a
+ * scanner of its own. Batching is off by default; see {@link #MULTIGET_BATCHING_KEY}.
+ */
+@InterfaceAudience.Private
+class MultiGetBatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MultiGetBatcher.class);
+
+  /**
+   * Set to true to serve the Gets of a multi request with one scanner per region.
+   */
+  public static final String MULTIGET_BATCHING_KEY = "hbase.regionserver.multiget.batching";
+  public static final boolean DEFAULT_MULTIGET_BATCHING = false;
+
+  /**
+   * Minimum number of eligible Gets against a region in one multi request before they are
+   * batched. Below this the per-Get path is used; a shared scanner does not pay for itself on a
+   * handful of rows that are likely far apart.
+   */
+  public static final String MULTIGET_BATCHING_MIN_GETS_KEY =
+      "hbase.regionserver.multiget.batching.min.gets";
+  public static final int DEFAULT_MULTIGET_BATCHING_MIN_GETS = 4;
+
+  private final boolean enabled;
+  private final int minGets;
+
+  // Gets served through a shared scanner, and the shared scanners opened to serve them.
+  private final LongAdder batchedGets = new LongAdder();
+  private final LongAdder sharedScanners = new LongAdder();
+
+  MultiGetBatcher(Configuration conf) {
+    this.enabled = conf.getBoolean(MULTIGET_BATCHING_KEY, DEFAULT_MULTIGET_BATCHING);
+    this.minGets = Math.max(2,
+      conf.getInt(MULTIGET_BATCHING_MIN_GETS_KEY, DEFAULT_MULTIGET_BATCHING_MIN_GETS));
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  long getBatchedGetsCount() {
+    return batchedGets.sum();
+  }
+
+  long getSharedScannersCount() {
+    return sharedScanners.sum();
+  }
+
+  /**
+   * Run the batchable Gets among <code>actions</code> against <code>region</code>. The caller
+   * passes one contiguous run of Gets at a time so that they are not reordered with the other
+   * actions of the multi.
+   * @param closeCallBack the shared scanner, and any scanner opened for a Get a coprocessor
+   *          changed, is added here so it stays open until the response has been sent.
+   * @param maxResultSize serving stops once the cells returned so far reach this many bytes, so
+   *          that no more is read and held than the multi response size limit lets through.
+   * @return an array parallel to <code>actions</code> holding the Result of each Get that was
+   *         served here, or null if there was nothing worth batching. A null entry means the
+   *         action is left to the caller; this includes every action that is not a Get, every
+   *         Get that failed validation (the caller will report the error) and, should the shared
+   *         scanner fail or the size limit be reached, every Get not yet served when it did.
+   */
+  Result[] get(HRegion region, List<ClientProtos.Action> actions,
+      RegionScannersCloseCallBack closeCallBack, long maxResultSize) {
+    if (!enabled || actions.size() < minGets || region.getRegionInfo().isMetaRegion()
+        || maxResultSize <= 0) {
+      return null;
+    }
+    Scan scan = null;
+    List<Integer> positions = new ArrayList<>();
+    List<Get> gets = new ArrayList<>();
+    for (int i = 0; i < actions.size(); i++) {
+      ClientProtos.Action action = actions.get(i);
+      if (!action.hasGet()) {
+        continue;
+      }
+      Get get;
+      try {
+        get = ProtobufUtil.toGet(action.getGet());
+        region.prepareGet(get);
+      } catch (IOException e) {
+        continue;
+      }
+      if (get.getFilter() != null || !get.getAttributesMap().isEmpty()
+          || !get.getColumnFamilyTimeRange().isEmpty()) {
+        continue;
+      }
+      if (scan == null) {
+        scan = newSharedScan(get);
+      } else if (!fitsSharedScan(scan, get)) {
+        continue;
+      }
+      positions.add(i);
+      gets.add(get);
+    }
+    if (gets.size() < minGets) {
+      return null;
+    }
+    Integer[] order = new Integer[gets.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Bytes.compareTo(gets.get(a).getRow(), gets.get(b).getRow()));
+    scan.withStartRow(gets.get(order[0]).getRow(), true)
+        .withStopRow(gets.get(order[order.length - 1]).getRow(), true);
+    if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
+      scan.setLoadColumnFamiliesOnDemand(region.isLoadingCfsOnDemandDefault());
+    }
+
+    Result[] results = new Result[actions.size()];
+    boolean stale = region.getRegionInfo().getReplicaId() != 0;
+    RegionCoprocessorHost coprocessorHost = region.getCoprocessorHost();
+    SharedRowScanner shared = null;
+    byte[] lastRow = null;
+    List<Cell> lastCells = Collections.emptyList();
+    long resultSize = 0;
+    try {
+      for (int i : order) {
+        if (resultSize >= maxResultSize) {
+          // Left to the per-Get path, where the multi size check fails them without reading.
+          break;
+        }
+        Get get = gets.get(i);
+        List<Cell> cells = new ArrayList<>();
+        long before = EnvironmentEdgeManager.currentTime();
+        if (coprocessorHost != null && coprocessorHost.preGet(get, cells)) {
+          region.metricsUpdateForGet(cells, before);
+          resultSize += sizeOf(cells);
+          results[positions.get(i)] =
+              Result.create(cells, get.isCheckExistenceOnly() ? !cells.isEmpty() : null, stale);
+          continue;
+        }
+        if (coprocessorHost != null && (get.getFilter() != null
+            || !get.getAttributesMap().isEmpty() || !fitsSharedScan(scan, get))) {
+          getAlone(region, get, cells, closeCallBack);
+        } else {
+          if (lastRow == null || !Bytes.equals(lastRow, get.getRow())) {
+            if (shared == null) {
+              shared = new SharedRowScanner(region.getScanner(scan));
+              closeCallBack.addScanner(shared.scanner);
+              sharedScanners.increment();
+            }
+            lastRow = get.getRow();
+            lastCells = shared.advanceTo(region, lastRow);
+          }
+          cells.addAll(lastCells);
+          batchedGets.increment();
+        }
+        if (coprocessorHost != null) {
+          coprocessorHost.postGet(get, cells);
+        }
+        region.metricsUpdateForGet(cells, before);
+        resultSize += sizeOf(cells);
+        results[positions.get(i)] =
+            Result.create(cells, get.isCheckExistenceOnly() ? !cells.isEmpty() : null, stale);
+      }
+    } catch (IOException e) {
+      // Leave the rest to the per-Get path, which will surface the error against the Get that
+      // hits it.
+      LOG.debug("Shared scanner failed on {}, falling back to per-Get reads",
+        region.getRegionInfo().getEncodedName(), e);
+    }
+    return results;
+  }
+
+  private static long sizeOf(List<Cell> cells) {
+    long size = 0;
+    for (Cell cell : cells) {
+      size += PrivateCellUtil.estimatedSerializedSizeOf(cell);
+    }
+    return size;
+  }
+
+  /**
+   * @return a Scan with the columns, versions and time range of <code>get</code>. The family map
+   *         is copied so that a coprocessor changing a Get cannot change the shared scan.
+   */
+  private static Scan newSharedScan(Get get) {
+    Scan scan = new Scan(get);
+    Map<byte[], NavigableSet<byte[]>> familyMap = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableSet<byte[]>> entry : get.getFamilyMap().entrySet()) {
+      familyMap.put(entry.getKey(),
+        entry.getValue() == null ? null : new TreeSet<>(entry.getValue()));
+    }
+    scan.setFamilyMap(familyMap);
+    return scan;
+  }
+
+  /**
+   * @return true if serving <code>get</code> from <code>scan</code> returns exactly the cells a
+   *         Scan built from <code>get</code> alone would.
+   */
+  static boolean fitsSharedScan(Scan scan, Get get) {
+    TimeRange scanRange = scan.getTimeRange();
+    TimeRange getRange = get.getTimeRange();
+    if (scanRange.getMin() != getRange.getMin() || scanRange.getMax() != getRange.getMax()
+        || scan.getMaxVersions() != get.getMaxVersions()
+        || scan.getMaxResultsPerColumnFamily() != get.getMaxResultsPerColumnFamily()
+        || scan.getRowOffsetPerColumnFamily() != get.getRowOffsetPerColumnFamily()
+        || scan.getCacheBlocks() != get.getCacheBlocks()
+        || scan.getIsolationLevel() != get.getIsolationLevel()) {
+      return false;
+    }
+    Map<byte[], NavigableSet<byte[]>> scanFamilies = scan.getFamilyMap();
+    Map<byte[], NavigableSet<byte[]>> getFamilies = get.getFamilyMap();
+    if (scanFamilies.size() != getFamilies.size()) {
+      return false;
+    }
+    for (Map.Entry<byte[], NavigableSet<byte[]>> entry : getFamilies.entrySet()) {
+      if (!scanFamilies.containsKey(entry.getKey())) {
+        return false;
+      }
+      NavigableSet<byte[]> scanQualifiers = scanFamilies.get(entry.getKey());
+      NavigableSet<byte[]> getQualifiers = entry.getValue();
+      boolean scanAll = scanQualifiers == null || scanQualifiers.isEmpty();
+      boolean getAll = getQualifiers == null || getQualifiers.isEmpty();
+      if (scanAll != getAll) {
+        return false;
+      }
+      if (!scanAll && (scanQualifiers.size() != getQualifiers.size()
+          || !scanQualifiers.containsAll(getQualifiers))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Serve <code>get</code> with a scanner of its own, as RSRpcServices does for a lone Get.
+   */
+  private static void getAlone(HRegion region, Get get, List<Cell> cells,
+      RegionScannersCloseCallBack closeCallBack) throws IOException {
+    Scan scan = new Scan(get);
+    if (scan.getLoadColumnFamiliesOnDemandValue() == null) {
+      scan.setLoadColumnFamiliesOnDemand(region.isLoadingCfsOnDemandDefault());
+    }
+    RegionScannerImpl scanner = region.getScanner(scan);
+    closeCallBack.addScanner(scanner);
+    scanner.next(cells);
+  }
+
+  /**
+   * Walks a region scanner forward through a sorted sequence of requested rows. Rows the scanner
+   * passes that were not asked for are dropped; a row read past the one asked for is held until
+   * it is asked for or passed.
+   */
+  private static final class SharedRowScanner {
+    private final RegionScannerImpl scanner;
+    private List<Cell> pending = new ArrayList<>();
+    private boolean started = false;
+    private boolean more = true;
+
+    SharedRowScanner(RegionScannerImpl scanner) {
+      this.scanner = scanner;
+    }
+
+    /**
+     * @return the cells of <code>row</code>, which must sort after every row asked for before.
+     */
+    List<Cell> advanceTo(HRegion region, byte[] row) throws IOException {
+      while (true) {
+        if (!pending.isEmpty()) {
+          int cmp = region.getCellComparator().compareRows(pending.get(0), row, 0, row.length);
+          if (cmp == 0) {
+            List<Cell> cells = pending;
+            pending = new ArrayList<>();
+            return cells;
+          }
+          if (cmp > 0) {
+            return Collections.emptyList();
+          }
+          pending.clear();
+        }
+        if (!more) {
+          return Collections.emptyList();
+        }
+        if (started) {
+          // A no-op for any store already positioned at or past the row.
+          scanner.reseek(row);
+        }
+        started = true;
+        more = scanner.next(pending);
+      }
+    }
+  }
+}
@@ -113,12 +113,13 @@ public class RSDumpServlet extends StateDumpServlet {
     StringBuilder sb = new StringBuilder();
     for (Region region : hrs.getRegions()) {
       HRegion hRegion = (HRegion)region;
-      if (hRegion.getLockedRows().size() > 0) {
-        for (HRegion.RowLockContext rowLockContext : hRegion.getLockedRows().values()) {
+      RowLockManager rowLockManager = hRegion.getRowLockManager();
+      if (rowLockManager.getLockedCount() > 0) {
+        for (String rowLock : rowLockManager.describeLocks()) {
           sb.setLength(0);
           sb.append(hRegion.getTableDescriptor().getTableName()).append(",")
             .append(hRegion.getRegionInfo().getEncodedName()).append(",");
-          sb.append(rowLockContext.toString());
+          sb.append(rowLock);
           out.println(sb.toString());
         }
       }
@@ -85,6 +85,8 @@ import org.apache.hadoop.hbase.exceptions.FailedSanityCheckException;
 import org.apache.hadoop.hbase.exceptions.OutOfOrderScannerNextException;
 import org.apache.hadoop.hbase.exceptions.ScannerResetException;
 import org.apache.hadoop.hbase.filter.ByteArrayComparable;
+import org.apache.hadoop.hbase.io.hfile.BlockReadAhead;
+import org.apache.hadoop.hbase.io.hfile.CacheOnlyReads;
 import org.apache.hadoop.hbase.ipc.HBaseRPCErrorHandler;
 import org.apache.hadoop.hbase.ipc.HBaseRpcController;
 import org.apache.hadoop.hbase.ipc.PriorityFunction;
@@ -264,6 +266,16 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
 
   protected static final String RESERVOIR_ENABLED_KEY = "hbase.ipc.server.reservoir.enabled";
 
+  /**
+   * Whether a scan request that can receive heartbeats returns early, with a heartbeat, once one
+   * of its block reads missed the block cache. The handler still reads the missed block itself;
+   * the blocks after it are then read ahead asynchronously and the request returns at its next
+   * limit check, so the handler takes one synchronous miss rather than one per block. A resumed
+   * request that reaches a block still being read ahead waits for that read.
+   */
+  static final String SCAN_YIELD_ON_BLOCK_MISS_KEY =
+      "hbase.regionserver.scan.yield.on.block.miss";
+
   // Request counter. (Includes requests that are not serviced by regions.)
   // Count only once for requests with multiple actions like multi/caching-scan/replayBatch
   final LongAdder requestCount = new LongAdder();
@@ -316,6 +328,16 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
    */
   private final int rowSizeWarnThreshold;
 
+  /**
+   * Serves the Gets of a multi request against a region through one shared scanner
+   */
+  final MultiGetBatcher multiGetBatcher;
+
+  /**
+   * Whether scans give the handler back on block cache misses
+   */
+  private final boolean scanYieldOnBlockMiss;
+
   final AtomicBoolean clearCompactionQueues = new AtomicBoolean(false);
 
   /**
@@ -746,7 +768,20 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     Object lastBlock = null;
     ClientProtos.ResultOrException.Builder resultOrExceptionBuilder = ResultOrException.newBuilder();
     boolean hasResultOrException = false;
-    for (ClientProtos.Action action : actions.getActionList()) {
+    // Gets are batched a contiguous run at a time, when the loop reaches the first Get of the run,
+    // so they still run after any Increment or Append ahead of them and only once the response
+    // size check above has passed. batchedGets holds the Results of the run starting at
+    // batchedGetsStart that were served through a shared scanner, and batchedGetTime the share
+    // of the shared scanner's time charged to each of them.
+    boolean batchGets = context != null && closeCallBack != null && multiGetBatcher.isEnabled();
+    List<ClientProtos.Action> actionList = actions.getActionList();
+    Result[] batchedGets = null;
+    int batchedGetsStart = 0;
+    int batchedGetsEnd = 0;
+    long batchedGetTime = 0;
+    int position = -1;
+    for (ClientProtos.Action action : actionList) {
+      position++;
       hasResultOrException = false;
       resultOrExceptionBuilder.clear();
       try {
@@ -791,18 +826,41 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
         }
         if (action.hasGet()) {
           long before = EnvironmentEdgeManager.currentTime();
+          if (batchGets && position >= batchedGetsEnd) {
+            batchedGetsStart = position;
+            batchedGetsEnd = position + 1;
+            while (batchedGetsEnd < actionList.size() && actionList.get(batchedGetsEnd).hasGet()) {
+              batchedGetsEnd++;
+            }
+            batchedGets = multiGetBatcher.get(region,
+              actionList.subList(batchedGetsStart, batchedGetsEnd), closeCallBack,
+              remainingResultSize(context, maxQuotaResultSize));
+            int served = 0;
+            for (int i = 0; batchedGets != null && i < batchedGets.length; i++) {
+              if (batchedGets[i] != null) {
+                served++;
+              }
+            }
+            long now = EnvironmentEdgeManager.currentTime();
+            batchedGetTime = served == 0 ? 0 : (now - before) / served;
+            before = now;
+          }
+          Result batched = batchedGets == null ? null : batchedGets[position - batchedGetsStart];
           try {
-            Get get = ProtobufUtil.toGet(action.getGet());
-            if (context != null) {
+            if (batched != null) {
+              r = batched;
+            } else if (context != null) {
+              Get get = ProtobufUtil.toGet(action.getGet());
               r = get(get, (region), closeCallBack, context);
             } else {
-              r = region.get(get);
+              r = region.get(ProtobufUtil.toGet(action.getGet()));
             }
           } finally {
             if (regionServer.metricsRegionServer != null) {
               regionServer.metricsRegionServer.updateGet(
                   region.getTableDescriptor().getTableName(),
-                  EnvironmentEdgeManager.currentTime() - before);
+                  EnvironmentEdgeManager.currentTime() - before
+                      + (batched != null ? batchedGetTime : 0));
             }
           }
         } else if (action.hasServiceCall()) {
@@ -1141,6 +1199,8 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     this.ld = ld;
     regionServer = rs;
     rowSizeWarnThreshold = rs.conf.getInt(BATCH_ROWS_THRESHOLD_NAME, BATCH_ROWS_THRESHOLD_DEFAULT);
+    multiGetBatcher = new MultiGetBatcher(rs.conf);
+    scanYieldOnBlockMiss = rs.conf.getBoolean(SCAN_YIELD_ON_BLOCK_MISS_KEY, false);
     RpcSchedulerFactory rpcSchedulerFactory;
     try {
       Class<?> rpcSchedulerFactoryClass = rs.conf.getClass(
@@ -1287,6 +1347,19 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
    * Method to account for the size of retained cells and retained data blocks.
    * @return an object that represents the last referenced block from this response.
    */
+  /**
+   * @return how many more bytes of cells the response can take before the multi size check in
+   *         {@link #doNonAtomicRegionMutation} starts failing actions with
+   *         {@link MultiActionResultTooLarge}
+   */
+  private static long remainingResultSize(RpcCallContext context, long maxQuotaResultSize) {
+    if (!context.isRetryImmediatelySupported()) {
+      return Long.MAX_VALUE;
+    }
+    return Math.min(maxQuotaResultSize - context.getResponseCellSize(),
+      maxQuotaResultSize - context.getResponseBlockSize() - context.getResponseExceptionSize());
+  }
+
   Object addSize(RpcCallContext context, Result r, Object lastBlock) {
     if (context != null && r != null && !r.isEmpty()) {
       for (Cell c : r.rawCells()) {
@@ -2354,8 +2427,12 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     long before = EnvironmentEdgeManager.currentTime();
     OperationQuota quota = null;
     HRegion region = null;
+    boolean notCached = false;
     try {
       checkOpen();
+      if (CacheOnlyReads.isActive()) {
+        checkCacheOnlyGet(request.getRegion());
+      }
       requestCount.increment();
       rpcGetRequestCount.increment();
       region = getRegion(request.getRegion());
@@ -2408,10 +2485,17 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
       }
       return builder.build();
     } catch (IOException ie) {
+      if (CacheOnlyReads.isNotCached(ie)) {
+        // Missed the block cache on a thread that must not block. The Get runs again on a
+        // handler and is counted there.
+        notCached = true;
+        requestCount.decrement();
+        rpcGetRequestCount.decrement();
+      }
       throw new ServiceException(ie);
     } finally {
       MetricsRegionServer mrs = regionServer.metricsRegionServer;
-      if (mrs != null) {
+      if (mrs != null && !notCached) {
         TableDescriptor td = region != null? region.getTableDescriptor(): null;
         if (td != null) {
           mrs.updateGet(td.getTableName(), EnvironmentEdgeManager.currentTime() - before);
@@ -2423,6 +2507,23 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     }
   }
 
+  /**
+   * Gives up a Get run from the block cache only, before anything is accounted for, if the region
+   * lock is taken or the region has coprocessors. Coprocessor hooks may block, and must not run
+   * twice when the Get runs again on a handler after a block cache miss.
+   */
+  private void checkCacheOnlyGet(RegionSpecifier regionSpecifier) throws IOException {
+    HRegion region = getRegion(regionSpecifier);
+    if (region.getCoprocessorHost() != null && region.getCoprocessorHost().hasCoprocessors()) {
+      throw CacheOnlyReads.giveUp(
+        "Region " + region.getRegionInfo().getEncodedName() + " has coprocessors");
+    }
+    if (region.lock.isWriteLocked()) {
+      throw CacheOnlyReads.giveUp(
+        "Lock of region " + region.getRegionInfo().getEncodedName() + " is not free");
+    }
+  }
+
   private Result get(Get get, HRegion region, RegionScannersCloseCallBack closeCallBack,
       RpcCallContext context) throws IOException {
     region.prepareGet(get);
@@ -3015,83 +3116,96 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
         contextBuilder.setBatchLimit(scanner.getBatch());
         contextBuilder.setTimeLimit(timeScope, timeLimit);
         contextBuilder.setTrackMetrics(trackMetrics);
+        // Yielding on a block cache miss is reported to the client as a heartbeat, so it needs
+        // the same support from the client.
+        boolean yieldOnBlockMiss = scanYieldOnBlockMiss && allowHeartbeatMessages;
+        contextBuilder.setYieldOnBlockMiss(yieldOnBlockMiss);
         ScannerContext scannerContext = contextBuilder.build();
         boolean limitReached = false;
-        while (numOfResults < maxResults) {
-          // Reset the batch progress to 0 before every call to RegionScanner#nextRaw. The
-          // batch limit is a limit on the number of cells per Result. Thus, if progress is
-          // being tracked (i.e. scannerContext.keepProgress() is true) then we need to
-          // reset the batch progress between nextRaw invocations since we don't want the
-          // batch progress from previous calls to affect future calls
-          scannerContext.setBatchProgress(0);
-
-          // Collect values to be returned here
-          moreRows = scanner.nextRaw(values, scannerContext);
-
-          if (!values.isEmpty()) {
-            if (limitOfRows > 0) {
-              // First we need to check if the last result is partial and we have a row change. If
-              // so then we need to increase the numOfCompleteRows.
-              if (results.isEmpty()) {
-                if (rsh.rowOfLastPartialResult != null &&
-                    !CellUtil.matchingRows(values.get(0), rsh.rowOfLastPartialResult)) {
-                  numOfCompleteRows++;
-                  checkLimitOfRows(numOfCompleteRows, limitOfRows, moreRows, scannerContext,
-                    builder);
+        if (yieldOnBlockMiss) {
+          BlockReadAhead.enter();
+        }
+        try {
+          while (numOfResults < maxResults) {
+            // Reset the batch progress to 0 before every call to RegionScanner#nextRaw. The
+            // batch limit is a limit on the number of cells per Result. Thus, if progress is
+            // being tracked (i.e. scannerContext.keepProgress() is true) then we need to
+            // reset the batch progress between nextRaw invocations since we don't want the
+            // batch progress from previous calls to affect future calls
+            scannerContext.setBatchProgress(0);
+
+            // Collect values to be returned here
+            moreRows = scanner.nextRaw(values, scannerContext);
+
+            if (!values.isEmpty()) {
+              if (limitOfRows > 0) {
+                // First we need to check if the last result is partial and we have a row change. If
+                // so then we need to increase the numOfCompleteRows.
+                if (results.isEmpty()) {
+                  if (rsh.rowOfLastPartialResult != null &&
+                      !CellUtil.matchingRows(values.get(0), rsh.rowOfLastPartialResult)) {
+                    numOfCompleteRows++;
+                    checkLimitOfRows(numOfCompleteRows, limitOfRows, moreRows, scannerContext,
+                      builder);
+                  }
+                } else {
+                  Result lastResult = results.get(results.size() - 1);
+                  if (lastResult.mayHaveMoreCellsInRow() &&
+                      !CellUtil.matchingRows(values.get(0), lastResult.getRow())) {
+                    numOfCompleteRows++;
+                    checkLimitOfRows(numOfCompleteRows, limitOfRows, moreRows, scannerContext,
+                      builder);
+                  }
                 }
-              } else {
-                Result lastResult = results.get(results.size() - 1);
-                if (lastResult.mayHaveMoreCellsInRow() &&
-                    !CellUtil.matchingRows(values.get(0), lastResult.getRow())) {
-                  numOfCompleteRows++;
-                  checkLimitOfRows(numOfCompleteRows, limitOfRows, moreRows, scannerContext,
-                    builder);
+                if (builder.hasMoreResults() && !builder.getMoreResults()) {
+                  break;
                 }
               }
-              if (builder.hasMoreResults() && !builder.getMoreResults()) {
-                break;
+              boolean mayHaveMoreCellsInRow = scannerContext.mayHaveMoreCellsInRow();
+              Result r = Result.create(values, null, stale, mayHaveMoreCellsInRow);
+              lastBlock.setValue(addSize(context, r, lastBlock.getValue()));
+              results.add(r);
+              numOfResults++;
+              if (!mayHaveMoreCellsInRow && limitOfRows > 0) {
+                numOfCompleteRows++;
+                checkLimitOfRows(numOfCompleteRows, limitOfRows, moreRows, scannerContext, builder);
+                if (builder.hasMoreResults() && !builder.getMoreResults()) {
+                  break;
+                }
               }
             }
-            boolean mayHaveMoreCellsInRow = scannerContext.mayHaveMoreCellsInRow();
-            Result r = Result.create(values, null, stale, mayHaveMoreCellsInRow);
-            lastBlock.setValue(addSize(context, r, lastBlock.getValue()));
-            results.add(r);
-            numOfResults++;
-            if (!mayHaveMoreCellsInRow && limitOfRows > 0) {
-              numOfCompleteRows++;
-              checkLimitOfRows(numOfCompleteRows, limitOfRows, moreRows, scannerContext, builder);
-              if (builder.hasMoreResults() && !builder.getMoreResults()) {
-                break;
+            boolean sizeLimitReached = scannerContext.checkSizeLimit(LimitScope.BETWEEN_ROWS);
+            boolean timeLimitReached = scannerContext.checkTimeLimit(LimitScope.BETWEEN_ROWS);
+            boolean resultsLimitReached = numOfResults >= maxResults;
+            limitReached = sizeLimitReached || timeLimitReached || resultsLimitReached;
+
+            if (limitReached || !moreRows) {
+              if (LOG.isTraceEnabled()) {
+                LOG.trace("Done scanning. limitReached: " + limitReached + " moreRows: " + moreRows
+                    + " scannerContext: " + scannerContext);
               }
-            }
-          }
-          boolean sizeLimitReached = scannerContext.checkSizeLimit(LimitScope.BETWEEN_ROWS);
-          boolean timeLimitReached = scannerContext.checkTimeLimit(LimitScope.BETWEEN_ROWS);
-          boolean resultsLimitReached = numOfResults >= maxResults;
-          limitReached = sizeLimitReached || timeLimitReached || resultsLimitReached;
-
-          if (limitReached || !moreRows) {
-            if (LOG.isTraceEnabled()) {
-              LOG.trace("Done scanning. limitReached: " + limitReached + " moreRows: " + moreRows
-                  + " scannerContext: " + scannerContext);
-            }
-            // We only want to mark a ScanResponse as a heartbeat message in the event that
-            // there are more values to be read server side. If there aren't more values,
-            // marking it as a heartbeat is wasteful because the client will need to issue
-            // another ScanRequest only to realize that they already have all the values
-            if (moreRows) {
-              // Heartbeat messages occur when the time limit has been reached.
-              builder.setHeartbeatMessage(timeLimitReached);
-              if (timeLimitReached && rsh.needCursor) {
-                Cell cursorCell = scannerContext.getLastPeekedCell();
-                if (cursorCell != null ) {
-                  builder.setCursor(ProtobufUtil.toCursor(cursorCell));
+              // We only want to mark a ScanResponse as a heartbeat message in the event that
+              // there are more values to be read server side. If there aren't more values,
+              // marking it as a heartbeat is wasteful because the client will need to issue
+              // another ScanRequest only to realize that they already have all the values
+              if (moreRows) {
+                // Heartbeat messages occur when the time limit has been reached.
+                builder.setHeartbeatMessage(timeLimitReached);
+                if (timeLimitReached && rsh.needCursor) {
+                  Cell cursorCell = scannerContext.getLastPeekedCell();
+                  if (cursorCell != null ) {
+                    builder.setCursor(ProtobufUtil.toCursor(cursorCell));
+                  }
                 }
               }
+              break;
             }
-            break;
+            values.clear();
+          }
+        } finally {
+          if (yieldOnBlockMiss) {
+            BlockReadAhead.exit();
           }
-          values.clear();
         }
         builder.setMoreResultsInRegion(moreRows);
         // Check to see if the client requested that we track metrics server side. If the
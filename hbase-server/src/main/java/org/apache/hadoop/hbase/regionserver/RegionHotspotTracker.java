@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.regionserver;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Keeps an approximate heat map of the row key ranges of a region. One read or write in
+ * {@value #SAMPLE_RATE_KEY} is sampled, its row is cut to the first {@value #PREFIX_LENGTH_KEY}
+ * bytes, and the prefix is counted with the Space-Saving algorithm. Only a fixed number of
+ * prefixes is kept per region, however many distinct rows are seen. All counts are halved every
+ * {@value #DECAY_PERIOD_KEY} milliseconds so the map follows the current load rather than the
+ * whole history of the region.
+ * <p>
+ * The hottest ranges are exported through the region metrics, shown on the region page of the
+ * web UI, and can be used by {@link BusyRegionSplitPolicy} to split a hot range off.
+ */
+@InterfaceAudience.Private
+public class RegionHotspotTracker {
+
+  public static final String ENABLED_KEY = "hbase.regionserver.hotspot.enabled";
+  public static final String SAMPLE_RATE_KEY = "hbase.regionserver.hotspot.sample.rate";
+  public static final int DEFAULT_SAMPLE_RATE = 100;
+  public static final String PREFIX_LENGTH_KEY = "hbase.regionserver.hotspot.prefix.length";
+  public static final int DEFAULT_PREFIX_LENGTH = 8;
+  public static final String TOP_K_KEY = "hbase.regionserver.hotspot.topk";
+  public static final int DEFAULT_TOP_K = 10;
+  public static final String DECAY_PERIOD_KEY = "hbase.regionserver.hotspot.decay.period";
+  public static final long DEFAULT_DECAY_PERIOD = 300000; // 5 minutes
+
+  /**
+   * Fewer samples than this are too noisy to call a range hot.
+   */
+  static final long MIN_SAMPLES_FOR_HOT_RANGE = 100;
+
+  private final int sampleRate;
+  private final int prefixLength;
+  private final int topK;
+  // Space-Saving is only accurate for the top entries if it tracks a few times more than those.
+  private final int capacity;
+  private final long decayPeriod;
+
+  private final Map<ByteBuffer, HotRange> ranges = new HashMap<>();
+  private long samples;
+  private long lastDecay;
+
+  /**
+   * @return a tracker configured from <code>conf</code>, or null if hotspot tracking is disabled
+   */
+  public static RegionHotspotTracker create(Configuration conf) {
+    if (!conf.getBoolean(ENABLED_KEY, false)) {
+      return null;
+    }
+    return new RegionHotspotTracker(conf.getInt(SAMPLE_RATE_KEY, DEFAULT_SAMPLE_RATE),
+        conf.getInt(PREFIX_LENGTH_KEY, DEFAULT_PREFIX_LENGTH),
+        conf.getInt(TOP_K_KEY, DEFAULT_TOP_K),
+        conf.getLong(DECAY_PERIOD_KEY, DEFAULT_DECAY_PERIOD));
+  }
+
+  RegionHotspotTracker(int sampleRate, int prefixLength, int topK, long decayPeriod) {
+    this.sampleRate = Math.max(1, sampleRate);
+    this.prefixLength = prefixLength;
+    this.topK = Math.max(1, topK);
+    this.capacity = this.topK * 4;
+    this.decayPeriod = decayPeriod;
+    this.lastDecay = EnvironmentEdgeManager.currentTime();
+  }
+
+  /**
+   * Records a read that returned the given cell's row.
+   */
+  public void recordRead(Cell cell) {
+    if (sample()) {
+      record(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength(), true);
+    }
+  }
+
+  /**
+   * Records a write to the given row.
+   */
+  public void recordWrite(byte[] row) {
+    if (sample()) {
+      record(row, 0, row.length, false);
+    }
+  }
+
+  private boolean sample() {
+    return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+  }
+
+  private synchronized void record(byte[] row, int offset, int length, boolean read) {
+    long now = EnvironmentEdgeManager.currentTime();
+    if (decayPeriod > 0 && now - lastDecay >= decayPeriod) {
+      decay();
+      lastDecay = now;
+    }
+    int len = prefixLength > 0 ? Math.min(length, prefixLength) : length;
+    HotRange range = ranges.get(ByteBuffer.wrap(row, offset, len));
+    if (range == null) {
+      // Space-Saving: a new prefix takes over the least counted entry and inherits its count as
+      // the possible overestimation.
+      long floor = 0;
+      if (ranges.size() >= capacity) {
+        HotRange min = null;
+        for (HotRange r : ranges.values()) {
+          if (min == null || r.count < min.count) {
+            min = r;
+          }
+        }
+        ranges.remove(ByteBuffer.wrap(min.prefix));
+        floor = min.count;
+      }
+      range = new HotRange(Arrays.copyOfRange(row, offset, offset + len), floor);
+      ranges.put(ByteBuffer.wrap(range.prefix), range);
+    }
+    range.count++;
+    if (read) {
+      range.reads++;
+    } else {
+      range.writes++;
+    }
+    samples++;
+  }
+
+  private void decay() {
+    samples >>= 1;
+    ranges.values().removeIf(r -> {
+      r.count >>= 1;
+      r.error >>= 1;
+      r.reads >>= 1;
+      r.writes >>= 1;
+      return r.count == 0;
+    });
+  }
+
+  /**
+   * @return one in this many requests is sampled
+   */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * @return the number of samples currently counted, after decay
+   */
+  public synchronized long getSamples() {
+    return samples;
+  }
+
+  /**
+   * @return a copy of the hottest ranges, hottest first, at most {@value #TOP_K_KEY} of them
+   */
+  public synchronized List<HotRange> getTopRanges() {
+    List<HotRange> top = new ArrayList<>(ranges.size());
+    for (HotRange r : ranges.values()) {
+      HotRange copy = new HotRange(r.prefix, r.error);
+      copy.count = r.count;
+      copy.reads = r.reads;
+      copy.writes = r.writes;
+      copy.share = samples == 0 ? 0 : (float) r.count / samples;
+      top.add(copy);
+    }
+    top.sort((a, b) -> Long.compare(b.count, a.count));
+    return top.size() > topK ? top.subList(0, topK) : top;
+  }
+
+  /**
+   * @return the prefix of the hottest range if it took at least <code>minShare</code> of the
+   *         sampled requests, otherwise null
+   */
+  public synchronized byte[] getHotPrefix(float minShare) {
+    if (samples < MIN_SAMPLES_FOR_HOT_RANGE) {
+      return null;
+    }
+    HotRange hottest = null;
+    for (HotRange r : ranges.values()) {
+      if (hottest == null || r.count > hottest.count) {
+        hottest = r;
+      }
+    }
+    // Use the guaranteed count so an entry that only inherited a large error does not qualify.
+    if (hottest == null || (float) (hottest.count - hottest.error) / samples < minShare) {
+      return null;
+    }
+    return hottest.prefix;
+  }
+
+  /**
+   * @return the first row after every row starting with <code>prefix</code>, or null if there is
+   *         none
+   */
+  static byte[] endOfRange(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xff) {
+        byte[] end = Arrays.copyOf(prefix, i + 1);
+        end[i]++;
+        return end;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Renders the top ranges as <code>prefix=share%</code> pairs, for metrics and logs.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (HotRange r : getTopRanges()) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(Bytes.toStringBinary(r.prefix)).append('=')
+          .append(String.format("%.1f", r.share * 100)).append('%');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A row key prefix with its sampled request counts.
+   */
+  public static final class HotRange {
+    private final byte[] prefix;
+    private long count;
+    private long error;
+    private long reads;
+    private long writes;
+    private float share;
+
+    HotRange(byte[] prefix, long error) {
+      this.prefix = prefix;
+      this.count = error;
+      this.error = error;
+    }
+
+    public byte[] getPrefix() {
+      return prefix;
+    }
+
+    /**
+     * @return the sampled request count, which may overestimate by up to {@link #getError()}
+     */
+    public long getCount() {
+      return count;
+    }
+
+    public long getError() {
+      return error;
+    }
+
+    public long getReads() {
+      return reads;
+    }
+
+    public long getWrites() {
+      return writes;
+    }
+
+    /**
+     * @return the fraction of all sampled requests of the region that hit this range
+     */
+    public float getShare() {
+      return share;
+    }
+  }
+}
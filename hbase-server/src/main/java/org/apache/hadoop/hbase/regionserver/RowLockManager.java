@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.yetus.audience.InterfaceAudience;
+
+/**
+ * Hands out the row locks of a single {@link HRegion}.
+ * <p>
+ * The region keeps the policy around locking (deadlines, tracing, metrics, turning failures into
+ * IOExceptions); an implementation only decides how a row maps to a lock. The default keeps one
+ * lock per locked row, see {@link StripedRowLockManager} for an alternative which never allocates
+ * on the lock path. Set {@link HRegion#ROW_LOCK_MANAGER_CLASS} to plug in another one; it must
+ * have a public constructor taking a {@link org.apache.hadoop.conf.Configuration}.
+ * <p>
+ * Locks are reentrant for the owning thread and must be released by the thread which acquired
+ * them.
+ */
+@InterfaceAudience.Private
+public interface RowLockManager {
+
+  /**
+   * Lock the given row, waiting at most <code>timeout</code> milliseconds.
+   * @param row the row to lock
+   * @param readLock true for a shared lock, false for an exclusive one
+   * @param prevRowLock the lock this thread acquired last, if any. When it already covers the
+   *          requested lock it is returned as is, without being acquired again, and callers must
+   *          not release it twice
+   * @param timeout how long to wait, in milliseconds. When not positive, only
+   *          <code>prevRowLock</code> can be returned
+   * @return the acquired lock, or null if it could not be had within <code>timeout</code>
+   */
+  RowLock lockRow(byte[] row, boolean readLock, RowLock prevRowLock, long timeout)
+      throws InterruptedException;
+
+  /**
+   * @return the number of locks currently held or waited on
+   */
+  int getLockedCount();
+
+  /**
+   * @return a description of each lock currently held or waited on, for debugging
+   */
+  List<String> describeLocks();
+}
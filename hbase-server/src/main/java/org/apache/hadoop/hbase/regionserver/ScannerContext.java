@@ -24,6 +24,7 @@ import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.yetus.audience.InterfaceStability;
 import org.apache.hadoop.hbase.client.metrics.ServerSideScanMetrics;
+import org.apache.hadoop.hbase.io.hfile.BlockReadAhead;
 
 /**
  * ScannerContext instances encapsulate limit tracking AND progress towards those limits during
@@ -102,6 +103,12 @@ public class ScannerContext {
    */
   final ServerSideScanMetrics metrics;
 
+  /**
+   * When true, the time limit is also considered reached once a block read of this scan has
+   * missed the block cache, see {@link BlockReadAhead}.
+   */
+  boolean yieldOnBlockMiss;
+
   ScannerContext(boolean keepProgress, LimitFields limitsToCopy, boolean trackMetrics) {
     this.limits = new LimitFields();
     if (limitsToCopy != null) this.limits.copy(limitsToCopy);
@@ -319,7 +326,8 @@ public class ScannerContext {
    * @return true when the limit is enforceable from the checker's scope and it has been reached
    */
   boolean checkTimeLimit(LimitScope checkerScope) {
-    return hasTimeLimit(checkerScope) && progress.getTime() >= limits.getTime();
+    return hasTimeLimit(checkerScope) && (progress.getTime() >= limits.getTime()
+        || (yieldOnBlockMiss && BlockReadAhead.hasMissed()));
   }
 
   /**
@@ -371,6 +379,7 @@ public class ScannerContext {
   public static final class Builder {
     boolean keepProgress = DEFAULT_KEEP_PROGRESS;
     boolean trackMetrics = false;
+    boolean yieldOnBlockMiss = false;
     LimitFields limits = new LimitFields();
 
     private Builder() {
@@ -408,8 +417,19 @@ public class ScannerContext {
       return this;
     }
 
+    /**
+     * Only has an effect when a time limit is set and the scan runs between
+     * {@link BlockReadAhead#enter()} and {@link BlockReadAhead#exit()}.
+     */
+    public Builder setYieldOnBlockMiss(boolean yieldOnBlockMiss) {
+      this.yieldOnBlockMiss = yieldOnBlockMiss;
+      return this;
+    }
+
     public ScannerContext build() {
-      return new ScannerContext(keepProgress, limits, trackMetrics);
+      ScannerContext context = new ScannerContext(keepProgress, limits, trackMetrics);
+      context.yieldOnBlockMiss = yieldOnBlockMiss;
+      return context;
     }
   }
 
@@ -28,6 +28,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.ExtendedCell;
 import org.apache.hadoop.hbase.PrivateCellUtil;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValueUtil;
@@ -52,7 +53,7 @@ public abstract class Segment {
       + 6 * ClassSize.REFERENCE // cellSet, comparator, memStoreLAB, dataSize,
                                 // heapSize, and timeRangeTracker
       + Bytes.SIZEOF_LONG // minSequenceId
-      + Bytes.SIZEOF_BOOLEAN); // tagsPresent
+      + 2 * Bytes.SIZEOF_BOOLEAN); // tagsPresent and allCellsInChunks
   public final static long DEEP_OVERHEAD = FIXED_OVERHEAD + ClassSize.ATOMIC_REFERENCE
       + ClassSize.CELL_SET + 2 * ClassSize.ATOMIC_LONG;
 
@@ -66,6 +67,8 @@ public abstract class Segment {
   protected final AtomicLong heapSize;
   protected final TimeRangeTracker timeRangeTracker;
   protected volatile boolean tagsPresent;
+  // Whether every cell added so far lives in an MSLAB chunk, as a CellChunkMap requires
+  protected volatile boolean allCellsInChunks;
 
   // Empty constructor to be used when Segment is used as interface,
   // and there is no need in true Segments state
@@ -85,6 +88,7 @@ public abstract class Segment {
     this.dataSize = new AtomicLong(0);
     this.heapSize = new AtomicLong(0);
     this.tagsPresent = false;
+    this.allCellsInChunks = true;
     this.timeRangeTracker = trt;
   }
 
@@ -96,6 +100,7 @@ public abstract class Segment {
     this.dataSize = new AtomicLong(segment.keySize());
     this.heapSize = new AtomicLong(segment.heapSize.get());
     this.tagsPresent = segment.isTagsPresent();
+    this.allCellsInChunks = segment.isAllCellsInChunks();
     this.timeRangeTracker = segment.getTimeRangeTracker();
   }
 
@@ -187,6 +192,14 @@ public abstract class Segment {
     return tagsPresent;
   }
 
+  /**
+   * @return true if the data of every cell in this segment is in an MSLAB chunk, so that the
+   *         segment can be indexed by a CellChunkMap
+   */
+  public boolean isAllCellsInChunks() {
+    return allCellsInChunks;
+  }
+
   public void incScannerCount() {
     if (this.memStoreLAB != null) {
       this.memStoreLAB.incScannerCount();
@@ -305,6 +318,11 @@ public abstract class Segment {
     if (cellToAdd.getTagsLength() > 0) {
       tagsPresent = true;
     }
+    // Cells too big for the MSLAB, or added without it as by upsert, keep their own buffers.
+    if (succ && allCellsInChunks && (!(cellToAdd instanceof ExtendedCell)
+        || ((ExtendedCell) cellToAdd).getChunkId() == ExtendedCell.CELL_NOT_BASED_ON_CHUNK)) {
+      allCellsInChunks = false;
+    }
   }
 
   protected void updateMetaInfo(Cell cellToAdd, boolean succ, MemStoreSizing memstoreSizing) {
@@ -20,10 +20,13 @@ package org.apache.hadoop.hbase.regionserver;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CellComparator;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.yetus.audience.InterfaceAudience;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -99,6 +102,8 @@ public final class SegmentFactory {
       CSLMImmutableSegment segment, CompactingMemStore.IndexType idxType,
       MemStoreSizing memstoreSizing, MemStoreCompactionStrategy.Action action) {
     ImmutableSegment res = null;
+    idxType = chooseIndexType(idxType, segment.getCellsCount(),
+        Collections.singletonList(segment));
     switch (idxType) {
       case CHUNK_MAP:
         res = new CellChunkImmutableSegment(segment, memstoreSizing, action);
@@ -106,6 +111,9 @@ public final class SegmentFactory {
       case CSLM_MAP:
         assert false; // non-flat segment can not be the result of flattening
         break;
+      case ADAPTIVE:
+        assert false; // resolved above
+        break;
       case ARRAY_MAP:
         res = new CellArrayImmutableSegment(segment, memstoreSizing, action);
         break;
@@ -114,6 +122,36 @@ public final class SegmentFactory {
   }
 
 
+  /**
+   * Resolves {@link CompactingMemStore.IndexType#ADAPTIVE} to the flat index that takes the least
+   * memory for a segment of <code>numOfCells</code> cells built out of <code>sources</code>; any
+   * other index type is returned as is.
+   * <p>
+   * A CellChunkMap keeps a fixed size entry per cell in index chunks and so frees the cell
+   * object and array slot a CellArrayMap has to keep on heap, but it is allocated a whole chunk
+   * at a time and can only refer to cells whose data is in MSLAB chunks. So it is picked only
+   * when every source cell is in a chunk and the cells would fill enough of the index chunks to
+   * beat the CellArrayMap.
+   */
+  public CompactingMemStore.IndexType chooseIndexType(CompactingMemStore.IndexType idxType,
+      int numOfCells, List<? extends Segment> sources) {
+    if (idxType != CompactingMemStore.IndexType.ADAPTIVE) {
+      return idxType;
+    }
+    for (Segment segment : sources) {
+      if (segment.getMemStoreLAB() == null || !segment.isAllCellsInChunks()) {
+        return CompactingMemStore.IndexType.ARRAY_MAP;
+      }
+    }
+    long numOfChunks = (numOfCells + CellChunkMap.NUM_OF_CELL_REPS_IN_CHUNK - 1)
+        / CellChunkMap.NUM_OF_CELL_REPS_IN_CHUNK;
+    long chunkMapSize = numOfChunks * ChunkCreator.getInstance().getChunkSize();
+    long arrayMapSize =
+        (long) numOfCells * (ClassSize.CELL_ARRAY_MAP_ENTRY + KeyValue.FIXED_OVERHEAD);
+    return chunkMapSize < arrayMapSize ? CompactingMemStore.IndexType.CHUNK_MAP
+        : CompactingMemStore.IndexType.ARRAY_MAP;
+  }
+
   //****** private methods to instantiate concrete store segments **********//
   private ImmutableSegment createImmutableSegment(final Configuration conf, final CellComparator comparator,
       MemStoreSegmentsIterator iterator, MemStoreLAB memStoreLAB, int numOfCells,
@@ -127,6 +165,9 @@ public final class SegmentFactory {
     case CSLM_MAP:
       assert false; // non-flat segment can not be created here
       break;
+    case ADAPTIVE:
+      assert false; // resolved by the caller using chooseIndexType
+      break;
     case ARRAY_MAP:
       res = new CellArrayImmutableSegment(comparator, iterator, memStoreLAB, numOfCells, action);
       break;
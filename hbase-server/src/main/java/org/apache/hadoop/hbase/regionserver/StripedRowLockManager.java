@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.yetus.audience.InterfaceAudience;
+
+import org.apache.hadoop.hbase.shaded.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A {@link RowLockManager} which hashes rows onto a fixed, power of two sized table of fair
+ * read/write locks. Nothing is allocated on the lock path: the locks and the {@link RowLock}
+ * handles given out for them are created once, with the manager.
+ * <p>
+ * Rows which share a stripe share a lock, so unrelated rows can wait on one another. Size the
+ * table, via {@link #STRIPES_KEY}, well above the number of handlers locking rows concurrently.
+ * A thread may lock several rows of the same stripe since the locks are reentrant, but it cannot
+ * take an exclusive lock on a stripe it only holds shared; such a request fails straight away
+ * rather than waiting on itself until it times out.
+ */
+@InterfaceAudience.Private
+public class StripedRowLockManager implements RowLockManager {
+
+  public static final String STRIPES_KEY = "hbase.rowlock.stripes";
+  public static final int DEFAULT_STRIPES = 1024;
+  private static final int MAX_STRIPES = 1 << 24;
+
+  private final Stripe[] stripes;
+  private final int mask;
+
+  public StripedRowLockManager(Configuration conf) {
+    this(conf.getInt(STRIPES_KEY, DEFAULT_STRIPES));
+  }
+
+  @VisibleForTesting
+  StripedRowLockManager(int stripeCount) {
+    if (stripeCount <= 0 || stripeCount > MAX_STRIPES) {
+      throw new IllegalArgumentException(STRIPES_KEY + " must be in (0, " + MAX_STRIPES
+          + "], got " + stripeCount);
+    }
+    int size = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+    this.stripes = new Stripe[size];
+    for (int i = 0; i < size; i++) {
+      stripes[i] = new Stripe(i);
+    }
+    this.mask = size - 1;
+  }
+
+  @VisibleForTesting
+  int getStripeCount() {
+    return stripes.length;
+  }
+
+  @VisibleForTesting
+  int stripeFor(byte[] row) {
+    int h = Bytes.hashCode(row);
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  @Override
+  public RowLock lockRow(byte[] row, boolean readLock, RowLock prevRowLock, long timeout)
+      throws InterruptedException {
+    Stripe stripe = stripes[stripeFor(row)];
+    StripeLock wanted = readLock ? stripe.readLock : stripe.writeLock;
+    if (prevRowLock == wanted) {
+      // Consecutive rows of a batch landing on the same stripe share one acquisition.
+      return prevRowLock;
+    }
+    if (timeout <= 0) {
+      return null;
+    }
+    if (!readLock && stripe.lock.getReadHoldCount() > 0
+        && !stripe.lock.isWriteLockedByCurrentThread()) {
+      // A read lock can not be upgraded, we would only be waiting on ourselves.
+      return null;
+    }
+    return wanted.lock.tryLock(timeout, TimeUnit.MILLISECONDS) ? wanted : null;
+  }
+
+  @Override
+  public int getLockedCount() {
+    int count = 0;
+    for (Stripe stripe : stripes) {
+      if (stripe.isInUse()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public List<String> describeLocks() {
+    List<String> locks = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      if (stripe.isInUse()) {
+        locks.add(stripe.toString());
+      }
+    }
+    return locks;
+  }
+
+  private static final class Stripe {
+    private final int index;
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    final StripeLock readLock;
+    final StripeLock writeLock;
+
+    Stripe(int index) {
+      this.index = index;
+      this.readLock = new StripeLock(this, lock.readLock());
+      this.writeLock = new StripeLock(this, lock.writeLock());
+    }
+
+    boolean isInUse() {
+      return lock.isWriteLocked() || lock.getReadLockCount() > 0 || lock.hasQueuedThreads();
+    }
+
+    @Override
+    public String toString() {
+      return "Stripe{" +
+          "index=" + index +
+          ", readWriteLock=" + lock +
+          ", queueLength=" + lock.getQueueLength() +
+          '}';
+    }
+  }
+
+  private static final class StripeLock implements RowLock {
+    private final Stripe stripe;
+    private final Lock lock;
+
+    StripeLock(Stripe stripe, Lock lock) {
+      this.stripe = stripe;
+      this.lock = lock;
+    }
+
+    @Override
+    public void release() {
+      lock.unlock();
+    }
+
+    @Override
+    public String toString() {
+      return "StripeLock{" +
+          "stripe=" + stripe.index +
+          ", lock=" + lock +
+          '}';
+    }
+  }
+}
@@ -957,6 +957,14 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
   }
 
   protected final void postSync(final long timeInNanos, final int handlerSyncs) {
+    postSync(timeInNanos, handlerSyncs, -1);
+  }
+
+  /**
+   * @param appends number of appends made durable by the sync, or -1 if not known
+   */
+  protected final void postSync(final long timeInNanos, final int handlerSyncs,
+      final int appends) {
     if (timeInNanos > this.slowSyncNs) {
       String msg = new StringBuilder().append("Slow sync cost: ").append(timeInNanos / 1000000)
           .append(" ms, current pipeline: ").append(Arrays.toString(getPipeline())).toString();
@@ -965,7 +973,11 @@ public abstract class AbstractFSWAL<W extends WriterBase> implements WAL {
     }
     if (!listeners.isEmpty()) {
       for (WALActionsListener listener : listeners) {
-        listener.postSync(timeInNanos, handlerSyncs);
+        if (appends < 0) {
+          listener.postSync(timeInNanos, handlerSyncs);
+        } else {
+          listener.postSync(timeInNanos, handlerSyncs, appends);
+        }
       }
     }
   }
@@ -145,7 +145,8 @@ public abstract class AbstractProtobufLogWriter {
       try {
         this.compressionContext = new CompressionContext(LRUDictionary.class,
             FSUtils.isRecoveredEdits(path),
-            conf.getBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, true));
+            conf.getBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, true),
+            CompressionContext.getValueCompressionType(conf));
       } catch (Exception e) {
         throw new IOException("Failed to initiate CompressionContext", e);
       }
@@ -168,8 +169,14 @@ public abstract class AbstractProtobufLogWriter {
 
     boolean doTagCompress = doCompress
         && conf.getBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, true);
-    length.set(writeMagicAndWALHeader(ProtobufLogReader.PB_WAL_MAGIC, buildWALHeader(conf,
-      WALHeader.newBuilder().setHasCompression(doCompress).setHasTagCompression(doTagCompress))));
+    WALHeader.Builder headerBuilder =
+        WALHeader.newBuilder().setHasCompression(doCompress).setHasTagCompression(doTagCompress);
+    if (doCompress && compressionContext.valueCompressor != null) {
+      headerBuilder.setHasValueCompression(true).setValueCompressionAlgorithm(
+        compressionContext.valueCompressor.getAlgorithm().getName());
+    }
+    length.set(writeMagicAndWALHeader(ProtobufLogReader.PB_WAL_MAGIC,
+      buildWALHeader(conf, headerBuilder)));
 
     initAfterHeader(doCompress);
 
@@ -151,6 +151,15 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     "hbase.wal.async.wait.on.shutdown.seconds";
   public static final int DEFAULT_ASYNC_WAL_WAIT_ON_SHUTDOWN_IN_SECONDS = 5;
 
+  /**
+   * Upper bound, in milliseconds, of how long a requested sync may be held back so that edits
+   * arriving in the meantime are made durable by the same sync. The delay actually applied is the
+   * recent average sync time, capped by this, and shrinks as the unsynced bytes approach
+   * {@link #WAL_BATCH_SIZE}. 0 syncs as soon as the consumer runs out of edits.
+   */
+  public static final String ASYNC_WAL_SYNC_MAX_DELAY_MS = "hbase.wal.async.sync.max.delay.ms";
+  public static final long DEFAULT_ASYNC_WAL_SYNC_MAX_DELAY_MS = 0;
+
   private final EventLoopGroup eventLoopGroup;
 
   private final ExecutorService consumeExecutor;
@@ -212,6 +221,14 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
 
   private final int waitOnShutdownInSeconds;
 
+  private final long syncMaxDelayNs;
+
+  // moving average of the time syncs took, only accessed in the consumer
+  private long avgSyncTimeNs;
+
+  // when a held back sync is due, 0 if there is none. Only accessed in the consumer
+  private long syncDeadlineNs;
+
   public AsyncFSWAL(FileSystem fs, Path rootDir, String logDir, String archiveDir,
       Configuration conf, List<WALActionsListener> listeners, boolean failIfWALExists,
       String prefix, String suffix, EventLoopGroup eventLoopGroup,
@@ -261,6 +278,8 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
       conf.getInt(ASYNC_WAL_CREATE_MAX_RETRIES, DEFAULT_ASYNC_WAL_CREATE_MAX_RETRIES);
     waitOnShutdownInSeconds = conf.getInt(ASYNC_WAL_WAIT_ON_SHUTDOWN_IN_SECONDS,
       DEFAULT_ASYNC_WAL_WAIT_ON_SHUTDOWN_IN_SECONDS);
+    syncMaxDelayNs = TimeUnit.MILLISECONDS.toNanos(
+      conf.getLong(ASYNC_WAL_SYNC_MAX_DELAY_MS, DEFAULT_ASYNC_WAL_SYNC_MAX_DELAY_MS));
     rollWriter();
   }
 
@@ -335,14 +354,18 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
 
   private void syncCompleted(AsyncWriter writer, long processedTxid, long startTimeNs) {
     highestSyncedTxid.set(processedTxid);
+    int appends = 0;
     for (Iterator<FSWALEntry> iter = unackedAppends.iterator(); iter.hasNext();) {
       if (iter.next().getTxid() <= processedTxid) {
         iter.remove();
+        appends++;
       } else {
         break;
       }
     }
-    postSync(System.nanoTime() - startTimeNs, finishSync(true));
+    long syncTimeNs = System.nanoTime() - startTimeNs;
+    avgSyncTimeNs = avgSyncTimeNs == 0 ? syncTimeNs : (avgSyncTimeNs * 7 + syncTimeNs) / 8;
+    postSync(syncTimeNs, finishSync(true), appends);
     if (trySetReadyForRolling()) {
       // we have just finished a roll, then do not need to check for log rolling, the writer will be
       // closed soon.
@@ -356,6 +379,7 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
   }
 
   private void sync(AsyncWriter writer) {
+    syncDeadlineNs = 0;
     fileLengthAtLastSync = writer.getLength();
     long currentHighestProcessedAppendTxid = highestProcessedAppendTxid;
     highestProcessedAppendTxidAtLastSync = currentHighestProcessedAppendTxid;
@@ -544,7 +568,9 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
           if (writer.getLength() > fileLengthAtLastSync && !syncFutures.isEmpty() &&
             syncFutures.last().getTxid() > highestProcessedAppendTxidAtLastSync) {
             // no new data in the ringbuffer and we have at least one sync request
-            sync(writer);
+            if (!delaySync(writer)) {
+              sync(writer);
+            }
           }
           return;
         } else {
@@ -559,6 +585,34 @@ public class AsyncFSWAL extends AbstractFSWAL<AsyncWriter> {
     consumeExecutor.execute(consumer);
   }
 
+  // Group commit: decide whether to hold back a requested sync for a bit so that more edits join
+  // it. Waiting about as long as a sync takes at most doubles the latency of the edits already
+  // written, while under steady load it lets one sync cover the edits that would otherwise need
+  // the next one. The closer the unsynced bytes are to the batch size the shorter we wait.
+  private boolean delaySync(AsyncWriter writer) {
+    if (syncMaxDelayNs <= 0) {
+      return false;
+    }
+    long now = System.nanoTime();
+    if (syncDeadlineNs != 0) {
+      // already held back, the consumer is rescheduled when it is due
+      return now - syncDeadlineNs < 0;
+    }
+    double unsynced = (double) (writer.getLength() - fileLengthAtLastSync) / batchSize;
+    long delayNs =
+      (long) (Math.min(syncMaxDelayNs, avgSyncTimeNs) * (1 - Math.min(unsynced, 1)));
+    if (delayNs <= 0) {
+      return false;
+    }
+    syncDeadlineNs = now + delayNs;
+    eventLoopGroup.next().schedule(() -> {
+      if (shouldScheduleConsumer()) {
+        consumeExecutor.execute(consumer);
+      }
+    }, delayNs, TimeUnit.NANOSECONDS);
+    return true;
+  }
+
   private boolean shouldScheduleConsumer() {
     int currentEpochAndState = epochAndState;
     if (writerBroken(currentEpochAndState) || waitingRoll(currentEpochAndState)) {
@@ -18,13 +18,23 @@
 
 package org.apache.hadoop.hbase.regionserver.wal;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.yetus.audience.InterfaceAudience;
 import org.apache.hadoop.hbase.io.TagCompressionContext;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.util.Dictionary;
+import org.apache.hadoop.hbase.io.util.StreamUtils;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.compress.Compressor;
 
 /**
  * Context that holds the various dictionaries for compression in WAL.
@@ -35,6 +45,20 @@ public class CompressionContext {
   static final String ENABLE_WAL_TAGS_COMPRESSION =
       "hbase.regionserver.wal.tags.enablecompression";
 
+  /**
+   * Whether to compress cell values with a block codec, on top of the dictionary compression of
+   * the WAL. Only has an effect when WAL compression is enabled.
+   */
+  public static final String ENABLE_WAL_VALUE_COMPRESSION =
+      "hbase.regionserver.wal.value.enablecompression";
+
+  /** The {@link Compression.Algorithm} to compress values with */
+  public static final String WAL_VALUE_COMPRESSION_TYPE =
+      "hbase.regionserver.wal.value.compression.type";
+
+  static final Compression.Algorithm DEFAULT_WAL_VALUE_COMPRESSION_TYPE =
+      Compression.Algorithm.GZ;
+
   // visible only for WALKey, until we move everything into o.a.h.h.wal
   public final Dictionary regionDict;
   public final Dictionary tableDict;
@@ -43,10 +67,22 @@ public class CompressionContext {
   final Dictionary rowDict;
   // Context used for compressing tags
   TagCompressionContext tagCompressionContext = null;
+  // Compresses values; null if values are written as they are
+  ValueCompressor valueCompressor = null;
 
   public CompressionContext(Class<? extends Dictionary> dictType, boolean recoveredEdits,
       boolean hasTagCompression) throws SecurityException, NoSuchMethodException,
       InstantiationException, IllegalAccessException, InvocationTargetException {
+    this(dictType, recoveredEdits, hasTagCompression, null);
+  }
+
+  /**
+   * @param valueCompressionType algorithm to compress values with, null to not compress them
+   */
+  public CompressionContext(Class<? extends Dictionary> dictType, boolean recoveredEdits,
+      boolean hasTagCompression, Compression.Algorithm valueCompressionType)
+      throws SecurityException, NoSuchMethodException, InstantiationException,
+      IllegalAccessException, InvocationTargetException {
     Constructor<? extends Dictionary> dictConstructor =
         dictType.getConstructor();
     regionDict = dictConstructor.newInstance();
@@ -68,6 +104,81 @@ public class CompressionContext {
     if (hasTagCompression) {
       tagCompressionContext = new TagCompressionContext(dictType, Short.MAX_VALUE);
     }
+    if (valueCompressionType != null && valueCompressionType != Compression.Algorithm.NONE) {
+      valueCompressor = new ValueCompressor(valueCompressionType);
+    }
+  }
+
+  /**
+   * @return the algorithm to compress values with as configured, or null if value compression
+   *         is not enabled
+   */
+  static Compression.Algorithm getValueCompressionType(Configuration conf) {
+    if (!conf.getBoolean(ENABLE_WAL_VALUE_COMPRESSION, false)) {
+      return null;
+    }
+    return Compression.getCompressionAlgorithmByName(
+      conf.get(WAL_VALUE_COMPRESSION_TYPE, DEFAULT_WAL_VALUE_COMPRESSION_TYPE.getName()));
+  }
+
+  /**
+   * Compresses each value on its own, so that entries stay readable one at a time from any
+   * position the readers may seek to. Values too small to gain from it are left as they are.
+   */
+  static class ValueCompressor {
+    // Values shorter than this rarely compress
+    static final int MIN_COMPRESSED_SIZE = 64;
+
+    private final Compression.Algorithm algorithm;
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    ValueCompressor(Compression.Algorithm algorithm) {
+      this.algorithm = algorithm;
+    }
+
+    Compression.Algorithm getAlgorithm() {
+      return algorithm;
+    }
+
+    /**
+     * Writes the length of the compressed value and the compressed value, or a zero length and
+     * the value as it is if compressing does not make it smaller.
+     */
+    void writeValue(OutputStream out, byte[] value, int offset, int length) throws IOException {
+      if (length >= MIN_COMPRESSED_SIZE) {
+        compressed.reset();
+        Compressor compressor = algorithm.getCompressor();
+        try {
+          OutputStream os = algorithm.createCompressionStream(compressed, compressor, 0);
+          os.write(value, offset, length);
+          os.flush();
+        } finally {
+          algorithm.returnCompressor(compressor);
+        }
+        if (compressed.size() < length) {
+          StreamUtils.writeRawVInt32(out, compressed.size());
+          compressed.writeTo(out);
+          return;
+        }
+      }
+      StreamUtils.writeRawVInt32(out, 0);
+      out.write(value, offset, length);
+    }
+
+    /**
+     * Reads a value written by {@link #writeValue(OutputStream, byte[], int, int)}.
+     */
+    void readValue(InputStream in, byte[] to, int offset, int length) throws IOException {
+      int compressedLength = StreamUtils.readRawVarint32(in);
+      if (compressedLength == 0) {
+        IOUtils.readFully(in, to, offset, length);
+        return;
+      }
+      byte[] buf = new byte[compressedLength];
+      IOUtils.readFully(in, buf, 0, compressedLength);
+      Compression.decompress(to, offset, new ByteArrayInputStream(buf), compressedLength, length,
+        algorithm);
+    }
   }
 
   void clear() {
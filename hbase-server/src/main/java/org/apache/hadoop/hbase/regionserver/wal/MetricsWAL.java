@@ -55,6 +55,12 @@ public class MetricsWAL implements WALActionsListener {
     source.incrementSyncTime(timeInNanos/1000000L);
   }
 
+  @Override
+  public void postSync(final long timeInNanos, final int handlerSyncs, final int appends) {
+    postSync(timeInNanos, handlerSyncs);
+    source.incrementAppendsPerSync(appends);
+  }
+
   @Override
   public void postAppend(final long size, final long time, final WALKey logkey,
       final WALEdit logEdit) throws IOException {
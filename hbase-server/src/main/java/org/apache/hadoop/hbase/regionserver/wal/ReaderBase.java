@@ -27,6 +27,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.util.LRUDictionary;
 import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.wal.AbstractFSWALProvider;
@@ -70,7 +71,8 @@ public abstract class ReaderBase implements AbstractFSWALProvider.Reader {
       try {
         if (compressionContext == null) {
           compressionContext = new CompressionContext(LRUDictionary.class,
-              FSUtils.isRecoveredEdits(path), hasTagCompression());
+              FSUtils.isRecoveredEdits(path), hasTagCompression(),
+              getValueCompressionAlgorithm());
         } else {
           compressionContext.clear();
         }
@@ -155,6 +157,11 @@ public abstract class ReaderBase implements AbstractFSWALProvider.Reader {
    */
   protected abstract boolean hasTagCompression();
 
+  /**
+   * @return The algorithm values are compressed with in this log, null if they are not.
+   */
+  protected abstract Compression.Algorithm getValueCompressionAlgorithm();
+
   /**
    * Read next entry.
    * @param e The entry to read into.
@@ -106,4 +106,16 @@ public interface WALActionsListener {
    * sync.
    */
   default void postSync(final long timeInNanos, final int handlerSyncs) {}
+
+  /**
+   * For notification post writer sync, from WAL implementations that know how many appends the
+   * sync made durable. Defaults to {@link #postSync(long, int)}.
+   * @param timeInNanos How long the filesystem sync took in nanoseconds.
+   * @param handlerSyncs How many sync handler calls were released by this call to filesystem
+   * sync.
+   * @param appends How many appends were made durable by this call to filesystem sync.
+   */
+  default void postSync(final long timeInNanos, final int handlerSyncs, final int appends) {
+    postSync(timeInNanos, handlerSyncs);
+  }
 }
@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ByteBufferCell;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HBaseInterfaceAudience;
@@ -212,10 +213,20 @@ public class WALCellCodec implements Codec {
       PrivateCellUtil.compressRow(out, cell, compression.rowDict);
       PrivateCellUtil.compressFamily(out, cell, compression.familyDict);
       PrivateCellUtil.compressQualifier(out, cell, compression.qualifierDict);
-      // Write timestamp, type and value as uncompressed.
+      // Write timestamp, type and value as uncompressed, unless values are compressed.
       StreamUtils.writeLong(out, cell.getTimestamp());
       out.write(cell.getTypeByte());
-      PrivateCellUtil.writeValue(out, cell, cell.getValueLength());
+      if (compression.valueCompressor != null) {
+        if (cell instanceof ByteBufferCell) {
+          byte[] value = CellUtil.cloneValue(cell);
+          compression.valueCompressor.writeValue(out, value, 0, value.length);
+        } else {
+          compression.valueCompressor.writeValue(out, cell.getValueArray(), cell.getValueOffset(),
+            cell.getValueLength());
+        }
+      } else {
+        PrivateCellUtil.writeValue(out, cell, cell.getValueLength());
+      }
       if (tagsLength > 0) {
         if (compression.tagCompressionContext != null) {
           // Write tags using Dictionary compression
@@ -275,7 +286,13 @@ public class WALCellCodec implements Codec {
       if (tagsLength > 0) {
         tsTypeValLen = tsTypeValLen - tagsLength - KeyValue.TAGS_LENGTH_SIZE;
       }
-      IOUtils.readFully(in, backingArray, pos, tsTypeValLen);
+      if (compression.valueCompressor != null) {
+        IOUtils.readFully(in, backingArray, pos, KeyValue.TIMESTAMP_TYPE_SIZE);
+        compression.valueCompressor.readValue(in, backingArray,
+          pos + KeyValue.TIMESTAMP_TYPE_SIZE, vlength);
+      } else {
+        IOUtils.readFully(in, backingArray, pos, tsTypeValLen);
+      }
       pos += tsTypeValLen;
 
       // tags
@@ -50,6 +50,11 @@ public class BloomFilterChunk implements BloomFilterBase {
   protected ByteBuffer bloom;
   /** The type of bloom */
   protected BloomType bloomType;
+  /**
+   * Whether all the bits of a key are set within one
+   * {@link BloomFilterUtil#BLOCKED_BLOOM_BLOCK_BYTES} block rather than across the whole chunk
+   */
+  protected final boolean blocked;
 
   /**
    * Loads bloom filter meta data from file input.
@@ -63,6 +68,7 @@ public class BloomFilterChunk implements BloomFilterBase {
     this.hashType = meta.readInt();
     this.keyCount = meta.readInt();
     this.maxKeys = this.keyCount;
+    this.blocked = false;
 
     this.hash = Hash.getInstance(this.hashType);
     if (hash == null) {
@@ -81,13 +87,21 @@ public class BloomFilterChunk implements BloomFilterBase {
    * @return error rate for this particular Bloom filter
    */
   public double actualErrorRate() {
+    if (blocked) {
+      return BloomFilterUtil.blockedErrorRate(keyCount, byteSize * 8, hashCount);
+    }
     return BloomFilterUtil.actualErrorRate(keyCount, byteSize * 8, hashCount);
   }
 
   public BloomFilterChunk(int hashType, BloomType bloomType) {
+    this(hashType, bloomType, false);
+  }
+
+  public BloomFilterChunk(int hashType, BloomType bloomType, boolean blocked) {
     this.hashType = hashType;
     this.hash = Hash.getInstance(hashType);
     this.bloomType = bloomType;
+    this.blocked = blocked;
   }
 
   /**
@@ -127,7 +141,7 @@ public class BloomFilterChunk implements BloomFilterBase {
    * @return a Bloom filter with the same configuration as this
    */
   public BloomFilterChunk createAnother() {
-    BloomFilterChunk bbf = new BloomFilterChunk(hashType, this.bloomType);
+    BloomFilterChunk bbf = new BloomFilterChunk(hashType, this.bloomType, this.blocked);
     bbf.byteSize = byteSize;
     bbf.hashCount = hashCount;
     bbf.maxKeys = maxKeys;
@@ -200,6 +214,19 @@ public class BloomFilterChunk implements BloomFilterBase {
   }
 
   private void setHashLoc(int hash1, int hash2) {
+    if (blocked) {
+      int blockBits = BloomFilterUtil.BLOCKED_BLOOM_BLOCK_BYTES * 8;
+      long blockBitOffset = (long) BloomFilterUtil.blockedBlockIndex(hash1,
+        (int) (this.byteSize / BloomFilterUtil.BLOCKED_BLOOM_BLOCK_BYTES)) * blockBits;
+      int compositeHash = hash2;
+      int delta = BloomFilterUtil.blockedHashDelta(hash2);
+      for (int i = 0; i < this.hashCount; i++) {
+        set(blockBitOffset + (compositeHash & (blockBits - 1)));
+        compositeHash += delta;
+      }
+      ++this.keyCount;
+      return;
+    }
     for (int i = 0; i < this.hashCount; i++) {
       long hashLoc = Math.abs((hash1 + i * hash2) % (this.byteSize * 8));
       set(hashLoc);
@@ -258,6 +285,10 @@ public class BloomFilterChunk implements BloomFilterBase {
     return hashType;
   }
 
+  public boolean isBlocked() {
+    return blocked;
+  }
+
   public void compactBloom() {
     // see if the actual size is exponentially smaller than expected.
     if (this.keyCount > 0 && this.bloom.hasArray()) {
@@ -265,8 +296,10 @@ public class BloomFilterChunk implements BloomFilterBase {
       int newByteSize = (int)this.byteSize;
       int newMaxKeys = this.maxKeys;
 
-      // while exponentially smaller & folding is lossless
-      while ((newByteSize & 1) == 0 && newMaxKeys > (this.keyCount<<1)) {
+      // while exponentially smaller & folding is lossless. A blocked bloom can only be folded
+      // while it has an even number of blocks, so that every block folds onto another whole one.
+      int foldUnit = blocked ? BloomFilterUtil.BLOCKED_BLOOM_BLOCK_BYTES << 1 : 2;
+      while (newByteSize % foldUnit == 0 && newMaxKeys > (this.keyCount<<1)) {
         pieces <<= 1;
         newByteSize >>= 1;
         newMaxKeys >>= 1;
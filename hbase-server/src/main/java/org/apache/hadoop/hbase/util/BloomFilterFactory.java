@@ -81,6 +81,15 @@ public final class BloomFilterFactory {
   public static final String IO_STOREFILE_BLOOM_BLOCK_SIZE =
       "io.storefile.bloom.block.size";
 
+  /**
+   * Write blocked Bloom filters, which set all the bits of a key within a single cache line, so
+   * a lookup costs one cache miss rather than one per hash function. For a given error rate they
+   * take a few percent more space. May be set per column family. Files written with this on can
+   * only be read by versions that know about blocked Bloom filters.
+   */
+  public static final String IO_STOREFILE_BLOOM_BLOCKED =
+      "io.storefile.bloom.blocked";
+
   /** Maximum number of times a Bloom filter can be "folded" if oversized */
   private static final int MAX_ALLOWED_FOLD_FACTOR = 7;
 
@@ -103,6 +112,9 @@ public final class BloomFilterFactory {
       case CompoundBloomFilterBase.VERSION:
         return new CompoundBloomFilter(meta, reader);
 
+      case CompoundBloomFilterBase.BLOCKED_VERSION:
+        return new CompoundBloomFilter(meta, reader, true);
+
       default:
         throw new IllegalArgumentException(
           "Bad bloom filter format version " + version
@@ -125,6 +137,13 @@ public final class BloomFilterFactory {
     return conf.getBoolean(IO_STOREFILE_DELETEFAMILY_BLOOM_ENABLED, true);
   }
 
+  /**
+   * @return true if blocked Bloom filters should be written in the given configuration
+   */
+  public static boolean isBlockedBloomEnabled(Configuration conf) {
+    return conf.getBoolean(IO_STOREFILE_BLOOM_BLOCKED, false);
+  }
+
   /**
    * @return the Bloom filter error rate in the given configuration
    */
@@ -194,7 +213,8 @@ public final class BloomFilterFactory {
     // In case of compound Bloom filters we ignore the maxKeys hint.
     CompoundBloomFilterWriter bloomWriter = new CompoundBloomFilterWriter(getBloomBlockSize(conf),
         err, Hash.getHashType(conf), maxFold, cacheConf.shouldCacheBloomsOnWrite(),
-        bloomType == BloomType.ROWCOL ? CellComparatorImpl.COMPARATOR : null, bloomType);
+        bloomType == BloomType.ROWCOL ? CellComparatorImpl.COMPARATOR : null, bloomType,
+        isBlockedBloomEnabled(conf));
     writer.addInlineBlockWriter(bloomWriter);
     return bloomWriter;
   }
@@ -225,7 +245,7 @@ public final class BloomFilterFactory {
     // In case of compound Bloom filters we ignore the maxKeys hint.
     CompoundBloomFilterWriter bloomWriter = new CompoundBloomFilterWriter(getBloomBlockSize(conf),
         err, Hash.getHashType(conf), maxFold, cacheConf.shouldCacheBloomsOnWrite(),
-        null, BloomType.ROW);
+        null, BloomType.ROW, isBlockedBloomEnabled(conf));
     writer.addInlineBlockWriter(bloomWriter);
     return bloomWriter;
   }
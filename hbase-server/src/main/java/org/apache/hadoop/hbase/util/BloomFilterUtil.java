@@ -45,6 +45,14 @@ public final class BloomFilterUtil {
    */
   private static Random randomGeneratorForTest;
   
+  /**
+   * Size of a block of a blocked Bloom filter: one CPU cache line. All the bits of a key in a
+   * blocked Bloom filter are set within a single block, so a lookup touches one cache line
+   * however many hash functions are used.
+   */
+  public static final int BLOCKED_BLOOM_BLOCK_BYTES = 64;
+  private static final int BLOCKED_BLOOM_BLOCK_BITS = BLOCKED_BLOOM_BLOCK_BYTES * 8;
+
   /** Bit-value lookup array to prevent doing the same work over and over */
   public static final byte [] bitvals = {
     (byte) 0x01,
@@ -135,6 +143,59 @@ public final class BloomFilterUtil {
         / bitSize)) * functionCount);
   }
 
+  /**
+   * Computes the error rate of a blocked Bloom filter. The number of keys falling in each block
+   * is approximately Poisson distributed, and each block behaves as a standard Bloom filter of
+   * {@link #BLOCKED_BLOOM_BLOCK_BYTES} bytes holding that many keys. Overfull blocks push the
+   * error rate above that of a standard Bloom filter of the same size.
+   *
+   * @param keyCount
+   * @param bitSize
+   * @param functionCount
+   * @return the error rate
+   */
+  public static double blockedErrorRate(long keyCount, long bitSize, int functionCount) {
+    double keysPerBlock = keyCount * (double) BLOCKED_BLOOM_BLOCK_BITS / bitSize;
+    if (keysPerBlock > 700) {
+      // exp(-keysPerBlock) underflows; a block this full matches everything anyway.
+      return 1.0;
+    }
+    double poisson = Math.exp(-keysPerBlock);
+    double errorRate = 0;
+    long last = (long) (keysPerBlock + 12 * Math.sqrt(keysPerBlock) + 20);
+    for (long i = 0; i <= last; i++) {
+      errorRate += poisson * actualErrorRate(i, BLOCKED_BLOOM_BLOCK_BITS, functionCount);
+      poisson *= keysPerBlock / (i + 1);
+    }
+    return errorRate;
+  }
+
+  /**
+   * The maximum number of keys we can put into a blocked Bloom filter of a certain size to get
+   * the given error rate, with the given number of hash functions.
+   *
+   * @param bitSize
+   * @param errorRate
+   * @param hashCount
+   * @return the maximum number of keys
+   * @see #blockedErrorRate(long, long, int)
+   */
+  public static long computeBlockedMaxKeys(long bitSize, double errorRate, int hashCount) {
+    // The error rate grows with the key count, so binary search below the bound for a standard
+    // Bloom filter, which a blocked one never beats.
+    long low = 0;
+    long high = Math.max(1, computeMaxKeys(bitSize, errorRate, hashCount));
+    while (low < high) {
+      long mid = (low + high + 1) >>> 1;
+      if (blockedErrorRate(mid, bitSize, hashCount) <= errorRate) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
   /**
    * Increases the given byte size of a Bloom filter until it can be folded by
    * the given factor.
@@ -195,6 +256,42 @@ public final class BloomFilterUtil {
     return bbf;
   }
 
+  /**
+   * Creates a blocked Bloom filter chunk of about the given size. The size is rounded up to a
+   * whole number of {@link #BLOCKED_BLOOM_BLOCK_BYTES} blocks, and then to a multiple of
+   * <code>2 ** foldFactor</code> blocks so that folding is possible. The fold factor is lowered
+   * for chunks too small to be folded that far.
+   *
+   * @param byteSizeHint the desired number of bytes for the Bloom filter bit array
+   * @param errorRate target false positive rate of the Bloom filter
+   * @param hashType Bloom filter hash function type
+   * @param foldFactor
+   * @param bloomType
+   * @return the new blocked Bloom filter of about the desired size
+   */
+  public static BloomFilterChunk createBlockedBySize(int byteSizeHint,
+      double errorRate, int hashType, int foldFactor, BloomType bloomType) {
+    BloomFilterChunk bbf = new BloomFilterChunk(hashType, bloomType, true);
+
+    long numBlocks = Math.max(1,
+      (byteSizeHint + BLOCKED_BLOOM_BLOCK_BYTES - 1) / BLOCKED_BLOOM_BLOCK_BYTES);
+    while (foldFactor > 0 && (1L << foldFactor) > numBlocks) {
+      --foldFactor;
+    }
+    numBlocks = ((numBlocks + (1L << foldFactor) - 1) >> foldFactor) << foldFactor;
+    if (numBlocks * BLOCKED_BLOOM_BLOCK_BYTES > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("byteSize=" + numBlocks * BLOCKED_BLOOM_BLOCK_BYTES
+          + " too large for byteSizeHint=" + byteSizeHint + ", foldFactor=" + foldFactor);
+    }
+    bbf.byteSize = numBlocks * BLOCKED_BLOOM_BLOCK_BYTES;
+    long bitSize = bbf.byteSize * 8;
+    bbf.maxKeys = (int) Math.max(1, idealMaxKeys(bitSize, errorRate));
+    bbf.hashCount = optimalFunctionCount(bbf.maxKeys, bitSize);
+    bbf.maxKeys = (int) Math.max(1, computeBlockedMaxKeys(bitSize, errorRate, bbf.hashCount));
+
+    return bbf;
+  }
+
   public static boolean contains(byte[] buf, int offset, int length,
       ByteBuff bloomBuf, int bloomOffset, int bloomSize, Hash hash,
       int hashCount) {
@@ -202,6 +299,65 @@ public final class BloomFilterUtil {
     return contains(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey);
   }
 
+  /**
+   * Same as {@link #contains(byte[], int, int, ByteBuff, int, int, Hash, int)} for a blocked
+   * Bloom filter.
+   */
+  public static boolean containsBlocked(byte[] buf, int offset, int length,
+      ByteBuff bloomBuf, int bloomOffset, int bloomSize, Hash hash,
+      int hashCount) {
+    HashKey<byte[]> hashKey = new ByteArrayHashKey(buf, offset, length);
+    return containsBlocked(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey);
+  }
+
+  private static <T> boolean containsBlocked(ByteBuff bloomBuf, int bloomOffset, int bloomSize,
+      Hash hash, int hashCount, HashKey<T> hashKey) {
+    int hash1 = hash.hash(hashKey, 0);
+    int hash2 = hash.hash(hashKey, hash1);
+    int numBlocks = bloomSize / BLOCKED_BLOOM_BLOCK_BYTES;
+
+    if (randomGeneratorForTest == null) {
+      // Production mode.
+      int blockBitOffset = blockedBlockIndex(hash1, numBlocks) * BLOCKED_BLOOM_BLOCK_BITS;
+      int compositeHash = hash2;
+      int delta = blockedHashDelta(hash2);
+      for (int i = 0; i < hashCount; i++) {
+        int hashLoc = blockBitOffset + (compositeHash & (BLOCKED_BLOOM_BLOCK_BITS - 1));
+        compositeHash += delta;
+        if (!checkBit(hashLoc, bloomBuf, bloomOffset)) {
+          return false;
+        }
+      }
+    } else {
+      // Test mode with "fake lookups" to estimate "ideal false positive rate".
+      int blockBitOffset = randomGeneratorForTest.nextInt(numBlocks) * BLOCKED_BLOOM_BLOCK_BITS;
+      for (int i = 0; i < hashCount; i++) {
+        int hashLoc = blockBitOffset + randomGeneratorForTest.nextInt(BLOCKED_BLOOM_BLOCK_BITS);
+        if (!checkBit(hashLoc, bloomBuf, bloomOffset)){
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the block of a blocked Bloom filter holding the bits of a key with the given first
+   *         hash. Taking the remainder keeps a key in the same block, modulo the new block
+   *         count, when the filter is folded.
+   */
+  static int blockedBlockIndex(int hash1, int numBlocks) {
+    return (hash1 & Integer.MAX_VALUE) % numBlocks;
+  }
+
+  /**
+   * @return the step between the bit positions of a key within its block, derived from the
+   *         second hash by rotation so one hash is enough for all probes.
+   */
+  static int blockedHashDelta(int hash2) {
+    return (hash2 >>> 17) | (hash2 << 15);
+  }
+
   private static <T> boolean contains(ByteBuff bloomBuf, int bloomOffset, int bloomSize, Hash hash,
       int hashCount, HashKey<T> hashKey) {
     int hash1 = hash.hash(hashKey, 0);
@@ -237,6 +393,13 @@ public final class BloomFilterUtil {
     return contains(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey);
   }
 
+  public static boolean containsBlocked(Cell cell, ByteBuff bloomBuf, int bloomOffset,
+      int bloomSize, Hash hash, int hashCount, BloomType type) {
+    HashKey<Cell> hashKey = type == BloomType.ROW ? new RowBloomHashKey(cell)
+        : new RowColBloomHashKey(cell);
+    return containsBlocked(bloomBuf, bloomOffset, bloomSize, hash, hashCount, hashKey);
+  }
+
   /**
    * Check if bit at specified index is 1.
    *
@@ -0,0 +1,293 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider.GroupSwitcher;
+import org.apache.hadoop.hbase.wal.RegionGroupingProvider.RegionGroupingStrategy;
+import org.apache.yetus.audience.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor;
+
+/**
+ * A WAL grouping strategy that spreads regions over "hbase.wal.regiongrouping.numgroups" WAL
+ * groups according to how loaded the groups are, and moves hot regions off overloaded groups.
+ * <p>
+ * A listener on each group's WAL measures the share of time the WAL spends syncing and the bytes
+ * each region appends. The load of all groups is sampled every
+ * "hbase.wal.regiongrouping.dynamic.sample.interval" milliseconds, from whichever WAL syncs first
+ * once the interval is over, so idle groups are sampled too. A region asking for a WAL gets the
+ * group with the fewest open regions among those that are not overloaded, i.e. whose load is
+ * within "hbase.wal.regiongrouping.dynamic.overload.ratio" of the least loaded group.
+ * <p>
+ * When the provider can move open regions, see {@link GroupSwitcher}, the busiest group is
+ * relieved at each sample if it is overloaded, spends at least
+ * "hbase.wal.regiongrouping.dynamic.move.min.load" of its time syncing and had more than one
+ * region appending: the region that appended the most bytes is moved to the least loaded group,
+ * so one hot region does not slow down every region sharing its WAL. Moving flushes the region
+ * and blocks its updates for a second, short flush, so only one region is moved at a time. The
+ * region server refuses to move regions of replicated tables, which then stay where they are.
+ * <p>
+ * The listener also sees the close marker a region writes to its WAL, at which point the region
+ * no longer counts against its group and is placed afresh if it is opened here again. Regions
+ * that write no close marker, like read replicas, keep counting against the group they were
+ * placed in. The mapping is not kept across restarts.
+ */
+@InterfaceAudience.Private
+public class DynamicGroupingStrategy implements RegionGroupingStrategy {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DynamicGroupingStrategy.class);
+
+  static final String OVERLOAD_RATIO = "hbase.wal.regiongrouping.dynamic.overload.ratio";
+  static final float DEFAULT_OVERLOAD_RATIO = 2.0f;
+  static final String SAMPLE_INTERVAL = "hbase.wal.regiongrouping.dynamic.sample.interval";
+  static final long DEFAULT_SAMPLE_INTERVAL = 60000;
+  static final String MOVE_MIN_LOAD = "hbase.wal.regiongrouping.dynamic.move.min.load";
+  static final float DEFAULT_MOVE_MIN_LOAD = 0.2f;
+
+  private final ConcurrentHashMap<String, GroupLoad> regionToGroup = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, GroupLoad> groupsByName = new ConcurrentHashMap<>();
+  private GroupLoad[] groups;
+  private float overloadRatio;
+  private float moveMinLoad;
+  private long sampleInterval;
+  private volatile long nextSample;
+  // guarded by this strategy
+  private long lastSample;
+  private GroupSwitcher switcher;
+  private String moving;
+
+  @Override
+  public void init(Configuration config, String providerId) {
+    int regionGroupNumber = config.getInt(BoundedGroupingStrategy.NUM_REGION_GROUPS,
+      BoundedGroupingStrategy.DEFAULT_NUM_REGION_GROUPS);
+    overloadRatio = config.getFloat(OVERLOAD_RATIO, DEFAULT_OVERLOAD_RATIO);
+    moveMinLoad = config.getFloat(MOVE_MIN_LOAD, DEFAULT_MOVE_MIN_LOAD);
+    sampleInterval = config.getLong(SAMPLE_INTERVAL, DEFAULT_SAMPLE_INTERVAL);
+    groups = new GroupLoad[regionGroupNumber];
+    for (int i = 0; i < regionGroupNumber; i++) {
+      groups[i] = new GroupLoad(providerId + GROUP_NAME_DELIMITER + "regiongroup-" + i);
+      groupsByName.put(groups[i].name, groups[i]);
+    }
+    lastSample = EnvironmentEdgeManager.currentTime();
+    nextSample = lastSample + sampleInterval;
+  }
+
+  @Override
+  public String group(byte[] identifier, byte[] namespace) {
+    String idStr = Bytes.toString(identifier);
+    GroupLoad group = regionToGroup.get(idStr);
+    if (group == null) {
+      synchronized (this) {
+        group = regionToGroup.get(idStr);
+        if (group == null) {
+          group = pickGroup();
+          group.regions++;
+          regionToGroup.put(idStr, group);
+        }
+      }
+    }
+    return group.name;
+  }
+
+  @Override
+  public WALActionsListener getListener(String group) {
+    return groupsByName.get(group);
+  }
+
+  @Override
+  public synchronized void setGroupSwitcher(GroupSwitcher switcher) {
+    this.switcher = switcher;
+  }
+
+  private GroupLoad leastLoaded() {
+    GroupLoad least = groups[0];
+    for (GroupLoad group : groups) {
+      if (group.load < least.load) {
+        least = group;
+      }
+    }
+    return least;
+  }
+
+  // Must hold the lock on this strategy
+  private GroupLoad pickGroup() {
+    double limit = leastLoaded().load * overloadRatio;
+    GroupLoad picked = null;
+    for (GroupLoad group : groups) {
+      if (group.load <= limit && (picked == null || group.regions < picked.regions)) {
+        picked = group;
+      }
+    }
+    return picked;
+  }
+
+  private void maybeSample() {
+    long now = EnvironmentEdgeManager.currentTime();
+    if (now >= nextSample) {
+      sample(now);
+    }
+  }
+
+  private synchronized void sample(long now) {
+    if (now < nextSample) {
+      return;
+    }
+    long elapsedMs = Math.max(1, now - lastSample);
+    lastSample = now;
+    nextSample = now + sampleInterval;
+    for (GroupLoad group : groups) {
+      group.sample(elapsedMs);
+    }
+    rebalance();
+  }
+
+  // Must hold the lock on this strategy
+  private void rebalance() {
+    if (switcher == null || moving != null) {
+      return;
+    }
+    GroupLoad least = leastLoaded();
+    GroupLoad busiest = least;
+    for (GroupLoad group : groups) {
+      if (group.load > busiest.load) {
+        busiest = group;
+      }
+    }
+    String region = busiest.hottest;
+    if (busiest.load < moveMinLoad || busiest.load <= least.load * overloadRatio
+        || busiest.activeRegions < 2 || regionToGroup.get(region) != busiest) {
+      return;
+    }
+    LOG.info("Moving region {} from WAL group {} (load={}, {} bytes/s) to {} (load={})", region,
+      busiest.name, busiest.load, busiest.throughput, least.name, least.load);
+    GroupLoad from = busiest;
+    moving = region;
+    switcher.switchGroup(region, least.name, moved -> moveDone(region, from, least, moved));
+  }
+
+  synchronized void moveDone(String region, GroupLoad from, GroupLoad to, boolean moved) {
+    moving = null;
+    // A region closed meanwhile is no longer mapped, so is not counted again
+    if (moved && regionToGroup.replace(region, from, to)) {
+      from.regions--;
+      to.regions++;
+    }
+  }
+
+  synchronized void closed(String region) {
+    // The close marker goes to whichever WAL the region writes to, which may be a group it has
+    // only just been moved to
+    GroupLoad group = regionToGroup.remove(region);
+    if (group != null) {
+      group.regions--;
+    }
+  }
+
+  /**
+   * @return the number of regions currently placed in <code>group</code>
+   */
+  synchronized int getRegionCount(String group) {
+    return groupsByName.get(group).regions;
+  }
+
+  /**
+   * Load of a WAL group, measured between samples.
+   */
+  final class GroupLoad implements WALActionsListener {
+
+    final String name;
+    private final LongAdder syncNanos = new LongAdder();
+    private final LongAdder appendBytes = new LongAdder();
+    private volatile Map<String, LongAdder> regionBytes = new ConcurrentHashMap<>();
+    // share of the last sample interval the WAL spent syncing
+    volatile double load;
+    // bytes appended per second over the last sample interval
+    volatile long throughput;
+    // region that appended the most over the last sample interval, and how many regions
+    // appended at all, guarded by the strategy
+    String hottest;
+    int activeRegions;
+    // open regions placed in this group, guarded by the strategy
+    int regions;
+
+    GroupLoad(String name) {
+      this.name = name;
+    }
+
+    // Must hold the lock on the strategy
+    void sample(long elapsedMs) {
+      load = syncNanos.sumThenReset() / (elapsedMs * 1000000.0);
+      throughput = appendBytes.sumThenReset() * 1000 / elapsedMs;
+      Map<String, LongAdder> window = regionBytes;
+      regionBytes = new ConcurrentHashMap<>();
+      hottest = null;
+      long hottestBytes = -1;
+      for (Map.Entry<String, LongAdder> e : window.entrySet()) {
+        long bytes = e.getValue().sum();
+        if (bytes > hottestBytes) {
+          hottest = e.getKey();
+          hottestBytes = bytes;
+        }
+      }
+      activeRegions = window.size();
+    }
+
+    @Override
+    public void postAppend(long entryLen, long elapsedTimeMillis, WALKey logKey,
+        WALEdit logEdit) {
+      if (logEdit == null || !logEdit.isMetaEdit()) {
+        appendBytes.add(entryLen);
+        regionBytes.computeIfAbsent(Bytes.toString(logKey.getEncodedRegionName()),
+          k -> new LongAdder()).add(entryLen);
+        return;
+      }
+      for (Cell cell : logEdit.getCells()) {
+        RegionEventDescriptor event;
+        try {
+          event = WALEdit.getRegionEventDescriptor(cell);
+        } catch (IOException e) {
+          LOG.warn("Failed to parse region event marker", e);
+          continue;
+        }
+        if (event != null
+            && event.getEventType() == RegionEventDescriptor.EventType.REGION_CLOSE) {
+          closed(Bytes.toString(logKey.getEncodedRegionName()));
+        }
+      }
+    }
+
+    @Override
+    public void postSync(long timeInNanos, int handlerSyncs) {
+      syncNanos.add(timeInNanos);
+      maybeSample();
+    }
+  }
+}
@@ -27,6 +27,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.yetus.audience.InterfaceAudience;
@@ -37,6 +41,8 @@ import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.IdLock;
 
+import org.apache.hadoop.hbase.shaded.com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * A WAL Provider that returns a WAL per group of regions.
  *
@@ -50,6 +56,8 @@ import org.apache.hadoop.hbase.util.IdLock;
  *                                  "bounded".</li>
  *   <li><em>identity</em> : each region belongs to its own group.</li>
  *   <li><em>bounded</em> : bounded number of groups and region evenly assigned to each group.</li>
+ *   <li><em>dynamic</em> : bounded number of groups, regions placed by the measured load of each
+ *                          group.</li>
  * </ul>
  * Optionally, a FQCN to a custom implementation may be given.
  */
@@ -68,6 +76,43 @@ public class RegionGroupingProvider implements WALProvider {
      */
     String group(final byte[] identifier, byte[] namespace);
     void init(Configuration config, String providerId);
+
+    /**
+     * @return a listener to register on the WAL of the given group, so the strategy can observe
+     *         the load of the groups it picks from, or null
+     */
+    default WALActionsListener getListener(String group) {
+      return null;
+    }
+
+    /**
+     * Called once the open regions can be moved between groups, i.e. when the provider serves a
+     * region server. Strategies that never move regions ignore it.
+     */
+    default void setGroupSwitcher(GroupSwitcher switcher) {
+    }
+  }
+
+  /**
+   * Moves an open region to the WAL of another group, on behalf of a strategy.
+   */
+  @FunctionalInterface
+  public static interface GroupSwitcher {
+    /**
+     * Moves the region in the background and then tells <code>done</code> whether it moved.
+     */
+    void switchGroup(String encodedRegionName, String group, Consumer<Boolean> done);
+  }
+
+  /**
+   * Moves an open region to another WAL. Implemented by whoever holds the regions.
+   */
+  @FunctionalInterface
+  public static interface RegionWALSwitcher {
+    /**
+     * @return true if the region now appends to <code>target</code>
+     */
+    boolean switchWAL(String encodedRegionName, WAL target) throws IOException;
   }
 
   /**
@@ -77,6 +122,7 @@ public class RegionGroupingProvider implements WALProvider {
     defaultStrategy(BoundedGroupingStrategy.class),
     identity(IdentityGroupingStrategy.class),
     bounded(BoundedGroupingStrategy.class),
+    dynamic(DynamicGroupingStrategy.class),
     namespace(NamespaceGroupingStrategy.class);
 
     final Class<? extends RegionGroupingStrategy> clazz;
@@ -138,6 +184,7 @@ public class RegionGroupingProvider implements WALProvider {
   private List<WALActionsListener> listeners = null;
   private String providerId = null;
   private Class<? extends WALProvider> providerClass;
+  private volatile ExecutorService switchPool = null;
 
   @Override
   public void init(final WALFactory factory, final Configuration conf,
@@ -164,7 +211,16 @@ public class RegionGroupingProvider implements WALProvider {
     if (META_WAL_PROVIDER_ID.equals(providerId)) {
       return factory.createProvider(providerClass, listeners, META_WAL_PROVIDER_ID);
     } else {
-      return factory.createProvider(providerClass, listeners, group);
+      List<WALActionsListener> groupListeners = listeners;
+      WALActionsListener strategyListener = strategy.getListener(group);
+      if (strategyListener != null) {
+        groupListeners = new ArrayList<>();
+        if (listeners != null) {
+          groupListeners.addAll(listeners);
+        }
+        groupListeners.add(strategyListener);
+      }
+      return factory.createProvider(providerClass, groupListeners, group);
     }
   }
 
@@ -197,6 +253,43 @@ public class RegionGroupingProvider implements WALProvider {
     return provider.getWAL(null, null);
   }
 
+  /**
+   * Lets the strategy move open regions between groups through <code>switcher</code>. Moves are
+   * made one at a time, off the thread of the WAL that asked for them.
+   */
+  public void setRegionWALSwitcher(RegionWALSwitcher switcher) {
+    if (META_WAL_PROVIDER_ID.equals(providerId) || switchPool != null) {
+      return;
+    }
+    ExecutorService pool = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true).setNameFormat("RegionGroupingProvider-switch-%d").build());
+    switchPool = pool;
+    strategy.setGroupSwitcher((encodedRegionName, group, done) -> {
+      try {
+        pool.execute(() -> {
+          boolean moved = false;
+          try {
+            moved = switcher.switchWAL(encodedRegionName, getWAL(group));
+          } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to move region " + encodedRegionName + " to WAL group " + group, e);
+          } finally {
+            done.accept(moved);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // shutting down
+        done.accept(false);
+      }
+    });
+  }
+
+  private void stopSwitchPool() {
+    ExecutorService pool = switchPool;
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+
   @Override
   public WAL getWAL(final byte[] identifier, byte[] namespace) throws IOException {
     final String group;
@@ -210,6 +303,7 @@ public class RegionGroupingProvider implements WALProvider {
 
   @Override
   public void shutdown() throws IOException {
+    stopSwitchPool();
     // save the last exception and rethrow
     IOException failure = null;
     for (WALProvider provider: cached.values()) {
@@ -230,6 +324,7 @@ public class RegionGroupingProvider implements WALProvider {
 
   @Override
   public void close() throws IOException {
+    stopSwitchPool();
     // save the last exception and rethrow
     IOException failure = null;
     for (WALProvider provider : cached.values()) {
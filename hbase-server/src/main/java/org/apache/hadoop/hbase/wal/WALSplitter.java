@@ -28,6 +28,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -49,6 +50,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,6 +63,7 @@ import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellScanner;
 import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
@@ -76,6 +79,7 @@ import org.apache.hadoop.hbase.monitoring.TaskMonitor;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.LastSequenceId;
 import org.apache.hadoop.hbase.regionserver.wal.AbstractFSWAL;
+import org.apache.hadoop.hbase.regionserver.wal.MetricsWALSource;
 import org.apache.hadoop.hbase.regionserver.wal.WALCellCodec;
 import org.apache.hadoop.hbase.shaded.com.google.protobuf.TextFormat;
 import org.apache.hadoop.hbase.shaded.protobuf.generated.AdminProtos.WALEntry;
@@ -111,6 +115,13 @@ public class WALSplitter {
   /** By default we retry errors in splitting, rather than skipping. */
   public static final boolean SPLIT_SKIP_ERRORS_DEFAULT = false;
 
+  /**
+   * Heap the entries read ahead of the split by a reader thread of its own may take up. Zero, the
+   * default, reads the WAL on the splitting thread in between dispatching entries.
+   */
+  public static final String SPLIT_READAHEAD_SIZE_KEY =
+      "hbase.regionserver.hlog.splitlog.readahead.size";
+
   // Parameters for split process
   protected final Path rootDir;
   protected final FileSystem fs;
@@ -138,6 +149,15 @@ public class WALSplitter {
   // the file being split currently
   private FileStatus fileBeingSplit;
 
+  // Where the time of the split went; see splitLogFile
+  private final MetricsWALSource metrics;
+  @VisibleForTesting
+  long readNanos;
+  @VisibleForTesting
+  long bufferWaitNanos;
+  @VisibleForTesting
+  long writeNanos;
+
   @VisibleForTesting
   WALSplitter(final WALFactory factory, Configuration conf, Path rootDir,
       FileSystem fs, LastSequenceId idChecker,
@@ -159,6 +179,7 @@ public class WALSplitter {
 
     int numWriterThreads = this.conf.getInt("hbase.regionserver.hlog.splitlog.writer.threads", 3);
     outputSink = new LogRecoveredEditsOutputSink(controller, entryBuffers, numWriterThreads);
+    metrics = CompatibilitySingletonFactory.getInstance(MetricsWALSource.class);
   }
 
   /**
@@ -227,6 +248,7 @@ public class WALSplitter {
     status = TaskMonitor.get().createStatus(
           "Splitting log file " + logfile.getPath() + "into a temporary staging area.");
     Reader logFileReader = null;
+    ReadAheadReader readAhead = null;
     this.fileBeingSplit = logfile;
     try {
       long logLength = logfile.getLen();
@@ -246,9 +268,13 @@ public class WALSplitter {
       outputSink.setReporter(reporter);
       outputSink.startWriterThreads();
       outputSinkStarted = true;
+      long readAheadSize = conf.getLong(SPLIT_READAHEAD_SIZE_KEY, 0);
+      if (readAheadSize > 0) {
+        readAhead = new ReadAheadReader(logFileReader, logPath, skipErrors, readAheadSize);
+      }
       Entry entry;
       Long lastFlushedSequenceId = -1L;
-      while ((entry = getNextLogLine(logFileReader, logPath, skipErrors)) != null) {
+      while ((entry = nextEntry(logFileReader, readAhead, logPath, skipErrors)) != null) {
         byte[] region = entry.getKey().getEncodedRegionName();
         String encodedRegionNameAsStr = Bytes.toString(region);
         lastFlushedSequenceId = lastFlushedSequenceIds.get(encodedRegionNameAsStr);
@@ -281,7 +307,9 @@ public class WALSplitter {
           editsSkipped++;
           continue;
         }
+        long dispatchStart = System.nanoTime();
         entryBuffers.appendEntry(entry);
+        bufferWaitNanos += System.nanoTime() - dispatchStart;
         editsCount++;
         int moreWritersFromLastCheck = this.getNumOpenWriters() - numOpenedFilesLastCheck;
         // If sufficient edits have passed, check if we should report progress.
@@ -316,6 +344,10 @@ public class WALSplitter {
       throw e;
     } finally {
       LOG.debug("Finishing writing output logs and closing down.");
+      if (readAhead != null) {
+        readAhead.close();
+        readNanos = readAhead.getReadNanos();
+      }
       try {
         if (null != logFileReader) {
           logFileReader.close();
@@ -329,14 +361,27 @@ public class WALSplitter {
           // Set progress_failed to true as the immediate following statement will reset its value
           // when finishWritingAndClose() throws exception, progress_failed has the right value
           progress_failed = true;
-          progress_failed = outputSink.finishWritingAndClose() == null;
+          long closeStart = System.nanoTime();
+          try {
+            progress_failed = outputSink.finishWritingAndClose() == null;
+          } finally {
+            writeNanos += System.nanoTime() - closeStart;
+          }
         }
       } finally {
+        writeNanos += outputSink.writeNanos.sum();
+        long readMs = TimeUnit.NANOSECONDS.toMillis(readNanos);
+        long bufferWaitMs = TimeUnit.NANOSECONDS.toMillis(bufferWaitNanos);
+        long writeMs = TimeUnit.NANOSECONDS.toMillis(writeNanos);
+        metrics.incrementSplitReadTime(readMs);
+        metrics.incrementSplitBufferWaitTime(bufferWaitMs);
+        metrics.incrementSplitWriteTime(writeMs);
         String msg =
             "Processed " + editsCount + " edits across " + outputSink.getNumberOfRecoveredRegions()
                 + " regions; edits skipped=" + editsSkipped + "; log file=" + logPath +
                 ", length=" + logfile.getLen() + // See if length got updated post lease recovery
-                ", corrupted=" + isCorrupted + ", progress failed=" + progress_failed;
+                ", corrupted=" + isCorrupted + ", progress failed=" + progress_failed +
+                "; readMs=" + readMs + ", bufferWaitMs=" + bufferWaitMs + ", writeMs=" + writeMs;
         LOG.info(msg);
         status.markComplete(msg);
       }
@@ -734,6 +779,19 @@ public class WALSplitter {
     return in;
   }
 
+  private Entry nextEntry(Reader in, ReadAheadReader readAhead, Path path, boolean skipErrors)
+      throws CorruptedLogFileException, IOException, InterruptedException {
+    if (readAhead != null) {
+      return readAhead.next();
+    }
+    long start = System.nanoTime();
+    try {
+      return getNextLogLine(in, path, skipErrors);
+    } finally {
+      readNanos += System.nanoTime() - start;
+    }
+  }
+
   static private Entry getNextLogLine(Reader in, Path path, boolean skipErrors)
   throws CorruptedLogFileException, IOException {
     try {
@@ -791,6 +849,114 @@ public class WALSplitter {
     return result;
   }
 
+  /**
+   * Reads and decodes the entries of the WAL being split on a thread of its own, so that IO
+   * overlaps with filtering and dispatching the edits to the region buffers. At most
+   * maxHeapUsage bytes of entries are held; entries, the end of the file and failures are
+   * handed out in the order the reader ran into them.
+   */
+  static class ReadAheadReader {
+    private final Reader in;
+    private final Path path;
+    private final boolean skipErrors;
+    private final long maxHeapUsage;
+    private final Thread thread;
+
+    // Guarded by this
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private long heapUsage = 0;
+    private boolean done = false;
+    private Exception error;
+
+    private volatile boolean closed = false;
+    private volatile long readNanos = 0;
+
+    ReadAheadReader(Reader in, Path path, boolean skipErrors, long maxHeapUsage) {
+      this.in = in;
+      this.path = path;
+      this.skipErrors = skipErrors;
+      this.maxHeapUsage = maxHeapUsage;
+      this.thread = new Thread(this::run, Thread.currentThread().getName() + "-Reader");
+      this.thread.setDaemon(true);
+      this.thread.start();
+    }
+
+    private void run() {
+      try {
+        while (!closed) {
+          long start = System.nanoTime();
+          Entry entry = getNextLogLine(in, path, skipErrors);
+          readNanos += System.nanoTime() - start;
+          synchronized (this) {
+            if (entry == null) {
+              done = true;
+              notifyAll();
+              return;
+            }
+            long size = entry.getEdit().heapSize();
+            // Always let one entry through, however big
+            while (heapUsage > 0 && heapUsage + size > maxHeapUsage && !closed) {
+              wait();
+            }
+            entries.add(entry);
+            heapUsage += size;
+            notifyAll();
+          }
+        }
+      } catch (InterruptedException e) {
+        // closed while waiting for the splitter to catch up
+      } catch (CorruptedLogFileException | IOException | RuntimeException e) {
+        synchronized (this) {
+          error = e;
+          done = true;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * @return the next entry, or null at the end of the WAL
+     */
+    synchronized Entry next() throws CorruptedLogFileException, IOException,
+        InterruptedException {
+      while (entries.isEmpty() && !done) {
+        wait();
+      }
+      Entry entry = entries.poll();
+      if (entry != null) {
+        heapUsage -= entry.getEdit().heapSize();
+        notifyAll();
+        return entry;
+      }
+      if (error instanceof CorruptedLogFileException) {
+        throw (CorruptedLogFileException) error;
+      } else if (error instanceof IOException) {
+        throw (IOException) error;
+      } else if (error != null) {
+        throw (RuntimeException) error;
+      }
+      return null;
+    }
+
+    long getReadNanos() {
+      return readNanos;
+    }
+
+    /**
+     * Stop reading. Must be called before the underlying reader is closed.
+     */
+    void close() {
+      closed = true;
+      thread.interrupt();
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted while waiting for the reader of " + path + " to stop");
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /**
    * Contains some methods to control WAL-entries producer / consumer interactions
    */
@@ -1042,7 +1208,12 @@ public class WALSplitter {
     }
 
     private void writeBuffer(RegionEntryBuffer buffer) throws IOException {
-      outputSink.append(buffer);
+      long start = System.nanoTime();
+      try {
+        outputSink.append(buffer);
+      } finally {
+        outputSink.writeNanos.add(System.nanoTime() - start);
+      }
     }
 
     void finish() {
@@ -1084,6 +1255,9 @@ public class WALSplitter {
 
     protected AtomicLong skippedEdits = new AtomicLong();
 
+    /** Time spent appending buffers, summed over the writer threads */
+    protected final LongAdder writeNanos = new LongAdder();
+
     protected List<Path> splits = null;
 
     public OutputSink(PipelineController controller, EntryBuffers entryBuffers, int numWriters) {
@@ -18,20 +18,23 @@
  */
 --%>
 <%@ page contentType="text/html;charset=UTF-8"
+  import="static org.apache.commons.lang3.StringEscapeUtils.escapeXml"
   import="java.util.Collection"
   import="java.util.Date"
   import="java.util.List"
   import="org.apache.hadoop.hbase.client.RegionInfoDisplay"
+  import="org.apache.hadoop.hbase.regionserver.HRegion"
   import="org.apache.hadoop.hbase.regionserver.HRegionServer"
-  import="org.apache.hadoop.hbase.regionserver.Region"
+  import="org.apache.hadoop.hbase.regionserver.RegionHotspotTracker"
   import="org.apache.hadoop.hbase.regionserver.Store"
   import="org.apache.hadoop.hbase.regionserver.StoreFile"
+  import="org.apache.hadoop.hbase.util.Bytes"
 %>
 <%
   String regionName = request.getParameter("name");
   HRegionServer rs = (HRegionServer) getServletContext().getAttribute(HRegionServer.REGIONSERVER);
 
-  Region region = rs.getRegion(regionName);
+  HRegion region = rs.getRegion(regionName);
   String displayName = RegionInfoDisplay.getRegionNameAsStringForDisplay(region.getRegionInfo(),
     rs.getConfiguration());
   pageContext.setAttribute("pageTitle", "HBase RegionServer: " + rs.getServerName());
@@ -76,6 +79,34 @@
          <p> <%= storeFiles.size() %> StoreFile(s) in set.</p>
          </table>
    <%  }
+     RegionHotspotTracker hotspots = region.getHotspotTracker();
+     if (hotspots != null) { %>
+
+       <h3>Hot Key Ranges</h3>
+
+       <p>One in <%= hotspots.getSampleRate() %> requests sampled, <%= hotspots.getSamples() %> sample(s) counted.</p>
+
+       <table class="table table-striped">
+         <tr>
+           <th>Row Key Prefix</th>
+           <th>Sampled Requests</th>
+           <th>Reads</th>
+           <th>Writes</th>
+           <th>Max Overcount</th>
+           <th>Share (%)</th>
+         </tr>
+       <%   for (RegionHotspotTracker.HotRange range : hotspots.getTopRanges()) { %>
+         <tr>
+           <td><%= escapeXml(Bytes.toStringBinary(range.getPrefix())) %></td>
+           <td><%= range.getCount() %></td>
+           <td><%= range.getReads() %></td>
+           <td><%= range.getWrites() %></td>
+           <td><%= range.getError() %></td>
+           <td><%= String.format("%.1f", range.getShare() * 100) %></td>
+         </tr>
+       <%   } %>
+       </table>
+   <% }
    }%>
 </div>
 
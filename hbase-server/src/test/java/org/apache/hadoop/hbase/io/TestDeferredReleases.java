@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({IOTests.class, SmallTests.class})
+public class TestDeferredReleases {
+
+  @Test
+  public void testReleasedRightAwayOutsideSection() {
+    AtomicInteger released = new AtomicInteger();
+    assertFalse(DeferredReleases.isActive());
+    DeferredReleases.defer(released::incrementAndGet);
+    assertEquals(1, released.get());
+  }
+
+  @Test
+  public void testHeldUntilRun() {
+    AtomicInteger released = new AtomicInteger();
+    DeferredReleases.begin();
+    List<Runnable> releases;
+    try {
+      assertTrue(DeferredReleases.isActive());
+      DeferredReleases.defer(released::incrementAndGet);
+      DeferredReleases.defer(() -> {
+        throw new IllegalStateException("failed release");
+      });
+      DeferredReleases.defer(released::incrementAndGet);
+    } finally {
+      releases = DeferredReleases.end();
+    }
+    assertFalse(DeferredReleases.isActive());
+    assertEquals(0, released.get());
+    assertEquals(3, releases.size());
+    // A failing release does not keep the others from running
+    DeferredReleases.run(releases);
+    assertEquals(2, released.get());
+  }
+
+  @Test
+  public void testEmptySection() {
+    DeferredReleases.begin();
+    assertNull(DeferredReleases.end());
+    DeferredReleases.run(null);
+  }
+}
@@ -45,10 +45,20 @@ public class TestMetricsIO {
     metrics.updateFsWriteTime(500);
     metrics.updateFsWriteTime(600);
 
+    metrics.updateBlockDecompressTime(70);
+    metrics.updateBlockDecompressTime(80);
+
+    metrics.incrementReadaheadHit();
+    metrics.incrementReadaheadHit();
+    metrics.incrementReadaheadWaste();
+
     HELPER.assertCounter("fsChecksumFailureCount", 40, metrics.getMetricsSource());
 
     HELPER.assertCounter("fsReadTime_numOps", 2, metrics.getMetricsSource());
     HELPER.assertCounter("fsPReadTime_numOps", 1, metrics.getMetricsSource());
     HELPER.assertCounter("fsWriteTime_numOps", 3, metrics.getMetricsSource());
+    HELPER.assertCounter("blockDecompressTime_numOps", 2, metrics.getMetricsSource());
+    HELPER.assertCounter("readaheadHitCount", 2, metrics.getMetricsSource());
+    HELPER.assertCounter("readaheadWasteCount", 1, metrics.getMetricsSource());
   }
 }
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.fs.HFileSystem;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({IOTests.class, SmallTests.class})
+public class TestBlockReadAhead {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private static final int DATA_BLOCK_SIZE = 1024;
+  private static final int NUM_KV = 1000;
+
+  private Configuration conf;
+  private CacheConfig cacheConf;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = TEST_UTIL.getConfiguration();
+    fs = HFileSystem.get(conf);
+    CacheConfig.blockCacheDisabled = false;
+    cacheConf = new CacheConfig(conf);
+  }
+
+  @Test(timeout=60000)
+  public void testReadAheadOnCacheMiss() throws Exception {
+    Path storeFile = writeStoreFile("testReadAheadOnCacheMiss");
+    HFile.Reader reader = HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    try {
+      // Misses outside of a yielding section are not tracked
+      HFileScanner scanner = reader.getScanner(true, false);
+      assertTrue(scanner.seekTo());
+      assertFalse(BlockReadAhead.hasMissed());
+
+      HFileBlock first = reader.readBlock(0, -1, false, true, false, false, null, null);
+      long second = first.getOnDiskSizeWithHeader();
+      HFileBlock secondBlock = reader.readBlock(second, -1, false, true, false, false, null, null);
+      long third = second + secondBlock.getOnDiskSizeWithHeader();
+      BlockCache blockCache = cacheConf.getBlockCache();
+      assertFalse(isCached(blockCache, reader, third));
+
+      BlockReadAhead.enter();
+      try {
+        // The second block is not cached yet, reading it is a miss that loads the blocks after it
+        reader.readBlock(second, -1, true, false, false, true, BlockType.DATA, null);
+        assertTrue(BlockReadAhead.hasMissed());
+      } finally {
+        BlockReadAhead.exit();
+      }
+      assertFalse(BlockReadAhead.hasMissed());
+
+      while (!isCached(blockCache, reader, third)) {
+        Thread.sleep(100);
+      }
+    } finally {
+      reader.close(true);
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testNoReadAheadPastDataBlocks() throws Exception {
+    Path storeFile = writeStoreFile("testNoReadAheadPastDataBlocks");
+    HFile.Reader reader = HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    try {
+      long last = reader.getTrailer().getLastDataBlockOffset();
+      HFileBlock lastBlock = reader.readBlock(last, -1, false, true, false, false, null, null);
+      long next = last + lastBlock.getOnDiskSizeWithHeader();
+      BlockCache blockCache = cacheConf.getBlockCache();
+
+      BlockReadAhead.enter();
+      try {
+        // A miss on the last data block does not load the index and bloom blocks after it
+        reader.readBlock(last, -1, true, false, false, true, BlockType.DATA, null);
+        assertTrue(BlockReadAhead.hasMissed());
+      } finally {
+        BlockReadAhead.exit();
+      }
+      ThreadPoolExecutor pool = ScannerReadahead.getExecutor();
+      while (pool.getActiveCount() > 0 || !pool.getQueue().isEmpty()) {
+        Thread.sleep(100);
+      }
+      assertFalse(isCached(blockCache, reader, next));
+    } finally {
+      reader.close(true);
+    }
+  }
+
+  private static boolean isCached(BlockCache blockCache, HFile.Reader reader, long offset) {
+    Cacheable block = blockCache.getBlock(new BlockCacheKey(reader.getName(), offset), true,
+      false, false);
+    if (block == null) {
+      return false;
+    }
+    blockCache.returnBlock(new BlockCacheKey(reader.getName(), offset), block);
+    return true;
+  }
+
+  private Path writeStoreFile(String name) throws IOException {
+    Path storeFileParentDir = new Path(TEST_UTIL.getDataTestDir(), name);
+    HFileContext meta = new HFileContextBuilder()
+      .withBlockSize(DATA_BLOCK_SIZE)
+      .build();
+    StoreFileWriter sfw = new StoreFileWriter.Builder(conf, cacheConf, fs)
+      .withOutputDir(storeFileParentDir)
+      .withComparator(CellComparatorImpl.COMPARATOR)
+      .withFileContext(meta)
+      .build();
+    byte[] family = Bytes.toBytes("f");
+    byte[] qualifier = Bytes.toBytes("q");
+    for (int i = 0; i < NUM_KV; ++i) {
+      byte[] row = Bytes.toBytes(String.format("row-%05d", i));
+      sfw.append(new KeyValue(row, family, qualifier, Bytes.toBytes("value-" + i)));
+    }
+    sfw.close();
+    return sfw.getPath();
+  }
+}
@@ -31,6 +31,7 @@ import java.nio.ByteBuffer;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CompoundConfiguration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.HColumnDescriptor;
@@ -267,6 +268,37 @@ public class TestCacheConfig {
     assertTrue(cacheConfig.shouldCacheIndexesOnWrite());
   }
 
+  @Test
+  public void testCacheDataCompressedPerFamily() throws IOException {
+    Configuration conf = HBaseConfiguration.create();
+    HColumnDescriptor family = new HColumnDescriptor("testCacheDataCompressedPerFamily");
+    CacheConfig cacheConfig = new CacheConfig(storeConf(conf, family), family);
+    assertFalse(cacheConfig.shouldCacheDataCompressed());
+
+    family.setConfiguration(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, "true");
+    cacheConfig = new CacheConfig(storeConf(conf, family), family);
+    assertTrue(cacheConfig.shouldCacheDataCompressed());
+    assertTrue(cacheConfig.shouldCacheCompressed(BlockCategory.DATA));
+    assertFalse(cacheConfig.shouldCacheCompressed(BlockCategory.INDEX));
+
+    // The global setting still applies to families that do not set it, and a family can opt out
+    conf.setBoolean(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, true);
+    HColumnDescriptor other = new HColumnDescriptor("other");
+    cacheConfig = new CacheConfig(storeConf(conf, other), other);
+    assertTrue(cacheConfig.shouldCacheDataCompressed());
+    family.setConfiguration(CacheConfig.CACHE_DATA_BLOCKS_COMPRESSED_KEY, "false");
+    cacheConfig = new CacheConfig(storeConf(conf, family), family);
+    assertFalse(cacheConfig.shouldCacheDataCompressed());
+  }
+
+  /**
+   * @return the configuration a store of <code>family</code> builds its CacheConfig from
+   */
+  private static Configuration storeConf(Configuration conf, HColumnDescriptor family) {
+    return new CompoundConfiguration().add(conf).addStringMap(family.getConfiguration())
+        .addBytesMap(family.getValues());
+  }
+
   @Test
   public void testCacheConfigDefaultLRUBlockCache() {
     CacheConfig cc = new CacheConfig(this.conf);
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.fs.HFileSystem;
+import org.apache.hadoop.hbase.regionserver.StoreFileWriter;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({IOTests.class, SmallTests.class})
+public class TestCacheOnlyReads {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+
+  private Configuration conf;
+  private CacheConfig cacheConf;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = TEST_UTIL.getConfiguration();
+    fs = HFileSystem.get(conf);
+    CacheConfig.blockCacheDisabled = false;
+    cacheConf = new CacheConfig(conf);
+  }
+
+  @Test
+  public void testMissFailsFast() throws Exception {
+    Path storeFile = writeStoreFile("testMissFailsFast");
+    HFile.Reader reader = HFile.createReader(fs, storeFile, cacheConf, true, conf);
+    try {
+      CacheOnlyReads.enter();
+      try {
+        reader.readBlock(0, -1, true, true, false, true, BlockType.DATA, null);
+        fail("The first data block is not cached yet");
+      } catch (IOException e) {
+        assertTrue(CacheOnlyReads.isNotCached(e));
+        assertTrue(CacheOnlyReads.isNotCached(new IOException("Could not seek", e)));
+      } finally {
+        CacheOnlyReads.exit();
+      }
+      // The failed read did not load the block
+      assertFalse(isCached(cacheConf.getBlockCache(), reader, 0));
+
+      // Outside of a cache only section the miss loads and caches the block
+      reader.readBlock(0, -1, true, true, false, true, BlockType.DATA, null);
+      assertTrue(isCached(cacheConf.getBlockCache(), reader, 0));
+
+      CacheOnlyReads.enter();
+      try {
+        assertNotNull(reader.readBlock(0, -1, true, true, false, true, BlockType.DATA, null));
+      } finally {
+        CacheOnlyReads.exit();
+      }
+      assertFalse(CacheOnlyReads.isNotCached(new IOException("Unrelated")));
+    } finally {
+      reader.close(true);
+    }
+  }
+
+  private static boolean isCached(BlockCache blockCache, HFile.Reader reader, long offset) {
+    Cacheable block = blockCache.getBlock(new BlockCacheKey(reader.getName(), offset), true,
+      false, false);
+    if (block == null) {
+      return false;
+    }
+    blockCache.returnBlock(new BlockCacheKey(reader.getName(), offset), block);
+    return true;
+  }
+
+  private Path writeStoreFile(String name) throws IOException {
+    Path storeFileParentDir = new Path(TEST_UTIL.getDataTestDir(), name);
+    HFileContext meta = new HFileContextBuilder()
+      .withBlockSize(1024)
+      .build();
+    StoreFileWriter sfw = new StoreFileWriter.Builder(conf, cacheConf, fs)
+      .withOutputDir(storeFileParentDir)
+      .withComparator(CellComparatorImpl.COMPARATOR)
+      .withFileContext(meta)
+      .build();
+    byte[] family = Bytes.toBytes("f");
+    byte[] qualifier = Bytes.toBytes("q");
+    for (int i = 0; i < 100; ++i) {
+      byte[] row = Bytes.toBytes(String.format("row-%05d", i));
+      sfw.append(new KeyValue(row, family, qualifier, Bytes.toBytes("value-" + i)));
+    }
+    sfw.close();
+    return sfw.getPath();
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({IOTests.class, SmallTests.class})
+public class TestFrequencySketch {
+
+  @Test
+  public void testTableSizing() {
+    assertEquals(16, new FrequencySketch(0).getTableLength());
+    assertEquals(16, new FrequencySketch(16).getTableLength());
+    assertEquals(32, new FrequencySketch(17).getTableLength());
+    assertEquals(1 << 22, new FrequencySketch(Long.MAX_VALUE).getTableLength());
+  }
+
+  @Test
+  public void testIncrementAndSaturate() {
+    FrequencySketch sketch = new FrequencySketch(1024);
+    int item = "block".hashCode();
+    assertEquals(0, sketch.frequency(item));
+    for (int i = 1; i <= 15; i++) {
+      sketch.increment(item);
+      assertEquals(i, sketch.frequency(item));
+    }
+    // Counters are four bits wide
+    sketch.increment(item);
+    assertEquals(15, sketch.frequency(item));
+  }
+
+  @Test
+  public void testAging() {
+    FrequencySketch sketch = new FrequencySketch(16);
+    int hot = "hot".hashCode();
+    for (int i = 0; i < 15; i++) {
+      sketch.increment(hot);
+    }
+    assertEquals(15, sketch.frequency(hot));
+    // Enough other traffic to pass the sample size once; the hot item's count is halved
+    for (int i = 0; i < 200; i++) {
+      sketch.increment(("cold" + i).hashCode());
+    }
+    int frequency = sketch.frequency(hot);
+    assertTrue("frequency=" + frequency, frequency >= 7 && frequency < 15);
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.hadoop.hbase.io.hfile;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -606,6 +607,128 @@ public class TestLruBlockCache {
 
   }
 
+  @Test
+  public void testTinyLfuAdmission() throws Exception {
+    long maxSize = 100000;
+    long blockSize = calculateBlockSize(maxSize, 10);
+
+    LruBlockCache cache = new LruBlockCache(maxSize, blockSize, false,
+        (int)Math.ceil(1.2*maxSize/blockSize),
+        LruBlockCache.DEFAULT_LOAD_FACTOR,
+        LruBlockCache.DEFAULT_CONCURRENCY_LEVEL,
+        0.66f, // min
+        0.99f, // acceptable
+        0.33f, // single
+        0.33f, // multi
+        0.34f, // memory
+        1.2f,  // limit
+        false,
+        16 * 1024 * 1024,
+        LruBlockCache.EvictionPolicy.TINY_LFU);
+
+    CachedItem [] hotBlocks = generateFixedBlocks(5, blockSize, "hot");
+    CachedItem [] scanBlocks = generateFixedBlocks(40, blockSize, "scan");
+
+    // Read the hot set a few times so the sketch knows about it
+    for (CachedItem block : hotBlocks) {
+      assertNull(cache.getBlock(block.cacheKey, true, false, true));
+      cache.cacheBlock(block.cacheKey, block);
+      for (int i = 0; i < 3; i++) {
+        assertNotNull(cache.getBlock(block.cacheKey, true, false, true));
+      }
+    }
+
+    // A one-pass scan; every block is missed once and offered to the cache
+    for (CachedItem block : scanBlocks) {
+      assertNull(cache.getBlock(block.cacheKey, true, false, true));
+      cache.cacheBlock(block.cacheKey, block);
+    }
+
+    // Once the cache filled up, scan blocks stopped getting in
+    assertTrue(cache.getStats().getAdmissionRejectedCount() > 0);
+    assertTrue(cache.getVictimFrequency() > 0);
+    // The hot blocks that survived the first eviction run were not pushed out by the scan
+    int hotCached = 0;
+    for (CachedItem block : hotBlocks) {
+      if (cache.containsBlock(block.cacheKey)) {
+        hotCached++;
+      }
+    }
+    assertEquals(3, hotCached);
+
+    // A block that keeps being asked for is admitted once it is as popular as the victims
+    CachedItem returning = generateFixedBlocks(1, blockSize, "returning")[0];
+    int attempts = 0;
+    while (cache.getBlock(returning.cacheKey, true, false, true) == null) {
+      assertTrue("Block never admitted", ++attempts <= cache.getVictimFrequency() + 1);
+      cache.cacheBlock(returning.cacheKey, returning);
+    }
+
+    // Hits are broken out by priority
+    long hits = cache.getStats().getSingleHitCount() + cache.getStats().getMultiHitCount()
+        + cache.getStats().getMemoryHitCount();
+    assertEquals(cache.getStats().getHitCount(), hits);
+    assertTrue(cache.getStats().getMultiHitCount() > 0);
+  }
+
+  @Test
+  public void testWindowTinyLfuEviction() throws Exception {
+    long maxSize = 100000;
+    long blockSize = calculateBlockSize(maxSize, 10);
+
+    LruBlockCache cache = new LruBlockCache(maxSize, blockSize, false,
+        (int)Math.ceil(1.2*maxSize/blockSize),
+        LruBlockCache.DEFAULT_LOAD_FACTOR,
+        LruBlockCache.DEFAULT_CONCURRENCY_LEVEL,
+        0.66f, // min
+        0.99f, // acceptable
+        0.33f, // single
+        0.33f, // multi
+        0.34f, // memory
+        1.2f,  // limit
+        false,
+        16 * 1024 * 1024,
+        LruBlockCache.EvictionPolicy.W_TINY_LFU);
+
+    CachedItem [] multiBlocks = generateFixedBlocks(9, blockSize, "multi");
+    for (CachedItem block : multiBlocks) {
+      cache.cacheBlock(block.cacheKey, block);
+    }
+    // The oldest blocks are the most frequently read, so plain LRU would evict the wrong ones
+    for (int i = 0; i < multiBlocks.length; i++) {
+      for (int j = 0; j < 10 - i; j++) {
+        assertNotNull(cache.getBlock(multiBlocks[i].cacheKey, true, false, true));
+      }
+    }
+
+    // The tenth block triggers an eviction of four blocks, all from the multi bucket
+    CachedItem single = generateFixedBlocks(1, blockSize, "single")[0];
+    cache.cacheBlock(single.cacheKey, single);
+    assertEquals(1, cache.getStats().getEvictionCount());
+    assertEquals(4, cache.getStats().getEvictedCount());
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(cache.containsBlock(multiBlocks[i].cacheKey));
+    }
+    for (int i = 5; i < multiBlocks.length; i++) {
+      assertFalse(cache.containsBlock(multiBlocks[i].cacheKey));
+    }
+    assertTrue(cache.containsBlock(single.cacheKey));
+  }
+
+  @Test
+  public void testEvictionPolicyConfiguration() throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    LruBlockCache cache = new LruBlockCache(100000, 1000, false, conf);
+    assertEquals(LruBlockCache.EvictionPolicy.LRU, cache.getEvictionPolicy());
+    cache.shutdown();
+
+    conf.set(LruBlockCache.LRU_POLICY_CONFIG_NAME, "w_tiny_lfu");
+    cache = new LruBlockCache(100000, 1000, false, conf);
+    assertEquals(LruBlockCache.EvictionPolicy.W_TINY_LFU, cache.getEvictionPolicy());
+    cache.shutdown();
+  }
+
   @Test
   public void testMaxBlockSize() throws Exception {
     long maxSize = 100000;
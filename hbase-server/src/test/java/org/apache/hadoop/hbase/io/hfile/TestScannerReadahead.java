@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellComparatorImpl;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.CompatibilityFactory;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.test.MetricsAssertHelper;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({IOTests.class, SmallTests.class})
+public class TestScannerReadahead {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+  private static final MetricsAssertHelper HELPER =
+      CompatibilityFactory.getInstance(MetricsAssertHelper.class);
+
+  private static final int NUM_KV = 2000;
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+
+  private Configuration conf;
+  private FileSystem fs;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setInt(ScannerReadahead.READAHEAD_DEPTH_KEY, 4);
+    conf.setInt(ScannerReadahead.READAHEAD_THRESHOLD_KEY, 2);
+    fs = TEST_UTIL.getTestFileSystem();
+  }
+
+  @Test
+  public void testSequentialScan() throws IOException {
+    for (DataBlockEncoding encoding : new DataBlockEncoding[] { DataBlockEncoding.NONE,
+        DataBlockEncoding.FAST_DIFF }) {
+      Path path = writeFile("sequential-" + encoding, encoding);
+      long hitsBefore = readaheadHits();
+      HFile.Reader reader = HFile.createReader(fs, path, new CacheConfig(conf), true, conf);
+      reader.loadFileInfo();
+      HFileScanner scanner = reader.getScanner(false, true);
+      assertTrue(scanner.seekTo());
+      int count = 0;
+      do {
+        assertEquals(row(count), Bytes.toString(CellUtil.cloneRow(scanner.getCell())));
+        count++;
+      } while (scanner.next());
+      assertEquals(NUM_KV, count);
+      scanner.close();
+      reader.close();
+      assertTrue("No blocks were read ahead", readaheadHits() > hitsBefore);
+    }
+  }
+
+  @Test
+  public void testSeekDuringReadahead() throws IOException {
+    Path path = writeFile("seek", DataBlockEncoding.NONE);
+    HFile.Reader reader = HFile.createReader(fs, path, new CacheConfig(conf), true, conf);
+    reader.loadFileInfo();
+    HFileScanner scanner = reader.getScanner(false, true);
+    assertTrue(scanner.seekTo());
+    // Get sequential, then jump backwards and forwards; readahead must not serve stale blocks
+    for (int i = 1; i < NUM_KV / 4; i++) {
+      assertTrue(scanner.next());
+    }
+    int[] targets = new int[] { 10, NUM_KV - 300, NUM_KV / 2 };
+    for (int target : targets) {
+      assertEquals(0, scanner.seekTo(kv(target)));
+      for (int i = target; i < Math.min(NUM_KV, target + 250); i++) {
+        assertEquals(row(i), Bytes.toString(CellUtil.cloneRow(scanner.getCell())));
+        if (i < NUM_KV - 1) {
+          assertTrue(scanner.next());
+        }
+      }
+    }
+    // Run off the end of the file with readahead in flight
+    int tail = 0;
+    while (scanner.next()) {
+      tail++;
+    }
+    assertEquals(NUM_KV - 1 - (NUM_KV / 2 + 250), tail);
+    assertFalse(scanner.isSeeked());
+    scanner.close();
+    reader.close();
+  }
+
+  private long readaheadHits() {
+    return HELPER.getCounter("readaheadHitCount", HFile.metrics.getMetricsSource());
+  }
+
+  private static String row(int i) {
+    return String.format("row-%05d", i);
+  }
+
+  private static Cell kv(int i) {
+    return new KeyValue(Bytes.toBytes(row(i)), FAMILY, QUALIFIER, 1L, Bytes.toBytes("value-" + i));
+  }
+
+  private Path writeFile(String name, DataBlockEncoding encoding) throws IOException {
+    Path path = new Path(TEST_UTIL.getDataTestDir("TestScannerReadahead"), name);
+    HFileContext context = new HFileContextBuilder().withBlockSize(1024)
+        .withDataBlockEncoding(encoding).build();
+    HFile.Writer writer = HFile.getWriterFactoryNoCache(conf).withPath(fs, path)
+        .withFileContext(context).withComparator(CellComparatorImpl.COMPARATOR).create();
+    try {
+      for (int i = 0; i < NUM_KV; i++) {
+        writer.append(kv(i));
+      }
+    } finally {
+      writer.close();
+    }
+    return path;
+  }
+}
@@ -20,16 +20,21 @@ package org.apache.hadoop.hbase.io.hfile.bucket;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.google.common.collect.ImmutableMap;
@@ -38,11 +43,13 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheUtil;
 import org.apache.hadoop.hbase.io.hfile.CacheTestUtils;
 import org.apache.hadoop.hbase.io.hfile.Cacheable;
 import org.apache.hadoop.hbase.io.hfile.CacheTestUtils.HFileBlockPair;
 import org.apache.hadoop.hbase.io.hfile.bucket.BucketAllocator.BucketSizeInfo;
 import org.apache.hadoop.hbase.io.hfile.bucket.BucketAllocator.IndexStatistics;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
 import org.apache.hadoop.hbase.testclassification.IOTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.junit.After;
@@ -167,6 +174,8 @@ public class TestBucketCache {
       BucketSizeInfo bucketSizeInfo = mAllocator.roundUpToBucketSizeInfo(blockSize);
       IndexStatistics indexStatistics = bucketSizeInfo.statistics();
       assertEquals("unexpected freeCount for " + bucketSizeInfo, 0, indexStatistics.freeCount());
+      assertTrue("no allocation failure counted for " + bucketSizeInfo,
+        indexStatistics.allocationFailures() > 0);
     }
 
     for (long offset : allocations) {
@@ -175,6 +184,99 @@ public class TestBucketCache {
     assertEquals(0, mAllocator.getUsedSize());
   }
 
+  @Test
+  public void testBucketAllocatorConcurrent() throws Exception {
+    final BucketAllocator mAllocator = cache.getAllocator();
+    final List<Integer> BLOCKSIZES = Arrays.asList(4 * 1024, 8 * 1024, 64 * 1024, 96 * 1024);
+    final Set<Long> live = ConcurrentHashMap.newKeySet();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        Random rand = new Random();
+        List<Long> mine = new ArrayList<>();
+        try {
+          for (int i = 0; i < 5000; i++) {
+            if (!mine.isEmpty() && (rand.nextBoolean() || mine.size() > 64)) {
+              long offset = mine.remove(rand.nextInt(mine.size()));
+              assertTrue(live.remove(offset));
+              mAllocator.freeBlock(offset);
+              continue;
+            }
+            try {
+              long offset = mAllocator.allocateBlock(BLOCKSIZES.get(rand.nextInt(4)));
+              // No two live allocations may share an offset
+              assertTrue("offset handed out twice: " + offset, live.add(offset));
+              mine.add(offset);
+            } catch (CacheFullException cfe) {
+              // other threads hold the space
+            }
+          }
+          for (long offset : mine) {
+            live.remove(offset);
+            mAllocator.freeBlock(offset);
+          }
+        } catch (Throwable e) {
+          error.compareAndSet(null, e);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    if (error.get() != null) {
+      throw new AssertionError(error.get());
+    }
+    assertTrue(live.isEmpty());
+    assertEquals(0, mAllocator.getUsedSize());
+  }
+
+  @Test
+  public void testTuneBucketSizes() throws Exception {
+    // One size to hold the blocks, and the largest size, which is never moved
+    BucketCache bucketCache = new MockedBucketCache(ioEngineName, capacitySize, constructedBlockSize,
+        new int[] { 24 * 1024 + 1024, 64 * 1024 + 1024 }, writeThreads, writerQLen,
+        persistencePath);
+    try {
+      BucketAllocator mAllocator = bucketCache.getAllocator();
+      int blockSize = 20 * 1024 - 100;
+      int before = mAllocator.roundUpToBucketSizeInfo(blockSize).itemSize();
+      assertEquals(24 * 1024 + 1024, before);
+
+      List<Long> allocations = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        allocations.add(mAllocator.allocateBlock(blockSize));
+      }
+      // Sizes holding blocks are not moved
+      assertEquals(0, bucketCache.tuneBucketSizes(0.1));
+      assertEquals(before, mAllocator.roundUpToBucketSizeInfo(blockSize).itemSize());
+
+      for (long offset : allocations) {
+        mAllocator.freeBlock(offset);
+      }
+      assertEquals(1, bucketCache.tuneBucketSizes(0.1));
+      assertEquals(20 * 1024, mAllocator.roundUpToBucketSizeInfo(blockSize).itemSize());
+      // Nothing more to gain
+      assertEquals(0, bucketCache.tuneBucketSizes(0.1));
+
+      long offset = mAllocator.allocateBlock(blockSize);
+      assertEquals(20 * 1024, mAllocator.sizeOfAllocation(offset));
+      assertEquals(20 * 1024, mAllocator.freeBlock(offset));
+      assertEquals(0, mAllocator.getUsedSize());
+    } finally {
+      bucketCache.shutdown();
+    }
+  }
+
+  @Test
+  public void testFragmentation() {
+    BucketCacheStats stats = new BucketCacheStats();
+    assertEquals(0, stats.getFragmentation(), 0.0001);
+    stats.updateFragmentation(1000, 750);
+    assertEquals(0.25, stats.getFragmentation(), 0.0001);
+  }
+
   @Test
   public void testCacheSimple() throws Exception {
     CacheTestUtils.testCacheSimple(cache, BLOCK_SIZE, NUM_QUERIES);
@@ -274,6 +376,103 @@ public class TestBucketCache {
     TEST_UTIL.cleanupTestDir();
   }
 
+  @Test
+  public void testRetrieveFromCheckpointAfterCrash() throws Exception {
+    HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+    Path testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+    String ioEngine = "file:" + testDir + "/bucket.cache";
+    String persistence = testDir + "/bucket.persistence";
+
+    BucketCache bucketCache = new BucketCache(ioEngine, capacitySize, constructedBlockSize,
+        constructedBlockSizes, writeThreads, writerQLen, persistence);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(constructedBlockSize, 4);
+    for (HFileBlockPair block : blocks) {
+      cacheAndWaitUntilFlushedToBucket(bucketCache, block.getBlockName(), block.getBlock());
+    }
+    bucketCache.checkpoint();
+    // Scribble over one block as if its bucket had been reused after the checkpoint was taken
+    BucketEntry overwritten = bucketCache.backingMap.get(blocks[0].getBlockName());
+    bucketCache.ioEngine.write(ByteBuffer.wrap(new byte[overwritten.getLength()]),
+      overwritten.offset());
+    bucketCache.ioEngine.sync();
+
+    // Restart from the checkpoint without shutting the first cache down
+    BucketCache restored = new BucketCache(ioEngine, capacitySize, constructedBlockSize,
+        constructedBlockSizes, writeThreads, writerQLen, persistence);
+    try {
+      assertNull(restored.getBlock(blocks[0].getBlockName(), false, false, false));
+      for (int i = 1; i < blocks.length; i++) {
+        Cacheable block = restored.getBlock(blocks[i].getBlockName(), false, false, false);
+        assertNotNull(block);
+        assertEquals(0, BlockCacheUtil.compareCacheBlock(blocks[i].getBlock(), block));
+      }
+      assertFalse(restored.backingMap.containsKey(blocks[0].getBlockName()));
+      assertEquals(blocks.length - 1, restored.getBlockCount());
+    } finally {
+      restored.shutdown();
+      bucketCache.shutdown();
+    }
+    TEST_UTIL.cleanupTestDir();
+  }
+
+  @Test
+  public void testOffHeapIndex() throws Exception {
+    HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+    Path testDir = TEST_UTIL.getDataTestDir();
+    TEST_UTIL.getTestFileSystem().mkdirs(testDir);
+    String ioEngine = "file:" + testDir + "/bucket.cache";
+    String persistence = testDir + "/bucket.persistence";
+    Configuration conf = HBaseConfiguration.create();
+    conf.setBoolean(BucketCache.OFFHEAP_INDEX_CONFIG_NAME, true);
+
+    BucketCache bucketCache = new BucketCache(ioEngine, capacitySize, constructedBlockSize,
+        constructedBlockSizes, writeThreads, writerQLen, persistence,
+        BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+    assertTrue(bucketCache.backingMap instanceof OffHeapBackingMap);
+    HFileBlockPair[] blocks = CacheTestUtils.generateHFileBlocks(constructedBlockSize, 4);
+    for (HFileBlockPair block : blocks) {
+      cacheAndWaitUntilFlushedToBucket(bucketCache, block.getBlockName(), block.getBlock());
+    }
+    for (HFileBlockPair block : blocks) {
+      Cacheable cached = bucketCache.getBlock(block.getBlockName(), false, false, false);
+      assertEquals(0, BlockCacheUtil.compareCacheBlock(block.getBlock(), cached));
+    }
+    assertTrue(bucketCache.evictBlock(blocks[0].getBlockName()));
+    assertNull(bucketCache.getBlock(blocks[0].getBlockName(), false, false, false));
+    // Evicting by file scans the off-heap index
+    assertEquals(1, bucketCache.evictBlocksByHfileName(blocks[1].getBlockName().getHfileName()));
+    assertNull(bucketCache.getBlock(blocks[1].getBlockName(), false, false, false));
+    assertEquals(0, bucketCache.evictBlocksByHfileName(blocks[1].getBlockName().getHfileName()));
+    long usedSize = bucketCache.getAllocator().getUsedSize();
+    bucketCache.shutdown();
+
+    // The checkpoint is restored into a fresh off-heap index
+    bucketCache = new BucketCache(ioEngine, capacitySize, constructedBlockSize,
+        constructedBlockSizes, writeThreads, writerQLen, persistence,
+        BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+    try {
+      assertTrue(bucketCache.backingMap instanceof OffHeapBackingMap);
+      assertEquals(usedSize, bucketCache.getAllocator().getUsedSize());
+      assertEquals(blocks.length - 2, bucketCache.backingMap.size());
+      for (int i = 2; i < blocks.length; i++) {
+        Cacheable cached = bucketCache.getBlock(blocks[i].getBlockName(), false, false, false);
+        assertNotNull(cached);
+        assertEquals(0, BlockCacheUtil.compareCacheBlock(blocks[i].getBlock(), cached));
+      }
+    } finally {
+      bucketCache.shutdown();
+    }
+
+    // Blocks served out of a ByteBufferIOEngine are reference counted, so the option is ignored
+    bucketCache = new BucketCache(ioEngineName, capacitySize, constructedBlockSize,
+        constructedBlockSizes, writeThreads, writerQLen, null,
+        BucketCache.DEFAULT_ERROR_TOLERATION_DURATION, conf);
+    assertFalse(bucketCache.backingMap instanceof OffHeapBackingMap);
+    bucketCache.shutdown();
+    TEST_UTIL.cleanupTestDir();
+  }
+
   @Test
   public void testBucketAllocatorLargeBuckets() throws BucketAllocatorException {
     long availableSpace = 20 * 1024L * 1024 * 1024;
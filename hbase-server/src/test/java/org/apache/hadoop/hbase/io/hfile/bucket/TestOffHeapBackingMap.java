@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.io.hfile.bucket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockPriority;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.bucket.BucketCache.BucketEntry;
+import org.apache.hadoop.hbase.testclassification.IOTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({ IOTests.class, SmallTests.class })
+public class TestOffHeapBackingMap {
+
+  private static BucketEntry entry(long bucketOffset) {
+    return new BucketEntry(bucketOffset, 4096, 1, BlockPriority.SINGLE);
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    OffHeapBackingMap map = new OffHeapBackingMap(16, 2);
+    BlockCacheKey key = new BlockCacheKey("file", 1234, false, BlockType.LEAF_INDEX);
+    BucketEntry value = new BucketEntry(512, 100, 7, BlockPriority.MEMORY);
+    value.deserialiserIndex = 3;
+    value.setChecksum(-42);
+    assertNull(map.put(key, value));
+
+    BucketEntry found = map.get(new BlockCacheKey("file", 1234));
+    assertEquals(512, found.offset());
+    assertEquals(100, found.getLength());
+    assertEquals(7, found.getAccessCounter());
+    assertEquals(BlockPriority.MEMORY, found.getPriority());
+    assertEquals(3, found.deserialiserIndex);
+    assertEquals(-42, found.getChecksum());
+    assertEquals(value.getCachedTime(), found.getCachedTime());
+    assertFalse(found.isUnverified());
+    assertEquals(found, map.get(key));
+    assertNull(map.get(new BlockCacheKey("file", 1235)));
+    assertNull(map.get(new BlockCacheKey("other", 1234)));
+
+    BlockCacheKey restoredKey = map.keySet().iterator().next();
+    assertEquals(key, restoredKey);
+    assertFalse(restoredKey.isPrimary());
+    assertEquals(BlockType.LEAF_INDEX, restoredKey.getBlockType());
+
+    // Only removed while it still refers to the same bucket
+    assertFalse(map.remove(key, entry(1024)));
+    assertEquals(512, map.putIfAbsent(key, entry(1024)).offset());
+    assertTrue(map.remove(key, value));
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.getFileCount());
+  }
+
+  @Test
+  public void testWriteThrough() {
+    OffHeapBackingMap map = new OffHeapBackingMap(16, 2);
+    BlockCacheKey key = new BlockCacheKey("file", 0);
+    map.put(key, entry(256));
+
+    BucketEntry found = map.get(key);
+    found.access(99);
+    found.markUnverified();
+    found.setChecksum(17);
+    found = map.get(key);
+    assertEquals(99, found.getAccessCounter());
+    assertEquals(BlockPriority.MULTI, found.getPriority());
+    assertTrue(found.isUnverified());
+    assertEquals(17, found.getChecksum());
+
+    // A stale view must not touch the block cached under the key since
+    map.put(key, entry(768));
+    found.markVerified();
+    found.access(100);
+    BucketEntry current = map.get(key);
+    assertEquals(768, current.offset());
+    assertEquals(1, current.getAccessCounter());
+    assertEquals(BlockPriority.SINGLE, current.getPriority());
+    assertNotEquals(found, current);
+  }
+
+  @Test
+  public void testKeysOf() {
+    OffHeapBackingMap map = new OffHeapBackingMap(16, 4);
+    Set<BlockCacheKey> expected = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      BlockCacheKey key = new BlockCacheKey("file" + (i % 3), i * 64L);
+      map.put(key, entry(i * 256L));
+      if (i % 3 == 1) {
+        expected.add(key);
+      }
+    }
+    assertEquals(expected, new HashSet<>(map.keysOf("file1")));
+    assertTrue(map.keysOf("none").isEmpty());
+    for (BlockCacheKey key : expected) {
+      map.remove(key);
+    }
+    assertTrue(map.keysOf("file1").isEmpty());
+    assertEquals(2, map.getFileCount());
+  }
+
+  @Test
+  public void testAgainstHashMap() {
+    Random rand = new Random(1234);
+    OffHeapBackingMap map = new OffHeapBackingMap(0, 4);
+    Map<BlockCacheKey, Long> expected = new HashMap<>();
+    long nextBucketOffset = 0;
+    for (int i = 0; i < 100000; i++) {
+      BlockCacheKey key = new BlockCacheKey("file" + rand.nextInt(20), rand.nextInt(1000) * 64L);
+      if (rand.nextBoolean()) {
+        nextBucketOffset += 256;
+        map.put(key, entry(nextBucketOffset));
+        expected.put(key, nextBucketOffset);
+      } else {
+        BucketEntry removed = map.remove(key);
+        Long offset = expected.remove(key);
+        assertEquals(offset == null, removed == null);
+        if (offset != null) {
+          assertEquals(offset.longValue(), removed.offset());
+        }
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<BlockCacheKey, Long> e : expected.entrySet()) {
+      assertEquals(e.getValue().longValue(), map.get(e.getKey()).offset());
+    }
+    int seen = 0;
+    for (Map.Entry<BlockCacheKey, BucketEntry> e : map.entrySet()) {
+      assertEquals(expected.get(e.getKey()).longValue(), e.getValue().offset());
+      seen++;
+    }
+    assertEquals(expected.size(), seen);
+    assertTrue(map.getOffHeapSize() >= expected.size() * OffHeapBackingMap.SLOT_SIZE);
+    // The offsets recorded per file survive the removals and repeated puts above
+    for (int i = 0; i < 20; i++) {
+      String file = "file" + i;
+      Set<BlockCacheKey> keys = new HashSet<>();
+      for (BlockCacheKey key : expected.keySet()) {
+        if (key.getHfileName().equals(file)) {
+          keys.add(key);
+        }
+      }
+      List<BlockCacheKey> found = map.keysOf(file);
+      assertEquals(keys.size(), found.size());
+      assertEquals(keys, new HashSet<>(found));
+    }
+
+    for (Iterator<BlockCacheKey> it = map.keySet().iterator(); it.hasNext();) {
+      it.next();
+      it.remove();
+    }
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.getFileCount());
+  }
+}
@@ -17,6 +17,13 @@
  */
 package org.apache.hadoop.hbase.ipc;
 
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.apache.hadoop.hbase.io.hfile.CacheOnlyReads;
+import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandler;
 import org.apache.hadoop.hbase.monitoring.MonitoredRPCHandlerImpl;
 import org.apache.hadoop.hbase.testclassification.RPCTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
@@ -38,4 +45,27 @@ public class TestCallRunner {
     cr.setStatus(new MonitoredRPCHandlerImpl());
     cr.run();
   }
+
+  /**
+   * A call run from the block cache only that gives up must not respond, and must release what it
+   * registered to be released after the response before it is run again.
+   */
+  @Test
+  public void testRunIfCachedGivesUp() throws IOException {
+    RpcServerInterface mockRpcServer = Mockito.mock(RpcServerInterface.class);
+    Mockito.when(mockRpcServer.isStarted()).thenReturn(true);
+    ServerCall<?> mockCall = Mockito.mock(ServerCall.class);
+    Mockito.when(mockCall.disconnectSince()).thenReturn(-1L);
+    Mockito.when(mockCall.getDeadline()).thenReturn(Long.MAX_VALUE);
+    Mockito.when(mockCall.getRemoteAddress()).thenReturn(InetAddress.getLoopbackAddress());
+    Mockito.when(mockRpcServer.call(Mockito.any(RpcCall.class),
+      Mockito.any(MonitoredRPCHandler.class)))
+        .thenThrow(new IOException(CacheOnlyReads.giveUp("Not cached")));
+    CallRunner cr = new CallRunner(mockRpcServer, mockCall);
+    assertFalse(cr.runIfCached());
+    Mockito.verify(mockCall).resetCallBack();
+    Mockito.verify(mockCall, Mockito.never()).setResponse(Mockito.any(), Mockito.any(),
+      Mockito.any(), Mockito.any());
+    Mockito.verify(mockCall, Mockito.never()).sendResponseIfReady();
+  }
 }
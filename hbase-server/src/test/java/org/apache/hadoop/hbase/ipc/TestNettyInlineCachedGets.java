@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.coprocessor.SimpleRegionObserver;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HRegionServer;
+import org.apache.hadoop.hbase.regionserver.HStoreFile;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RPCTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Runs Gets with {@link NettyRpcServer#INLINE_CACHED_GETS_KEY} on, through a mini cluster, so
+ * that the fallback from the event loop to a handler is exercised end to end.
+ */
+@Category({ RPCTests.class, MediumTests.class })
+public class TestNettyInlineCachedGets {
+
+  private static final HBaseTestingUtility TEST_UTIL = new HBaseTestingUtility();
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] ROW = Bytes.toBytes("row");
+  private static final byte[] VALUE = Bytes.toBytes("value");
+
+  @Rule
+  public TestName name = new TestName();
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    TEST_UTIL.getConfiguration().set(RpcServerFactory.CUSTOM_RPC_SERVER_IMPL_CONF_KEY,
+      NettyRpcServer.class.getName());
+    TEST_UTIL.getConfiguration().setBoolean(NettyRpcServer.INLINE_CACHED_GETS_KEY, true);
+    TEST_UTIL.startMiniCluster();
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    TEST_UTIL.shutdownMiniCluster();
+  }
+
+  @Test
+  public void testFallbackOnCacheMiss() throws Exception {
+    TableName tableName = TableName.valueOf(name.getMethodName());
+    try (Table table = TEST_UTIL.createTable(tableName, FAMILY)) {
+      table.put(new Put(ROW).addColumn(FAMILY, QUALIFIER, VALUE));
+      TEST_UTIL.flush(tableName);
+      HRegion region = TEST_UTIL.getMiniHBaseCluster().getRegions(tableName).get(0);
+      HRegionServer rs = TEST_UTIL.getMiniHBaseCluster().getRegionServer(
+        TEST_UTIL.getMiniHBaseCluster().getServerWith(region.getRegionInfo().getRegionName()));
+      NettyRpcServer rpcServer = (NettyRpcServer) rs.getRpcServer();
+      BlockCache blockCache = rs.getCacheConfig().getBlockCache();
+      for (HStoreFile sf : region.getStore(FAMILY).getStorefiles()) {
+        blockCache.evictBlocksByHfileName(sf.getPath().getName());
+      }
+
+      long readRequests = region.getReadRequestsCount();
+      long dispatched = rpcServer.inlineGetsDispatched.sum();
+      // Misses the block cache inline and is run again by a handler
+      assertEquals(Bytes.toString(VALUE),
+        Bytes.toString(table.get(new Get(ROW)).getValue(FAMILY, QUALIFIER)));
+      assertTrue(rpcServer.inlineGetsDispatched.sum() > dispatched);
+      assertEquals(readRequests + 1, region.getReadRequestsCount());
+
+      // Now served from the block cache on the event loop
+      dispatched = rpcServer.inlineGetsDispatched.sum();
+      assertEquals(Bytes.toString(VALUE),
+        Bytes.toString(table.get(new Get(ROW)).getValue(FAMILY, QUALIFIER)));
+      assertEquals(dispatched, rpcServer.inlineGetsDispatched.sum());
+      assertEquals(readRequests + 2, region.getReadRequestsCount());
+
+      // No scanner of a given up attempt is left open holding back the read point
+      table.put(new Put(Bytes.toBytes("other")).addColumn(FAMILY, QUALIFIER, VALUE));
+      assertEquals(region.getMVCC().getReadPoint(), region.getSmallestReadPoint());
+    }
+  }
+
+  @Test
+  public void testCoprocessorRegionNotInlined() throws Exception {
+    TableName tableName = TableName.valueOf(name.getMethodName());
+    TEST_UTIL.getAdmin().createTable(TableDescriptorBuilder.newBuilder(tableName)
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY))
+        .addCoprocessor(SimpleRegionObserver.class.getName()).build());
+    try (Table table = TEST_UTIL.getConnection().getTable(tableName)) {
+      table.put(new Put(ROW).addColumn(FAMILY, QUALIFIER, VALUE));
+      HRegion region = TEST_UTIL.getMiniHBaseCluster().getRegions(tableName).get(0);
+      SimpleRegionObserver observer =
+          region.getCoprocessorHost().findCoprocessor(SimpleRegionObserver.class);
+      int preGets = observer.getCtPreGet();
+      for (int i = 0; i < 3; i++) {
+        assertEquals(Bytes.toString(VALUE),
+          Bytes.toString(table.get(new Get(ROW)).getValue(FAMILY, QUALIFIER)));
+      }
+      // Every Get ran on a handler only, so its hooks ran once
+      assertEquals(preGets + 3, observer.getCtPreGet());
+    }
+  }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
@@ -39,6 +40,34 @@ import org.junit.experimental.categories.Category;
 @Category({ RPCTests.class, SmallTests.class })
 public class TestRpcServer {
 
+  @Test
+  public void testAllocateByteBuffToReadIntoSizeClasses() throws Exception {
+    ByteBufferPool pool = new ByteBufferPool(8 * 1024, 10, true, 1024, false);
+    assertEquals(1024, RpcServer.getMinSizeForReservoirUse(pool));
+    // The tail of the request goes to the smallest size class that holds it
+    Pair<ByteBuff, CallCleanup> pair = RpcServer.allocateByteBuffToReadInto(pool,
+        RpcServer.getMinSizeForReservoirUse(pool), 8 * 1024 + 3000);
+    ByteBuff buff = pair.getFirst();
+    assertTrue(buff instanceof MultiByteBuff);
+    ByteBuffer[] bbs = ((MultiByteBuff) buff).getEnclosingByteBuffers();
+    assertEquals(2, bbs.length);
+    assertEquals(8 * 1024, bbs[0].capacity());
+    assertEquals(4 * 1024, bbs[1].capacity());
+    assertEquals(3000, bbs[1].limit());
+    assertEquals(8 * 1024 + 3000, buff.limit());
+    pair.getSecond().run();
+    assertEquals(1, pool.getQueueSize());
+    assertSame(bbs[1], pool.getBuffer(3000));
+
+    // A small request fits a single small pooled buffer
+    pair = RpcServer.allocateByteBuffToReadInto(pool, RpcServer.getMinSizeForReservoirUse(pool),
+        1500);
+    buff = pair.getFirst();
+    assertTrue(buff instanceof SingleByteBuff);
+    assertEquals(2 * 1024, ((SingleByteBuff) buff).getEnclosingByteBuffer().capacity());
+    assertNotNull(pair.getSecond());
+  }
+
   @Test
   public void testAllocateByteBuffToReadInto() throws Exception {
     int maxBuffersInPool = 10;
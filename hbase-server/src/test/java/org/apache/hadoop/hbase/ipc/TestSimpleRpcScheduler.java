@@ -45,6 +45,7 @@ import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.CategoryBasedTimeout;
@@ -314,6 +315,40 @@ public class TestSimpleRpcScheduler {
     }
   }
 
+  @Test
+  public void testEarliestDeadlineFirstQueue() throws Exception {
+    long now = EnvironmentEdgeManager.currentTime();
+    PriorityFunction priority = mock(PriorityFunction.class);
+    LongAdder dropped = new LongAdder();
+    EarliestDeadlineFirstCallQueue queue = new EarliestDeadlineFirstCallQueue(10,
+        new EarliestDeadlineFirstCallQueue.CallDeadlineComparator(conf, priority), dropped);
+
+    CallRunner late = createMockTask(now, now + 60000);
+    CallRunner early = createMockTask(now, now + 1000);
+    CallRunner expired = createMockTask(now - 2000, now - 1000);
+    // no client timeout, falls back to receive time plus the max call delay
+    CallRunner unbounded = createMockTask(now, Long.MAX_VALUE);
+    assertTrue(queue.offer(late));
+    assertTrue(queue.offer(unbounded));
+    assertTrue(queue.offer(expired));
+    assertTrue(queue.offer(early));
+
+    assertEquals(early, queue.take());
+    assertEquals(unbounded, queue.poll());
+    assertEquals(late, queue.poll());
+    assertEquals(null, queue.poll());
+    assertEquals(1, dropped.sum());
+    verify(expired).drop();
+  }
+
+  private CallRunner createMockTask(long receiveTime, long deadline) {
+    CallRunner task = createMockTask();
+    RpcCall call = task.getRpcCall();
+    when(call.getReceiveTime()).thenReturn(receiveTime);
+    when(call.getDeadline()).thenReturn(deadline);
+    return task;
+  }
+
   @Test
   public void testScanQueueWithZeroScanRatio() throws Exception {
 
@@ -65,6 +65,16 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 1025;
   }
 
+  @Override
+  public long getMemStoreArrayMapIndexSize() {
+    return 425;
+  }
+
+  @Override
+  public long getMemStoreChunkMapIndexSize() {
+    return 426;
+  }
+
   @Override
   public long getStoreFileSize() {
     return 1900;
@@ -170,6 +180,16 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 409;
   }
 
+  @Override
+  public long getCoalescedIncrementsCount() {
+    return 423;
+  }
+
+  @Override
+  public long getCoalescedIncrementWritesCount() {
+    return 424;
+  }
+
   @Override
   public long getDataInMemoryWithoutWAL() {
     return 410;
@@ -290,6 +310,26 @@ public class MetricsRegionServerWrapperStub implements MetricsRegionServerWrappe
     return 20;
   }
 
+  @Override
+  public long getL1CacheAdmissionRejectedCount() {
+    return 12;
+  }
+
+  @Override
+  public long getL1CacheSingleHitCount() {
+    return 60;
+  }
+
+  @Override
+  public long getL1CacheMultiHitCount() {
+    return 120;
+  }
+
+  @Override
+  public long getL1CacheMemoryHitCount() {
+    return 20;
+  }
+
   @Override
   public long getL2CacheHitCount() {
     return 800;
@@ -162,4 +162,14 @@ public class MetricsRegionWrapperStub implements MetricsRegionWrapper {
   public long getMaxFlushQueueSize() {
     return 6;
   }
+
+  @Override
+  public String getHotKeyRanges() {
+    return "row=75.0%";
+  }
+
+  @Override
+  public float getHottestKeyRangeShare() {
+    return 75;
+  }
 }
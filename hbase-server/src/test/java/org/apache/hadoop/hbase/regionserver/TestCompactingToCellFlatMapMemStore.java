@@ -30,6 +30,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.hadoop.hbase.util.Threads;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -40,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -666,6 +668,69 @@ public class TestCompactingToCellFlatMapMemStore extends TestCompactingMemStore
     memstore.clearSnapshot(snapshot.getId());
   }
 
+  @Test
+  public void testFlatteningToAdaptiveIndex() throws IOException {
+    MemoryCompactionPolicy compactionType = MemoryCompactionPolicy.BASIC;
+    memstore.getConfiguration().set(CompactingMemStore.COMPACTING_MEMSTORE_TYPE_KEY,
+        String.valueOf(compactionType));
+    ((MyCompactingMemStore)memstore).initiateType(compactionType, memstore.getConfiguration());
+    memstore.getConfiguration().set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
+        String.valueOf(CompactingMemStore.IndexType.ADAPTIVE));
+    ((CompactingMemStore)memstore).setIndexType();
+    int numOfCells = 8;
+    String[] keys1 = { "A", "A", "B", "C", "D", "D", "E", "F" }; //A1, A2, B3, C4, D5, D6, E7, F8
+    addRowsByKeys(memstore, keys1);
+
+    // Too few cells to be worth a whole index chunk, so flattened into a CellArrayMap
+    ((CompactingMemStore)memstore).flushInMemory();
+    List<? extends Segment> segments =
+        ((CompactingMemStore) memstore).getImmutableSegments().getStoreSegments();
+    assertEquals(1, segments.size());
+    assertTrue(segments.get(0) instanceof CellArrayImmutableSegment);
+    assertEquals(numOfCells * (ClassSize.CELL_ARRAY_MAP_ENTRY + KeyValue.FIXED_OVERHEAD),
+        ((CompactingMemStore) memstore).getArrayMapIndexSize());
+    assertEquals(0, ((CompactingMemStore) memstore).getChunkMapIndexSize());
+
+    // All the cells are in MSLAB chunks, so enough of them would go to a CellChunkMap
+    SegmentFactory factory = SegmentFactory.instance();
+    assertTrue(segments.get(0).isAllCellsInChunks());
+    assertEquals(CompactingMemStore.IndexType.CHUNK_MAP, factory.chooseIndexType(
+        CompactingMemStore.IndexType.ADAPTIVE, CellChunkMap.NUM_OF_CELL_REPS_IN_CHUNK, segments));
+    assertEquals(CompactingMemStore.IndexType.ARRAY_MAP, factory.chooseIndexType(
+        CompactingMemStore.IndexType.ARRAY_MAP, CellChunkMap.NUM_OF_CELL_REPS_IN_CHUNK,
+        segments));
+
+    // A cell that is not in a chunk rules out a CellChunkMap however many cells there are
+    MutableSegment active = factory.createMutableSegment(memstore.getConfiguration(),
+        CellComparatorImpl.COMPARATOR);
+    KeyValue kv = new KeyValue(Bytes.toBytes("G"), Bytes.toBytes("testfamily"),
+        Bytes.toBytes("testqualifier"), System.currentTimeMillis(), Bytes.toBytes("G"));
+    active.add(kv, false, new MemStoreSizing());
+    assertFalse(active.isAllCellsInChunks());
+    assertEquals(CompactingMemStore.IndexType.ARRAY_MAP, factory.chooseIndexType(
+        CompactingMemStore.IndexType.ADAPTIVE, CellChunkMap.NUM_OF_CELL_REPS_IN_CHUNK,
+        Collections.singletonList(active)));
+    active.close();
+  }
+
+  @Test
+  public void testChunkMapIndexSize() throws IOException {
+    MemoryCompactionPolicy compactionType = MemoryCompactionPolicy.BASIC;
+    memstore.getConfiguration().set(CompactingMemStore.COMPACTING_MEMSTORE_TYPE_KEY,
+        String.valueOf(compactionType));
+    ((MyCompactingMemStore)memstore).initiateType(compactionType, memstore.getConfiguration());
+    memstore.getConfiguration().set(CompactingMemStore.COMPACTING_MEMSTORE_INDEX_KEY,
+        String.valueOf(CompactingMemStore.IndexType.CHUNK_MAP));
+    ((CompactingMemStore)memstore).setIndexType();
+    String[] keys1 = { "A", "B", "C", "D" };
+    addRowsByKeys(memstore, keys1);
+    ((CompactingMemStore)memstore).flushInMemory(); // push keys to pipeline and flatten
+    // A single index chunk holds all four cells
+    assertEquals(chunkCreator.getChunkSize(),
+        ((CompactingMemStore) memstore).getChunkMapIndexSize());
+    assertEquals(0, ((CompactingMemStore) memstore).getArrayMapIndexSize());
+  }
+
 
   private long addRowsByKeysDataSize(final AbstractMemStore hmc, String[] keys) {
     byte[] fam = Bytes.toBytes("testfamily");
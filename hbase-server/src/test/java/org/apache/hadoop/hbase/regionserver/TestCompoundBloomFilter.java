@@ -165,6 +165,27 @@ public class TestCompoundBloomFilter {
     }
   }
 
+  @Test
+  public void testBlockedCompoundBloomFilter() throws IOException {
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_ENABLED, true);
+    conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_BLOCKED, true);
+    try {
+      for (int t = 0; t < NUM_TESTS; ++t) {
+        conf.setFloat(BloomFilterFactory.IO_STOREFILE_BLOOM_ERROR_RATE,
+            (float) TARGET_ERROR_RATES[t]);
+
+        testIdMsg = "in blocked test #" + t + ":";
+        Random generationRand = new Random(GENERATION_SEED);
+        List<KeyValue> kvs = createSortedKeyValues(generationRand, NUM_KV[t]);
+        BloomType bt = BLOOM_TYPES[t];
+        Path sfPath = writeStoreFile(t, bt, kvs);
+        readStoreFile(t, bt, kvs, sfPath);
+      }
+    } finally {
+      conf.setBoolean(BloomFilterFactory.IO_STOREFILE_BLOOM_BLOCKED, false);
+    }
+  }
+
   /**
    * Validates the false positive ratio by computing its z-value and comparing
    * it to the provided threshold.
@@ -227,6 +248,7 @@ public class TestCompoundBloomFilter {
         String fakeLookupModeStr = ", fake lookup is " + (fakeLookupEnabled ?
             "enabled" : "disabled");
         CompoundBloomFilter cbf = (CompoundBloomFilter) r.getGeneralBloomFilter();
+        assertEquals(BloomFilterFactory.isBlockedBloomEnabled(conf), cbf.isBlocked());
         cbf.enableTestingStats();
         int numFalsePos = 0;
         Random rand = new Random(EVALUATION_SEED);
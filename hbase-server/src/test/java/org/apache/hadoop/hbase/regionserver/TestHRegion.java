@@ -25,8 +25,10 @@ import static org.apache.hadoop.hbase.HBaseTestingUtility.fam3;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
@@ -421,6 +423,40 @@ public class TestHRegion {
     HBaseTestingUtility.closeRegionAndWAL(region);
   }
 
+  @Test
+  public void testSwitchWAL() throws IOException {
+    String testName = "testSwitchWAL";
+    FileSystem fs = FileSystem.get(CONF);
+    Path rootDir = new Path(dir + testName);
+    FSHLog hLog = new FSHLog(fs, rootDir, testName, CONF);
+    FSHLog target = new FSHLog(fs, rootDir, testName + "-target", CONF);
+    try {
+      HRegion region = initHRegion(tableName, null, null, false, Durability.SYNC_WAL, hLog,
+          COLUMN_FAMILY_BYTES);
+      byte[] encodedName = region.getRegionInfo().getEncodedNameAsBytes();
+      byte[] value = Bytes.toBytes(method);
+      region.put(new Put(value).addColumn(COLUMN_FAMILY_BYTES, Bytes.toBytes("abc"), value));
+      assertNotEquals(HConstants.NO_SEQNUM,
+        hLog.getEarliestMemStoreSeqNum(encodedName, COLUMN_FAMILY_BYTES));
+
+      // The region is flushed out of the WAL it leaves, and appends to the other one from now on
+      assertTrue(region.switchWAL(target));
+      assertSame(target, region.getWAL());
+      assertEquals(0, region.getMemStoreSize());
+      assertEquals(HConstants.NO_SEQNUM,
+        hLog.getEarliestMemStoreSeqNum(encodedName, COLUMN_FAMILY_BYTES));
+      region.put(new Put(value).addColumn(COLUMN_FAMILY_BYTES, Bytes.toBytes("dfg"), value));
+      assertEquals(HConstants.NO_SEQNUM,
+        hLog.getEarliestMemStoreSeqNum(encodedName, COLUMN_FAMILY_BYTES));
+      assertNotEquals(HConstants.NO_SEQNUM,
+        target.getEarliestMemStoreSeqNum(encodedName, COLUMN_FAMILY_BYTES));
+      assertEquals(2, region.get(new Get(value)).size());
+      HBaseTestingUtility.closeRegionAndWAL(region);
+    } finally {
+      hLog.close();
+    }
+  }
+
   /**
    * Test we do not lose data if we fail a flush and then close.
    * Part of HBase-10466.  Tests the following from the issue description:
@@ -948,6 +984,35 @@ public class TestHRegion {
     }
   }
 
+  @Test
+  public void testFlushStoresInParallel() throws Exception {
+    Configuration conf = new Configuration(CONF);
+    conf.setInt(HRegion.FLUSH_STORES_THREADS_MAX, 3);
+    byte[][] families = { Bytes.toBytes("fam1"), Bytes.toBytes("fam2"), Bytes.toBytes("fam3") };
+    this.region = initHRegion(tableName, method, conf, families);
+    try {
+      for (int i = 0; i < 100; i++) {
+        Put put = new Put(Bytes.toBytes(i));
+        for (byte[] family : families) {
+          put.addColumn(family, qual1, Bytes.toBytes(i));
+        }
+        region.put(put);
+      }
+      region.flush(true);
+      assertEquals(0, region.getMemStoreSize());
+      for (HStore store : region.getStores()) {
+        assertEquals(1, store.getStorefilesCount());
+      }
+      Result result = region.get(new Get(Bytes.toBytes(42)));
+      for (byte[] family : families) {
+        assertArrayEquals(Bytes.toBytes(42), result.getValue(family, qual1));
+      }
+    } finally {
+      HBaseTestingUtility.closeRegionAndWAL(this.region);
+      this.region = null;
+    }
+  }
+
   @Test
   public void testFlushMarkers() throws Exception {
     // tests that flush markers are written to WAL and handled at recovered edits
@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Increment;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+/**
+ * Tests increments on column families with increment coalescing enabled.
+ */
+@Category({RegionServerTests.class, MediumTests.class})
+public class TestIncrementCoalescing {
+  @Rule public TestName name = new TestName();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] UNCOALESCED_FAMILY = Bytes.toBytes("g");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] ROW = Bytes.toBytes("row");
+
+  private final HBaseTestingUtility TEST_UTIL = HBaseTestingUtility.createLocalHTU();
+  private HRegion region;
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      region.close();
+      WAL wal = region.getWAL();
+      if (wal != null) {
+        wal.close();
+      }
+      region = null;
+    }
+  }
+
+  private void initHRegion(long windowMs) throws IOException {
+    Configuration conf = TEST_UTIL.getConfiguration();
+    conf.setLong(IncrementCoalescer.INCREMENT_COALESCING_WINDOW_MS_KEY, windowMs);
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(
+      TableName.valueOf(name.getMethodName()))
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.newBuilder(FAMILY)
+            .setConfiguration(IncrementCoalescer.INCREMENT_COALESCING_KEY, "true").build())
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.of(UNCOALESCED_FAMILY))
+        .build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(htd.getTableName()).build();
+    region = TEST_UTIL.createLocalHRegion(info, htd);
+  }
+
+  /**
+   * Runs <code>numThreads</code> threads doing <code>incrementsPerThread</code> increments by
+   * one each, and checks every caller saw a distinct value and none were lost.
+   */
+  private void runConcurrentIncrements(int numThreads, int incrementsPerThread)
+      throws Exception {
+    final Set<Long> seen = ConcurrentHashMap.newKeySet();
+    final CountDownLatch start = new CountDownLatch(1);
+    final IOException[] failure = new IOException[1];
+    Thread[] threads = new Thread[numThreads];
+    for (int i = 0; i < numThreads; i++) {
+      threads[i] = new Thread(() -> {
+        try {
+          start.await();
+          for (int j = 0; j < incrementsPerThread; j++) {
+            Increment inc = new Increment(ROW);
+            inc.addColumn(FAMILY, QUALIFIER, 1);
+            Result result = region.increment(inc, HConstants.NO_NONCE, HConstants.NO_NONCE);
+            assertTrue(seen.add(Bytes.toLong(result.getValue(FAMILY, QUALIFIER))));
+          }
+        } catch (IOException e) {
+          failure[0] = e;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread t : threads) {
+      t.join();
+    }
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    long total = (long) numThreads * incrementsPerThread;
+    assertEquals(total, seen.size());
+    for (long i = 1; i <= total; i++) {
+      assertTrue("Missing result " + i, seen.contains(i));
+    }
+    Result result = region.get(new Get(ROW));
+    assertEquals(total, Bytes.toLong(result.getValue(FAMILY, QUALIFIER)));
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    initHRegion(IncrementCoalescer.DEFAULT_INCREMENT_COALESCING_WINDOW_MS);
+    int numThreads = 20;
+    int incrementsPerThread = 200;
+    runConcurrentIncrements(numThreads, incrementsPerThread);
+    assertEquals(numThreads * incrementsPerThread, region.getCoalescedIncrementsCount());
+    assertTrue(region.getCoalescedIncrementWritesCount() > 0);
+    assertTrue(
+      region.getCoalescedIncrementWritesCount() <= region.getCoalescedIncrementsCount());
+  }
+
+  @Test
+  public void testWindowMergesIncrements() throws Exception {
+    initHRegion(500);
+    int numThreads = 10;
+    runConcurrentIncrements(numThreads, 1);
+    assertEquals(numThreads, region.getCoalescedIncrementsCount());
+    // All threads start together well inside the window so at least some of them must share a
+    // read-modify-write.
+    assertTrue(region.getCoalescedIncrementWritesCount() < numThreads);
+  }
+
+  @Test
+  public void testRepeatedColumnAndZeroAmount() throws IOException {
+    initHRegion(IncrementCoalescer.DEFAULT_INCREMENT_COALESCING_WINDOW_MS);
+    Increment inc = new Increment(ROW);
+    inc.addColumn(FAMILY, QUALIFIER, 5);
+    Result result = region.increment(inc, HConstants.NO_NONCE, HConstants.NO_NONCE);
+    assertEquals(5, Bytes.toLong(result.getValue(FAMILY, QUALIFIER)));
+    inc = new Increment(ROW);
+    inc.addColumn(FAMILY, QUALIFIER, 0);
+    result = region.increment(inc, HConstants.NO_NONCE, HConstants.NO_NONCE);
+    assertEquals(5, Bytes.toLong(result.getValue(FAMILY, QUALIFIER)));
+    inc = new Increment(ROW);
+    inc.addColumn(FAMILY, QUALIFIER, 3);
+    inc.setReturnResults(false);
+    assertTrue(region.increment(inc, HConstants.NO_NONCE, HConstants.NO_NONCE).isEmpty());
+    assertEquals(8,
+      Bytes.toLong(region.get(new Get(ROW)).getValue(FAMILY, QUALIFIER)));
+    assertEquals(3, region.getCoalescedIncrementsCount());
+  }
+
+  @Test
+  public void testBadIncrementFailsAlone() throws Exception {
+    initHRegion(IncrementCoalescer.DEFAULT_INCREMENT_COALESCING_WINDOW_MS);
+    byte[] notALong = Bytes.toBytes("s");
+    region.put(new Put(ROW).addColumn(FAMILY, notALong, Bytes.toBytes(1)));
+    Increment[] increments = new Increment[] {
+      new Increment(ROW).addColumn(FAMILY, QUALIFIER, 1),
+      new Increment(ROW).addColumn(FAMILY, QUALIFIER, 100).addColumn(FAMILY, notALong, 1),
+      new Increment(ROW).addColumn(FAMILY, QUALIFIER, 2)
+    };
+    Result[] results = new Result[increments.length];
+    IOException[] failures = new IOException[increments.length];
+    Thread[] threads = new Thread[increments.length];
+    // Hold the row lock so that all three increments end up in the batch the first one leads.
+    Region.RowLock rowLock = region.getRowLock(ROW, false);
+    try {
+      for (int i = 0; i < increments.length; i++) {
+        final int index = i;
+        threads[i] = new Thread(() -> {
+          try {
+            results[index] =
+                region.increment(increments[index], HConstants.NO_NONCE, HConstants.NO_NONCE);
+          } catch (IOException e) {
+            failures[index] = e;
+          }
+        });
+        threads[i].start();
+        while (threads[i].getState() != Thread.State.WAITING
+            && threads[i].getState() != Thread.State.TIMED_WAITING) {
+          Thread.sleep(1);
+        }
+      }
+    } finally {
+      rowLock.release();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertNull(failures[0]);
+    assertEquals(1, Bytes.toLong(results[0].getValue(FAMILY, QUALIFIER)));
+    assertTrue(failures[1] instanceof DoNotRetryIOException);
+    assertNull(failures[2]);
+    assertEquals(3, Bytes.toLong(results[2].getValue(FAMILY, QUALIFIER)));
+    Result result = region.get(new Get(ROW));
+    assertEquals(3, Bytes.toLong(result.getValue(FAMILY, QUALIFIER)));
+    assertEquals(1, Bytes.toInt(result.getValue(FAMILY, notALong)));
+    assertEquals(2, region.getCoalescedIncrementsCount());
+    assertEquals(1, region.getCoalescedIncrementWritesCount());
+  }
+
+  @Test
+  public void testUncoalescedFamily() throws IOException {
+    initHRegion(IncrementCoalescer.DEFAULT_INCREMENT_COALESCING_WINDOW_MS);
+    Increment inc = new Increment(ROW);
+    inc.addColumn(UNCOALESCED_FAMILY, QUALIFIER, 1);
+    region.increment(inc, HConstants.NO_NONCE, HConstants.NO_NONCE);
+    // An increment is only coalesced if all of its families allow it.
+    inc = new Increment(ROW);
+    inc.addColumn(FAMILY, QUALIFIER, 1);
+    inc.addColumn(UNCOALESCED_FAMILY, QUALIFIER, 1);
+    Result result = region.increment(inc, HConstants.NO_NONCE, HConstants.NO_NONCE);
+    assertEquals(1, Bytes.toLong(result.getValue(FAMILY, QUALIFIER)));
+    assertEquals(2, Bytes.toLong(result.getValue(UNCOALESCED_FAMILY, QUALIFIER)));
+    assertEquals(0, region.getCoalescedIncrementsCount());
+    assertEquals(0, region.getCoalescedIncrementWritesCount());
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the score MemStoreFlusher uses to pick a region to flush under global pressure.
+ */
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestMemStoreFlusherScore {
+
+  private static final double DELTA = 1e-9;
+
+  @Test
+  public void testSizeOnly() {
+    assertEquals(0, MemStoreFlusher.flushScore(0, 0, 1, 1), DELTA);
+    assertEquals(1000, MemStoreFlusher.flushScore(1000, 0, 0, 1), DELTA);
+    assertTrue(MemStoreFlusher.flushScore(2000, 0, 0, 1)
+        > MemStoreFlusher.flushScore(1000, 0, 0, 1));
+  }
+
+  @Test
+  public void testStoreFiles() {
+    // At or past the blocking count a region is worth half, so it still wins when more than
+    // twice as big as a region with no store files.
+    assertEquals(500, MemStoreFlusher.flushScore(1000, 1, 0, 1), DELTA);
+    assertEquals(500, MemStoreFlusher.flushScore(1000, 3, 0, 1), DELTA);
+    assertEquals(750, MemStoreFlusher.flushScore(1000, 0.5, 0, 1), DELTA);
+    assertTrue(MemStoreFlusher.flushScore(2100, 1.2, 0, 1)
+        > MemStoreFlusher.flushScore(1000, 0, 0, 1));
+    assertTrue(MemStoreFlusher.flushScore(1900, 1.2, 0, 1)
+        < MemStoreFlusher.flushScore(1000, 0, 0, 1));
+  }
+
+  @Test
+  public void testWalAge() {
+    assertEquals(2000, MemStoreFlusher.flushScore(1000, 0, 1, 1), DELTA);
+    assertEquals(1500, MemStoreFlusher.flushScore(1000, 0, 0.5, 1), DELTA);
+    assertEquals(1000, MemStoreFlusher.flushScore(1000, 0, 1, 0), DELTA);
+    // A smaller region pinning the oldest WAL beats a bigger one with only recent edits.
+    assertTrue(MemStoreFlusher.flushScore(800, 0, 1, 1)
+        > MemStoreFlusher.flushScore(1200, 0, 0, 1));
+  }
+}
@@ -64,6 +64,13 @@ public class TestMetricsRegion {
     HELPER.assertCounter(
       "namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001_metric_replicaid", 
       0, agg);
+    HELPER.assertTag(
+      "namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001_metric_hotKeyRanges",
+      "row=75.0%", agg);
+    HELPER.assertGauge(
+      "namespace_TestNS_table_MetricsRegionWrapperStub_region_DEADBEEF001_metric_" +
+        "hottestKeyRangeShare",
+      75.0, agg);
     mr.close();
 
     // test region with replica id > 0
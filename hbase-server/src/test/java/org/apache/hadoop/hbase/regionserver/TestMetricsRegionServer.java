@@ -71,6 +71,8 @@ public class TestMetricsRegionServer {
     HELPER.assertGauge("storeFileCount", 300, serverSource);
     HELPER.assertGauge("memstoreSize", 1025, serverSource);
     HELPER.assertGauge("storeFileSize", 1900, serverSource);
+    HELPER.assertGauge("memStoreArrayMapIndexSize", 425, serverSource);
+    HELPER.assertGauge("memStoreChunkMapIndexSize", 426, serverSource);
     HELPER.assertCounter("totalRequestCount", 899, serverSource);
     HELPER.assertCounter("totalRowActionRequestCount",
       HELPER.getCounter("readRequestCount", serverSource)
@@ -86,6 +88,8 @@ public class TestMetricsRegionServer {
     HELPER.assertGauge("staticBloomSize", 408, serverSource);
     HELPER.assertGauge("mutationsWithoutWALCount", 409, serverSource);
     HELPER.assertGauge("mutationsWithoutWALSize", 410, serverSource);
+    HELPER.assertCounter("coalescedIncrementCount", 423, serverSource);
+    HELPER.assertCounter("coalescedIncrementWriteCount", 424, serverSource);
     HELPER.assertGauge("percentFilesLocal", 99, serverSource);
     HELPER.assertGauge("percentFilesLocalSecondaryRegions", 99, serverSource);
     HELPER.assertGauge("compactionQueueLength", 411, serverSource);
@@ -103,6 +107,10 @@ public class TestMetricsRegionServer {
     HELPER.assertGauge("l1CacheMissCount", 100, serverSource);
     HELPER.assertGauge("l1CacheHitRatio", 80, serverSource);
     HELPER.assertGauge("l1CacheMissRatio", 20, serverSource);
+    HELPER.assertCounter("l1CacheAdmissionRejectedCount", 12, serverSource);
+    HELPER.assertCounter("l1CacheSingleHitCount", 60, serverSource);
+    HELPER.assertCounter("l1CacheMultiHitCount", 120, serverSource);
+    HELPER.assertCounter("l1CacheMemoryHitCount", 20, serverSource);
     HELPER.assertGauge("l2CacheHitCount", 800, serverSource);
     HELPER.assertGauge("l2CacheMissCount", 200, serverSource);
     HELPER.assertGauge("l2CacheHitRatio", 90, serverSource);
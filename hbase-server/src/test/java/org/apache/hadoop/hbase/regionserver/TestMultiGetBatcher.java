@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.PrivateCellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.ColumnFamilyDescriptorBuilder;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.TableDescriptor;
+import org.apache.hadoop.hbase.client.TableDescriptorBuilder;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.wal.WAL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.ClientProtos;
+
+/**
+ * Tests that Gets served through a shared scanner return what they would have returned alone.
+ */
+@Category({RegionServerTests.class, MediumTests.class})
+public class TestMultiGetBatcher {
+  @Rule public TestName name = new TestName();
+
+  private static final byte[] FAMILY = Bytes.toBytes("f");
+  private static final byte[] OTHER_FAMILY = Bytes.toBytes("g");
+  private static final byte[] QUALIFIER = Bytes.toBytes("q");
+  private static final byte[] OTHER_QUALIFIER = Bytes.toBytes("r");
+  private static final int NUM_ROWS = 200;
+
+  private final HBaseTestingUtility TEST_UTIL = HBaseTestingUtility.createLocalHTU();
+  private HRegion region;
+  private MultiGetBatcher batcher;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = TEST_UTIL.getConfiguration();
+    conf.setBoolean(MultiGetBatcher.MULTIGET_BATCHING_KEY, true);
+    TableDescriptor htd = TableDescriptorBuilder.newBuilder(
+      TableName.valueOf(name.getMethodName()))
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.of(FAMILY))
+        .addColumnFamily(ColumnFamilyDescriptorBuilder.of(OTHER_FAMILY))
+        .build();
+    RegionInfo info = RegionInfoBuilder.newBuilder(htd.getTableName()).build();
+    region = TEST_UTIL.createLocalHRegion(info, htd);
+    batcher = new MultiGetBatcher(conf);
+    // Even rows only, half of them flushed to an HFile and half left in the MemStore.
+    for (int i = 0; i < NUM_ROWS; i += 2) {
+      Put put = new Put(row(i));
+      put.addColumn(FAMILY, QUALIFIER, Bytes.toBytes(i));
+      put.addColumn(FAMILY, OTHER_QUALIFIER, Bytes.toBytes(-i));
+      put.addColumn(OTHER_FAMILY, QUALIFIER, Bytes.toBytes(i * 2));
+      region.put(put);
+      if (i == NUM_ROWS / 2) {
+        region.flush(true);
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (region != null) {
+      region.close();
+      WAL wal = region.getWAL();
+      if (wal != null) {
+        wal.close();
+      }
+      region = null;
+    }
+  }
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row%05d", i));
+  }
+
+  private static List<ClientProtos.Action> toActions(List<Get> gets) throws IOException {
+    List<ClientProtos.Action> actions = new ArrayList<>();
+    for (int i = 0; i < gets.size(); i++) {
+      actions.add(ClientProtos.Action.newBuilder().setIndex(i)
+          .setGet(ProtobufUtil.toGet(gets.get(i))).build());
+    }
+    return actions;
+  }
+
+  /**
+   * Runs <code>gets</code> through the batcher and checks each served one against a plain get.
+   * @return the number of Gets the batcher served
+   */
+  private int runAndVerify(List<Get> gets) throws Exception {
+    RSRpcServices.RegionScannersCloseCallBack closeCallBack =
+        new RSRpcServices.RegionScannersCloseCallBack();
+    Result[] results = batcher.get(region, toActions(gets), closeCallBack, Long.MAX_VALUE);
+    int served = 0;
+    try {
+      assertNotNull(results);
+      assertEquals(gets.size(), results.length);
+      for (int i = 0; i < gets.size(); i++) {
+        if (results[i] != null) {
+          served++;
+          Result.compareResults(region.get(gets.get(i)), results[i]);
+        }
+      }
+    } finally {
+      closeCallBack.run();
+    }
+    return served;
+  }
+
+  @Test
+  public void testUnsortedGetsWithMissingAndDuplicateRows() throws Exception {
+    List<Get> gets = new ArrayList<>();
+    for (int i : new int[] { 150, 3, 40, 41, 199, 0, 40, 101, 100, 250, 98, 57 }) {
+      gets.add(new Get(row(i)));
+    }
+    assertEquals(gets.size(), runAndVerify(gets));
+    assertEquals(gets.size(), batcher.getBatchedGetsCount());
+    assertEquals(1, batcher.getSharedScannersCount());
+  }
+
+  @Test
+  public void testColumnsAndVersions() throws Exception {
+    List<Get> gets = new ArrayList<>();
+    for (int i = NUM_ROWS - 1; i >= 0; i -= 7) {
+      gets.add(new Get(row(i)).addColumn(FAMILY, OTHER_QUALIFIER).readVersions(2));
+    }
+    assertEquals(gets.size(), runAndVerify(gets));
+    for (int i = 0; i < gets.size(); i++) {
+      assertFalse(region.get(gets.get(i)).containsColumn(FAMILY, QUALIFIER));
+    }
+  }
+
+  @Test
+  public void testMismatchedGetsLeftToCaller() throws Exception {
+    List<Get> gets = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      gets.add(new Get(row(i * 10)).addFamily(FAMILY));
+    }
+    // Different columns, a filter, and a family the table does not have.
+    gets.add(new Get(row(12)).addFamily(OTHER_FAMILY));
+    gets.add(new Get(row(14)).addFamily(FAMILY).setFilter(new PrefixFilter(row(14))));
+    gets.add(new Get(row(16)).addFamily(Bytes.toBytes("missing")));
+    RSRpcServices.RegionScannersCloseCallBack closeCallBack =
+        new RSRpcServices.RegionScannersCloseCallBack();
+    Result[] results = batcher.get(region, toActions(gets), closeCallBack, Long.MAX_VALUE);
+    closeCallBack.run();
+    assertNotNull(results);
+    for (int i = 0; i < 8; i++) {
+      assertNotNull(results[i]);
+      Result.compareResults(region.get(gets.get(i)), results[i]);
+    }
+    assertNull(results[8]);
+    assertNull(results[9]);
+    assertNull(results[10]);
+  }
+
+  @Test
+  public void testStopsAtResultSizeLimit() throws Exception {
+    List<Get> gets = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      gets.add(new Get(row(i * 2)).addColumn(FAMILY, QUALIFIER));
+    }
+    long rowSize = 0;
+    for (Cell cell : region.get(gets.get(0)).rawCells()) {
+      rowSize += PrivateCellUtil.estimatedSerializedSizeOf(cell);
+    }
+    RSRpcServices.RegionScannersCloseCallBack closeCallBack =
+        new RSRpcServices.RegionScannersCloseCallBack();
+    // Room for three rows; the fourth is not read.
+    Result[] results = batcher.get(region, toActions(gets), closeCallBack, rowSize * 3);
+    closeCallBack.run();
+    assertNotNull(results);
+    for (int i = 0; i < gets.size(); i++) {
+      if (i < 3) {
+        Result.compareResults(region.get(gets.get(i)), results[i]);
+      } else {
+        assertNull(results[i]);
+      }
+    }
+    assertEquals(3, batcher.getBatchedGetsCount());
+    assertNull(batcher.get(region, toActions(gets),
+      new RSRpcServices.RegionScannersCloseCallBack(), 0));
+  }
+
+  @Test
+  public void testTooFewGets() throws Exception {
+    List<Get> gets = new ArrayList<>();
+    gets.add(new Get(row(2)));
+    gets.add(new Get(row(4)));
+    assertNull(batcher.get(region, toActions(gets),
+      new RSRpcServices.RegionScannersCloseCallBack(), Long.MAX_VALUE));
+    assertEquals(0, batcher.getBatchedGetsCount());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    Configuration conf = new Configuration(TEST_UTIL.getConfiguration());
+    conf.setBoolean(MultiGetBatcher.MULTIGET_BATCHING_KEY, false);
+    MultiGetBatcher disabled = new MultiGetBatcher(conf);
+    assertFalse(disabled.isEnabled());
+    List<Get> gets = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      gets.add(new Get(row(i)));
+    }
+    assertNull(disabled.get(region, toActions(gets),
+      new RSRpcServices.RegionScannersCloseCallBack(), Long.MAX_VALUE));
+    assertTrue(batcher.isEnabled());
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestRegionHotspotTracker {
+
+  @After
+  public void tearDown() {
+    EnvironmentEdgeManager.reset();
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    Configuration conf = HBaseConfiguration.create();
+    assertNull(RegionHotspotTracker.create(conf));
+    conf.setBoolean(RegionHotspotTracker.ENABLED_KEY, true);
+    assertEquals(RegionHotspotTracker.DEFAULT_SAMPLE_RATE,
+      RegionHotspotTracker.create(conf).getSampleRate());
+  }
+
+  @Test
+  public void testTopRanges() {
+    RegionHotspotTracker tracker = new RegionHotspotTracker(1, 3, 2, 0);
+    // 60 writes and 20 reads on prefix "hot", spread over many rows
+    for (int i = 0; i < 60; i++) {
+      tracker.recordWrite(Bytes.toBytes("hot" + i));
+    }
+    for (int i = 0; i < 20; i++) {
+      tracker.recordRead(new KeyValue(Bytes.toBytes("hot" + i), Bytes.toBytes("f"),
+          Bytes.toBytes("q"), Bytes.toBytes("v")));
+    }
+    // A tail of distinct prefixes, more than the tracker can hold
+    for (int i = 0; i < 20; i++) {
+      tracker.recordWrite(Bytes.toBytes(String.format("%03d", i)));
+    }
+    assertEquals(100, tracker.getSamples());
+
+    List<RegionHotspotTracker.HotRange> top = tracker.getTopRanges();
+    assertEquals(2, top.size());
+    assertArrayEquals(Bytes.toBytes("hot"), top.get(0).getPrefix());
+    assertEquals(80, top.get(0).getCount());
+    assertEquals(0, top.get(0).getError());
+    assertEquals(20, top.get(0).getReads());
+    assertEquals(60, top.get(0).getWrites());
+    assertEquals(0.8f, top.get(0).getShare(), 0.001f);
+    assertTrue(top.get(0).getCount() >= top.get(1).getCount());
+    assertTrue(tracker.toString().startsWith("hot=80.0%,"));
+
+    assertArrayEquals(Bytes.toBytes("hot"), tracker.getHotPrefix(0.5f));
+    assertNull(tracker.getHotPrefix(0.9f));
+  }
+
+  @Test
+  public void testHotPrefixNeedsEnoughSamples() {
+    RegionHotspotTracker tracker = new RegionHotspotTracker(1, 0, 10, 0);
+    for (int i = 0; i < RegionHotspotTracker.MIN_SAMPLES_FOR_HOT_RANGE - 1; i++) {
+      tracker.recordWrite(Bytes.toBytes("row"));
+    }
+    assertNull(tracker.getHotPrefix(0.5f));
+    tracker.recordWrite(Bytes.toBytes("row"));
+    assertArrayEquals(Bytes.toBytes("row"), tracker.getHotPrefix(0.5f));
+  }
+
+  @Test
+  public void testDecay() {
+    ManualEnvironmentEdge edge = new ManualEnvironmentEdge();
+    edge.setValue(1000);
+    EnvironmentEdgeManager.injectEdge(edge);
+    RegionHotspotTracker tracker = new RegionHotspotTracker(1, 0, 10, 100);
+    for (int i = 0; i < 10; i++) {
+      tracker.recordWrite(Bytes.toBytes("a"));
+    }
+    tracker.recordWrite(Bytes.toBytes("b"));
+    edge.incValue(100);
+    // Halves "a" to 5, drops "b", then counts the new sample
+    tracker.recordWrite(Bytes.toBytes("c"));
+    List<RegionHotspotTracker.HotRange> top = tracker.getTopRanges();
+    assertEquals(2, top.size());
+    assertEquals(5, top.get(0).getCount());
+    assertArrayEquals(Bytes.toBytes("c"), top.get(1).getPrefix());
+    assertEquals(6, tracker.getSamples());
+  }
+
+  @Test
+  public void testEndOfRange() {
+    assertArrayEquals(Bytes.toBytes("ab"), RegionHotspotTracker.endOfRange(Bytes.toBytes("aa")));
+    assertArrayEquals(new byte[] { 2 },
+      RegionHotspotTracker.endOfRange(new byte[] { 1, (byte) 0xff }));
+    assertNull(RegionHotspotTracker.endOfRange(new byte[] { (byte) 0xff, (byte) 0xff }));
+    assertNull(RegionHotspotTracker.endOfRange(new byte[0]));
+  }
+}
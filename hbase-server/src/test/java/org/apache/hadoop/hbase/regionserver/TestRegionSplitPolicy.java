@@ -205,6 +205,54 @@ public class TestRegionSplitPolicy {
     assertTrue(policy.shouldSplit());
   }
 
+  @Test
+  public void testBusyRegionSplitPolicyHotspot() throws Exception {
+    conf.set(HConstants.HBASE_REGION_SPLIT_POLICY_KEY,
+        BusyRegionSplitPolicy.class.getName());
+    conf.setLong("hbase.busy.policy.minAge", 0L);
+    conf.setFloat("hbase.busy.policy.hotspotShare", 0.5f);
+    HRegionInfo hri = new HRegionInfo(TABLENAME, Bytes.toBytes("b"), Bytes.toBytes("y"));
+    Mockito.doReturn(hri).when(mockRegion).getRegionInfo();
+    RegionServerServices rss = Mockito.mock(RegionServerServices.class);
+    Mockito.doReturn(new ArrayList<HRegion>()).when(rss).getRegions(TABLENAME);
+    Mockito.when(mockRegion.getRegionServerServices()).thenReturn(rss);
+    HStore mockStore = Mockito.mock(HStore.class);
+    Mockito.doReturn(1L).when(mockStore).getSize();
+    Mockito.doReturn(true).when(mockStore).canSplit();
+    Mockito.doReturn(Optional.of(Bytes.toBytes("m"))).when(mockStore).getSplitPoint();
+    stores.add(mockStore);
+    RegionHotspotTracker hotspots = new RegionHotspotTracker(1, 2, 10, 0);
+    Mockito.doReturn(hotspots).when(mockRegion).getHotspotTracker();
+
+    BusyRegionSplitPolicy policy =
+        (BusyRegionSplitPolicy) RegionSplitPolicy.create(mockRegion, conf);
+    // No samples yet
+    assertFalse(policy.shouldSplit());
+    assertEquals("m", Bytes.toString(policy.getSplitPoint()));
+
+    // Prefix "pq" takes most of the requests, split it off at its start
+    for (int i = 0; i < 100; i++) {
+      hotspots.recordWrite(Bytes.toBytes("pq" + i));
+      hotspots.recordWrite(Bytes.toBytes("c" + (i % 10)));
+    }
+    for (int i = 0; i < 100; i++) {
+      hotspots.recordWrite(Bytes.toBytes("pq" + i));
+    }
+    assertTrue(policy.shouldSplit());
+    assertEquals("pq", Bytes.toString(policy.getSplitPoint()));
+
+    // The hot range starts the region, split it off at its end
+    hri = new HRegionInfo(TABLENAME, Bytes.toBytes("pq"), Bytes.toBytes("y"));
+    Mockito.doReturn(hri).when(mockRegion).getRegionInfo();
+    assertTrue(policy.shouldSplit());
+    assertEquals("pr", Bytes.toString(policy.getSplitPoint()));
+
+    // The hot range is the whole region, nothing to split off
+    hri = new HRegionInfo(TABLENAME, Bytes.toBytes("pq"), Bytes.toBytes("pr"));
+    Mockito.doReturn(hri).when(mockRegion).getRegionInfo();
+    assertFalse(policy.shouldSplit());
+  }
+
   private void assertWithinJitter(long maxSplitSize, long sizeToCheck) {
     assertTrue("Size greater than lower bound of jitter",
         (long)(maxSplitSize * 0.75) <= sizeToCheck);
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.regionserver.Region.RowLock;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category({RegionServerTests.class, SmallTests.class})
+public class TestStripedRowLockManager {
+
+  private static final long TIMEOUT = 1000;
+
+  @Test
+  public void testStripeCountRoundedUpToPowerOfTwo() {
+    assertEquals(1, new StripedRowLockManager(1).getStripeCount());
+    assertEquals(8, new StripedRowLockManager(5).getStripeCount());
+    assertEquals(1024, new StripedRowLockManager(1024).getStripeCount());
+  }
+
+  @Test
+  public void testSameStripeReusesPreviousLock() throws Exception {
+    StripedRowLockManager manager = new StripedRowLockManager(1);
+    RowLock first = manager.lockRow(Bytes.toBytes("a"), false, null, TIMEOUT);
+    assertNotNull(first);
+    // Only one stripe, so every row shares it.
+    assertSame(first, manager.lockRow(Bytes.toBytes("b"), false, first, TIMEOUT));
+    assertEquals(1, manager.getLockedCount());
+    assertEquals(1, manager.describeLocks().size());
+    first.release();
+    assertEquals(0, manager.getLockedCount());
+    assertTrue(manager.describeLocks().isEmpty());
+  }
+
+  @Test
+  public void testReadLocksAreShared() throws Exception {
+    StripedRowLockManager manager = new StripedRowLockManager(16);
+    byte[] row = Bytes.toBytes("row");
+    RowLock mine = manager.lockRow(row, true, null, TIMEOUT);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> other = pool.submit(() -> {
+        RowLock lock = manager.lockRow(row, true, null, TIMEOUT);
+        if (lock == null) {
+          return false;
+        }
+        lock.release();
+        return true;
+      });
+      assertTrue(other.get());
+      Future<RowLock> writer = pool.submit(() -> manager.lockRow(row, false, null, 100));
+      assertNull(writer.get());
+    } finally {
+      mine.release();
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testReadLockNotUpgraded() throws Exception {
+    StripedRowLockManager manager = new StripedRowLockManager(1);
+    RowLock read = manager.lockRow(Bytes.toBytes("a"), true, null, TIMEOUT);
+    long start = System.currentTimeMillis();
+    assertNull(manager.lockRow(Bytes.toBytes("b"), false, read, TIMEOUT));
+    assertTrue(System.currentTimeMillis() - start < TIMEOUT);
+    read.release();
+    RowLock write = manager.lockRow(Bytes.toBytes("b"), false, null, TIMEOUT);
+    assertNotNull(write);
+    // Reentrant, a write lock holder may also take the read lock.
+    RowLock read2 = manager.lockRow(Bytes.toBytes("a"), true, write, TIMEOUT);
+    assertNotNull(read2);
+    read2.release();
+    write.release();
+    assertEquals(0, manager.getLockedCount());
+  }
+
+  @Test
+  public void testExclusiveUnderContention() throws Exception {
+    StripedRowLockManager manager = new StripedRowLockManager(4);
+    byte[] row = Bytes.toBytes("hot");
+    AtomicLong counter = new AtomicLong();
+    int threads = 8;
+    int iterations = 1000;
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      Future<?>[] futures = new Future<?>[threads];
+      for (int i = 0; i < threads; i++) {
+        futures[i] = pool.submit(() -> {
+          for (int j = 0; j < iterations; j++) {
+            RowLock lock = manager.lockRow(row, false, null, TIMEOUT * 10);
+            assertNotNull(lock);
+            try {
+              // not atomic on purpose, the row lock has to make it so
+              counter.set(counter.get() + 1);
+            } finally {
+              lock.release();
+            }
+          }
+          return null;
+        });
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals((long) threads * iterations, counter.get());
+    assertEquals(0, manager.getLockedCount());
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.wal;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.regionserver.MultiVersionConcurrencyControl;
+import org.apache.hadoop.hbase.regionserver.SequenceId;
+import org.apache.hadoop.hbase.testclassification.MediumTests;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.CommonFSUtils;
+import org.apache.hadoop.hbase.wal.WALEdit;
+import org.apache.hadoop.hbase.wal.WALKey;
+import org.apache.hadoop.hbase.wal.WALKeyImpl;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Runs the AsyncFSWAL test cases with syncs held back for group commit.
+ */
+@Category({ RegionServerTests.class, MediumTests.class })
+public class TestAsyncFSWALDelayedSync extends TestAsyncFSWAL {
+
+  private static final int WRITERS = 10;
+  private static final int EDITS_PER_WRITER = 100;
+
+  @BeforeClass
+  public static void setUpDelayedSync() {
+    CONF.setLong(AsyncFSWAL.ASYNC_WAL_SYNC_MAX_DELAY_MS, 5);
+  }
+
+  @AfterClass
+  public static void tearDownDelayedSync() {
+    CONF.unset(AsyncFSWAL.ASYNC_WAL_SYNC_MAX_DELAY_MS);
+  }
+
+  /**
+   * Counts the syncs that made appends durable, and the most appends one of them covered.
+   */
+  private static final class SyncCounter implements WALActionsListener {
+    final AtomicInteger syncs = new AtomicInteger();
+    final AtomicInteger maxAppends = new AtomicInteger();
+
+    @Override
+    public void postSync(long timeInNanos, int handlerSyncs, int appends) {
+      if (appends > 0) {
+        syncs.incrementAndGet();
+        maxAppends.accumulateAndGet(appends, Math::max);
+      }
+    }
+  }
+
+  /**
+   * Has concurrent writers append and sync the way handlers do.
+   */
+  private SyncCounter writeConcurrently(Configuration conf, String logDir) throws Exception {
+    SyncCounter counter = new SyncCounter();
+    AbstractFSWAL<?> wal = newWAL(FS, CommonFSUtils.getWALRootDir(conf), logDir,
+      HConstants.HREGION_OLDLOGDIR_NAME, conf, Collections.singletonList(counter), true, null,
+      null);
+    TableName tableName = TableName.valueOf(currentTest.getMethodName());
+    RegionInfo hri = RegionInfoBuilder.newBuilder(tableName).build();
+    MultiVersionConcurrencyControl mvcc = new MultiVersionConcurrencyControl();
+    NavigableMap<byte[], Integer> scopes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    byte[] row = Bytes.toBytes("row");
+    scopes.put(row, 0);
+    AtomicReference<IOException> error = new AtomicReference<>();
+    try {
+      Thread[] writers = new Thread[WRITERS];
+      for (int t = 0; t < writers.length; t++) {
+        writers[t] = new Thread(() -> {
+          try {
+            for (int i = 0; i < EDITS_PER_WRITER; i++) {
+              long timestamp = System.currentTimeMillis();
+              WALEdit cols = new WALEdit();
+              cols.add(new KeyValue(row, row, row, timestamp, row));
+              WALKeyImpl key = new WALKeyImpl(hri.getEncodedNameAsBytes(), tableName,
+                  SequenceId.NO_SEQUENCE_ID, timestamp, WALKey.EMPTY_UUIDS, HConstants.NO_NONCE,
+                  HConstants.NO_NONCE, mvcc, scopes);
+              wal.sync(wal.append(hri, key, cols, true));
+            }
+          } catch (IOException e) {
+            error.compareAndSet(null, e);
+          }
+        });
+        writers[t].start();
+      }
+      for (Thread writer : writers) {
+        writer.join();
+      }
+    } finally {
+      wal.close();
+    }
+    if (error.get() != null) {
+      throw error.get();
+    }
+    return counter;
+  }
+
+  @Test
+  public void testDelayedSyncGroupsAppends() throws Exception {
+    Configuration noDelay = HBaseConfiguration.create(CONF);
+    noDelay.setLong(AsyncFSWAL.ASYNC_WAL_SYNC_MAX_DELAY_MS, 0);
+    SyncCounter immediate = writeConcurrently(noDelay, DIR.toString() + "-nodelay");
+    SyncCounter delayed = writeConcurrently(CONF, DIR.toString());
+
+    LOG.info("Syncs without delay: " + immediate.syncs + ", with delay: " + delayed.syncs
+        + ", most appends per delayed sync: " + delayed.maxAppends);
+    assertTrue(delayed.maxAppends.get() > 1);
+    assertTrue(delayed.syncs.get() < immediate.syncs.get());
+  }
+}
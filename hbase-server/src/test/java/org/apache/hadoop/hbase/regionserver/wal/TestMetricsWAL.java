@@ -55,6 +55,16 @@ public class TestMetricsWAL {
     verify(source, times(1)).incrementSyncTime(145);
   }
 
+  @Test
+  public void testPostSyncWithAppends() throws Exception {
+    long nanos = TimeUnit.MILLISECONDS.toNanos(12);
+    MetricsWALSource source = mock(MetricsWALSourceImpl.class);
+    MetricsWAL metricsWAL = new MetricsWAL(source);
+    metricsWAL.postSync(nanos, 2, 30);
+    verify(source, times(1)).incrementSyncTime(12);
+    verify(source, times(1)).incrementAppendsPerSync(30);
+  }
+
   @Test
   public void testSlowAppend() throws Exception {
     MetricsWALSource source = new MetricsWALSourceImpl();
@@ -19,6 +19,7 @@
 package org.apache.hadoop.hbase.regionserver.wal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -26,15 +27,19 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.ArrayBackedTag;
 import org.apache.hadoop.hbase.ByteBufferKeyValue;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.Tag;
 import org.apache.hadoop.hbase.codec.Codec.Decoder;
 import org.apache.hadoop.hbase.codec.Codec.Encoder;
+import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.util.LRUDictionary;
 import org.apache.hadoop.hbase.testclassification.RegionServerTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
@@ -60,6 +65,50 @@ public class TestWALCellCodecWithCompression {
     doTest(true, true);
   }
 
+  @Test
+  public void testValueCompression() throws Exception {
+    doTestValueCompression(false);
+  }
+
+  @Test
+  public void testValueCompressionOffheapKVs() throws Exception {
+    doTestValueCompression(true);
+  }
+
+  private void doTestValueCompression(boolean offheapKV) throws Exception {
+    Configuration conf = new Configuration(false);
+    WALCellCodec codec = new WALCellCodec(conf, new CompressionContext(LRUDictionary.class, false,
+        true, Compression.Algorithm.GZ));
+    byte[] compressible = Bytes.toBytes(new String(new char[1000]).replace('\0', 'v'));
+    byte[] incompressible = new byte[1000];
+    new Random(1).nextBytes(incompressible);
+    KeyValue[] kvs = new KeyValue[] {
+        createKV(Bytes.toBytes("v"), 1), createKV(compressible, 0), createKV(incompressible, 2),
+        createKV(compressible, 1), createKV(new byte[0], 0) };
+    ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+    Encoder encoder = codec.getEncoder(bos);
+    int uncompressedSize = 0;
+    for (KeyValue kv : kvs) {
+      encoder.write(offheapKV ? toOffheapKV(kv) : kv);
+      uncompressedSize += kv.getLength();
+    }
+    encoder.flush();
+    // The compressible values are stored smaller, the others as they are
+    assertTrue(bos.size() < uncompressedSize - compressible.length);
+
+    // Decode with a context of its own, the way a reader would
+    codec = new WALCellCodec(conf, new CompressionContext(LRUDictionary.class, false, true,
+        Compression.Algorithm.GZ));
+    Decoder decoder = codec.getDecoder(new ByteArrayInputStream(bos.toByteArray()));
+    for (KeyValue kv : kvs) {
+      assertTrue(decoder.advance());
+      Cell cell = decoder.current();
+      assertTrue(CellUtil.equals(kv, cell));
+      assertTrue(CellUtil.matchingValue(kv, cell));
+      assertEquals(kv.getTagsLength(), cell.getTagsLength());
+    }
+  }
+
   private void doTest(boolean compressTags, boolean offheapKV) throws Exception {
     Configuration conf = new Configuration(false);
     conf.setBoolean(CompressionContext.ENABLE_WAL_TAGS_COMPRESSION, compressTags);
@@ -108,6 +157,21 @@ public class TestWALCellCodecWithCompression {
     return new KeyValue(row, cf, q, HConstants.LATEST_TIMESTAMP, value, tags);
   }
 
+  private KeyValue createKV(byte[] value, int noOfTags) {
+    List<Tag> tags = new ArrayList<>(noOfTags);
+    for (int i = 1; i <= noOfTags; i++) {
+      tags.add(new ArrayBackedTag((byte) i, Bytes.toBytes("tagValue" + i)));
+    }
+    return new KeyValue(Bytes.toBytes("myRow"), Bytes.toBytes("myCF"),
+        Bytes.toBytes("myQualifier"), HConstants.LATEST_TIMESTAMP, value, tags);
+  }
+
+  private ByteBufferKeyValue toOffheapKV(KeyValue kv) {
+    ByteBuffer dbb = ByteBuffer.allocateDirect(kv.getLength());
+    dbb.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+    return new ByteBufferKeyValue(dbb, 0, kv.getLength());
+  }
+
   private ByteBufferKeyValue createOffheapKV(int noOfTags) {
     byte[] row = Bytes.toBytes("myRow");
     byte[] cf = Bytes.toBytes("myCF");
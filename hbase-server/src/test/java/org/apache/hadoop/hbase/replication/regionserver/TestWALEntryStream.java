@@ -42,10 +42,12 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.regionserver.MultiVersionConcurrencyControl;
+import org.apache.hadoop.hbase.regionserver.wal.CompressionContext;
 import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
 import org.apache.hadoop.hbase.replication.WALEntryFilter;
 import org.apache.hadoop.hbase.replication.regionserver.ReplicationSourceWALReader.WALEntryBatch;
@@ -223,6 +225,53 @@ public class TestWALEntryStream {
     }
   }
 
+  /**
+   * Tests reading, and resuming to read from a position, a log with compressed values
+   */
+  @Test
+  public void testValueCompression() throws Exception {
+    conf.setBoolean(HConstants.ENABLE_WAL_COMPRESSION, true);
+    conf.setBoolean(CompressionContext.ENABLE_WAL_VALUE_COMPRESSION, true);
+    try {
+      // Recreate the WAL for the writer to pick up the settings
+      log.close();
+      setUp();
+      byte[] small = Bytes.toBytes("value");
+      byte[] large = Bytes.toBytes(new String(new char[1024]).replace('\0', 'v'));
+      appendToLog(small);
+      appendToLog(large);
+      appendToLog(large);
+      long oldPos;
+      try (WALEntryStream entryStream =
+          new WALEntryStream(walQueue, fs, conf, 0, log, null, new MetricsSource("1"))) {
+        assertTrue(Bytes.equals(small, getValue(entryStream.next())));
+        assertTrue(Bytes.equals(large, getValue(entryStream.next())));
+        oldPos = entryStream.getPosition();
+      }
+      try (WALEntryStream entryStream = new WALEntryStream(walQueue, fs, conf, oldPos,
+          log, null, new MetricsSource("1"))) {
+        assertTrue(Bytes.equals(large, getValue(entryStream.next())));
+        assertFalse(entryStream.hasNext());
+      }
+    } finally {
+      conf.setBoolean(HConstants.ENABLE_WAL_COMPRESSION, false);
+      conf.setBoolean(CompressionContext.ENABLE_WAL_VALUE_COMPRESSION, false);
+    }
+  }
+
+  private byte[] getValue(WAL.Entry entry) {
+    return CellUtil.cloneValue(entry.getEdit().getCells().get(0));
+  }
+
+  private void appendToLog(byte[] value) throws IOException {
+    WALEdit edit = new WALEdit();
+    edit.add(new KeyValue(Bytes.toBytes("row"), family, qualifier, System.currentTimeMillis(),
+        value));
+    final long txid = log.append(info, new WALKeyImpl(info.getEncodedNameAsBytes(), tableName,
+        System.currentTimeMillis(), mvcc, scopes), edit, true);
+    log.sync(txid);
+  }
+
   /**
    * Tests that if after a stream is opened, more entries come in and then the log is rolled, we
    * don't mistakenly dequeue the current log thinking we're done with it
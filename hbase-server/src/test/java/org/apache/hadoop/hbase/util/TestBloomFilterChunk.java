@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 import junit.framework.TestCase;
 
 import org.apache.hadoop.hbase.nio.MultiByteBuff;
+import org.apache.hadoop.hbase.regionserver.BloomType;
 import org.apache.hadoop.hbase.testclassification.MiscTests;
 import org.apache.hadoop.hbase.testclassification.SmallTests;
 import org.junit.experimental.categories.Category;
@@ -186,6 +187,68 @@ public class TestBloomFilterChunk extends TestCase {
     assertEquals(640, BloomFilterUtil.computeFoldableByteSize(5001, 4));
   }
 
+  public void testBlockedBloom() throws Exception {
+    BloomFilterChunk b = BloomFilterUtil.createBlockedBySize(4096, 0.01, Hash.MURMUR_HASH, 2,
+      BloomType.ROW);
+    b.allocBloom();
+    assertTrue(b.isBlocked());
+    assertEquals(4096, b.getByteSize());
+    // A blocked bloom holds fewer keys than a standard one of the same size and error rate.
+    int maxKeys = (int) b.getMaxKeys();
+    assertTrue(maxKeys < BloomFilterUtil.computeMaxKeys(4096 * 8, 0.01, b.getHashCount()));
+    for (int i = 0; i < maxKeys; ++i) {
+      byte[] ib = Bytes.toBytes(i);
+      b.add(ib, 0, ib.length);
+    }
+    assertTrue(b.actualErrorRate() <= 0.01);
+    int falsePositives = 0;
+    int trials = 100000;
+    for (int i = 0; i < maxKeys + trials; ++i) {
+      byte[] bytes = Bytes.toBytes(i);
+      if (BloomFilterUtil.containsBlocked(bytes, 0, bytes.length, new MultiByteBuff(b.bloom), 0,
+          (int) b.byteSize, b.hash, b.hashCount)) {
+        if (i >= maxKeys) {
+          falsePositives++;
+        }
+      } else {
+        assertFalse(i < maxKeys);
+      }
+    }
+    System.out.println("Blocked bloom false positives = " + falsePositives);
+    assertTrue(falsePositives <= trials * 0.015);
+  }
+
+  public void testBlockedBloomFold() throws Exception {
+    BloomFilterChunk b = BloomFilterUtil.createBlockedBySize(700, 0.01, Hash.MURMUR_HASH, 2,
+      BloomType.ROW);
+    b.allocBloom();
+    // Rounded up to whole blocks, in a multiple of four blocks.
+    assertEquals(12 * BloomFilterUtil.BLOCKED_BLOOM_BLOCK_BYTES, b.getByteSize());
+    for (int i = 0; i < 12; ++i) {
+      byte[] ib = Bytes.toBytes(i);
+      b.add(ib, 0, ib.length);
+    }
+    b.compactBloom();
+    // Folded while the block count stays even.
+    assertEquals(3 * BloomFilterUtil.BLOCKED_BLOOM_BLOCK_BYTES, b.getByteSize());
+    for (int i = 0; i < 12; ++i) {
+      byte[] bytes = Bytes.toBytes(i);
+      assertTrue(BloomFilterUtil.containsBlocked(bytes, 0, bytes.length,
+        new MultiByteBuff(b.bloom), 0, (int) b.byteSize, b.hash, b.hashCount));
+    }
+
+    // Too small to fold as far as asked: a single block cannot be folded at all.
+    b = BloomFilterUtil.createBlockedBySize(10, 0.01, Hash.MURMUR_HASH, 3, BloomType.ROW);
+    b.allocBloom();
+    assertEquals(BloomFilterUtil.BLOCKED_BLOOM_BLOCK_BYTES, b.getByteSize());
+    byte[] key = Bytes.toBytes(1);
+    b.add(key, 0, key.length);
+    b.compactBloom();
+    assertEquals(BloomFilterUtil.BLOCKED_BLOOM_BLOCK_BYTES, b.getByteSize());
+    assertTrue(BloomFilterUtil.containsBlocked(key, 0, key.length, new MultiByteBuff(b.bloom), 0,
+      (int) b.byteSize, b.hash, b.hashCount));
+  }
+
 
 }
 
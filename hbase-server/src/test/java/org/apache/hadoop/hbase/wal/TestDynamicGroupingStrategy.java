@@ -0,0 +1,215 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.wal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionInfo;
+import org.apache.hadoop.hbase.client.RegionInfoBuilder;
+import org.apache.hadoop.hbase.regionserver.wal.WALActionsListener;
+import org.apache.hadoop.hbase.testclassification.RegionServerTests;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ManualEnvironmentEdge;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import org.apache.hadoop.hbase.shaded.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor;
+import org.apache.hadoop.hbase.shaded.protobuf.generated.WALProtos.RegionEventDescriptor.EventType;
+
+@Category({ RegionServerTests.class, SmallTests.class })
+public class TestDynamicGroupingStrategy {
+
+  private static final TableName TABLE = TableName.valueOf("test");
+
+  @After
+  public void tearDown() {
+    EnvironmentEdgeManager.reset();
+  }
+
+  private static DynamicGroupingStrategy createStrategy() {
+    Configuration conf = HBaseConfiguration.create();
+    conf.setInt(BoundedGroupingStrategy.NUM_REGION_GROUPS, 2);
+    conf.setLong(DynamicGroupingStrategy.SAMPLE_INTERVAL, 1000);
+    DynamicGroupingStrategy strategy = new DynamicGroupingStrategy();
+    strategy.init(conf, "test");
+    return strategy;
+  }
+
+  private static void appendRegionEvent(WALActionsListener listener, RegionInfo region,
+      EventType type) throws IOException {
+    RegionEventDescriptor event = ProtobufUtil.toRegionEventDescriptor(type, region, 1,
+      ServerName.valueOf("localhost", 16020, 1), Collections.emptyMap());
+    listener.postAppend(100, 0, new WALKeyImpl(region.getEncodedNameAsBytes(), TABLE, 0),
+      WALEdit.createRegionEventWALEdit(region, event));
+  }
+
+  private static void append(WALActionsListener listener, String region, long len)
+      throws IOException {
+    listener.postAppend(len, 0, new WALKeyImpl(Bytes.toBytes(region), TABLE, 0), new WALEdit());
+  }
+
+  @Test
+  public void testPlacementByLoad() throws Exception {
+    ManualEnvironmentEdge edge = new ManualEnvironmentEdge();
+    edge.setValue(1000);
+    EnvironmentEdgeManager.injectEdge(edge);
+    DynamicGroupingStrategy strategy = createStrategy();
+
+    // Without any load measured regions are spread evenly
+    String hotGroup = strategy.group(Bytes.toBytes("r1"), null);
+    String otherGroup = strategy.group(Bytes.toBytes("r2"), null);
+    assertNotEquals(hotGroup, otherGroup);
+    assertEquals(hotGroup, strategy.group(Bytes.toBytes("r3"), null));
+    assertEquals(otherGroup, strategy.group(Bytes.toBytes("r4"), null));
+
+    WALActionsListener hot = strategy.getListener(hotGroup);
+    WALActionsListener other = strategy.getListener(otherGroup);
+    hot.postSync(TimeUnit.MILLISECONDS.toNanos(500), 1);
+    other.postSync(TimeUnit.MILLISECONDS.toNanos(10), 1);
+    // The first sync after the sample interval samples every group
+    edge.incValue(1000);
+    other.postSync(0, 1);
+
+    // Open regions keep their group
+    assertEquals(hotGroup, strategy.group(Bytes.toBytes("r1"), null));
+    assertEquals(hotGroup, strategy.group(Bytes.toBytes("r3"), null));
+    // New regions avoid the overloaded group even though it has fewer regions
+    assertEquals(otherGroup, strategy.group(Bytes.toBytes("r5"), null));
+    assertEquals(2, strategy.getRegionCount(hotGroup));
+    assertEquals(3, strategy.getRegionCount(otherGroup));
+  }
+
+  @Test
+  public void testMoveHotRegion() throws Exception {
+    ManualEnvironmentEdge edge = new ManualEnvironmentEdge();
+    edge.setValue(1000);
+    EnvironmentEdgeManager.injectEdge(edge);
+    DynamicGroupingStrategy strategy = createStrategy();
+    List<String> moves = new ArrayList<>();
+    List<Consumer<Boolean>> pending = new ArrayList<>();
+    strategy.setGroupSwitcher((region, group, done) -> {
+      moves.add(region + "->" + group);
+      pending.add(done);
+    });
+
+    String hotGroup = strategy.group(Bytes.toBytes("r1"), null);
+    String otherGroup = strategy.group(Bytes.toBytes("r2"), null);
+    assertEquals(hotGroup, strategy.group(Bytes.toBytes("r3"), null));
+    assertEquals(otherGroup, strategy.group(Bytes.toBytes("r4"), null));
+    WALActionsListener hot = strategy.getListener(hotGroup);
+    WALActionsListener other = strategy.getListener(otherGroup);
+
+    // Only r1 appends to the overloaded group, so there is nothing to relieve it of
+    append(hot, "r1", 10000);
+    hot.postSync(TimeUnit.MILLISECONDS.toNanos(500), 1);
+    edge.incValue(1000);
+    hot.postSync(0, 1);
+    assertTrue(moves.isEmpty());
+
+    // With r3 appending too, the hottest region of the overloaded group is moved
+    append(hot, "r1", 10000);
+    append(hot, "r3", 100);
+    append(other, "r2", 100);
+    hot.postSync(TimeUnit.MILLISECONDS.toNanos(500), 1);
+    other.postSync(TimeUnit.MILLISECONDS.toNanos(10), 1);
+    edge.incValue(1000);
+    hot.postSync(0, 1);
+    assertEquals(1, moves.size());
+    assertEquals("r1->" + otherGroup, moves.get(0));
+    assertEquals(2, strategy.getRegionCount(hotGroup));
+
+    // One move at a time
+    append(hot, "r1", 10000);
+    append(hot, "r3", 100);
+    hot.postSync(TimeUnit.MILLISECONDS.toNanos(500), 1);
+    edge.incValue(1000);
+    hot.postSync(0, 1);
+    assertEquals(1, moves.size());
+
+    // A region the server could not move stays in its group, and is retried at the next sample
+    pending.get(0).accept(false);
+    assertEquals(hotGroup, strategy.group(Bytes.toBytes("r1"), null));
+    append(hot, "r1", 10000);
+    append(hot, "r3", 100);
+    hot.postSync(TimeUnit.MILLISECONDS.toNanos(500), 1);
+    edge.incValue(1000);
+    hot.postSync(0, 1);
+    assertEquals(2, moves.size());
+    pending.get(1).accept(true);
+    assertEquals(otherGroup, strategy.group(Bytes.toBytes("r1"), null));
+    assertEquals(1, strategy.getRegionCount(hotGroup));
+    assertEquals(3, strategy.getRegionCount(otherGroup));
+  }
+
+  @Test
+  public void testRegionClose() throws Exception {
+    DynamicGroupingStrategy strategy = createStrategy();
+    RegionInfo[] regions = new RegionInfo[4];
+    for (int i = 0; i < regions.length; i++) {
+      regions[i] = RegionInfoBuilder.newBuilder(TABLE).setStartKey(Bytes.toBytes(i)).build();
+    }
+    String group = strategy.group(regions[0].getEncodedNameAsBytes(), null);
+    String otherGroup = strategy.group(regions[1].getEncodedNameAsBytes(), null);
+    assertEquals(group, strategy.group(regions[2].getEncodedNameAsBytes(), null));
+    assertEquals(otherGroup, strategy.group(regions[3].getEncodedNameAsBytes(), null));
+    WALActionsListener listener = strategy.getListener(group);
+
+    // Only a close marker releases the region
+    appendRegionEvent(listener, regions[0], EventType.REGION_OPEN);
+    listener.postAppend(100, 0,
+      new WALKeyImpl(regions[0].getEncodedNameAsBytes(), TABLE, 0), new WALEdit());
+    assertEquals(2, strategy.getRegionCount(group));
+    appendRegionEvent(listener, regions[0], EventType.REGION_CLOSE);
+    appendRegionEvent(listener, regions[2], EventType.REGION_CLOSE);
+    assertEquals(0, strategy.getRegionCount(group));
+    // A repeated close changes nothing
+    appendRegionEvent(listener, regions[0], EventType.REGION_CLOSE);
+    assertEquals(0, strategy.getRegionCount(group));
+    assertEquals(2, strategy.getRegionCount(otherGroup));
+    // A close seen by another group, whose WAL the region was just moved to, still releases it
+    appendRegionEvent(listener, regions[3], EventType.REGION_CLOSE);
+    assertEquals(0, strategy.getRegionCount(group));
+    assertEquals(1, strategy.getRegionCount(otherGroup));
+
+    // Reopened, a closed region is placed afresh, in the emptier group
+    appendRegionEvent(strategy.getListener(otherGroup), regions[1], EventType.REGION_CLOSE);
+    assertEquals(0, strategy.getRegionCount(otherGroup));
+    assertEquals(group, strategy.group(regions[3].getEncodedNameAsBytes(), null));
+    assertEquals(otherGroup, strategy.group(regions[1].getEncodedNameAsBytes(), null));
+    assertEquals(1, strategy.getRegionCount(group));
+    assertEquals(1, strategy.getRegionCount(otherGroup));
+  }
+}
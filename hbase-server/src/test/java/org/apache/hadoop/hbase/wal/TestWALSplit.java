@@ -556,6 +556,21 @@ public class TestWALSplit {
     splitAndCount(NUM_WRITERS - 1, (NUM_WRITERS - 1) * ENTRIES); //1 corrupt
   }
 
+  @Test (timeout=300000)
+  public void testTralingGarbageCorruptionFileSkipErrorsPassesWithReadAhead()
+      throws IOException {
+    conf.setBoolean(HBASE_SKIP_ERRORS, true);
+    conf.setLong(WALSplitter.SPLIT_READAHEAD_SIZE_KEY, 1024);
+    try {
+      generateWALs(Integer.MAX_VALUE);
+      corruptWAL(new Path(WALDIR, WAL_FILE_PREFIX + "5"),
+          Corruptions.APPEND_GARBAGE, true);
+      splitAndCount(NUM_WRITERS, NUM_WRITERS * ENTRIES);
+    } finally {
+      conf.unset(WALSplitter.SPLIT_READAHEAD_SIZE_KEY);
+    }
+  }
+
   @Test (timeout=300000)
   public void testMiddleGarbageCorruptionSkipErrorsReadsHalfOfFile() throws IOException {
     conf.setBoolean(HBASE_SKIP_ERRORS, true);
@@ -645,6 +660,18 @@ public class TestWALSplit {
     splitCorruptWALs(FaultyProtobufLogReader.FailureType.BEGINNING);
   }
 
+  @Test (timeout=300000, expected = IOException.class)
+  public void testTrailingGarbageCorruptionLogFileSkipErrorsFalseThrowsWithReadAhead()
+      throws IOException {
+    conf.setBoolean(HBASE_SKIP_ERRORS, false);
+    conf.setLong(WALSplitter.SPLIT_READAHEAD_SIZE_KEY, 1024);
+    try {
+      splitCorruptWALs(FaultyProtobufLogReader.FailureType.BEGINNING);
+    } finally {
+      conf.unset(WALSplitter.SPLIT_READAHEAD_SIZE_KEY);
+    }
+  }
+
   @Test (timeout=300000)
   public void testCorruptedLogFilesSkipErrorsFalseDoesNotTouchLogs()
       throws IOException {
@@ -959,6 +986,29 @@ public class TestWALSplit {
     doTestThreading(200, 1024, 50);
   }
 
+  /**
+   * Test log split process with the WAL read on a thread of its own.
+   */
+  @Test (timeout=300000)
+  public void testThreadingReadAhead() throws Exception {
+    doTestThreading(20000, 128*1024*1024, 0, 64*1024);
+  }
+
+  /**
+   * Test blocking behavior of the read-ahead if the reader is held back by both a small
+   * read-ahead and slow writers.
+   */
+  @Test (timeout=300000)
+  public void testThreadingReadAheadSlowWriterSmallBuffer() throws Exception {
+    doTestThreading(200, 1024, 50, 1);
+  }
+
+  private void doTestThreading(final int numFakeEdits,
+      final int bufferSize,
+      final int writerSlowness) throws Exception {
+    doTestThreading(numFakeEdits, bufferSize, writerSlowness, 0);
+  }
+
   /**
    * Sets up a log splitter with a mock reader and writer. The mock reader generates
    * a specified number of edits spread across 5 regions. The mock writer optionally
@@ -970,13 +1020,16 @@ public class TestWALSplit {
    * @param numFakeEdits number of fake edits to push through pipeline
    * @param bufferSize size of in-memory buffer
    * @param writerSlowness writer threads will sleep this many ms per edit
+   * @param readAheadSize size of the read-ahead, 0 to read inline
    */
   private void doTestThreading(final int numFakeEdits,
       final int bufferSize,
-      final int writerSlowness) throws Exception {
+      final int writerSlowness,
+      final long readAheadSize) throws Exception {
 
     Configuration localConf = new Configuration(conf);
     localConf.setInt("hbase.regionserver.hlog.splitlog.buffersize", bufferSize);
+    localConf.setLong(WALSplitter.SPLIT_READAHEAD_SIZE_KEY, readAheadSize);
 
     // Create a fake log file (we'll override the reader to produce a stream of edits)
     Path logPath = new Path(WALDIR, WAL_FILE_PREFIX + ".fake");
@@ -1059,6 +1112,8 @@ public class TestWALSplit {
       assertEquals((long)entry.getValue(), numFakeEdits / regions.size());
     }
     assertEquals("Should have as many outputs as regions", regions.size(), outputCounts.size());
+    assertTrue("Reading should have been timed", logSplitter.readNanos > 0);
+    assertTrue("Writing should have been timed", logSplitter.writeNanos > 0);
   }
 
   // Does leaving the writer open in testSplitDeletedRegion matter enough for two tests?